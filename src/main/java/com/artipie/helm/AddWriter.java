@@ -26,30 +26,42 @@ package com.artipie.helm;
 import com.artipie.asto.ArtipieIOException;
 import com.artipie.asto.Key;
 import com.artipie.asto.Storage;
-import com.artipie.asto.ext.PublisherAs;
-import com.artipie.helm.metadata.Index;
+import com.artipie.helm.metadata.BinaryIndex;
+import com.artipie.helm.metadata.IndexLine;
+import com.artipie.helm.metadata.IndexReader;
 import com.artipie.helm.metadata.IndexYamlMapping;
-import com.artipie.helm.metadata.ParsedChartName;
 import com.artipie.helm.metadata.YamlWriter;
+import com.artipie.helm.misc.BoundedExecutor;
 import com.artipie.helm.misc.DateTimeNow;
 import com.artipie.helm.misc.EmptyIndex;
 import com.artipie.helm.misc.LineWriter;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import hu.akarnokd.rxjava2.interop.SingleInterop;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
+import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 
 /**
@@ -87,32 +99,91 @@ interface AddWriter {
      */
     CompletionStage<Void> addTrustfully(Path out, SortedSet<Key> charts);
 
+    /**
+     * Add info about charts to index in the same way as
+     * {@link #addTrustfully(Path, SortedSet)}, but entries of archives which were not
+     * changed since previous index file was written are reused as is.
+     * @param out Path to temporary file in which new index would be written
+     * @param charts Collection of keys of archives with charts
+     * @param previous Entries of previous index file
+     * @return Result of completion
+     */
+    CompletionStage<Void> addTrustfully(
+        Path out, SortedSet<Key> charts, PreviousEntries previous
+    );
+
     /**
      * Implementation of {@link AddWriter} for abstract storage.
      * @since 0.3
      */
     final class Asto implements AddWriter {
         /**
-         * Versions.
+         * Storage.
          */
-        static final String VRSNS = "version:";
+        private final Storage storage;
 
         /**
-         * Entries.
+         * Sidecar of source index file.
          */
-        static final String ENTRS = "entries:";
+        private final Optional<BinaryIndex> sidecar;
 
         /**
-         * Storage.
+         * Executor for processing of archives.
          */
-        private final Storage storage;
+        private final Executor executor;
+
+        /**
+         * Maximum amount of archives which are processed at once.
+         */
+        private final int parallelism;
 
         /**
          * Ctor.
          * @param storage Storage
          */
         Asto(final Storage storage) {
+            this(storage, Optional.empty());
+        }
+
+        /**
+         * Ctor.
+         * @param storage Storage
+         * @param sidecar Sidecar of source index file if it is known
+         */
+        Asto(final Storage storage, final Optional<BinaryIndex> sidecar) {
+            this(
+                storage, sidecar, BoundedExecutor.ARCHIVES, BoundedExecutor.PARALLELISM
+            );
+        }
+
+        /**
+         * Ctor.
+         * @param storage Storage
+         * @param executor Executor for processing of archives
+         * @param parallelism Maximum amount of archives which are processed at once
+         */
+        Asto(final Storage storage, final Executor executor, final int parallelism) {
+            this(storage, Optional.empty(), executor, parallelism);
+        }
+
+        /**
+         * Ctor.
+         * @param storage Storage
+         * @param sidecar Sidecar of source index file if it is known
+         * @param executor Executor for processing of archives
+         * @param parallelism Maximum amount of archives which are processed at once
+         * @checkstyle ParameterNumberCheck (10 lines)
+         */
+        Asto(
+            final Storage storage,
+            final Optional<BinaryIndex> sidecar,
+            final Executor executor,
+            final int parallelism
+        ) {
             this.storage = storage;
+            this.sidecar = sidecar;
+            this.executor = executor;
+            this.parallelism = parallelism;
         }
 
         // @checkstyle NoJavadocForOverriddenMethodsCheck (15 lines)
@@ -127,77 +198,190 @@ interface AddWriter {
          * write remained versions from packages. When we read next line after end of
          * `entries:` section from source index, we write info about remained charts
          * in packages.
+         * If the sidecar of source index is known, the source index is not parsed.
+         * Positions where new versions should be inserted are taken from the sidecar
+         * and unchanged regions of the source index are copied as is.
          */
         @Override
-        @SuppressWarnings("PMD.AssignmentInOperand")
         public CompletionStage<Void> add(
             final Path source,
             final Path out,
             final Map<String, Set<Pair<String, ChartYaml>>> pckgs
         ) {
-            return new Index.WithBreaks(this.storage)
-                .versionsByPackages(new Key.From(source.getFileName().toString()))
-                .thenCompose(
-                    vrsns -> {
-                        try (
-                            BufferedReader br = new BufferedReader(
-                                new InputStreamReader(Files.newInputStream(source))
-                            );
-                            BufferedWriter bufw = new BufferedWriter(
-                                new OutputStreamWriter(Files.newOutputStream(out))
-                            )
-                        ) {
-                            String line;
-                            boolean entrs = false;
-                            String name = null;
-                            YamlWriter writer = new YamlWriter(bufw, 2);
-                            LineWriter linewrtr = new LineWriter(writer);
-                            while ((line = br.readLine()) != null) {
-                                final String trimmed = line.trim();
-                                final int lastposspace = lastPosOfSpaceInBegin(line);
-                                if (!entrs) {
-                                    entrs = trimmed.equals(Asto.ENTRS);
-                                }
-                                if (entrs && new ParsedChartName(line).valid()) {
-                                    if (name == null) {
-                                        writer = new YamlWriter(bufw, lastposspace);
-                                        linewrtr = new LineWriter(writer);
-                                    }
-                                    if (lastposspace == writer.indent()) {
-                                        writeRemainedVersionsOfChart(name, pckgs, writer);
-                                        name = trimmed.replace(":", "");
-                                    }
-                                }
-                                if (entrs) {
-                                    throwIfVersionExists(trimmed, name, pckgs);
-                                }
-                                if (entrs && name != null && lastposspace == 0) {
-                                    writeRemainedVersionsOfChart(name, pckgs, writer);
-                                    writeRemainedChartsAfterCopyIndex(pckgs, writer);
-                                    entrs = false;
-                                }
-                                linewrtr.writeAndReplaceTagGenerated(line);
-                            }
-                            if (entrs) {
-                                writeRemainedChartsAfterCopyIndex(pckgs, writer);
-                            }
-                        } catch (final IOException exc) {
-                            throw new ArtipieIOException(exc);
+            return CompletableFuture.runAsync(
+                () -> {
+                    try {
+                        final Optional<BinaryIndex> splice = this.sidecar.filter(
+                            bin -> bin.entriesEnd() != -1
+                        );
+                        if (splice.isPresent() && splice.get().size() == Files.size(source)) {
+                            Asto.splice(source, out, pckgs, splice.get());
+                        } else {
+                            Asto.rewrite(source, out, pckgs);
+                        }
+                    } catch (final IOException exc) {
+                        throw new ArtipieIOException(exc);
+                    }
+                }
+            );
+        }
+
+        /**
+         * Rewrites source index line by line adding new versions.
+         * @param source Path to temporary file with index
+         * @param out Path to temporary file in which new index would be written
+         * @param pckgs Packages which should be added
+         * @throws IOException In case of exception during reading or writing
+         */
+        @SuppressWarnings("PMD.AssignmentInOperand")
+        private static void rewrite(
+            final Path source,
+            final Path out,
+            final Map<String, Set<Pair<String, ChartYaml>>> pckgs
+        ) throws IOException {
+            try (
+                IndexReader reader = new IndexReader(Files.newInputStream(source));
+                OutputStream bufo = new BufferedOutputStream(
+                    Files.newOutputStream(out)
+                )
+            ) {
+                IndexLine line;
+                boolean entrs = false;
+                String name = null;
+                YamlWriter writer = new YamlWriter(bufo, 2);
+                LineWriter linewrtr = new LineWriter(writer);
+                while ((line = reader.next()) != null) {
+                    final IndexLine.Kind kind = line.kind();
+                    final int lastposspace = line.indent();
+                    if (!entrs) {
+                        entrs = kind == IndexLine.Kind.ENTRIES;
+                    }
+                    if (entrs && kind == IndexLine.Kind.CHART) {
+                        if (name == null) {
+                            writer = new YamlWriter(bufo, lastposspace);
+                            linewrtr = new LineWriter(writer);
+                        }
+                        if (lastposspace == writer.indent()) {
+                            writeRemainedVersionsOfChart(name, pckgs, writer);
+                            name = line.key();
                         }
-                        return CompletableFuture.allOf();
                     }
+                    if (entrs && kind == IndexLine.Kind.VERSION) {
+                        throwIfVersionExists(line, name, pckgs);
+                    }
+                    if (entrs && lastposspace == 0 && kind != IndexLine.Kind.ENTRIES
+                        && kind != IndexLine.Kind.EMPTY) {
+                        writeRemainedVersionsOfChart(name, pckgs, writer);
+                        writeRemainedChartsAfterCopyIndex(pckgs, writer);
+                        entrs = false;
+                    }
+                    linewrtr.writeAndReplaceTagGenerated(line);
+                }
+                if (entrs) {
+                    writeRemainedChartsAfterCopyIndex(pckgs, writer);
+                }
+            }
+        }
+
+        /**
+         * Writes new index copying unchanged regions of source index and inserting
+         * new versions at positions from the sidecar. Only new entries and
+         * `generated:` line are serialized.
+         * @param source Path to temporary file with index
+         * @param out Path to temporary file in which new index would be written
+         * @param pckgs Packages which should be added
+         * @param sidecar Sidecar of source index
+         * @throws IOException In case of exception during reading or writing
+         * @checkstyle ParameterNumberCheck (10 lines)
+         */
+        private static void splice(
+            final Path source,
+            final Path out,
+            final Map<String, Set<Pair<String, ChartYaml>>> pckgs,
+            final BinaryIndex sidecar
+        ) throws IOException {
+            final Map<String, Set<String>> existed = sidecar.versions();
+            pckgs.forEach(
+                (name, pairs) -> pairs.stream()
+                    .map(Pair::getLeft)
+                    .filter(existed.getOrDefault(name, Collections.emptySet())::contains)
+                    .findFirst()
+                    .ifPresent(
+                        vers -> {
+                            throw new IllegalStateException(
+                                String.format(
+                                    "Failed to write to index `%s` with version `%s`", name, vers
+                                )
+                            );
+                        }
+                    )
+            );
+            final List<Splice> splices = new ArrayList<>(pckgs.size() + 2);
+            for (final String name : new ArrayList<>(pckgs.keySet())) {
+                final Optional<BinaryIndex.Block> chart = sidecar.chart(name);
+                if (chart.isPresent()) {
+                    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    writeRemainedVersionsOfChart(
+                        name, pckgs, new YamlWriter(bytes, sidecar.indent())
+                    );
+                    splices.add(new Splice(chart.get().end(), 0, bytes.toByteArray()));
+                }
+            }
+            if (!pckgs.isEmpty()) {
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                writeRemainedChartsAfterCopyIndex(
+                    pckgs, new YamlWriter(bytes, sidecar.indent())
+                );
+                splices.add(new Splice(sidecar.entriesEnd(), 0, bytes.toByteArray()));
+            }
+            final Optional<BinaryIndex.Block> generated = sidecar.generated();
+            if (generated.isPresent()) {
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                new LineWriter(new YamlWriter(bytes, sidecar.indent()))
+                    .writeAndReplaceTagGenerated("generated:");
+                splices.add(
+                    new Splice(
+                        generated.get().offset(), generated.get().length(), bytes.toByteArray()
+                    )
                 );
+            }
+            splices.sort(Comparator.comparingLong(Splice::offset));
+            try (
+                FileChannel src = FileChannel.open(source, StandardOpenOption.READ);
+                FileChannel dst = FileChannel.open(
+                    out, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING
+                )
+            ) {
+                final long size = src.size();
+                long pos = 0;
+                for (final Splice splice : splices) {
+                    Splice.transfer(src, dst, pos, splice.offset());
+                    if (splice.offset() == size && !Splice.endsWithBreak(src)) {
+                        Splice.write(dst, new byte[]{'\n'});
+                    }
+                    Splice.write(dst, splice.bytes);
+                    pos = splice.offset() + splice.skip;
+                }
+                Splice.transfer(src, dst, pos, size);
+            }
         }
 
         @Override
         public CompletionStage<Void> addTrustfully(final Path out, final SortedSet<Key> charts) {
+            return this.addTrustfully(out, charts, new PreviousEntries.Empty());
+        }
+
+        @Override
+        public CompletionStage<Void> addTrustfully(
+            final Path out, final SortedSet<Key> charts, final PreviousEntries previous
+        ) {
             return CompletableFuture.supplyAsync(
                 () -> {
                     try {
-                        final BufferedWriter bufw = new BufferedWriter(
-                            new OutputStreamWriter(Files.newOutputStream(out))
+                        final OutputStream bufo = new BufferedOutputStream(
+                            Files.newOutputStream(out)
                         );
-                        final YamlWriter writer = new YamlWriter(bufw, 2);
+                        final YamlWriter writer = new YamlWriter(bufo, 2);
                         final String[] lines = new EmptyIndex().asString().split("\n");
                         for (final String line : lines) {
                             if (!line.isEmpty()) {
@@ -205,18 +389,18 @@ interface AddWriter {
                             }
                         }
                         final CompletableFuture<Void> result = new CompletableFuture<>();
-                        this.writeChartsToIndex(charts, writer).handle(
+                        this.writeChartsToIndex(charts, writer, previous).handle(
                             (noth, thr) -> {
+                                try {
+                                    bufo.close();
+                                } catch (final IOException exc) {
+                                    result.completeExceptionally(new ArtipieIOException(exc));
+                                }
                                 if (thr == null) {
                                     result.complete(null);
                                 } else {
                                     result.completeExceptionally(thr);
                                 }
-                                try {
-                                    bufw.close();
-                                } catch (final IOException exc) {
-                                    throw new ArtipieIOException(exc);
-                                }
                                 return null;
                             }
                         );
@@ -229,69 +413,87 @@ interface AddWriter {
         }
 
         /**
-         * Write info about charts from archives to index file.
+         * Write info about charts from archives to index file. Archives are fetched
+         * and rendered in parallel, at most `parallelism` archives at once, on the executor.
+         * Rendered entries are written in order of passed keys, so the output does not
+         * depend on the order of completion. Archives which entries are reused from
+         * previous index file are not fetched.
          * @param charts Collection of keys of archives with charts
          * @param writer Yaml writer
+         * @param previous Entries of previous index file
          * @return Result of completion.
          */
         private CompletableFuture<Void> writeChartsToIndex(
-            final SortedSet<Key> charts, final YamlWriter writer
+            final SortedSet<Key> charts, final YamlWriter writer, final PreviousEntries previous
         ) {
             final AtomicReference<String> prev = new AtomicReference<>();
-            CompletableFuture<Void> future = CompletableFuture.allOf();
-            for (final Key key: charts) {
-                future = future.thenCompose(
-                    noth -> this.storage.value(key)
-                        .thenApply(PublisherAs::new)
-                        .thenCompose(PublisherAs::bytes)
-                        .thenApply(TgzArchive::new)
-                        .thenAccept(
-                            tgz -> {
-                                final Map<String, Object> fields;
-                                fields = new HashMap<>(tgz.chartYaml().fields());
-                                fields.putAll(tgz.metadata(Optional.empty()));
-                                fields.put("created", new DateTimeNow().asString());
-                                final String name = (String) fields.get("name");
-                                try {
-                                    if (!name.equals(prev.get())) {
-                                        writer.writeLine(String.format("%s:", name), 1);
-                                    }
-                                    prev.set(name);
-                                    writer.writeLine("-", 1);
-                                    final String[] splitted = new ChartYaml(fields)
-                                        .toString()
-                                        .split("\n");
-                                    for (final String line : splitted) {
-                                        writer.writeLine(line, 2);
-                                    }
-                                } catch (final IOException exc) {
-                                    throw new ArtipieIOException(exc);
-                                }
-                            }
-                        )
-                );
-            }
+            final CompletableFuture<Void> future = new CompletableFuture<>();
+            Flowable.fromIterable(charts).concatMapEager(
+                key -> SingleInterop.fromFuture(previous.entry(key, writer.indent())).flatMap(
+                    reused -> reused.map(Single::just).orElseGet(
+                        () -> SingleInterop.fromFuture(
+                            this.storage.value(key).thenCompose(
+                                cont -> new ChartInspector(cont, this.executor).inspect()
+                            )
+                        ).map(tgz -> Asto.rendered(tgz, writer.indent()))
+                    )
+                ).toFlowable(),
+                this.parallelism,
+                1
+            ).subscribe(
+                entry -> {
+                    if (!entry.getLeft().equals(prev.get())) {
+                        writer.writeLine(String.format("%s:", entry.getLeft()), 1);
+                    }
+                    prev.set(entry.getLeft());
+                    writer.writeRaw(entry.getRight());
+                },
+                future::completeExceptionally,
+                () -> future.complete(null)
+            );
             return future;
         }
 
         /**
-         * Generates an exception if version of chart which contains in trimmed
-         * line exists in packages.
-         * @param trimmed Trimmed line from index file
+         * Renders entry of chart from archive.
+         * @param tgz Inspection of archive with chart
+         * @param indent Indent of index file
+         * @return Chart name and bytes of the entry.
+         * @throws IOException In case of exception during rendering
+         */
+        private static Pair<String, byte[]> rendered(
+            final ChartInspector.Inspection tgz, final int indent
+        ) throws IOException {
+            final Map<String, Object> fields;
+            fields = new HashMap<>(tgz.chartYaml().fields());
+            fields.putAll(tgz.metadata(Optional.empty()));
+            fields.put("created", new DateTimeNow().asString());
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final YamlWriter writer = new YamlWriter(bytes, indent);
+            writer.writeLine("-", 1);
+            final String[] splitted = new ChartYaml(fields).toString().split("\n");
+            for (final String line : splitted) {
+                writer.writeLine(line, 2);
+            }
+            return new ImmutablePair<>((String) fields.get("name"), bytes.toByteArray());
+        }
+
+        /**
+         * Generates an exception if version of chart which contains in the line
+         * exists in packages.
+         * @param line Line from index file with version
          * @param name Name of chart
          * @param pckgs Packages collection which contains info about passed packages for
          *  adding to index file. There is a version and chart yaml for each package.
          */
         private static void throwIfVersionExists(
-            final String trimmed,
+            final IndexLine line,
             final String name,
             final Map<String, Set<Pair<String, ChartYaml>>> pckgs
         ) {
-            if (trimmed.startsWith(Asto.VRSNS)) {
-                final String vers = trimmed.replace(Asto.VRSNS, "").trim();
-                if (pckgs.containsKey(name) && pckgs.get(name).stream().anyMatch(
-                    pair -> pair.getLeft().equals(vers)
-                )) {
+            if (pckgs.containsKey(name)) {
+                final String vers = line.value();
+                if (pckgs.get(name).stream().anyMatch(pair -> pair.getLeft().equals(vers))) {
                     throw new IllegalStateException(
                         String.format("Failed to write to index `%s` with version `%s`", name, vers)
                     );
@@ -358,12 +560,91 @@ interface AddWriter {
         }
 
         /**
-         * Obtains last position of space from beginning before meeting any character.
-         * @param line Text line
-         * @return Last position of space from beginning before meeting any character.
+         * Replacement of region of source index with new bytes.
+         * @since 0.3
          */
-        private static int lastPosOfSpaceInBegin(final String line) {
-            return line.length() - line.replaceAll("^\\s*", "").length();
+        private static final class Splice {
+            /**
+             * Position of region in source index.
+             */
+            private final long offset;
+
+            /**
+             * Length of region which is replaced.
+             */
+            private final long skip;
+
+            /**
+             * Bytes which are written instead of region.
+             */
+            private final byte[] bytes;
+
+            /**
+             * Ctor.
+             * @param offset Position of region in source index
+             * @param skip Length of region which is replaced
+             * @param bytes Bytes which are written instead of region
+             */
+            Splice(final long offset, final long skip, final byte[] bytes) {
+                this.offset = offset;
+                this.skip = skip;
+                this.bytes = bytes;
+            }
+
+            /**
+             * Obtains position of region in source index.
+             * @return Position of region.
+             */
+            long offset() {
+                return this.offset;
+            }
+
+            /**
+             * Copies region of source file to target file.
+             * @param src Source file
+             * @param dst Target file
+             * @param from Beginning of the region
+             * @param until End of the region
+             * @throws IOException In case of exception during copying
+             * @checkstyle ParameterNumberCheck (5 lines)
+             */
+            static void transfer(
+                final FileChannel src, final FileChannel dst, final long from, final long until
+            ) throws IOException {
+                long pos = from;
+                while (pos < until) {
+                    pos += src.transferTo(pos, until - pos, dst);
+                }
+            }
+
+            /**
+             * Writes bytes to target file.
+             * @param dst Target file
+             * @param bytes Bytes which should be written
+             * @throws IOException In case of exception during writing
+             */
+            static void write(final FileChannel dst, final byte[] bytes) throws IOException {
+                final ByteBuffer buf = ByteBuffer.wrap(bytes);
+                while (buf.hasRemaining()) {
+                    dst.write(buf);
+                }
+            }
+
+            /**
+             * Checks that non-empty file ends with line break.
+             * @param src File
+             * @return True if file is empty or ends with line break.
+             * @throws IOException In case of exception during reading
+             */
+            static boolean endsWithBreak(final FileChannel src) throws IOException {
+                boolean res = true;
+                if (src.size() > 0) {
+                    final ByteBuffer last = ByteBuffer.allocate(1);
+                    src.read(last, src.size() - 1);
+                    res = last.get(0) == '\n';
+                }
+                return res;
+            }
         }
     }
 }
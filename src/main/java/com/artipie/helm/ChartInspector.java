@@ -0,0 +1,677 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm;
+
+import com.artipie.asto.ArtipieIOException;
+import com.artipie.helm.misc.BoundedExecutor;
+import hu.akarnokd.rxjava2.interop.SingleInterop;
+import io.reactivex.Flowable;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Inspector of chart archive which decompresses content of archive on the fly.
+ * Archive is not loaded to memory, bytes are requested from publisher one buffer
+ * at a time. Reading stops as soon as `Chart.yaml` was parsed unless digest
+ * of archive is also needed.
+ * @since 0.3
+ */
+public final class ChartInspector {
+    /**
+     * Name of file with chart info.
+     */
+    private static final String CHART_YAML = "Chart.yaml";
+
+    /**
+     * Content of archive.
+     */
+    private final Publisher<ByteBuffer> content;
+
+    /**
+     * Executor for blocking reading of archive.
+     */
+    private final Executor executor;
+
+    /**
+     * Ctor.
+     * @param content Content of archive
+     */
+    public ChartInspector(final Publisher<ByteBuffer> content) {
+        this(content, BoundedExecutor.ARCHIVES);
+    }
+
+    /**
+     * Ctor.
+     * @param content Content of archive
+     * @param executor Executor for blocking reading of archive
+     */
+    public ChartInspector(final Publisher<ByteBuffer> content, final Executor executor) {
+        this.content = content;
+        this.executor = executor;
+    }
+
+    /**
+     * Reads `Chart.yaml` from archive. Remained content of archive is not read.
+     * @return Chart yaml file.
+     */
+    public CompletionStage<ChartYaml> chartYaml() {
+        return CompletableFuture.supplyAsync(
+            () -> {
+                try (ContentStream stream = new ContentStream(this.content)) {
+                    return new ChartYaml(ChartInspector.chartYaml(stream));
+                } catch (final IOException exc) {
+                    throw new ArtipieIOException(exc);
+                }
+            },
+            this.executor
+        );
+    }
+
+    /**
+     * Reads `Chart.yaml` from archive and calculates digest and size of the whole archive
+     * in the same pass.
+     * @return Inspection of archive.
+     */
+    public CompletionStage<Inspection> inspect() {
+        return CompletableFuture.supplyAsync(
+            () -> {
+                try (ContentStream stream = new ContentStream(this.content)) {
+                    return ChartInspector.inspect(stream);
+                } catch (final IOException exc) {
+                    throw new ArtipieIOException(exc);
+                }
+            },
+            this.executor
+        );
+    }
+
+    /**
+     * Reads `Chart.yaml` from compressed stream and calculates digest and size
+     * of the whole stream.
+     * @param compressed Compressed stream
+     * @return Inspection of archive.
+     * @throws IOException In case of exception during reading
+     */
+    static Inspection inspect(final InputStream compressed) throws IOException {
+        final MessageDigest sha = DigestUtils.getSha256Digest();
+        final CountingInputStream counted = new CountingInputStream(
+            new DigestInputStream(compressed, sha)
+        );
+        final String chart = ChartInspector.chartYaml(counted);
+        IOUtils.consume(counted);
+        return new Inspection(
+            new ChartYaml(chart), Hex.encodeHexString(sha.digest()), counted.getByteCount()
+        );
+    }
+
+    /**
+     * Reads content of `Chart.yaml` from compressed stream. Stream is read only up to
+     * the end of `Chart.yaml` entry.
+     * @param compressed Compressed stream
+     * @return Content of `Chart.yaml`.
+     * @throws IOException In case of exception during reading
+     */
+    @SuppressWarnings("PMD.AssignmentInOperand")
+    static String chartYaml(final InputStream compressed) throws IOException {
+        final TarArchiveInputStream taris = new TarArchiveInputStream(
+            new GzipCompressorInputStream(compressed)
+        );
+        TarArchiveEntry entry;
+        while ((entry = taris.getNextTarEntry()) != null) {
+            if (entry.getName().endsWith(ChartInspector.CHART_YAML)) {
+                return new BufferedReader(new InputStreamReader(taris, StandardCharsets.UTF_8))
+                    .lines()
+                    .collect(Collectors.joining("\n"));
+            }
+        }
+        throw new IllegalStateException(
+            String.format("'%s' file wasn't found", ChartInspector.CHART_YAML)
+        );
+    }
+
+    /**
+     * Checks that chart yaml contains name and version of chart.
+     * @param chart Chart yaml
+     * @return The same chart yaml.
+     */
+    private static ChartYaml valid(final ChartYaml chart) {
+        if (chart.fields() == null || !(chart.fields().get("name") instanceof String)
+            || !(chart.fields().get("version") instanceof String)) {
+            throw new IllegalStateException("'Chart.yaml' should contain name and version");
+        }
+        return chart;
+    }
+
+    /**
+     * Result of inspection of archive.
+     * @since 0.3
+     */
+    public static final class Inspection {
+        /**
+         * Chart yaml file.
+         */
+        private final ChartYaml chart;
+
+        /**
+         * Sha256 digest of archive in hex.
+         */
+        private final String dgst;
+
+        /**
+         * Size of archive.
+         */
+        private final long size;
+
+        /**
+         * Ctor.
+         * @param chart Chart yaml file
+         * @param dgst Sha256 digest of archive in hex
+         * @param size Size of archive
+         */
+        Inspection(final ChartYaml chart, final String dgst, final long size) {
+            this.chart = chart;
+            this.dgst = dgst;
+            this.size = size;
+        }
+
+        /**
+         * Obtains chart yaml file.
+         * @return Chart yaml file.
+         */
+        public ChartYaml chartYaml() {
+            return this.chart;
+        }
+
+        /**
+         * Obtains sha256 digest of archive.
+         * @return Digest in hex.
+         */
+        public String digest() {
+            return this.dgst;
+        }
+
+        /**
+         * Obtains size of archive.
+         * @return Size in bytes.
+         */
+        public long size() {
+            return this.size;
+        }
+
+        /**
+         * Obtain archive name.
+         * @return How the archive should be named on the file system
+         */
+        public String name() {
+            return String.format("%s-%s.tgz", this.chart.name(), this.chart.version());
+        }
+
+        /**
+         * Metadata of archive.
+         * @param baseurl Base url.
+         * @return Metadata of archive.
+         */
+        public Map<String, Object> metadata(final Optional<String> baseurl) {
+            final Map<String, Object> meta = new HashMap<>();
+            meta.put(
+                "urls",
+                new ArrayList<>(
+                    Collections.singletonList(
+                        String.format("%s%s", baseurl.orElse(""), this.name())
+                    )
+                )
+            );
+            meta.put("digest", this.dgst);
+            meta.putAll(this.chart.fields());
+            return meta;
+        }
+    }
+
+    /**
+     * Inspection of content which is passed through to another consumer, e.g. to
+     * storage. `Chart.yaml` is parsed on the fly, the next buffer is passed through
+     * only after the previous one was handed to the parser, so at most one buffer
+     * is held at once. Digest and size are calculated on passed buffers.
+     * Content after `Chart.yaml` is passed through only when the chart was accepted
+     * by the check. If `Chart.yaml` is invalid or the chart was rejected, passed
+     * content fails and the rest of the content is not read.
+     * @since 0.3
+     */
+    public static final class Tap {
+        /**
+         * Content which is inspected.
+         */
+        private final Publisher<ByteBuffer> body;
+
+        /**
+         * Executor for blocking parsing of archive.
+         */
+        private final Executor executor;
+
+        /**
+         * Chart yaml which is parsed on the fly.
+         */
+        private final CompletableFuture<ChartYaml> chart;
+
+        /**
+         * Result of check of parsed chart yaml, fails in case of rejection of chart.
+         */
+        private final CompletionStage<Void> accepted;
+
+        /**
+         * Digest and size of passed content.
+         */
+        private final CompletableFuture<Pair<String, Long>> passed;
+
+        /**
+         * Ctor.
+         * @param body Content which is inspected
+         */
+        public Tap(final Publisher<ByteBuffer> body) {
+            this(body, chart -> CompletableFuture.allOf());
+        }
+
+        /**
+         * Ctor. Archive is parsed on {@link BoundedExecutor#UPLOADS}, because
+         * inspected content is usually paced by a client.
+         * @param body Content which is inspected
+         * @param check Check of parsed chart yaml which fails in case of rejection of chart
+         */
+        public Tap(
+            final Publisher<ByteBuffer> body,
+            final Function<ChartYaml, CompletionStage<Void>> check
+        ) {
+            this(body, check, BoundedExecutor.UPLOADS);
+        }
+
+        /**
+         * Ctor.
+         * @param body Content which is inspected
+         * @param check Check of parsed chart yaml which fails in case of rejection of chart
+         * @param executor Executor for blocking parsing of archive
+         */
+        public Tap(
+            final Publisher<ByteBuffer> body,
+            final Function<ChartYaml, CompletionStage<Void>> check,
+            final Executor executor
+        ) {
+            this.body = body;
+            this.executor = executor;
+            this.chart = new CompletableFuture<>();
+            this.accepted = this.chart.thenCompose(check);
+            this.passed = new CompletableFuture<>();
+        }
+
+        /**
+         * Content which should be consumed to perform inspection. It should be
+         * subscribed only once.
+         * @return Passed through content.
+         */
+        public Flowable<ByteBuffer> content() {
+            final Feed feed = new Feed();
+            final MessageDigest sha = DigestUtils.getSha256Digest();
+            final AtomicLong size = new AtomicLong();
+            CompletableFuture.supplyAsync(
+                () -> {
+                    try {
+                        return ChartInspector.valid(
+                            new ChartYaml(ChartInspector.chartYaml(feed))
+                        );
+                    } catch (final IOException exc) {
+                        throw new ArtipieIOException(exc);
+                    }
+                },
+                this.executor
+            ).whenComplete(
+                (yaml, thr) -> {
+                    if (thr == null) {
+                        this.chart.complete(yaml);
+                    } else {
+                        this.chart.completeExceptionally(thr);
+                    }
+                    feed.close();
+                }
+            );
+            return Flowable.fromPublisher(this.body)
+                .concatMapSingle(
+                    buf -> SingleInterop.fromFuture(
+                        feed.offer(buf).thenCompose(
+                            taken -> {
+                                final CompletionStage<ByteBuffer> res;
+                                if (taken) {
+                                    res = CompletableFuture.completedFuture(buf);
+                                } else {
+                                    res = this.accepted.thenApply(noth -> buf);
+                                }
+                                return res;
+                            }
+                        )
+                    )
+                )
+                .doOnNext(
+                    buf -> {
+                        size.addAndGet(buf.remaining());
+                        sha.update(buf.asReadOnlyBuffer());
+                    }
+                )
+                .doOnComplete(
+                    () -> this.passed.complete(
+                        new ImmutablePair<>(Hex.encodeHexString(sha.digest()), size.get())
+                    )
+                )
+                .doOnError(this.passed::completeExceptionally)
+                .doOnTerminate(feed::end)
+                .doOnCancel(feed::end);
+        }
+
+        /**
+         * Chart yaml which is available as soon as it was parsed, before the whole
+         * content was passed through.
+         * @return Chart yaml.
+         */
+        public CompletionStage<ChartYaml> chartYaml() {
+            return this.chart;
+        }
+
+        /**
+         * Inspection which is available after the whole content was passed through
+         * and the chart was accepted.
+         * @return Inspection of archive.
+         */
+        public CompletionStage<Inspection> inspection() {
+            return this.accepted.thenCompose(noth -> this.chart).thenCombine(
+                this.passed,
+                (yaml, pair) -> new Inspection(yaml, pair.getLeft(), pair.getRight())
+            );
+        }
+    }
+
+    /**
+     * Blocking input stream which is fed by passed through buffers. Buffer
+     * is released as soon as it was taken by reader. After closing all buffers
+     * are released immediately as not taken.
+     * @since 0.3
+     */
+    private static final class Feed extends InputStream {
+        /**
+         * Marker of the end of content.
+         */
+        private static final Pair<ByteBuffer, CompletableFuture<Boolean>> END =
+            new ImmutablePair<>(ByteBuffer.allocate(0), new CompletableFuture<>());
+
+        /**
+         * Buffers which were not taken by reader yet.
+         */
+        private final BlockingQueue<Pair<ByteBuffer, CompletableFuture<Boolean>>> queue;
+
+        /**
+         * Current buffer.
+         */
+        private ByteBuffer current;
+
+        /**
+         * Was the feed closed by reader?
+         */
+        private boolean closed;
+
+        /**
+         * Was the end of content reached by reader?
+         */
+        private boolean done;
+
+        /**
+         * Ctor.
+         */
+        Feed() {
+            super();
+            this.queue = new LinkedBlockingQueue<>();
+            this.current = ByteBuffer.allocate(0);
+        }
+
+        /**
+         * Offers buffer to reader.
+         * @param buffer Buffer
+         * @return Was buffer taken by reader? Completes when buffer was released.
+         */
+        synchronized CompletableFuture<Boolean> offer(final ByteBuffer buffer) {
+            final CompletableFuture<Boolean> res;
+            if (this.closed) {
+                res = CompletableFuture.completedFuture(false);
+            } else {
+                res = new CompletableFuture<>();
+                this.queue.add(new ImmutablePair<>(buffer, res));
+            }
+            return res;
+        }
+
+        /**
+         * Notifies reader about the end of content.
+         */
+        synchronized void end() {
+            if (!this.closed) {
+                this.queue.add(Feed.END);
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] one = new byte[1];
+            final int res;
+            if (this.read(one, 0, 1) == -1) {
+                res = -1;
+            } else {
+                res = one[0] & 0xff;
+            }
+            return res;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int off, final int len) throws IOException {
+            while (!this.current.hasRemaining() && !this.done) {
+                final Pair<ByteBuffer, CompletableFuture<Boolean>> next;
+                try {
+                    next = this.queue.take();
+                } catch (final InterruptedException exc) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(exc);
+                }
+                if (next == Feed.END) {
+                    this.done = true;
+                } else {
+                    this.current = next.getLeft().asReadOnlyBuffer();
+                    next.getRight().complete(true);
+                }
+            }
+            final int res;
+            if (this.current.hasRemaining()) {
+                res = Math.min(len, this.current.remaining());
+                this.current.get(bytes, off, res);
+            } else {
+                res = -1;
+            }
+            return res;
+        }
+
+        @Override
+        public synchronized void close() {
+            this.closed = true;
+            this.queue.forEach(pair -> pair.getRight().complete(false));
+            this.queue.clear();
+        }
+    }
+
+    /**
+     * Blocking input stream over publisher of content. Next buffer is requested
+     * only when previous one was read, subscription is cancelled on closing.
+     * @since 0.3
+     */
+    public static final class ContentStream extends InputStream
+        implements Subscriber<ByteBuffer> {
+        /**
+         * Marker of completion of publisher.
+         */
+        private static final Object END = new Object();
+
+        /**
+         * Received signals: buffers, error or completion marker.
+         */
+        private final BlockingQueue<Object> signals;
+
+        /**
+         * Subscription to publisher.
+         */
+        private final CompletableFuture<Subscription> subscription;
+
+        /**
+         * Current buffer.
+         */
+        private ByteBuffer current;
+
+        /**
+         * Was publisher completed?
+         */
+        private boolean done;
+
+        /**
+         * Ctor.
+         * @param content Content
+         */
+        public ContentStream(final Publisher<ByteBuffer> content) {
+            super();
+            this.signals = new LinkedBlockingQueue<>();
+            this.subscription = new CompletableFuture<>();
+            this.current = ByteBuffer.allocate(0);
+            content.subscribe(this);
+        }
+
+        @Override
+        public void onSubscribe(final Subscription sub) {
+            this.subscription.complete(sub);
+        }
+
+        @Override
+        public void onNext(final ByteBuffer buffer) {
+            this.signals.add(buffer.asReadOnlyBuffer());
+        }
+
+        @Override
+        public void onError(final Throwable err) {
+            this.signals.add(err);
+        }
+
+        @Override
+        public void onComplete() {
+            this.signals.add(ContentStream.END);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] one = new byte[1];
+            final int res;
+            if (this.read(one, 0, 1) == -1) {
+                res = -1;
+            } else {
+                res = one[0] & 0xff;
+            }
+            return res;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int off, final int len) throws IOException {
+            while (!this.current.hasRemaining() && !this.done) {
+                this.fetch();
+            }
+            final int res;
+            if (this.current.hasRemaining()) {
+                res = Math.min(len, this.current.remaining());
+                this.current.get(bytes, off, res);
+            } else {
+                res = -1;
+            }
+            return res;
+        }
+
+        @Override
+        public void close() {
+            if (!this.done) {
+                this.done = true;
+                this.subscription.thenAccept(Subscription::cancel);
+            }
+        }
+
+        /**
+         * Requests next buffer and waits for it.
+         * @throws IOException In case of error of publisher or interruption
+         */
+        private void fetch() throws IOException {
+            this.subscription.join().request(1);
+            final Object signal;
+            try {
+                signal = this.signals.take();
+            } catch (final InterruptedException exc) {
+                Thread.currentThread().interrupt();
+                throw new IOException(exc);
+            }
+            if (signal == ContentStream.END) {
+                this.done = true;
+            } else if (signal instanceof Throwable) {
+                this.done = true;
+                throw new IOException((Throwable) signal);
+            } else {
+                this.current = (ByteBuffer) signal;
+            }
+        }
+    }
+}
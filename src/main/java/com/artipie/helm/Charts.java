@@ -25,7 +25,6 @@ package com.artipie.helm;
 
 import com.artipie.asto.Key;
 import com.artipie.asto.Storage;
-import com.artipie.asto.ext.PublisherAs;
 import com.artipie.helm.misc.DateTimeNow;
 import io.vertx.core.impl.ConcurrentHashSet;
 import java.util.Collection;
@@ -86,12 +85,9 @@ interface Charts {
             return CompletableFuture.allOf(
                 charts.stream().map(
                     key -> this.storage.value(key)
-                        .thenApply(PublisherAs::new)
-                        .thenCompose(PublisherAs::bytes)
-                        .thenApply(TgzArchive::new)
+                        .thenCompose(cont -> new ChartInspector(cont).chartYaml())
                         .thenAccept(
-                            tgz -> {
-                                final ChartYaml chart = tgz.chartYaml();
+                            chart -> {
                                 pckgs.putIfAbsent(chart.name(), new HashSet<>());
                                 pckgs.get(chart.name()).add(chart.version());
                             }
@@ -108,22 +104,20 @@ interface Charts {
             return CompletableFuture.allOf(
                 charts.stream().map(
                     key -> this.storage.value(key)
-                        .thenApply(PublisherAs::new)
-                        .thenCompose(PublisherAs::bytes)
-                        .thenApply(TgzArchive::new)
+                        .thenCompose(cont -> new ChartInspector(cont).inspect())
                         .thenAccept(tgz -> Charts.Asto.addChartFromTgzToPackages(tgz, pckgs))
                 ).toArray(CompletableFuture[]::new)
             ).thenApply(noth -> pckgs);
         }
 
         /**
-         * Add chart from tgz archive to packages collection.
-         * @param tgz Tgz archive with chart yaml file
+         * Add chart from inspected tgz archive to packages collection.
+         * @param tgz Inspection of tgz archive with chart yaml file
          * @param pckgs Packages collection which contains info about passed packages for
          *  adding to index file. There is a version and chart yaml for each package.
          */
         private static void addChartFromTgzToPackages(
-            final TgzArchive tgz,
+            final ChartInspector.Inspection tgz,
             final Map<String, Set<Pair<String, ChartYaml>>> pckgs
         ) {
             final Map<String, Object> fields = new HashMap<>(tgz.chartYaml().fields());
@@ -26,28 +26,41 @@ package com.artipie.helm;
 import com.artipie.ArtipieException;
 import com.artipie.asto.ArtipieIOException;
 import com.artipie.asto.Content;
-import com.artipie.asto.Copy;
 import com.artipie.asto.Key;
 import com.artipie.asto.Storage;
+import com.artipie.asto.ext.Digests;
 import com.artipie.asto.fs.FileStorage;
+import com.artipie.helm.metadata.BinaryIndex;
+import com.artipie.helm.metadata.Index;
+import com.artipie.helm.metadata.IndexJournal;
 import com.artipie.helm.metadata.IndexYaml;
+import com.artipie.helm.misc.BoundedExecutor;
 import com.artipie.helm.misc.EmptyIndex;
+import io.reactivex.Flowable;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.lang3.NotImplementedException;
-import org.cactoos.list.ListOf;
+import org.apache.commons.lang3.tuple.Pair;
 
 /**
  * Helm repository.
@@ -57,7 +70,10 @@ import org.cactoos.list.ListOf;
  */
 public interface Helm {
     /**
-     * Batch update of Helm files for repository.
+     * Batch update of Helm files for repository. It compares archives which are
+     * located under the prefix with entries of the index file. Info about archives
+     * which are absent in index is added, entries whose archives were removed from
+     * the storage are removed from index. Only added archives are read.
      * @param prefix Repository prefix
      * @return Result of completion
      */
@@ -92,6 +108,12 @@ public interface Helm {
 
     /**
      * Implementation of {@link Helm} for abstract storage.
+     * In journal mode adding and deletion do not rewrite the index file, they append
+     * records to {@link IndexJournal}. Records are folded into the index file by
+     * {@link #compact(Key)}. Deletion in journal mode removes archives at once, while
+     * entries of deleted versions stay in the index file until compaction: readers
+     * which apply records of journal do not see them, but clients which read the
+     * index file as is get 404 for archives of these entries meanwhile.
      * @since 0.3
      */
     @SuppressWarnings("PMD.AvoidDuplicateLiterals")
@@ -101,21 +123,289 @@ public interface Helm {
          */
         private final Storage storage;
 
+        /**
+         * Is journal mode enabled?
+         */
+        private final boolean journal;
+
+        /**
+         * Executor for processing of archives during reindex.
+         */
+        private final Executor executor;
+
+        /**
+         * Maximum amount of archives which are processed at once during reindex.
+         */
+        private final int parallelism;
+
+        /**
+         * Ctor.
+         * @param storage Storage
+         */
+        public Asto(final Storage storage) {
+            this(storage, false);
+        }
+
+        /**
+         * Ctor.
+         * @param storage Storage
+         * @param journal Is journal mode enabled?
+         */
+        public Asto(final Storage storage, final boolean journal) {
+            this(
+                storage, journal, BoundedExecutor.ARCHIVES, BoundedExecutor.PARALLELISM
+            );
+        }
+
+        /**
+         * Ctor.
+         * @param storage Storage
+         * @param executor Executor for processing of archives during reindex
+         * @param parallelism Maximum amount of archives which are processed at once
+         */
+        public Asto(final Storage storage, final Executor executor, final int parallelism) {
+            this(storage, false, executor, parallelism);
+        }
+
         /**
          * Ctor.
          * @param storage Storage
+         * @param journal Is journal mode enabled?
+         * @param executor Executor for processing of archives during reindex
+         * @param parallelism Maximum amount of archives which are processed at once
+         * @checkstyle ParameterNumberCheck (10 lines)
          */
-        Asto(final Storage storage) {
+        public Asto(
+            final Storage storage,
+            final boolean journal,
+            final Executor executor,
+            final int parallelism
+        ) {
             this.storage = storage;
+            this.journal = journal;
+            this.executor = executor;
+            this.parallelism = parallelism;
         }
 
         @Override
         public CompletionStage<Void> batchUpdate(final Key prefix) {
-            throw new NotImplementedException("not implemented yet");
+            final Key keyidx = new Key.From(prefix, IndexYaml.INDEX_YAML);
+            return this.compact(prefix)
+                .thenCompose(nothing -> this.storage.list(prefix))
+                .thenApply(
+                    keys -> keys.stream()
+                        .filter(key -> key.string().endsWith(".tgz"))
+                        .collect(
+                            Collectors.toMap(key -> Asto.relative(key, prefix), key -> key)
+                        )
+                ).thenCompose(
+                    archives -> new Index.WithBreaks(this.storage)
+                        .archivesByPackages(keyidx)
+                        .thenCompose(
+                            fromidx -> {
+                                final Map<String, Set<String>> todelete = new HashMap<>();
+                                final Set<String> indexed = new HashSet<>();
+                                fromidx.forEach(
+                                    (chart, vrsns) -> vrsns.forEach(
+                                        (vers, urls) -> {
+                                            final Set<String> relative = urls.stream()
+                                                .filter(url -> !url.contains("://"))
+                                                .collect(Collectors.toSet());
+                                            final boolean absent = relative.stream()
+                                                .noneMatch(archives::containsKey);
+                                            if (!relative.isEmpty() && absent) {
+                                                todelete.computeIfAbsent(
+                                                    chart, nothing -> new HashSet<>()
+                                                ).add(vers);
+                                            }
+                                            indexed.addAll(relative);
+                                        }
+                                    )
+                                );
+                                final List<Key> toadd = archives.entrySet().stream()
+                                    .filter(entry -> !indexed.contains(entry.getKey()))
+                                    .map(Map.Entry::getValue)
+                                    .collect(Collectors.toList());
+                                final CompletionStage<Void> res;
+                                if (todelete.isEmpty() && toadd.isEmpty()) {
+                                    res = CompletableFuture.allOf();
+                                } else {
+                                    res = this.update(
+                                        keyidx,
+                                        new Charts.Asto(this.storage).versionsAndYamlFor(toadd),
+                                        todelete
+                                    );
+                                }
+                                return res;
+                            }
+                        )
+                );
         }
 
         @Override
         public CompletionStage<Void> add(final Collection<Key> charts, final Key indexpath) {
+            final CompletionStage<Void> res;
+            if (this.journal) {
+                res = CompletableFuture.runAsync(() -> throwIfKeysInvalid(charts, indexpath))
+                    .thenCompose(
+                        nothing -> new Charts.Asto(this.storage).versionsAndYamlFor(charts)
+                    )
+                    .thenCompose(
+                        pckgs -> this.journaled(indexpath).thenApply(
+                            present -> {
+                                Asto.throwIfVersionsExist(pckgs, present);
+                                return pckgs;
+                            }
+                        )
+                    )
+                    .thenCompose(pckgs -> new IndexJournal(this.storage, indexpath).add(pckgs));
+            } else {
+                res = this.addToIndex(charts, indexpath);
+            }
+            return res;
+        }
+
+        @Override
+        public CompletionStage<Void> delete(final Collection<Key> charts, final Key indexpath) {
+            final CompletionStage<Void> res;
+            if (charts.isEmpty()) {
+                res = CompletableFuture.allOf();
+            } else if (this.journal) {
+                res = CompletableFuture.runAsync(() -> throwIfKeysInvalid(charts, indexpath))
+                    .thenCompose(nothing -> this.checkAllChartsExistence(charts))
+                    .thenCompose(nothing -> new Charts.Asto(this.storage).versionsFor(charts))
+                    .thenCompose(vrsns -> new IndexJournal(this.storage, indexpath).delete(vrsns))
+                    .thenCompose(
+                        nothing -> CompletableFuture.allOf(
+                            charts.stream()
+                                .map(this.storage::delete)
+                                .toArray(CompletableFuture[]::new)
+                        )
+                    );
+            } else {
+                res = this.deleteFromIndex(
+                    charts, () -> new Charts.Asto(this.storage).versionsFor(charts), indexpath
+                );
+            }
+            return res;
+        }
+
+        /**
+         * Removes versions of charts from index and their archives from storage. All
+         * versions are dropped by the single pass over index file, including versions
+         * whose archives are already absent in storage. In journal mode archives are
+         * removed at once and versions remain in the index file until compaction.
+         * @param versions Versions by names of charts which should be removed from index
+         * @param archives Keys of archives which should be removed from storage. These
+         *  keys should start with specified prefix
+         * @param indexpath Path to index file
+         * @return Result of completion
+         */
+        public CompletionStage<Void> deleteVersions(
+            final Map<String, Set<String>> versions,
+            final Collection<Key> archives,
+            final Key indexpath
+        ) {
+            final CompletionStage<Void> res;
+            if (versions.isEmpty() && archives.isEmpty()) {
+                res = CompletableFuture.allOf();
+            } else if (this.journal) {
+                res = CompletableFuture.runAsync(() -> throwIfKeysInvalid(archives, indexpath))
+                    .thenCompose(
+                        nothing -> new IndexJournal(this.storage, indexpath).delete(versions)
+                    ).thenCompose(
+                        nothing -> CompletableFuture.allOf(
+                            archives.stream()
+                                .map(this.storage::delete)
+                                .toArray(CompletableFuture[]::new)
+                        )
+                    );
+            } else {
+                res = this.deleteFromIndex(
+                    archives, () -> CompletableFuture.completedFuture(versions), indexpath
+                );
+            }
+            return res;
+        }
+
+        @Override
+        public CompletionStage<Void> reindex(final Key prefix) {
+            final IndexJournal jrnl = new IndexJournal(this.storage, prefix);
+            return jrnl.records()
+                .thenCompose(records -> this.reindexAll(prefix, false).thenCompose(
+                    nothing -> jrnl.remove(records)
+                ));
+        }
+
+        /**
+         * Creates a new index from all archives of repository reusing entries of
+         * current index file. Entry is kept as is if the digest of its archive was
+         * not changed, so only new and changed archives are decompressed.
+         * @param prefix Prefix to repository which should be reindexed
+         * @return Result of completion
+         */
+        public CompletionStage<Void> reindexIncrementally(final Key prefix) {
+            final IndexJournal jrnl = new IndexJournal(this.storage, prefix);
+            return jrnl.records()
+                .thenCompose(records -> this.reindexAll(prefix, true).thenCompose(
+                    nothing -> jrnl.remove(records)
+                ));
+        }
+
+        /**
+         * Folds records of journal into the index file. Records are removed only
+         * after the index file was written, so the failed compaction can be repeated.
+         * Records which were appended during the compaction remain in the journal.
+         * @param prefix Prefix of index file
+         * @return Result of completion
+         */
+        public CompletionStage<Void> compact(final Key prefix) {
+            final Key keyidx = new Key.From(prefix, IndexYaml.INDEX_YAML);
+            final IndexJournal jrnl = new IndexJournal(this.storage, prefix);
+            return jrnl.records().thenCompose(
+                records -> {
+                    final CompletionStage<Void> res;
+                    if (records.isEmpty()) {
+                        res = CompletableFuture.allOf();
+                    } else {
+                        res = jrnl.changes(records).thenCompose(
+                            changes -> new Index.WithBreaks(this.storage)
+                                .versionsByPackages(keyidx)
+                                .thenCompose(
+                                    existed -> {
+                                        final Map<String, Set<String>> todelete;
+                                        todelete = changes.removed(existed);
+                                        final CompletionStage<Void> upd;
+                                        if (changes.isEmpty()) {
+                                            upd = CompletableFuture.allOf();
+                                        } else {
+                                            upd = this.update(
+                                                keyidx,
+                                                CompletableFuture.completedFuture(
+                                                    changes.added()
+                                                ),
+                                                todelete
+                                            );
+                                        }
+                                        return upd;
+                                    }
+                                )
+                        ).thenCompose(nothing -> jrnl.remove(records));
+                    }
+                    return res;
+                }
+            );
+        }
+
+        /**
+         * Adds info about charts to index file.
+         * @param charts Keys for charts which should be added to index file
+         * @param indexpath Path to index file
+         * @return Result of completion
+         */
+        private CompletionStage<Void> addToIndex(
+            final Collection<Key> charts, final Key indexpath
+        ) {
             final AtomicReference<Key> outidx = new AtomicReference<>();
             final AtomicReference<Path> dir = new AtomicReference<>();
             final Key keyidx = new Key.From(indexpath, IndexYaml.INDEX_YAML);
@@ -133,6 +423,7 @@ public interface Helm {
                                 final Path source = Files.createTempFile(dir.get(), prfx, ".yaml");
                                 final Path out = Files.createTempFile(dir.get(), prfx, "-out.yaml");
                                 final Storage tmpstrg = new FileStorage(dir.get());
+                                final MessageDigest sha = Digests.SHA256.get();
                                 outidx.set(new Key.From(out.getFileName().toString()));
                                 return this.storage.exists(keyidx)
                                     .thenCompose(
@@ -149,9 +440,12 @@ public interface Helm {
                                         }
                                 ).thenCompose(
                                     cont -> tmpstrg.save(
-                                        new Key.From(source.getFileName().toString()), cont
+                                        new Key.From(source.getFileName().toString()),
+                                        Asto.digested(cont, sha)
                                     )
-                                ).thenApply(noth -> new AddWriter.Asto(tmpstrg))
+                                ).thenCompose(
+                                    noth -> this.sidecar(indexpath, sha, tmpstrg).sidecar()
+                                ).thenApply(bin -> new AddWriter.Asto(tmpstrg, bin))
                                 .thenCompose(writer -> writer.add(source, out, pckgs))
                                 .thenCompose(
                                     noth -> this.moveFromTempStorageAndDelete(
@@ -186,99 +480,110 @@ public interface Helm {
             return result;
         }
 
-        @Override
-        public CompletionStage<Void> delete(final Collection<Key> charts, final Key indexpath) {
-            final CompletionStage<Void> res;
-            if (charts.isEmpty()) {
-                res = CompletableFuture.allOf();
-            } else {
-                final AtomicReference<Path> dir = new AtomicReference<>();
-                final Key keyidx = new Key.From(indexpath, IndexYaml.INDEX_YAML);
-                res = this.storage.exists(keyidx)
-                    .thenCompose(
-                        exists -> {
-                            throwIfKeysInvalid(charts, indexpath);
-                            if (exists) {
-                                try {
-                                    final String prfx = "index-";
-                                    final AtomicReference<Key> outidx = new AtomicReference<>();
-                                    final AtomicReference<Path> src = new AtomicReference<>();
-                                    final AtomicReference<Path> out = new AtomicReference<>();
-                                    final AtomicReference<Storage> tmpstrg;
-                                    tmpstrg = new AtomicReference<>();
-                                    final CompletableFuture<Void> rslt = new CompletableFuture<>();
-                                    this.checkAllChartsExistence(charts)
-                                        .thenAccept(
-                                            noth -> {
-                                                try {
-                                                    dir.set(Files.createTempDirectory(prfx));
-                                                    // @checkstyle LineLengthCheck (2 lines)
-                                                    src.set(Files.createTempFile(dir.get(), prfx, ".yaml"));
-                                                    out.set(Files.createTempFile(dir.get(), prfx, "-out.yaml"));
-                                                } catch (final IOException exc) {
-                                                    throw new ArtipieIOException(exc);
-                                                }
-                                                tmpstrg.set(new FileStorage(dir.get()));
-                                                outidx.set(
-                                                    new Key.From(out.get().getFileName().toString())
-                                                );
+        /**
+         * Removes versions of charts from index file and removes archives.
+         * @param charts Keys for archives which should be removed from storage
+         * @param versions Versions by names of charts which should be removed from index
+         * @param indexpath Path to index file
+         * @return Result of completion
+         */
+        private CompletionStage<Void> deleteFromIndex(
+            final Collection<Key> charts,
+            final Supplier<CompletionStage<Map<String, Set<String>>>> versions,
+            final Key indexpath
+        ) {
+            final AtomicReference<Path> dir = new AtomicReference<>();
+            final Key keyidx = new Key.From(indexpath, IndexYaml.INDEX_YAML);
+            return this.storage.exists(keyidx)
+                .thenCompose(
+                    exists -> {
+                        throwIfKeysInvalid(charts, indexpath);
+                        if (exists) {
+                            try {
+                                final String prfx = "index-";
+                                final AtomicReference<Key> outidx = new AtomicReference<>();
+                                final AtomicReference<Path> src = new AtomicReference<>();
+                                final AtomicReference<Path> out = new AtomicReference<>();
+                                final AtomicReference<Storage> tmpstrg;
+                                tmpstrg = new AtomicReference<>();
+                                final CompletableFuture<Void> rslt = new CompletableFuture<>();
+                                final MessageDigest sha = Digests.SHA256.get();
+                                this.checkAllChartsExistence(charts)
+                                    .thenAccept(
+                                        noth -> {
+                                            try {
+                                                dir.set(Files.createTempDirectory(prfx));
+                                                // @checkstyle LineLengthCheck (2 lines)
+                                                src.set(Files.createTempFile(dir.get(), prfx, ".yaml"));
+                                                out.set(Files.createTempFile(dir.get(), prfx, "-out.yaml"));
+                                            } catch (final IOException exc) {
+                                                throw new ArtipieIOException(exc);
                                             }
+                                            tmpstrg.set(new FileStorage(dir.get()));
+                                            outidx.set(
+                                                new Key.From(out.get().getFileName().toString())
+                                            );
+                                        }
+                                    )
+                                    .thenCompose(nothing -> this.storage.value(keyidx))
+                                    .thenCompose(
+                                        cont -> tmpstrg.get().save(
+                                            new Key.From(src.get().getFileName().toString()),
+                                            Asto.digested(cont, sha)
+                                        )
+                                    ).thenCombine(
+                                        versions.get(),
+                                        (noth, fromidx) -> new RemoveWriter.Asto(
+                                            this.sidecar(indexpath, sha, tmpstrg.get())
+                                        ).delete(src.get(), out.get(), fromidx)
+                                    ).thenCompose(Function.identity())
+                                    .thenCompose(
+                                        noth -> this.moveFromTempStorageAndDelete(
+                                            tmpstrg.get(), outidx.get(), dir.get(), keyidx
+                                        )
+                                    ).thenCompose(
+                                        noth -> CompletableFuture.allOf(
+                                            charts.stream()
+                                                .map(this.storage::delete)
+                                                .toArray(CompletableFuture[]::new)
                                         )
-                                        .thenCompose(nothing -> this.storage.value(keyidx))
-                                        .thenCompose(
-                                            cont -> tmpstrg.get().save(
-                                                new Key.From(src.get().getFileName().toString()),
-                                                cont
-                                            )
-                                        ).thenCombine(
-                                            new Charts.Asto(this.storage).versionsFor(charts),
-                                            (noth, fromidx) -> new RemoveWriter.Asto(tmpstrg.get())
-                                                .delete(src.get(), out.get(), fromidx)
-                                        ).thenCompose(Function.identity())
-                                        .thenCompose(
-                                            noth -> this.moveFromTempStorageAndDelete(
-                                                tmpstrg.get(), outidx.get(), dir.get(), keyidx
-                                            )
-                                        ).thenCompose(
-                                            noth -> CompletableFuture.allOf(
-                                                charts.stream()
-                                                    .map(this.storage::delete)
-                                                    .toArray(CompletableFuture[]::new)
-                                            )
-                                        ).handle(
-                                            (noth, thr) -> {
-                                                // @checkstyle NestedIfDepthCheck (10 lines)
-                                                if (thr == null) {
-                                                    rslt.complete(null);
-                                                } else {
-                                                    if (out.get() != null) {
-                                                        FileUtils.deleteQuietly(
-                                                            out.get().getParent().toFile()
-                                                        );
-                                                    }
-                                                    rslt.completeExceptionally(thr);
+                                    ).handle(
+                                        (noth, thr) -> {
+                                            // @checkstyle NestedIfDepthCheck (10 lines)
+                                            if (thr == null) {
+                                                rslt.complete(null);
+                                            } else {
+                                                if (out.get() != null) {
+                                                    FileUtils.deleteQuietly(
+                                                        out.get().getParent().toFile()
+                                                    );
                                                 }
-                                                return null;
+                                                rslt.completeExceptionally(thr);
                                             }
-                                        );
-                                    return rslt;
-                                } catch (final IllegalStateException exc) {
-                                    FileUtils.deleteQuietly(dir.get().toFile());
-                                    throw new ArtipieException(exc);
-                                }
-                            } else {
-                                throw new ArtipieException(
-                                    "Failed to delete packages as index does not exist"
-                                );
+                                            return null;
+                                        }
+                                    );
+                                return rslt;
+                            } catch (final IllegalStateException exc) {
+                                FileUtils.deleteQuietly(dir.get().toFile());
+                                throw new ArtipieException(exc);
                             }
+                        } else {
+                            throw new ArtipieException(
+                                "Failed to delete packages as index does not exist"
+                            );
                         }
-                    );
-            }
-            return res;
+                    }
+                );
         }
 
-        @Override
-        public CompletionStage<Void> reindex(final Key prefix) {
+        /**
+         * Creates a new index from all archives of repository.
+         * @param prefix Prefix to repository which should be reindexed
+         * @param incremental Should entries of current index file be reused
+         * @return Result of completion
+         */
+        private CompletionStage<Void> reindexAll(final Key prefix, final boolean incremental) {
             final AtomicReference<Path> dir = new AtomicReference<>();
             final AtomicReference<Path> out = new AtomicReference<>();
             final Key keyidx = new Key.From(prefix, IndexYaml.INDEX_YAML);
@@ -306,9 +611,12 @@ public interface Helm {
                             final Storage tmpstrg = new FileStorage(dir.get());
                             final SortedSet<Key> tgzs = new TreeSet<>(Key.CMP_STRING);
                             tgzs.addAll(keys);
-                            return new AddWriter.Asto(this.storage)
-                                .addTrustfully(out.get(), tgzs)
+                            return this.previous(keyidx, incremental, tmpstrg, dir.get())
                                 .thenCompose(
+                                    prev -> new AddWriter.Asto(
+                                        this.storage, this.executor, this.parallelism
+                                    ).addTrustfully(out.get(), tgzs, prev)
+                                ).thenCompose(
                                     noth -> this.moveFromTempStorageAndDelete(
                                         tmpstrg,
                                         new Key.From(out.get().getFileName().toString()),
@@ -332,6 +640,160 @@ public interface Helm {
             return result;
         }
 
+        /**
+         * Obtains entries of current index file which could be reused. Index file
+         * is copied to temporary storage and scanned there.
+         * @param keyidx Key to index file in source storage
+         * @param incremental Should entries of current index file be reused
+         * @param tmpstrg Temporary storage
+         * @param tmpdir Temporary directory
+         * @return Entries of current index file.
+         * @checkstyle ParameterNumberCheck (10 lines)
+         */
+        private CompletionStage<PreviousEntries> previous(
+            final Key keyidx,
+            final boolean incremental,
+            final Storage tmpstrg,
+            final Path tmpdir
+        ) {
+            final Key copy = new Key.From(
+                String.format("index-%s-previous.yaml", UUID.randomUUID().toString())
+            );
+            final CompletionStage<Boolean> exists;
+            if (incremental) {
+                exists = this.storage.exists(keyidx);
+            } else {
+                exists = CompletableFuture.completedFuture(false);
+            }
+            return exists.thenCompose(
+                found -> {
+                    final CompletionStage<PreviousEntries> res;
+                    if (found) {
+                        res = this.storage.value(keyidx)
+                            .thenCompose(cont -> tmpstrg.save(copy, cont))
+                            .thenCompose(
+                                noth -> new Index.WithBreaks(tmpstrg).archivesByPackages(copy)
+                            ).thenApply(
+                                archives -> new PreviousEntries.FromIndex(
+                                    this.storage,
+                                    Asto.prefix(keyidx),
+                                    tmpdir.resolve(copy.string()),
+                                    new BinaryIndex(tmpdir.resolve(copy.string())),
+                                    archives
+                                )
+                            );
+                    } else {
+                        res = CompletableFuture.completedFuture(new PreviousEntries.Empty());
+                    }
+                    return res;
+                }
+            );
+        }
+
+        /**
+         * Rewrites index file removing info about specified versions of charts and
+         * adding info about charts from passed archives.
+         * @param keyidx Key to index file
+         * @param toadd Packages which should be added
+         * @param todelete Versions of charts which should be removed
+         * @return Result of completion
+         */
+        private CompletionStage<Void> update(
+            final Key keyidx,
+            final CompletionStage<Map<String, Set<Pair<String, ChartYaml>>>> toadd,
+            final Map<String, Set<String>> todelete
+        ) {
+            final AtomicReference<Path> dir = new AtomicReference<>();
+            final CompletableFuture<Void> result = new CompletableFuture<>();
+            CompletableFuture.supplyAsync(
+                () -> {
+                    final String prfx = "index-";
+                    try {
+                        dir.set(Files.createTempDirectory(prfx));
+                        return new Path[]{
+                            Files.createTempFile(dir.get(), prfx, ".yaml"),
+                            Files.createTempFile(dir.get(), prfx, "-rm.yaml"),
+                            Files.createTempFile(dir.get(), prfx, "-out.yaml"),
+                        };
+                    } catch (final IOException exc) {
+                        throw new ArtipieIOException(exc);
+                    }
+                }
+            ).thenCompose(
+                paths -> {
+                    final Storage tmpstrg = new FileStorage(dir.get());
+                    final MessageDigest sha = Digests.SHA256.get();
+                    return this.storage.exists(keyidx)
+                        .thenCompose(
+                            exists -> {
+                                final CompletionStage<Content> res;
+                                if (exists) {
+                                    res = this.storage.value(keyidx);
+                                } else {
+                                    res = CompletableFuture.completedFuture(
+                                        new EmptyIndex().asContent()
+                                    );
+                                }
+                                return res;
+                            }
+                        ).thenCompose(
+                            cont -> tmpstrg.save(
+                                new Key.From(paths[0].getFileName().toString()),
+                                Asto.digested(cont, sha)
+                            )
+                        ).thenCompose(
+                            noth -> {
+                                final Index.WithSidecar index;
+                                index = this.sidecar(Asto.prefix(keyidx), sha, tmpstrg);
+                                final CompletionStage<AddWriter> res;
+                                if (todelete.isEmpty()) {
+                                    res = index.sidecar().thenApply(
+                                        bin -> new AddWriter.Asto(tmpstrg, bin)
+                                    );
+                                } else {
+                                    res = new RemoveWriter.Asto(index)
+                                        .delete(paths[0], paths[1], todelete)
+                                        .thenApply(nothing -> new AddWriter.Asto(tmpstrg));
+                                }
+                                return res;
+                            }
+                        ).thenCombine(
+                            toadd,
+                            (writer, pckgs) -> {
+                                final Path source;
+                                if (todelete.isEmpty()) {
+                                    source = paths[0];
+                                } else {
+                                    source = paths[1];
+                                }
+                                return writer.add(source, paths[2], pckgs);
+                            }
+                        ).thenCompose(Function.identity())
+                        .thenCompose(
+                            noth -> this.moveFromTempStorageAndDelete(
+                                tmpstrg,
+                                new Key.From(paths[2].getFileName().toString()),
+                                dir.get(),
+                                keyidx
+                            )
+                        );
+                }
+            ).handle(
+                (noth, thr) -> {
+                    if (thr == null) {
+                        result.complete(null);
+                    } else {
+                        if (dir.get() != null) {
+                            FileUtils.deleteQuietly(dir.get().toFile());
+                        }
+                        result.completeExceptionally(thr);
+                    }
+                    return null;
+                }
+            );
+            return result;
+        }
+
         /**
          * Checks that keys for all charts exist in storage. In case of absence
          * one of them an exception will be thrown.
@@ -361,7 +823,14 @@ public interface Helm {
 
         /**
          * Moves index file from temporary storage to real and deletes this file
-         * from temporary storage.
+         * from temporary storage. Sidecar of the new index file is built while the
+         * index file is copied, so the index file is read once. Both files are copied
+         * next to their targets first, then the old sidecar is removed and both
+         * files are moved. Storage can not move two keys atomically, so between
+         * the moves the index file has no sidecar and readers fall back to reading
+         * of the index file; if the process dies there, the sidecar is absent until
+         * the next write. The sidecar never stands next to the index file it was not
+         * built for, readers check its digest and size anyway.
          * @param tmpstrg Temporary storage with index file
          * @param outidx Key to index file in temporary storage
          * @param tmpdir Temporary directory
@@ -375,12 +844,133 @@ public interface Helm {
             final Path tmpdir,
             final Key idxtarget
         ) {
-            return new Copy(tmpstrg, new ListOf<>(outidx)).copy(this.storage)
+            final Key bintarget = BinaryIndex.key(Asto.prefix(idxtarget));
+            final Key binidx = new Key.From(
+                String.format("%s%s", outidx.string(), BinaryIndex.NAME)
+            );
+            return tmpstrg.value(outidx).thenCompose(
+                cont -> {
+                    final Flowable<ByteBuffer> shared = Flowable.fromPublisher(cont)
+                        .publish()
+                        .autoConnect(2);
+                    final ChartInspector.ContentStream stream;
+                    stream = new ChartInspector.ContentStream(shared);
+                    final CompletableFuture<BinaryIndex> sidecar;
+                    sidecar = CompletableFuture.supplyAsync(
+                        () -> new BinaryIndex(stream), this.executor
+                    );
+                    return this.storage.save(
+                        outidx, new Content.From(cont.size(), shared.map(ByteBuffer::duplicate))
+                    ).whenComplete(
+                        (noth, thr) -> {
+                            if (thr != null) {
+                                stream.onError(thr);
+                            }
+                        }
+                    ).thenCombine(sidecar, (noth, bin) -> bin);
+                }
+            ).thenCompose(bin -> this.storage.save(binidx, new Content.From(bin.asBytes())))
+                .thenCompose(noth -> this.storage.exists(bintarget))
+                .thenCompose(
+                    exists -> {
+                        final CompletionStage<Void> res;
+                        if (exists) {
+                            res = this.storage.delete(bintarget);
+                        } else {
+                            res = CompletableFuture.allOf();
+                        }
+                        return res;
+                    }
+                )
                 .thenCompose(noth -> this.storage.move(outidx, idxtarget))
+                .thenCompose(noth -> this.storage.move(binidx, bintarget))
                 .thenApply(noth -> FileUtils.deleteQuietly(tmpdir.toFile()))
                 .thenCompose(ignore -> CompletableFuture.allOf());
         }
 
+        /**
+         * Obtains index which reads versions of charts from binary sidecar of index
+         * file if the sidecar corresponds to the index file with the specified digest.
+         * @param prefix Prefix of index file in source storage
+         * @param sha Digest which was calculated during reading of index file
+         * @param tmpstrg Temporary storage with copy of index file
+         * @return Index.
+         */
+        private Index.WithSidecar sidecar(
+            final Key prefix, final MessageDigest sha, final Storage tmpstrg
+        ) {
+            return new Index.WithSidecar(
+                this.storage,
+                BinaryIndex.key(prefix),
+                Hex.encodeHexString(sha.digest()),
+                new Index.WithBreaks(tmpstrg)
+            );
+        }
+
+        /**
+         * Updates digest with content as it is read.
+         * @param cont Content
+         * @param sha Digest which should be updated
+         * @return Content.
+         */
+        private static Content digested(final Content cont, final MessageDigest sha) {
+            return new Content.From(
+                cont.size(),
+                Flowable.fromPublisher(cont).doOnNext(buf -> sha.update(buf.duplicate()))
+            );
+        }
+
+        /**
+         * Obtains prefix of index file.
+         * @param keyidx Key to index file
+         * @return Prefix of index file.
+         */
+        private static Key prefix(final Key keyidx) {
+            return keyidx.parent().orElse(Key.ROOT);
+        }
+
+        /**
+         * Obtains versions of charts from the index file with records of journal applied.
+         * @param prefix Prefix of index file
+         * @return Versions of charts.
+         */
+        private CompletionStage<Map<String, Set<String>>> journaled(final Key prefix) {
+            final IndexJournal jrnl = new IndexJournal(this.storage, prefix);
+            return jrnl.records().thenCompose(jrnl::changes).thenCombine(
+                new Index.WithBreaks(this.storage).versionsByPackages(
+                    new Key.From(prefix, IndexYaml.INDEX_YAML)
+                ),
+                IndexJournal.Changes::versions
+            );
+        }
+
+        /**
+         * Checks that versions of added packages are absent in the index, as it is
+         * checked on writing of index file. Otherwise an exception will be thrown.
+         * @param pckgs Packages with versions and chart yaml for each package
+         * @param present Versions of charts in the index
+         */
+        private static void throwIfVersionsExist(
+            final Map<String, Set<Pair<String, ChartYaml>>> pckgs,
+            final Map<String, Set<String>> present
+        ) {
+            pckgs.forEach(
+                (name, pairs) -> pairs.stream()
+                    .map(Pair::getLeft)
+                    .filter(present.getOrDefault(name, new HashSet<>(0))::contains)
+                    .findFirst()
+                    .ifPresent(
+                        vers -> {
+                            throw new IllegalStateException(
+                                String.format(
+                                    "Failed to write to index `%s` with version `%s`", name, vers
+                                )
+                            );
+                        }
+                    )
+            );
+        }
+
         /**
          * Checks that all keys from collection start with specified prefix.
          * Otherwise an exception will be thrown.
@@ -404,5 +994,21 @@ public interface Helm {
                 }
             );
         }
+
+        /**
+         * Obtains key string relative to the prefix.
+         * @param key Key
+         * @param prefix Prefix of the key
+         * @return Key string without prefix.
+         */
+        private static String relative(final Key key, final Key prefix) {
+            final String res;
+            if (prefix.string().isEmpty()) {
+                res = key.string();
+            } else {
+                res = key.string().substring(prefix.string().length() + 1);
+            }
+            return res;
+        }
     }
 }
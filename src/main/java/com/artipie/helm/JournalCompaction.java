@@ -21,39 +21,45 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
  * SOFTWARE.
  */
-package com.artipie.helm.metadata;
+package com.artipie.helm;
+
+import com.artipie.asto.Key;
+import com.artipie.asto.Storage;
 
 /**
- * Encapsulates parsed chart name for validation.
+ * Compaction of journal of index which can be run periodically, e.g. by
+ * {@link java.util.concurrent.ScheduledExecutorService#scheduleWithFixedDelay}.
+ * Compaction should not be run concurrently for the same prefix. Failure of
+ * compaction is thrown from {@link #run()}, records remain in the journal and
+ * they are folded by the next run. Scheduled executor does not run the task
+ * after its failure, so the caller which should keep the schedule has to
+ * handle the failure.
  * @since 0.3
  */
-public final class ParsedChartName {
+public final class JournalCompaction implements Runnable {
     /**
-     * Entries.
+     * Storage.
      */
-    private static final String ENTRS = "entries:";
+    private final Storage storage;
 
     /**
-     * Chart name.
+     * Prefix of index file.
      */
-    private final String name;
+    private final Key prefix;
 
     /**
      * Ctor.
-     * @param name Parsed from file with breaks chart name
+     * @param storage Storage
+     * @param prefix Prefix of index file
      */
-    public ParsedChartName(final String name) {
-        this.name = name;
+    public JournalCompaction(final Storage storage, final Key prefix) {
+        this.storage = storage;
+        this.prefix = prefix;
     }
 
-    /**
-     * Validates chart name.
-     * @return True if parsed chart name is valid, false otherwise.
-     */
-    public boolean valid() {
-        final String trimmed = this.name.trim();
-        return trimmed.endsWith(":")
-            && !trimmed.equals(ParsedChartName.ENTRS)
-            && trimmed.charAt(0) != '-';
+    @Override
+    public void run() {
+        new Helm.Asto(this.storage, true).compact(this.prefix)
+            .toCompletableFuture().join();
     }
 }
@@ -0,0 +1,239 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm;
+
+import com.artipie.asto.ArtipieIOException;
+import com.artipie.asto.Key;
+import com.artipie.asto.Storage;
+import com.artipie.asto.ext.ContentDigest;
+import com.artipie.asto.ext.Digests;
+import com.artipie.helm.metadata.BinaryIndex;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Entries of charts from the previous version of index file which could be
+ * reused during reindex instead of decompression of archives.
+ * @since 0.3
+ */
+interface PreviousEntries {
+    /**
+     * Obtains entry of chart from archive if the archive was not changed since
+     * the entry was written.
+     * @param archive Key of archive with chart
+     * @param indent Indent of index file which is written
+     * @return Chart name and bytes of the entry if it could be reused, empty otherwise.
+     */
+    CompletionStage<Optional<Pair<String, byte[]>>> entry(Key archive, int indent);
+
+    /**
+     * Absence of previous entries, every archive should be processed.
+     * @since 0.3
+     */
+    final class Empty implements PreviousEntries {
+        @Override
+        public CompletionStage<Optional<Pair<String, byte[]>>> entry(
+            final Key archive, final int indent
+        ) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+    }
+
+    /**
+     * Entries of local copy of index file. Entry is reused if its digest is
+     * equal to the digest of archive which key relative to the repository prefix
+     * is mentioned in urls of the entry. Absolute urls are not matched. Digest of
+     * archive is calculated on the stream of bytes, archive is not decompressed.
+     * @since 0.3
+     */
+    final class FromIndex implements PreviousEntries {
+        /**
+         * Storage with archives.
+         */
+        private final Storage storage;
+
+        /**
+         * Prefix of repository.
+         */
+        private final Key prefix;
+
+        /**
+         * Path to local copy of index file.
+         */
+        private final Path index;
+
+        /**
+         * Sidecar of local copy of index file.
+         */
+        private final BinaryIndex sidecar;
+
+        /**
+         * Chart name and version by relative url of archive.
+         */
+        private final Map<String, Pair<String, String>> files;
+
+        /**
+         * Ctor.
+         * @param storage Storage with archives
+         * @param prefix Prefix of repository
+         * @param index Path to local copy of index file
+         * @param sidecar Sidecar of local copy of index file
+         * @param archives Urls of archives by versions by charts from index file
+         * @checkstyle ParameterNumberCheck (10 lines)
+         */
+        FromIndex(
+            final Storage storage,
+            final Key prefix,
+            final Path index,
+            final BinaryIndex sidecar,
+            final Map<String, Map<String, Set<String>>> archives
+        ) {
+            this.storage = storage;
+            this.prefix = prefix;
+            this.index = index;
+            this.sidecar = sidecar;
+            this.files = new HashMap<>();
+            archives.forEach(
+                (name, vrsns) -> vrsns.forEach(
+                    (vers, urls) -> urls.stream()
+                        .filter(url -> !url.contains("://"))
+                        .forEach(
+                            url -> this.files.put(
+                                url.replaceAll("^/+", ""), new ImmutablePair<>(name, vers)
+                            )
+                        )
+                )
+            );
+        }
+
+        @Override
+        public CompletionStage<Optional<Pair<String, byte[]>>> entry(
+            final Key archive, final int indent
+        ) {
+            final Optional<Pair<String, String>> chart = Optional.ofNullable(
+                this.files.get(this.relative(archive))
+            );
+            final Optional<BinaryIndex.Block> block = chart.flatMap(
+                pair -> this.sidecar.entry(pair.getLeft(), pair.getRight())
+            ).filter(blck -> !blck.digest().isEmpty());
+            final CompletionStage<Optional<Pair<String, byte[]>>> res;
+            if (block.isPresent()) {
+                res = this.storage.value(archive)
+                    .thenCompose(cont -> new ContentDigest(cont, Digests.SHA256).hex())
+                    .thenApply(
+                        hex -> Optional.of(hex)
+                            .filter(dgst -> dgst.equals(block.get().digest()))
+                            .map(
+                                dgst -> new ImmutablePair<>(
+                                    chart.get().getLeft(),
+                                    FromIndex.shifted(this.read(block.get()), indent)
+                                )
+                            )
+                    );
+            } else {
+                res = CompletableFuture.completedFuture(Optional.empty());
+            }
+            return res;
+        }
+
+        /**
+         * Reads block of local copy of index file.
+         * @param block Block
+         * @return Bytes of the block.
+         */
+        private byte[] read(final BinaryIndex.Block block) {
+            try (FileChannel chan = FileChannel.open(this.index, StandardOpenOption.READ)) {
+                final ByteBuffer buf = ByteBuffer.allocate((int) block.length());
+                long pos = block.offset();
+                while (buf.hasRemaining() && chan.read(buf, pos) != -1) {
+                    pos = block.offset() + buf.position();
+                }
+                return buf.array();
+            } catch (final IOException exc) {
+                throw new ArtipieIOException(exc);
+            }
+        }
+
+        /**
+         * Shifts lines of the entry so that the item of the entry has the specified
+         * indent. The whole entry is shifted at once, so its structure is kept.
+         * @param bytes Bytes of the entry
+         * @param indent Indent of items in index file which is written
+         * @return Shifted entry which ends with line break.
+         */
+        private static byte[] shifted(final byte[] bytes, final int indent) {
+            final String entry = new String(bytes, StandardCharsets.UTF_8);
+            final int delta = indent - FromIndex.spaces(entry);
+            final StringBuilder res = new StringBuilder(entry.length());
+            for (final String line : entry.split("\n")) {
+                if (line.trim().isEmpty()) {
+                    res.append(line);
+                } else if (delta >= 0) {
+                    res.append(StringUtils.repeat(' ', delta)).append(line);
+                } else {
+                    res.append(line.substring(Math.min(-delta, FromIndex.spaces(line))));
+                }
+                res.append('\n');
+            }
+            return res.toString().getBytes(StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Counts leading spaces of the line.
+         * @param line Line
+         * @return Amount of leading spaces.
+         */
+        private static int spaces(final String line) {
+            return line.length() - StringUtils.stripStart(line, " ").length();
+        }
+
+        /**
+         * Obtains key of archive relative to the repository prefix.
+         * @param archive Key of archive
+         * @return Relative key of archive.
+         */
+        private String relative(final Key archive) {
+            final String res;
+            if (this.prefix.string().isEmpty()) {
+                res = archive.string();
+            } else {
+                res = archive.string().substring(this.prefix.string().length() + 1);
+            }
+            return res;
+        }
+    }
+}
@@ -28,19 +28,16 @@ import com.artipie.asto.ArtipieIOException;
 import com.artipie.asto.Key;
 import com.artipie.asto.Storage;
 import com.artipie.helm.metadata.Index;
-import com.artipie.helm.metadata.ParsedChartName;
+import com.artipie.helm.metadata.IndexLine;
+import com.artipie.helm.metadata.IndexReader;
 import com.artipie.helm.metadata.YamlWriter;
 import com.artipie.helm.misc.LineWriter;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
@@ -75,26 +72,24 @@ public interface RemoveWriter {
      */
     final class Asto implements RemoveWriter {
         /**
-         * Versions.
+         * Index from which versions of charts are obtained.
          */
-        static final String VRSNS = "version:";
+        private final Index index;
 
         /**
-         * Entries.
-         */
-        static final String ENTRS = "entries:";
-
-        /**
-         * Storage.
+         * Ctor.
+         * @param storage Storage
          */
-        private final Storage storage;
+        Asto(final Storage storage) {
+            this(new Index.WithBreaks(storage));
+        }
 
         /**
          * Ctor.
-         * @param storage Storage
+         * @param index Index from which versions of charts are obtained
          */
-        Asto(final Storage storage) {
-            this.storage = storage;
+        Asto(final Index index) {
+            this.index = index;
         }
 
         @Override
@@ -108,7 +103,7 @@ public interface RemoveWriter {
             final Path out,
             final Map<String, Set<String>> todelete
         ) {
-            return new Index.WithBreaks(this.storage)
+            return this.index
                 .versionsByPackages(new Key.From(source.getFileName().toString()))
                 .thenCompose(
                     fromidx -> {
@@ -118,48 +113,50 @@ public interface RemoveWriter {
                 ).thenCompose(
                     noth ->  {
                         try (
-                            BufferedReader br = new BufferedReader(
-                                new InputStreamReader(Files.newInputStream(source))
-                            );
-                            BufferedWriter bufw = new BufferedWriter(
-                                new OutputStreamWriter(Files.newOutputStream(out))
+                            IndexReader reader = new IndexReader(Files.newInputStream(source));
+                            OutputStream bufo = new BufferedOutputStream(
+                                Files.newOutputStream(out)
                             )
                         ) {
-                            String line;
+                            IndexLine line;
                             boolean entrs = false;
-                            String name = null;
-                            final List<String> lines = new ArrayList<>(2);
-                            YamlWriter writer = new YamlWriter(bufw, 2);
-                            LineWriter linewrtr = new LineWriter(writer);
-                            while ((line = br.readLine()) != null) {
-                                final String trimmed = line.trim();
-                                final int posspace = lastPosOfSpaceInBegin(line);
+                            int indent = -1;
+                            Entry entry = null;
+                            final YamlWriter writer = new YamlWriter(bufo, 2);
+                            final LineWriter linewrtr = new LineWriter(writer);
+                            while ((line = reader.next()) != null) {
+                                final IndexLine.Kind kind = line.kind();
+                                final int posspace = line.indent();
                                 if (!entrs) {
-                                    entrs = trimmed.equals(Asto.ENTRS);
-                                }
-                                if (entrs && new ParsedChartName(line).valid()) {
-                                    if (name == null) {
-                                        writer = new YamlWriter(bufw, posspace);
-                                        linewrtr = new LineWriter(writer);
+                                    entrs = kind == IndexLine.Kind.ENTRIES;
+                                } else if (kind != IndexLine.Kind.EMPTY) {
+                                    final boolean chart = kind == IndexLine.Kind.CHART
+                                        && (indent == -1 || posspace == indent);
+                                    if (posspace == 0 || chart) {
+                                        if (entry != null) {
+                                            entry.finish(writer);
+                                            entry = null;
+                                        }
                                     }
-                                    if (posspace == writer.indent()) {
-                                        if (name != null) {
-                                            writeIfNotContainInDeleted(lines, todelete, writer);
+                                    if (posspace == 0) {
+                                        entrs = false;
+                                    } else if (chart) {
+                                        indent = posspace;
+                                        final String name = line.key();
+                                        if (todelete.containsKey(name)) {
+                                            entry = new Entry(line, todelete.get(name));
                                         }
-                                        name = trimmed.replace(":", "");
                                     }
                                 }
-                                if (entrs && name != null && posspace == 0) {
-                                    entrs = false;
-                                    writeIfNotContainInDeleted(lines, todelete, writer);
-                                }
-                                if (entrs && name != null) {
-                                    lines.add(line);
-                                }
-                                if (lines.isEmpty()) {
+                                if (entry == null) {
                                     linewrtr.writeAndReplaceTagGenerated(line);
+                                } else {
+                                    entry.accept(line, writer);
                                 }
                             }
+                            if (entry != null) {
+                                entry.finish(writer);
+                            }
                         } catch (final IOException exc) {
                             throw new ArtipieIOException(exc);
                         }
@@ -168,45 +165,6 @@ public interface RemoveWriter {
                 );
         }
 
-        /**
-         * Writes info about all versions of chart to new index if chart with specified
-         * name and version does not exist in collection of charts which should be removed
-         * from index file.
-         * @param lines Parsed lines
-         * @param pckgs Charts which should be removed
-         * @param writer Writer
-         * @throws IOException In case of exception during writing
-         */
-        private static void writeIfNotContainInDeleted(
-            final List<String> lines,
-            final Map<String, Set<String>> pckgs,
-            final YamlWriter writer
-        ) throws IOException {
-            final ChartVersions items = new ChartVersions(lines);
-            final String name = items.name().trim().replace(":", "");
-            final Map<String, List<String>> vrsns = items.versions();
-            boolean recordedname = false;
-            if (pckgs.containsKey(name)) {
-                for (final String vers : vrsns.keySet()) {
-                    if (!pckgs.get(name).contains(vers)) {
-                        if (!recordedname) {
-                            recordedname = true;
-                            writer.writeLine(items.name(), 0);
-                        }
-                        final List<String> entry = vrsns.get(vers);
-                        for (final String line : entry) {
-                            writer.writeLine(line, 0);
-                        }
-                    }
-                }
-            } else {
-                for (final String line : lines) {
-                    writer.writeLine(line, 0);
-                }
-            }
-            lines.clear();
-        }
-
         /**
          * Checks whether all charts with specified versions exist in index file,
          * in case of absence one of them an exception will be thrown.
@@ -245,81 +203,123 @@ public interface RemoveWriter {
         }
 
         /**
-         * Obtains last position of space from beginning before meeting any character.
-         * @param line Text line
-         * @return Last position of space from beginning before meeting any character.
-         */
-        private static int lastPosOfSpaceInBegin(final String line) {
-            return line.length() - line.replaceAll("^\\s*", "").length();
-        }
-
-        /**
-         * Extracts versions for chart from passed parsed lines.
+         * Versions of chart which is located in the index and contains versions
+         * for deletion. Lines of each version are buffered until the version is
+         * known and are written only if this version should not be deleted.
+         * Name of chart is written before the first remained version, so the chart
+         * without remained versions disappears from index.
          * @since 0.3
          */
-        private static final class ChartVersions {
+        private static final class Entry {
             /**
-             * Parsed lines.
+             * Versions which should be deleted.
              */
-            private final List<String> lines;
+            private final Set<String> deleted;
 
             /**
-             * First line should contain name of chart. It is important that
-             * these lines are not trimmed.
-             * @param lines Parsed lines from index file
+             * Line with name of chart.
              */
-            ChartVersions(final List<String> lines) {
-                this.lines = lines;
-            }
+            private final byte[] name;
 
             /**
-             * Extracts versions from parsed lines. It is necessary because one chart can
-             * have many versions and parsed lines contain all of them.
-             * @return Map with info from index file for each version of chart.
+             * Buffered lines of the current version.
              */
-            public Map<String, List<String>> versions() {
-                final Map<String, List<String>> vrsns = new HashMap<>();
-                final char dash = '-';
-                if (this.lines.size() > 1) {
-                    final int indent = this.lines.get(1).indexOf(dash);
-                    final List<String> tmp = new ArrayList<>(2);
-                    for (int idx = 1; idx < this.lines.size(); idx += 1) {
-                        if (this.lines.get(idx).charAt(indent) == dash && !tmp.isEmpty()) {
-                            vrsns.put(version(tmp), new ArrayList<>(tmp));
-                            tmp.clear();
-                        }
-                        tmp.add(this.lines.get(idx));
-                    }
-                    vrsns.put(version(tmp), new ArrayList<>(tmp));
+            private final ByteArrayOutputStream lines;
+
+            /**
+             * Writer for buffered lines.
+             */
+            private final YamlWriter buffered;
+
+            /**
+             * Version of the current version entry.
+             */
+            private String vers;
+
+            /**
+             * Indent of items of chart.
+             */
+            private int itemindent;
+
+            /**
+             * Indent of fields of the current version entry.
+             */
+            private int fieldindent;
+
+            /**
+             * Was the name of chart written?
+             */
+            private boolean recordedname;
+
+            /**
+             * Ctor.
+             * @param line Line with name of chart
+             * @param deleted Versions which should be deleted
+             */
+            Entry(final IndexLine line, final Set<String> deleted) {
+                this.deleted = deleted;
+                final ByteArrayOutputStream nameline = new ByteArrayOutputStream();
+                try {
+                    new YamlWriter(nameline, 0).writeLine(line);
+                } catch (final IOException exc) {
+                    throw new ArtipieIOException(exc);
                 }
-                return vrsns;
+                this.name = nameline.toByteArray();
+                this.lines = new ByteArrayOutputStream();
+                this.buffered = new YamlWriter(this.lines, 0);
+                this.itemindent = -1;
+                this.fieldindent = -1;
             }
 
             /**
-             * Obtains name of chart.
-             * @return Name of chart.
+             * Accepts the line of chart. The first line is the name of chart.
+             * @param line Line of chart
+             * @param writer Writer of index
+             * @throws IOException In case of exception during writing
              */
-            public String name() {
-                if (!this.lines.isEmpty()) {
-                    return this.lines.get(0);
+            void accept(final IndexLine line, final YamlWriter writer) throws IOException {
+                if (this.itemindent == -1 && line.dash()) {
+                    this.itemindent = line.indent();
+                }
+                if (line.dash() && line.indent() == this.itemindent) {
+                    this.finish(writer);
+                    if (line.hasKey()) {
+                        this.fieldindent = line.keyPosition();
+                    }
+                } else if (this.itemindent != -1 && this.fieldindent == -1) {
+                    this.fieldindent = line.indent();
+                }
+                if (line.kind() == IndexLine.Kind.VERSION
+                    && line.keyPosition() == this.fieldindent) {
+                    this.vers = line.value();
+                }
+                if (this.itemindent != -1) {
+                    this.buffered.writeLine(line);
                 }
-                throw new IllegalStateException("Failed to get name as there are no lines");
             }
 
             /**
-             * Extracts version from parsed lines.
-             * @param entry Parsed lines from index with version
-             * @return Version from parsed lines.
+             * Writes buffered lines of the current version if this version
+             * should not be deleted.
+             * @param writer Writer of index
+             * @throws IOException In case of exception during writing
              */
-            private static String version(final List<String> entry) {
-                return entry.stream().filter(
-                    line -> line.trim().startsWith(Asto.VRSNS)
-                ).map(line -> line.replace(Asto.VRSNS, ""))
-                    .map(String::trim)
-                    .findFirst()
-                    .orElseThrow(
-                        () -> new IllegalStateException("Couldn't find version for deletion")
-                    );
+            void finish(final YamlWriter writer) throws IOException {
+                if (this.lines.size() > 0) {
+                    if (this.vers == null) {
+                        throw new IllegalStateException("Couldn't find version for deletion");
+                    }
+                    if (!this.deleted.contains(this.vers)) {
+                        if (!this.recordedname) {
+                            this.recordedname = true;
+                            writer.writeRaw(this.name);
+                        }
+                        writer.writeRaw(this.lines.toByteArray());
+                    }
+                }
+                this.lines.reset();
+                this.vers = null;
+                this.fieldindent = -1;
             }
         }
     }
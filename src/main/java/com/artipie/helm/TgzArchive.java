@@ -30,21 +30,13 @@ import com.artipie.asto.Storage;
 import com.artipie.asto.rx.RxStorageWrapper;
 import io.reactivex.Flowable;
 import io.reactivex.Single;
-import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
-import org.apache.commons.codec.digest.DigestUtils;
-import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
-import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
-import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import java.util.concurrent.atomic.AtomicReference;
 import org.reactivestreams.Subscriber;
 
 /**
@@ -55,11 +47,7 @@ import org.reactivestreams.Subscriber;
  * @checkstyle AvoidInlineConditionalsCheck (500 lines)
  * @checkstyle ClassDataAbstractionCouplingCheck (500 lines)
  */
-@SuppressWarnings({
-    "PMD.ArrayIsStoredDirectly",
-    "PMD.AvoidBranchingStatementAsLastInLoop",
-    "PMD.AssignmentInOperand"
-})
+@SuppressWarnings("PMD.ArrayIsStoredDirectly")
 public final class TgzArchive implements Content {
 
     /**
@@ -72,12 +60,18 @@ public final class TgzArchive implements Content {
      */
     private final byte[] content;
 
+    /**
+     * Memoized inspection of archive.
+     */
+    private final AtomicReference<ChartInspector.Inspection> inspected;
+
     /**
      * Ctor.
      * @param content The archive content.
      */
     public TgzArchive(final byte[] content) {
         this.content = content;
+        this.inspected = new AtomicReference<>();
     }
 
     /**
@@ -85,8 +79,7 @@ public final class TgzArchive implements Content {
      * @return How the archive should be named on the file system
      */
     public String name() {
-        final ChartYaml chart = this.chartYaml();
-        return String.format("%s-%s.tgz", chart.name(), chart.version());
+        return this.inspection().name();
     }
 
     /**
@@ -96,22 +89,7 @@ public final class TgzArchive implements Content {
      * @return Metadata of archive.
      */
     public Map<String, Object> metadata(final Optional<String> baseurl) {
-        final Map<String, Object> meta = new HashMap<>();
-        meta.put(
-            "urls",
-            new ArrayList<>(
-                Collections.singletonList(
-                    String.format(
-                        "%s%s",
-                        baseurl.orElse(""),
-                        this.name()
-                    )
-                )
-            )
-        );
-        meta.put("digest", DigestUtils.sha256Hex(this.content));
-        meta.putAll(this.chartYaml().fields());
-        return meta;
+        return this.inspection().metadata(baseurl);
     }
 
     /**
@@ -119,7 +97,25 @@ public final class TgzArchive implements Content {
      * @return The Chart.yaml file.
      */
     public ChartYaml chartYaml() {
-        return new ChartYaml(this.file("Chart.yaml"));
+        return this.inspection().chartYaml();
+    }
+
+    /**
+     * Inspects archive extracting Chart.yaml, digest and size in one decompression
+     * pass. The result is memoized, so the archive is decompressed at most once.
+     * @return Inspection of archive.
+     */
+    public ChartInspector.Inspection inspection() {
+        ChartInspector.Inspection res = this.inspected.get();
+        if (res == null) {
+            try {
+                res = ChartInspector.inspect(new ByteArrayInputStream(this.content));
+            } catch (final IOException exc) {
+                throw new ArtipieIOException(exc);
+            }
+            this.inspected.compareAndSet(null, res);
+        }
+        return res;
     }
 
     /**
@@ -156,29 +152,4 @@ public final class TgzArchive implements Content {
         }
         Flowable.fromIterable(arr).subscribe(subscriber);
     }
-
-    /**
-     * Obtain file by name.
-     *
-     * @param name The name of a file.
-     * @return The file content.
-     */
-    private String file(final String name) {
-        try {
-            final TarArchiveInputStream taris = new TarArchiveInputStream(
-                new GzipCompressorInputStream(new ByteArrayInputStream(this.content))
-            );
-            TarArchiveEntry entry;
-            while ((entry = taris.getNextTarEntry()) != null) {
-                if (entry.getName().endsWith(name)) {
-                    return new BufferedReader(new InputStreamReader(taris))
-                        .lines()
-                        .collect(Collectors.joining("\n"));
-                }
-            }
-            throw new IllegalStateException(String.format("'%s' file wasn't found", name));
-        } catch (final IOException exc) {
-            throw new ArtipieIOException(exc);
-        }
-    }
 }
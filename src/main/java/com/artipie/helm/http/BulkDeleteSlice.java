@@ -0,0 +1,428 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.http;
+
+import com.artipie.asto.Key;
+import com.artipie.asto.Storage;
+import com.artipie.asto.ext.PublisherAs;
+import com.artipie.helm.Helm;
+import com.artipie.helm.metadata.IndexUpdates;
+import com.artipie.helm.metadata.IndexYaml;
+import com.artipie.helm.metadata.ShardedIndex;
+import com.artipie.http.Response;
+import com.artipie.http.Slice;
+import com.artipie.http.async.AsyncResponse;
+import com.artipie.http.rs.RsStatus;
+import com.artipie.http.rs.RsWithStatus;
+import com.artipie.http.rs.StandardRs;
+import hu.akarnokd.rxjava2.interop.SingleInterop;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.reactivestreams.Publisher;
+
+/**
+ * Endpoint for removing many charts in one request. Body is a list of selectors,
+ * one per line: `name` selects all versions of chart, `name/version` selects
+ * the version, `*` in name or version matches any characters, e.g. `ark/1.*`.
+ * Versions are selected from the index and their archives are located through
+ * urls of index entries. For the single index file all selected entries and their
+ * existing archives are removed by one call of
+ * {@link Helm.Asto#deleteVersions(Map, Collection, Key)} which rewrites the index once,
+ * including entries whose archives are absent; archives are deleted in parallel.
+ * Response is NOT_FOUND if no versions were selected.
+ * @since 0.3
+ */
+final class BulkDeleteSlice implements Slice {
+    /**
+     * Pattern for endpoint of bulk deletion.
+     */
+    static final Pattern PTRN = Pattern.compile("^/bulk/delete/?$");
+
+    /**
+     * The Storage.
+     */
+    private final Storage storage;
+
+    /**
+     * Layout of index.
+     */
+    private final IndexLayout layout;
+
+    /**
+     * Cache of rendered index files.
+     */
+    private final IndexCache cache;
+
+    /**
+     * Coordinator of updates of index file.
+     */
+    private final IndexUpdates updates;
+
+    /**
+     * Ctor.
+     * @param storage The storage.
+     */
+    BulkDeleteSlice(final Storage storage) {
+        this(storage, IndexLayout.SINGLE, new IndexCache(storage));
+    }
+
+    /**
+     * Ctor.
+     * @param storage The storage.
+     * @param layout Layout of index.
+     * @param cache Cache of rendered index files.
+     */
+    BulkDeleteSlice(final Storage storage, final IndexLayout layout, final IndexCache cache) {
+        this(storage, layout, cache, layout.updates(storage));
+    }
+
+    /**
+     * Ctor.
+     * @param storage The storage.
+     * @param layout Layout of index.
+     * @param cache Cache of rendered index files.
+     * @param updates Coordinator of updates of index file shared with other writers.
+     * @checkstyle ParameterNumberCheck (10 lines)
+     */
+    BulkDeleteSlice(
+        final Storage storage,
+        final IndexLayout layout,
+        final IndexCache cache,
+        final IndexUpdates updates
+    ) {
+        this.storage = storage;
+        this.layout = layout;
+        this.cache = cache;
+        this.updates = updates;
+    }
+
+    @Override
+    public Response response(
+        final String line,
+        final Iterable<Map.Entry<String, String>> headers,
+        final Publisher<ByteBuffer> body
+    ) {
+        return new AsyncResponse(
+            new PublisherAs(body).string(StandardCharsets.UTF_8).thenCompose(
+                text -> {
+                    final Optional<List<Selector>> selectors = Selector.parse(text);
+                    final CompletionStage<Response> res;
+                    if (!selectors.isPresent() || selectors.get().isEmpty()) {
+                        res = CompletableFuture.completedFuture(
+                            new RsWithStatus(RsStatus.BAD_REQUEST)
+                        );
+                    } else if (this.layout == IndexLayout.SHARDED) {
+                        res = this.sharded(selectors.get());
+                    } else {
+                        res = this.single(selectors.get());
+                    }
+                    return res;
+                }
+            )
+        );
+    }
+
+    /**
+     * Deletes selected versions from the single index file and their archives.
+     * @param selectors Selectors of versions
+     * @return Response.
+     */
+    private CompletionStage<Response> single(final List<Selector> selectors) {
+        return this.layout.archives(this.storage)
+            .thenCompose(
+                archs -> {
+                    final Map<String, Map<String, Set<String>>> selected = new HashMap<>();
+                    archs.forEach(
+                        (name, vrsns) -> {
+                            final Map<String, Set<String>> matched =
+                                BulkDeleteSlice.matched(name, vrsns, selectors);
+                            if (!matched.isEmpty()) {
+                                selected.put(name, matched);
+                            }
+                        }
+                    );
+                    final CompletionStage<Response> res;
+                    if (selected.isEmpty()) {
+                        res = CompletableFuture.completedFuture(StandardRs.NOT_FOUND);
+                    } else {
+                        res = this.deleteSelected(selected).thenApply(
+                            noth -> {
+                                this.cache.invalidate(IndexYaml.INDEX_YAML);
+                                return StandardRs.OK;
+                            }
+                        );
+                    }
+                    return res;
+                }
+            );
+    }
+
+    /**
+     * Deletes selected versions from the single index file and their existing archives
+     * by {@link Helm.Asto#deleteVersions(Map, Collection, Key)}. All selected versions,
+     * including versions whose archives are absent, are dropped by one pass over index.
+     * @param selected Urls of archives by versions by chart names
+     * @return Result of completion.
+     */
+    private CompletionStage<Void> deleteSelected(
+        final Map<String, Map<String, Set<String>>> selected
+    ) {
+        final Map<Key, CompletableFuture<Boolean>> exists = new HashMap<>();
+        selected.values().forEach(
+            vrsns -> vrsns.values().forEach(
+                urls -> BulkDeleteSlice.local(urls).forEach(
+                    key -> exists.computeIfAbsent(key, this.storage::exists)
+                )
+            )
+        );
+        return CompletableFuture.allOf(exists.values().toArray(new CompletableFuture<?>[0]))
+            .thenCompose(
+                noth -> {
+                    final Map<String, Set<String>> versions = new HashMap<>();
+                    selected.forEach(
+                        (name, vrsns) -> versions.put(name, new HashSet<>(vrsns.keySet()))
+                    );
+                    return this.updates.delete(
+                        Key.ROOT,
+                        versions,
+                        exists.entrySet().stream()
+                            .filter(entry -> entry.getValue().join())
+                            .map(Map.Entry::getKey)
+                            .collect(Collectors.toList())
+                    );
+                }
+            );
+    }
+
+    /**
+     * Deletes selected versions from fragments of sharded index and their archives.
+     * @param selectors Selectors of versions
+     * @return Response.
+     */
+    private CompletionStage<Response> sharded(final List<Selector> selectors) {
+        final ShardedIndex index = new ShardedIndex(this.storage, Key.ROOT, this.updates);
+        return index.migrate().andThen(index.charts())
+            .flattenAsFlowable(names -> names)
+            .filter(name -> selectors.stream().anyMatch(sel -> sel.chart(name)))
+            .concatMapSingle(
+                name -> index.archives(name).flatMap(
+                    vrsns -> {
+                        final Map<String, Set<String>> matched =
+                            BulkDeleteSlice.matched(name, vrsns, selectors);
+                        return Flowable.fromIterable(matched.keySet())
+                            .concatMapCompletable(
+                                vers -> index.deleteByNameAndVersion(name, vers)
+                            ).andThen(Single.just(matched.values()));
+                    }
+                )
+            ).toList()
+            .flatMap(
+                urls -> {
+                    final Single<Response> res;
+                    if (urls.stream().allMatch(Collection::isEmpty)) {
+                        res = Single.just(StandardRs.NOT_FOUND);
+                    } else {
+                        this.cache.invalidate(IndexYaml.INDEX_YAML);
+                        res = Single.fromFuture(
+                            this.deleteArchives(
+                                urls.stream()
+                                    .flatMap(Collection::stream)
+                                    .flatMap(BulkDeleteSlice::local)
+                                    .collect(Collectors.toSet())
+                            ).<Response>thenApply(noth -> StandardRs.OK)
+                            .toCompletableFuture()
+                        );
+                    }
+                    return res;
+                }
+            ).to(SingleInterop.get());
+    }
+
+    /**
+     * Deletes existing archives in parallel.
+     * @param keys Keys of archives
+     * @return Result of completion.
+     */
+    private CompletionStage<Void> deleteArchives(final Collection<Key> keys) {
+        return CompletableFuture.allOf(
+            keys.stream().map(
+                key -> this.storage.exists(key).thenCompose(
+                    exists -> {
+                        final CompletionStage<Void> res;
+                        if (exists) {
+                            res = this.storage.delete(key);
+                        } else {
+                            res = CompletableFuture.allOf();
+                        }
+                        return res;
+                    }
+                ).toCompletableFuture()
+            ).toArray(CompletableFuture[]::new)
+        );
+    }
+
+    /**
+     * Selects versions of chart which match any of selectors.
+     * @param name Chart name
+     * @param vrsns Urls of archives by versions of chart
+     * @param selectors Selectors of versions
+     * @return Urls of archives by selected versions.
+     */
+    private static Map<String, Set<String>> matched(
+        final String name, final Map<String, Set<String>> vrsns, final List<Selector> selectors
+    ) {
+        return vrsns.entrySet().stream()
+            .filter(
+                entry -> selectors.stream().anyMatch(sel -> sel.matches(name, entry.getKey()))
+            ).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+
+    /**
+     * Keys of archives in the repository by relative urls.
+     * @param urls Urls of archives
+     * @return Keys of archives, absolute urls are skipped.
+     */
+    private static Stream<Key> local(final Set<String> urls) {
+        return urls.stream()
+            .filter(url -> !url.contains("://"))
+            .map(url -> new Key.From(url.replaceAll("^/+", "")));
+    }
+
+    /**
+     * Selector of versions of charts by name and version patterns.
+     * @since 0.3
+     */
+    static final class Selector {
+        /**
+         * Pattern of line with selector.
+         */
+        private static final Pattern LINE = Pattern.compile(
+            "^(?<name>[a-zA-Z\\-\\d.*]+)(/(?<version>[a-zA-Z\\-\\d.+*]+))?$"
+        );
+
+        /**
+         * Pattern of chart name.
+         */
+        private final Pattern name;
+
+        /**
+         * Pattern of version, empty for all versions.
+         */
+        private final Optional<Pattern> version;
+
+        /**
+         * Ctor.
+         * @param name Pattern of chart name
+         * @param version Pattern of version, empty for all versions
+         */
+        Selector(final Pattern name, final Optional<Pattern> version) {
+            this.name = name;
+            this.version = version;
+        }
+
+        /**
+         * Checks whether chart may have selected versions.
+         * @param chart Chart name
+         * @return True if name of chart matches.
+         */
+        boolean chart(final String chart) {
+            return this.name.matcher(chart).matches();
+        }
+
+        /**
+         * Checks whether version of chart is selected.
+         * @param chart Chart name
+         * @param vers Version of chart
+         * @return True if version of chart is selected.
+         */
+        boolean matches(final String chart, final String vers) {
+            return this.chart(chart)
+                && this.version.map(ptrn -> ptrn.matcher(vers).matches()).orElse(true);
+        }
+
+        /**
+         * Parses selectors from text, one selector per line. Empty lines are skipped.
+         * @param text Text
+         * @return Selectors, empty if any of lines is invalid.
+         */
+        static Optional<List<Selector>> parse(final String text) {
+            final List<Selector> res = new ArrayList<>(0);
+            boolean valid = true;
+            for (final String line : text.split("\n")) {
+                final String trimmed = line.trim();
+                if (!trimmed.isEmpty()) {
+                    final Matcher matcher = Selector.LINE.matcher(trimmed);
+                    if (matcher.matches()) {
+                        res.add(
+                            new Selector(
+                                Selector.glob(matcher.group("name")),
+                                Optional.ofNullable(matcher.group("version"))
+                                    .map(Selector::glob)
+                            )
+                        );
+                    } else {
+                        valid = false;
+                    }
+                }
+            }
+            final Optional<List<Selector>> result;
+            if (valid) {
+                result = Optional.of(res);
+            } else {
+                result = Optional.empty();
+            }
+            return result;
+        }
+
+        /**
+         * Converts glob with `*` wildcards to pattern.
+         * @param glob Glob
+         * @return Pattern.
+         */
+        private static Pattern glob(final String glob) {
+            return Pattern.compile(
+                Arrays.stream(glob.split("\\*", -1))
+                    .map(Pattern::quote)
+                    .collect(Collectors.joining(".*"))
+            );
+        }
+    }
+}
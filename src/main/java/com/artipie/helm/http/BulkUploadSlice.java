@@ -0,0 +1,336 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.http;
+
+import com.artipie.asto.ArtipieIOException;
+import com.artipie.asto.Content;
+import com.artipie.asto.Storage;
+import com.artipie.helm.ChartInspector;
+import com.artipie.helm.misc.BoundedExecutor;
+import com.artipie.http.Headers;
+import com.artipie.http.Response;
+import com.artipie.http.Slice;
+import com.artipie.http.async.AsyncResponse;
+import com.artipie.http.rq.RequestLineFrom;
+import com.artipie.http.rq.RqParams;
+import com.artipie.http.rs.RsFull;
+import com.artipie.http.rs.RsStatus;
+import com.artipie.http.rs.RsWithStatus;
+import com.artipie.http.rs.StandardRs;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.reactivestreams.Publisher;
+
+/**
+ * A Slice which accepts many charts in one request. Body is a tar stream of
+ * `.tgz` archives, each archive is stored by {@link ChartUpload} as it streams in,
+ * other entries are skipped. After the whole stream was read, all stored charts
+ * are added to index in one rewrite of `index.yaml`. Archives which are invalid
+ * or whose versions already exist are rejected without failing the others:
+ * the response has status of the first rejection and lists rejected entries
+ * in body, e.g. `ark-1.0.1.tgz: 409`. Stored charts which fail to be added to
+ * index are listed with status `500` in the same way. As in {@link PushChartSlice},
+ * index is not updated if `updateIndex` parameter is other than `true`. Tar stream
+ * is read on a separate bounded executor, because reading blocks until the next
+ * part of body arrives; threads are not held while archives are stored and
+ * inspected. Archive which failed to be stored for other reason than rejection is
+ * listed with status `500`. If tar stream itself can not be read, charts stored so
+ * far are indexed before the request fails.
+ * @since 0.3
+ */
+final class BulkUploadSlice implements Slice {
+    /**
+     * Pattern for endpoint of bulk upload.
+     */
+    static final Pattern PTRN = Pattern.compile("^/bulk/?$");
+
+    /**
+     * Size of buffer for reading archives from tar stream.
+     */
+    private static final int BUF = 8192;
+
+    /**
+     * Extension of chart archive.
+     */
+    private static final String TGZ = ".tgz";
+
+    /**
+     * Shared executor for reading of tar streams. It is separate from the executor
+     * of {@link ChartInspector}, because reading of tar stream waits for inspection
+     * of each archive.
+     */
+    private static final Executor STREAMS = new BoundedExecutor(
+        "helm-bulk-uploads", BoundedExecutor.PARALLELISM
+    );
+
+    /**
+     * The Storage.
+     */
+    private final Storage storage;
+
+    /**
+     * Index of uploaded charts.
+     */
+    private final UploadsIndex index;
+
+    /**
+     * Executor for blocking reading of tar stream.
+     */
+    private final Executor executor;
+
+    /**
+     * Ctor.
+     * @param storage The storage.
+     */
+    BulkUploadSlice(final Storage storage) {
+        this(
+            storage,
+            new UploadsIndex(
+                storage, IndexLayout.SINGLE, Optional.empty(), new IndexCache(storage)
+            )
+        );
+    }
+
+    /**
+     * Ctor.
+     * @param storage The storage.
+     * @param index Index of uploaded charts.
+     */
+    BulkUploadSlice(final Storage storage, final UploadsIndex index) {
+        this(storage, index, BulkUploadSlice.STREAMS);
+    }
+
+    /**
+     * Ctor.
+     * @param storage The storage.
+     * @param index Index of uploaded charts.
+     * @param executor Executor for blocking reading of tar stream.
+     */
+    BulkUploadSlice(final Storage storage, final UploadsIndex index, final Executor executor) {
+        this.storage = storage;
+        this.index = index;
+        this.executor = executor;
+    }
+
+    @Override
+    public Response response(
+        final String line,
+        final Iterable<Map.Entry<String, String>> headers,
+        final Publisher<ByteBuffer> body
+    ) {
+        final Optional<String> upd = new RqParams(
+            new RequestLineFrom(line).uri()
+        ).value("updateIndex");
+        final Map<String, ChartInspector.Inspection> stored = new LinkedHashMap<>();
+        final Map<String, RsStatus> rejected = new LinkedHashMap<>();
+        final TarArchiveInputStream tar = new TarArchiveInputStream(
+            new ChartInspector.ContentStream(body)
+        );
+        final CompletableFuture<Void> read = new CompletableFuture<>();
+        this.storeAll(tar, new ChartUpload(this.storage), stored, rejected, read);
+        return new AsyncResponse(
+            read.handle(
+                (noth, thr) -> {
+                    BulkUploadSlice.close(tar);
+                    final CompletionStage<Void> res;
+                    if (upd.isPresent() && !upd.get().equals("true")) {
+                        res = CompletableFuture.allOf();
+                    } else {
+                        res = this.indexed(stored, rejected);
+                    }
+                    return res.thenApply(
+                        nothing -> {
+                            if (thr != null) {
+                                throw new CompletionException(thr);
+                            }
+                            return BulkUploadSlice.result(rejected);
+                        }
+                    );
+                }
+            ).thenCompose(Function.identity())
+        );
+    }
+
+    /**
+     * Adds stored charts to index, charts which fail to be added are rejected.
+     * @param stored Inspections of stored archives by names of entries
+     * @param rejected Statuses of rejected archives by names of entries
+     * @return Result of completion.
+     */
+    private CompletionStage<Void> indexed(
+        final Map<String, ChartInspector.Inspection> stored,
+        final Map<String, RsStatus> rejected
+    ) {
+        return this.index.addEach(stored.values()).thenAccept(
+            failed -> stored.entrySet().stream()
+                .filter(ent -> failed.contains(ent.getValue().name()))
+                .forEach(ent -> rejected.put(ent.getKey(), RsStatus.INTERNAL_ERROR))
+        );
+    }
+
+    /**
+     * Reads tar stream and stores archives from it one by one. Each step moves
+     * to the next entry of tar stream on the executor and continues after
+     * the archive was stored, so no thread waits for storing.
+     * @param tar Tar stream
+     * @param upload Upload of archives
+     * @param stored Inspections of stored archives by names of entries
+     * @param rejected Statuses of rejected archives by names of entries
+     * @param done Completes when tar stream was read, fails if it can not be read
+     * @checkstyle ParameterNumberCheck (10 lines)
+     */
+    private void storeAll(
+        final TarArchiveInputStream tar,
+        final ChartUpload upload,
+        final Map<String, ChartInspector.Inspection> stored,
+        final Map<String, RsStatus> rejected,
+        final CompletableFuture<Void> done
+    ) {
+        CompletableFuture.supplyAsync(() -> BulkUploadSlice.next(tar), this.executor)
+            .thenCompose(
+                entry -> {
+                    final CompletionStage<Boolean> more;
+                    if (!entry.isPresent()) {
+                        more = CompletableFuture.completedFuture(false);
+                    } else if (entry.get().isFile()
+                        && entry.get().getName().endsWith(BulkUploadSlice.TGZ)) {
+                        final String name = entry.get().getName();
+                        more = upload.store(this.entry(tar)).handle(
+                            (insp, thr) -> {
+                                if (thr == null) {
+                                    stored.put(name, insp);
+                                } else {
+                                    rejected.put(
+                                        name,
+                                        ChartUpload.Rejected.of(thr)
+                                            .orElse(RsStatus.INTERNAL_ERROR)
+                                    );
+                                }
+                                return true;
+                            }
+                        );
+                    } else {
+                        more = CompletableFuture.completedFuture(true);
+                    }
+                    return more;
+                }
+            ).whenComplete(
+                (more, thr) -> {
+                    if (thr != null) {
+                        done.completeExceptionally(thr);
+                    } else if (more) {
+                        this.storeAll(tar, upload, stored, rejected, done);
+                    } else {
+                        done.complete(null);
+                    }
+                }
+            );
+    }
+
+    /**
+     * Moves to the next entry of tar stream, it blocks until header of
+     * the entry arrives.
+     * @param tar Tar stream
+     * @return Entry, empty at the end of tar stream.
+     */
+    private static Optional<TarArchiveEntry> next(final TarArchiveInputStream tar) {
+        try {
+            return Optional.ofNullable(tar.getNextTarEntry());
+        } catch (final IOException exc) {
+            throw new ArtipieIOException(exc);
+        }
+    }
+
+    /**
+     * Closes tar stream.
+     * @param tar Tar stream
+     */
+    private static void close(final TarArchiveInputStream tar) {
+        try {
+            tar.close();
+        } catch (final IOException exc) {
+            throw new ArtipieIOException(exc);
+        }
+    }
+
+    /**
+     * Content of current entry of tar stream. Content is read on demand on the
+     * executor, unread part of entry is skipped by tar stream on moving to the
+     * next entry.
+     * @param tar Tar stream
+     * @return Content of entry.
+     */
+    private Publisher<ByteBuffer> entry(final TarArchiveInputStream tar) {
+        return Flowable.<ByteBuffer>generate(
+            emitter -> {
+                final byte[] buf = new byte[BulkUploadSlice.BUF];
+                final int read = tar.read(buf);
+                if (read < 0) {
+                    emitter.onComplete();
+                } else {
+                    emitter.onNext(ByteBuffer.wrap(buf, 0, read));
+                }
+            }
+        ).subscribeOn(Schedulers.from(this.executor));
+    }
+
+    /**
+     * Response for the result of upload.
+     * @param rejected Statuses of rejected archives by names of entries
+     * @return Response.
+     */
+    private static Response result(final Map<String, RsStatus> rejected) {
+        final Response res;
+        if (rejected.isEmpty()) {
+            res = new RsWithStatus(StandardRs.EMPTY, RsStatus.OK);
+        } else {
+            res = new RsFull(
+                rejected.values().iterator().next(),
+                Headers.EMPTY,
+                new Content.From(
+                    rejected.entrySet().stream()
+                        .map(ent -> String.format("%s: %s\n", ent.getKey(), ent.getValue().code()))
+                        .collect(Collectors.joining())
+                        .getBytes(StandardCharsets.UTF_8)
+                )
+            );
+        }
+        return res;
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.http;
+
+import com.artipie.asto.Key;
+import com.artipie.asto.Storage;
+import com.artipie.asto.ext.PublisherAs;
+import com.artipie.helm.metadata.IndexJournal;
+import com.artipie.helm.metadata.IndexYaml;
+import com.artipie.helm.metadata.IndexYamlMapping;
+import com.artipie.helm.metadata.ShardedIndex;
+import hu.akarnokd.rxjava2.interop.SingleInterop;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * In-memory catalog of charts with entries of versions by chart names. The catalog
+ * is built from the index once and is kept while the version of the index is not
+ * changed. Writes of this adapter are noticed by invalidations of {@link IndexCache},
+ * the amount of invalidations is a part of the version. Other processes are noticed
+ * by cheap checks of storage which do not read the index: version of the single
+ * index file is its stamp, see {@link IndexCache#stamp(Key)}, which is validated by
+ * metadata of the file; version of sharded index is the list of its fragments, so
+ * added and removed charts are noticed at once, while catalog of sharded index
+ * is rebuilt after {@link #EXPIRY} to notice versions changed in fragments by other
+ * processes. In journal layout records of journal are a part of the version,
+ * so the catalog with records applied is kept as well, journal is not read in other
+ * layouts.
+ * @since 0.3
+ */
+final class ChartCatalog {
+    /**
+     * Period after which catalog of sharded index is rebuilt even if the list
+     * of fragments was not changed.
+     */
+    private static final Duration EXPIRY = Duration.ofMinutes(1);
+
+    /**
+     * The Storage.
+     */
+    private final Storage storage;
+
+    /**
+     * Layout of index.
+     */
+    private final IndexLayout layout;
+
+    /**
+     * Cache which provides stamps of index file.
+     */
+    private final IndexCache cache;
+
+    /**
+     * Catalog with the version of index it was built from.
+     */
+    private final AtomicReference<Snapshot> snapshot;
+
+    /**
+     * Ctor.
+     * @param storage The storage.
+     * @param layout Layout of index.
+     * @param cache Cache which provides stamps of index file.
+     */
+    ChartCatalog(final Storage storage, final IndexLayout layout, final IndexCache cache) {
+        this.storage = storage;
+        this.layout = layout;
+        this.cache = cache;
+        this.snapshot = new AtomicReference<>();
+    }
+
+    /**
+     * Obtains entries of versions by chart names.
+     * @return Entries of versions by chart names sorted alphabetically.
+     */
+    CompletionStage<Map<String, List<Map<String, Object>>>> charts() {
+        final long invalidations = this.cache.invalidations();
+        final IndexJournal jrnl = new IndexJournal(this.storage, Key.ROOT);
+        return this.records(jrnl).thenCompose(
+            records -> this.source().thenCompose(
+                source -> {
+                    final List<Object> version = Arrays.asList(
+                        invalidations, source.getLeft(), records
+                    );
+                    final Optional<Map<String, List<Map<String, Object>>>> hit =
+                        Optional.ofNullable(this.snapshot.get())
+                            .filter(snap -> snap.valid(version))
+                            .map(snap -> snap.charts);
+                    final CompletionStage<Map<String, List<Map<String, Object>>>> res;
+                    if (hit.isPresent()) {
+                        res = CompletableFuture.completedFuture(hit.get());
+                    } else {
+                        final Optional<Instant> expires;
+                        if (source.getRight().isPresent()) {
+                            expires = Optional.empty();
+                        } else {
+                            expires = Optional.of(Instant.now().plus(ChartCatalog.EXPIRY));
+                        }
+                        res = this.parsed(source.getRight()).thenCompose(
+                            mapping -> jrnl.changes(records).thenApply(
+                                changes -> {
+                                    changes.overlay(mapping);
+                                    return ChartCatalog.charts(mapping);
+                                }
+                            )
+                        ).thenApply(
+                            charts -> {
+                                this.snapshot.set(new Snapshot(version, expires, charts));
+                                return charts;
+                            }
+                        );
+                    }
+                    return res;
+                }
+            )
+        );
+    }
+
+    /**
+     * Obtains records of journal which were not compacted yet.
+     * @param jrnl Journal
+     * @return Keys of records, empty if journal layout is not used.
+     */
+    private CompletionStage<List<Key>> records(final IndexJournal jrnl) {
+        final CompletionStage<List<Key>> res;
+        if (this.layout == IndexLayout.JOURNAL) {
+            res = jrnl.records();
+        } else {
+            res = CompletableFuture.completedFuture(Collections.emptyList());
+        }
+        return res;
+    }
+
+    /**
+     * Obtains version of index without reading it. In case of sharded layout the
+     * index is assembled from fragments and its version is the list of charts
+     * with fragments, if there are no fragments the index file is used.
+     * @return Version of index and key of index file, key is empty if index is
+     *  assembled from fragments.
+     */
+    private CompletionStage<Pair<Object, Optional<Key>>> source() {
+        final CompletionStage<List<String>> sharded;
+        if (this.layout == IndexLayout.SHARDED) {
+            sharded = new ShardedIndex(this.storage).charts().to(SingleInterop.get());
+        } else {
+            sharded = CompletableFuture.completedFuture(Collections.emptyList());
+        }
+        return sharded.thenCompose(
+            names -> {
+                final CompletionStage<Pair<Object, Optional<Key>>> res;
+                if (!names.isEmpty()) {
+                    res = CompletableFuture.completedFuture(
+                        new ImmutablePair<>(names, Optional.empty())
+                    );
+                } else {
+                    res = this.storage.exists(IndexYaml.INDEX_YAML).thenCompose(
+                        exists -> {
+                            final CompletionStage<Pair<Object, Optional<Key>>> src;
+                            if (exists) {
+                                src = this.cache.stamp(IndexYaml.INDEX_YAML)
+                                    .<Pair<Object, Optional<Key>>>thenApply(
+                                        stamp -> new ImmutablePair<>(
+                                            stamp, Optional.of(IndexYaml.INDEX_YAML)
+                                        )
+                                    );
+                            } else {
+                                src = CompletableFuture.completedFuture(
+                                    new ImmutablePair<>("", Optional.empty())
+                                );
+                            }
+                            return src;
+                        }
+                    );
+                }
+                return res;
+            }
+        );
+    }
+
+    /**
+     * Reads and parses index.
+     * @param key Key of index file, empty if index is assembled from fragments or
+     *  if there is no index
+     * @return Parsed index, empty in case of absence of index.
+     */
+    private CompletionStage<IndexYamlMapping> parsed(final Optional<Key> key) {
+        final CompletionStage<IndexYamlMapping> res;
+        if (key.isPresent()) {
+            res = this.storage.value(key.get())
+                .thenCompose(cont -> new PublisherAs(cont).string(StandardCharsets.UTF_8))
+                .thenApply(IndexYamlMapping::new);
+        } else if (this.layout == IndexLayout.SHARDED) {
+            final ShardedIndex index = new ShardedIndex(this.storage);
+            res = index.exists().to(SingleInterop.get()).thenCompose(
+                frgmnts -> {
+                    final CompletionStage<IndexYamlMapping> mapping;
+                    if (frgmnts) {
+                        mapping = index.content().to(SingleInterop.get())
+                            .thenCompose(
+                                cont -> new PublisherAs(cont).string(StandardCharsets.UTF_8)
+                            ).thenApply(IndexYamlMapping::new);
+                    } else {
+                        mapping = CompletableFuture.completedFuture(new IndexYamlMapping());
+                    }
+                    return mapping;
+                }
+            );
+        } else {
+            res = CompletableFuture.completedFuture(new IndexYamlMapping());
+        }
+        return res;
+    }
+
+    /**
+     * Catalog with the version of index it was built from.
+     * @since 0.3
+     */
+    private static final class Snapshot {
+        /**
+         * Version of index.
+         */
+        private final List<Object> version;
+
+        /**
+         * Time after which catalog is rebuilt, empty if catalog does not expire.
+         */
+        private final Optional<Instant> expires;
+
+        /**
+         * Entries of versions by chart names.
+         */
+        private final Map<String, List<Map<String, Object>>> charts;
+
+        /**
+         * Ctor.
+         * @param version Version of index
+         * @param expires Time after which catalog is rebuilt, empty if it does not expire
+         * @param charts Entries of versions by chart names
+         */
+        Snapshot(
+            final List<Object> version,
+            final Optional<Instant> expires,
+            final Map<String, List<Map<String, Object>>> charts
+        ) {
+            this.version = version;
+            this.expires = expires;
+            this.charts = charts;
+        }
+
+        /**
+         * Checks that catalog was built from index of this version and did not expire.
+         * @param current Current version of index
+         * @return True if catalog can be used.
+         */
+        boolean valid(final List<Object> current) {
+            return this.version.equals(current)
+                && this.expires.map(time -> Instant.now().isBefore(time)).orElse(true);
+        }
+    }
+
+    /**
+     * Entries of versions by chart names from parsed index.
+     * @param mapping Parsed index
+     * @return Entries of versions by chart names sorted alphabetically.
+     */
+    private static Map<String, List<Map<String, Object>>> charts(
+        final IndexYamlMapping mapping
+    ) {
+        final Map<String, List<Map<String, Object>>> res = new TreeMap<>();
+        for (final String name : mapping.entries().keySet()) {
+            res.put(name, Collections.unmodifiableList(mapping.byChart(name)));
+        }
+        return Collections.unmodifiableMap(res);
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.http;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletionStage;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Search of charts by name, description, keywords and maintainers with
+ * inverted index from terms to chart names. Index is built from entries of
+ * {@link ChartCatalog} and is updated incrementally when catalog is changed:
+ * only charts whose entries were added, changed or removed are reindexed.
+ * Catalog is validated by cheap checks of storage, so search neither reads
+ * the index nor reindexes charts while the index is not changed.
+ * Each word of query matches terms starting with it, charts should match
+ * all words of query.
+ * @since 0.3
+ */
+final class ChartSearch {
+    /**
+     * Separator of terms.
+     */
+    private static final Pattern SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /**
+     * Catalog of charts.
+     */
+    private final ChartCatalog catalog;
+
+    /**
+     * Chart names by terms.
+     */
+    private final NavigableMap<String, Set<String>> inverted;
+
+    /**
+     * Terms by chart names.
+     */
+    private final Map<String, Set<String>> terms;
+
+    /**
+     * Catalog which was indexed last.
+     */
+    private Map<String, List<Map<String, Object>>> indexed;
+
+    /**
+     * Ctor.
+     * @param catalog Catalog of charts
+     */
+    ChartSearch(final ChartCatalog catalog) {
+        this.catalog = catalog;
+        this.inverted = new TreeMap<>();
+        this.terms = new HashMap<>();
+        this.indexed = Collections.emptyMap();
+    }
+
+    /**
+     * Searches charts.
+     * @param query Query
+     * @return Entries of versions of found charts by chart names sorted alphabetically.
+     */
+    CompletionStage<Map<String, List<Map<String, Object>>>> search(final String query) {
+        return this.catalog.charts().thenApply(
+            charts -> {
+                final Set<String> found = this.found(charts, ChartSearch.tokens(query));
+                final Map<String, List<Map<String, Object>>> res = new TreeMap<>();
+                found.stream()
+                    .filter(charts::containsKey)
+                    .forEach(name -> res.put(name, charts.get(name)));
+                return res;
+            }
+        );
+    }
+
+    /**
+     * Updates index with catalog and finds charts matching all words.
+     * @param charts Catalog of charts
+     * @param words Words of query
+     * @return Names of found charts.
+     */
+    private synchronized Set<String> found(
+        final Map<String, List<Map<String, Object>>> charts, final Set<String> words
+    ) {
+        this.update(charts);
+        Set<String> res = null;
+        for (final String word : words) {
+            final Set<String> matched = new HashSet<>();
+            this.inverted.subMap(word, true, word + Character.MAX_VALUE, false)
+                .values().forEach(matched::addAll);
+            if (res == null) {
+                res = matched;
+            } else {
+                res.retainAll(matched);
+            }
+        }
+        if (res == null) {
+            res = Collections.emptySet();
+        }
+        return new TreeSet<>(res);
+    }
+
+    /**
+     * Reindexes charts which were changed in catalog since the last update.
+     * @param charts Catalog of charts
+     */
+    private void update(final Map<String, List<Map<String, Object>>> charts) {
+        if (charts != this.indexed) {
+            for (final String name : new HashSet<>(this.terms.keySet())) {
+                if (!charts.containsKey(name)) {
+                    this.remove(name);
+                }
+            }
+            charts.forEach(
+                (name, entries) -> {
+                    if (!entries.equals(this.indexed.get(name))) {
+                        this.remove(name);
+                        this.add(name, entries);
+                    }
+                }
+            );
+            this.indexed = charts;
+        }
+    }
+
+    /**
+     * Adds terms of chart to index.
+     * @param name Chart name
+     * @param entries Entries of versions of chart
+     */
+    private void add(final String name, final List<Map<String, Object>> entries) {
+        final Set<String> chart = new HashSet<>(ChartSearch.tokens(name));
+        for (final Map<String, Object> entry : entries) {
+            chart.addAll(ChartSearch.tokens(entry.get("description")));
+            chart.addAll(ChartSearch.tokens(entry.get("keywords")));
+            chart.addAll(ChartSearch.tokens(entry.get("maintainers")));
+        }
+        chart.forEach(
+            term -> this.inverted.computeIfAbsent(term, key -> new HashSet<>()).add(name)
+        );
+        this.terms.put(name, chart);
+    }
+
+    /**
+     * Removes terms of chart from index.
+     * @param name Chart name
+     */
+    private void remove(final String name) {
+        final Set<String> chart = this.terms.remove(name);
+        if (chart != null) {
+            for (final String term : chart) {
+                final Set<String> names = this.inverted.get(term);
+                names.remove(name);
+                if (names.isEmpty()) {
+                    this.inverted.remove(term);
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits value of entry into lower-case terms. Values of lists and
+     * mappings, e.g. names and emails of maintainers, are split recursively.
+     * @param value Value of entry
+     * @return Terms.
+     */
+    private static Set<String> tokens(final Object value) {
+        final Stream<String> res;
+        if (value == null) {
+            res = Stream.empty();
+        } else if (value instanceof Map) {
+            res = ((Map<?, ?>) value).values().stream()
+                .flatMap(val -> ChartSearch.tokens(val).stream());
+        } else if (value instanceof Collection) {
+            res = ((Collection<?>) value).stream()
+                .flatMap(val -> ChartSearch.tokens(val).stream());
+        } else {
+            res = Arrays.stream(
+                ChartSearch.SEPARATOR.split(value.toString().toLowerCase(Locale.ROOT))
+            );
+        }
+        return res.filter(term -> !term.isEmpty()).collect(Collectors.toSet());
+    }
+}
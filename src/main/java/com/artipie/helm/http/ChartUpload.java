@@ -0,0 +1,214 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.http;
+
+import com.artipie.ArtipieException;
+import com.artipie.asto.Content;
+import com.artipie.asto.Key;
+import com.artipie.asto.Storage;
+import com.artipie.helm.ChartInspector;
+import com.artipie.helm.ChartYaml;
+import com.artipie.http.rs.RsStatus;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import org.reactivestreams.Publisher;
+
+/**
+ * Upload of one chart archive. Content is streamed to a temporary key while chart
+ * info and digest are obtained from the same stream, then archive is moved to
+ * `name-version.tgz`. Invalid archive or already existing version of chart is
+ * rejected as soon as `Chart.yaml` was read, the rest of the content is not read.
+ * @since 0.3
+ */
+final class ChartUpload {
+    /**
+     * Key of directory for uploads which are in progress.
+     */
+    static final Key UPLOADS = new Key.From(".helm", "uploads");
+
+    /**
+     * The Storage.
+     */
+    private final Storage storage;
+
+    /**
+     * Ctor.
+     * @param storage The storage.
+     */
+    ChartUpload(final Storage storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * Stores archive under `name-version.tgz` key.
+     * @param content Content of archive
+     * @return Inspection of stored archive, fails with {@link Rejected} if archive
+     *  is invalid or the version of chart already exists.
+     */
+    CompletionStage<ChartInspector.Inspection> store(final Publisher<ByteBuffer> content) {
+        final AtomicReference<RsStatus> rejected = new AtomicReference<>();
+        final ChartInspector.Tap tap = new ChartInspector.Tap(
+            content, chart -> this.checkAbsence(chart, rejected)
+        );
+        final Key tmp = new Key.From(ChartUpload.UPLOADS, UUID.randomUUID().toString());
+        return this.storage.save(tmp, new Content.From(tap.content()))
+            .thenCompose(noth -> tap.inspection())
+            .thenCompose(
+                insp -> this.storage.move(tmp, new Key.From(insp.name()))
+                    .thenApply(noth -> insp)
+            ).handle(
+                (insp, thr) -> {
+                    final CompletionStage<ChartInspector.Inspection> res;
+                    if (thr == null) {
+                        res = CompletableFuture.completedFuture(insp);
+                    } else {
+                        res = this.deleteIfExists(tmp).thenCompose(
+                            nothing -> ChartUpload.failure(tap, rejected.get(), thr)
+                        );
+                    }
+                    return res;
+                }
+            ).thenCompose(Function.identity());
+    }
+
+    /**
+     * Checks that archive with the same name and version of chart does not exist.
+     * @param chart Chart yaml of uploaded archive
+     * @param rejected Status of rejection which is set in case of existence
+     * @return Result of completion which fails in case of existence.
+     */
+    private CompletionStage<Void> checkAbsence(
+        final ChartYaml chart, final AtomicReference<RsStatus> rejected
+    ) {
+        return this.storage.exists(
+            new Key.From(String.format("%s-%s.tgz", chart.name(), chart.version()))
+        ).thenApply(
+            exists -> {
+                if (exists) {
+                    rejected.set(RsStatus.CONFLICT);
+                    throw new IllegalStateException(
+                        String.format(
+                            "Chart `%s` with version `%s` already exists",
+                            chart.name(), chart.version()
+                        )
+                    );
+                }
+                return null;
+            }
+        );
+    }
+
+    /**
+     * Converts failure of upload. Rejected chart and invalid archive are reported
+     * with {@link Rejected}, other failures are propagated.
+     * @param tap Inspection of uploaded content
+     * @param rejected Status of rejection if chart was rejected
+     * @param thr Failure
+     * @return Failed result.
+     */
+    private static CompletionStage<ChartInspector.Inspection> failure(
+        final ChartInspector.Tap tap, final RsStatus rejected, final Throwable thr
+    ) {
+        final CompletableFuture<ChartInspector.Inspection> res = new CompletableFuture<>();
+        if (rejected != null) {
+            res.completeExceptionally(new Rejected(rejected, thr));
+        } else if (tap.chartYaml().toCompletableFuture().isCompletedExceptionally()) {
+            res.completeExceptionally(new Rejected(RsStatus.BAD_REQUEST, thr));
+        } else {
+            res.completeExceptionally(thr);
+        }
+        return res;
+    }
+
+    /**
+     * Deletes uploaded content in case of failure.
+     * @param key Key of uploaded content
+     * @return Result of completion.
+     */
+    private CompletionStage<Void> deleteIfExists(final Key key) {
+        return this.storage.exists(key).thenCompose(
+            exists -> {
+                final CompletionStage<Void> res;
+                if (exists) {
+                    res = this.storage.delete(key);
+                } else {
+                    res = CompletableFuture.allOf();
+                }
+                return res;
+            }
+        );
+    }
+
+    /**
+     * Rejection of uploaded archive with status for the client.
+     * @since 0.3
+     */
+    static final class Rejected extends ArtipieException {
+        /**
+         * Serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Status of response.
+         */
+        private final RsStatus status;
+
+        /**
+         * Ctor.
+         * @param status Status of response
+         * @param cause Cause of rejection
+         */
+        Rejected(final RsStatus status, final Throwable cause) {
+            super(cause);
+            this.status = status;
+        }
+
+        /**
+         * Status of response for rejected archive.
+         * @return Status.
+         */
+        RsStatus status() {
+            return this.status;
+        }
+
+        /**
+         * Finds rejection in chain of causes.
+         * @param thr Failure
+         * @return Status of rejection if failure was caused by rejection.
+         */
+        static Optional<RsStatus> of(final Throwable thr) {
+            Throwable cur = thr;
+            while (cur != null && !(cur instanceof Rejected)) {
+                cur = cur.getCause();
+            }
+            return Optional.ofNullable(cur).map(rej -> ((Rejected) rej).status());
+        }
+    }
+}
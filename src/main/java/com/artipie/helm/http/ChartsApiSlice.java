@@ -0,0 +1,198 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.http;
+
+import com.artipie.asto.Content;
+import com.artipie.asto.Storage;
+import com.artipie.http.Headers;
+import com.artipie.http.Response;
+import com.artipie.http.Slice;
+import com.artipie.http.async.AsyncResponse;
+import com.artipie.http.rq.RequestLineFrom;
+import com.artipie.http.rs.RsFull;
+import com.artipie.http.rs.RsStatus;
+import com.artipie.http.rs.RsWithStatus;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonValue;
+import org.reactivestreams.Publisher;
+
+/**
+ * Read API compatible with ChartMuseum which is served from {@link ChartCatalog}:
+ * `/api/charts` returns versions of all charts by names, `/api/charts/name` returns
+ * versions of chart and `/api/charts/name/version` returns the version of chart.
+ * Entries of versions are returned as they are in the index, absent chart or
+ * version is answered with `404` and error message.
+ * @since 0.3
+ */
+final class ChartsApiSlice implements Slice {
+    /**
+     * Pattern for endpoint.
+     */
+    static final Pattern PTRN = Pattern.compile(
+        "^/api/charts(/(?<name>[a-zA-Z\\-\\d.]+)(/(?<version>[a-zA-Z\\-\\d.+]+))?)?/?$"
+    );
+
+    /**
+     * Catalog of charts.
+     */
+    private final ChartCatalog catalog;
+
+    /**
+     * Ctor.
+     * @param storage The storage.
+     */
+    ChartsApiSlice(final Storage storage) {
+        this(new ChartCatalog(storage, IndexLayout.SINGLE, new IndexCache(storage)));
+    }
+
+    /**
+     * Ctor.
+     * @param catalog Catalog of charts.
+     */
+    ChartsApiSlice(final ChartCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    @Override
+    public Response response(
+        final String line,
+        final Iterable<Map.Entry<String, String>> headers,
+        final Publisher<ByteBuffer> body
+    ) {
+        final Matcher matcher = ChartsApiSlice.PTRN.matcher(
+            new RequestLineFrom(line).uri().getPath()
+        );
+        final Response res;
+        if (matcher.matches()) {
+            final Optional<String> name = Optional.ofNullable(matcher.group("name"));
+            final Optional<String> version = Optional.ofNullable(matcher.group("version"));
+            res = new AsyncResponse(
+                this.catalog.charts().thenApply(
+                    charts -> {
+                        final Response rsp;
+                        if (!name.isPresent()) {
+                            rsp = ChartsApiSlice.json(RsStatus.OK, ChartsApiSlice.value(charts));
+                        } else if (!charts.containsKey(name.get())) {
+                            rsp = ChartsApiSlice.notFound("chart not found");
+                        } else if (version.isPresent()) {
+                            rsp = charts.get(name.get()).stream()
+                                .filter(
+                                    entry -> version.get().equals(
+                                        String.valueOf(entry.get("version"))
+                                    )
+                                ).findFirst()
+                                .map(
+                                    entry -> ChartsApiSlice.json(
+                                        RsStatus.OK, ChartsApiSlice.value(entry)
+                                    )
+                                ).orElseGet(
+                                    () -> ChartsApiSlice.notFound("version not found")
+                                );
+                        } else {
+                            rsp = ChartsApiSlice.json(
+                                RsStatus.OK, ChartsApiSlice.value(charts.get(name.get()))
+                            );
+                        }
+                        return rsp;
+                    }
+                )
+            );
+        } else {
+            res = new RsWithStatus(RsStatus.BAD_REQUEST);
+        }
+        return res;
+    }
+
+    /**
+     * Response with JSON.
+     * @param status Status of response
+     * @param json JSON value
+     * @return Response.
+     */
+    static Response json(final RsStatus status, final JsonValue json) {
+        return new RsFull(
+            status,
+            new Headers.From("Content-Type", "application/json"),
+            new Content.From(json.toString().getBytes(StandardCharsets.UTF_8))
+        );
+    }
+
+    /**
+     * Response with `404` status and error message.
+     * @param message Error message
+     * @return Response.
+     */
+    private static Response notFound(final String message) {
+        return ChartsApiSlice.json(
+            RsStatus.NOT_FOUND, Json.createObjectBuilder().add("error", message).build()
+        );
+    }
+
+    /**
+     * Converts value parsed from yaml to JSON value. Timestamps are converted
+     * to ISO-8601 strings, scalars other than numbers and booleans to strings.
+     * @param value Value parsed from yaml
+     * @return JSON value.
+     */
+    static JsonValue value(final Object value) {
+        final JsonValue res;
+        if (value == null) {
+            res = JsonValue.NULL;
+        } else if (value instanceof Map) {
+            final JsonObjectBuilder obj = Json.createObjectBuilder();
+            ((Map<?, ?>) value).forEach(
+                (key, val) -> obj.add(String.valueOf(key), ChartsApiSlice.value(val))
+            );
+            res = obj.build();
+        } else if (value instanceof Collection) {
+            final JsonArrayBuilder arr = Json.createArrayBuilder();
+            ((Collection<?>) value).forEach(val -> arr.add(ChartsApiSlice.value(val)));
+            res = arr.build();
+        } else if (value instanceof Boolean) {
+            if ((Boolean) value) {
+                res = JsonValue.TRUE;
+            } else {
+                res = JsonValue.FALSE;
+            }
+        } else if (value instanceof Number) {
+            res = Json.createValue(new BigDecimal(value.toString()));
+        } else if (value instanceof Date) {
+            res = Json.createValue(((Date) value).toInstant().toString());
+        } else {
+            res = Json.createValue(value.toString());
+        }
+        return res;
+    }
+}
@@ -25,10 +25,12 @@ package com.artipie.helm.http;
 
 import com.artipie.asto.Key;
 import com.artipie.asto.Storage;
-import com.artipie.asto.ext.PublisherAs;
+import com.artipie.helm.ChartInspector;
 import com.artipie.helm.ChartYaml;
-import com.artipie.helm.TgzArchive;
+import com.artipie.helm.Helm;
+import com.artipie.helm.metadata.IndexUpdates;
 import com.artipie.helm.metadata.IndexYaml;
+import com.artipie.helm.metadata.ShardedIndex;
 import com.artipie.http.Response;
 import com.artipie.http.Slice;
 import com.artipie.http.async.AsyncResponse;
@@ -36,22 +38,36 @@ import com.artipie.http.rq.RequestLineFrom;
 import com.artipie.http.rs.RsStatus;
 import com.artipie.http.rs.RsWithStatus;
 import com.artipie.http.rs.StandardRs;
-import io.reactivex.Single;
+import hu.akarnokd.rxjava2.interop.CompletableInterop;
+import hu.akarnokd.rxjava2.interop.SingleInterop;
+import io.reactivex.Completable;
 import java.net.URI;
 import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.reactivestreams.Publisher;
 
 /**
- * Endpoint for removing chart by name or by name and version.
+ * Endpoint for removing chart by name or by name and version. Versions and their
+ * archives are located through the index. For the single index file entries are
+ * removed together with archives by {@link Helm.Asto#deleteVersions} which rewrites
+ * the index on the fly, entries whose archives are already absent are dropped in
+ * the same pass. Versions are selected and removed exclusively by
+ * {@link IndexUpdates}, so concurrent deletions of the same chart do not fail.
+ * If the index does not contain the chart or the version, e.g. chart was uploaded
+ * without update of the index, archives of the storage are scanned to find it.
  * @since 0.3
+ * @checkstyle ClassDataAbstractionCouplingCheck (500 lines)
  */
 final class DeleteChartSlice implements Slice {
     /**
@@ -66,12 +82,66 @@ final class DeleteChartSlice implements Slice {
      */
     private final Storage storage;
 
+    /**
+     * Layout of index.
+     */
+    private final IndexLayout layout;
+
+    /**
+     * Cache of rendered index files.
+     */
+    private final IndexCache cache;
+
+    /**
+     * Coordinator of updates of index file.
+     */
+    private final IndexUpdates updates;
+
     /**
      * Ctor.
      * @param storage The storage.
      */
     DeleteChartSlice(final Storage storage) {
+        this(storage, IndexLayout.SINGLE);
+    }
+
+    /**
+     * Ctor.
+     * @param storage The storage.
+     * @param layout Layout of index.
+     */
+    DeleteChartSlice(final Storage storage, final IndexLayout layout) {
+        this(storage, layout, new IndexCache(storage));
+    }
+
+    /**
+     * Ctor.
+     * @param storage The storage.
+     * @param layout Layout of index.
+     * @param cache Cache of rendered index files.
+     */
+    DeleteChartSlice(final Storage storage, final IndexLayout layout, final IndexCache cache) {
+        this(storage, layout, cache, layout.updates(storage));
+    }
+
+    /**
+     * Ctor.
+     * @param storage The storage.
+     * @param layout Layout of index.
+     * @param cache Cache of rendered index files.
+     * @param updates Coordinator of updates of index file shared with other writers.
+     * @checkstyle ParameterNumberCheck (10 lines)
+     */
+    DeleteChartSlice(
+        final Storage storage,
+        final IndexLayout layout,
+        final IndexCache cache,
+        final IndexUpdates updates
+    ) {
         this.storage = storage;
+        this.layout = layout;
+        this.cache = cache;
+        this.updates = updates;
     }
 
     @Override
@@ -86,19 +156,28 @@ final class DeleteChartSlice implements Slice {
         if (matcher.matches()) {
             final String chart = matcher.group("name");
             final String vers = matcher.group("version");
+            final Optional<String> version;
             if (vers.isEmpty()) {
-                res = new AsyncResponse(
-                    new IndexYaml(this.storage)
-                        .deleteByName(chart)
-                        .andThen(this.deleteArchives(chart, Optional.empty()))
-                );
+                version = Optional.empty();
             } else {
-                res = new AsyncResponse(
-                    new IndexYaml(this.storage)
-                        .deleteByNameAndVersion(chart, vers)
-                        .andThen(this.deleteArchives(chart, Optional.of(vers)))
-                );
+                version = Optional.of(vers);
             }
+            res = new AsyncResponse(
+                this.updates.<Optional<Response>>exclusively(
+                    Key.ROOT, helm -> this.indexed(helm, chart, version)
+                ).thenCompose(
+                    indexed -> {
+                        final CompletionStage<Response> rsp;
+                        if (indexed.isPresent()) {
+                            this.cache.invalidate(IndexYaml.INDEX_YAML);
+                            rsp = CompletableFuture.completedFuture(indexed.get());
+                        } else {
+                            rsp = this.scanned(chart, version);
+                        }
+                        return rsp;
+                    }
+                )
+            );
         } else {
             res = new RsWithStatus(RsStatus.BAD_REQUEST);
         }
@@ -106,58 +185,171 @@ final class DeleteChartSlice implements Slice {
     }
 
     /**
-     * Delete archives from storage which contain chart with specified name and version.
-     * @param name Name of chart.
-     * @param vers Version of chart. If it is empty, all versions will be deleted.
-     * @return OK - archives were successfully removed, NOT_FOUND - in case of absence.
+     * Deletes versions of chart which are present in the index with their archives.
+     * It is applied exclusively by {@link IndexUpdates}, so versions and archives are
+     * selected from the index which is not changed by concurrent deletions.
+     * @param helm Helm repository
+     * @param chart Name of chart
+     * @param vers Version of chart. If it is empty, all versions are deleted.
+     * @return OK response, empty if the index does not contain the chart or the version.
      */
-    private Single<Response> deleteArchives(final String name, final Optional<String> vers) {
-        final AtomicBoolean wasdeleted = new AtomicBoolean();
-        return Single.fromFuture(
-            this.storage.list(Key.ROOT)
-                .thenApply(
-                    keys -> keys.stream()
-                        .filter(key -> key.string().endsWith(".tgz"))
-                        .collect(Collectors.toList())
-                )
+    private CompletionStage<Optional<Response>> indexed(
+        final Helm.Asto helm, final String chart, final Optional<String> vers
+    ) {
+        final CompletionStage<Optional<Response>> res;
+        if (this.layout == IndexLayout.SHARDED) {
+            final ShardedIndex sharded = new ShardedIndex(this.storage, Key.ROOT, this.updates);
+            res = sharded.migrate().andThen(sharded.archives(chart))
+                .to(SingleInterop.get())
                 .thenCompose(
-                    keys -> CompletableFuture.allOf(
-                        keys.stream().map(
-                            key -> this.storage.value(key)
-                                .thenApply(PublisherAs::new)
-                                .thenCompose(PublisherAs::bytes)
-                                .thenApply(TgzArchive::new)
-                                .thenCompose(
-                                    tgz -> {
-                                        final CompletionStage<Void> res;
-                                        final ChartYaml chart = tgz.chartYaml();
-                                        if (chart.name().equals(name)) {
-                                            res = this.wasChartDeleted(chart, vers, key)
-                                                .thenCompose(
-                                                    wasdel -> {
-                                                        wasdeleted.compareAndSet(false, wasdel);
-                                                        return CompletableFuture.allOf();
-                                                    }
-                                                );
-                                        } else {
-                                            res = CompletableFuture.allOf();
-                                        }
-                                        return res;
-                                    }
-                                )
-                        ).toArray(CompletableFuture[]::new)
-                    ).thenApply(
-                        noth -> {
-                            final Response resp;
-                            if (wasdeleted.get()) {
-                                resp = StandardRs.OK;
+                    urls -> {
+                        final Map<String, Set<String>> selected;
+                        selected = DeleteChartSlice.selected(vers, urls);
+                        final CompletionStage<Optional<Response>> rsp;
+                        if (selected.isEmpty()) {
+                            rsp = CompletableFuture.completedFuture(Optional.empty());
+                        } else {
+                            final Completable index;
+                            if (vers.isPresent()) {
+                                index = sharded.deleteByNameAndVersion(chart, vers.get());
                             } else {
-                                resp = StandardRs.NOT_FOUND;
+                                index = sharded.deleteByName(chart);
                             }
-                            return resp;
+                            rsp = index.to(CompletableInterop.await())
+                                .thenCompose(noth -> this.existing(selected))
+                                .thenCompose(this::deleteKeys)
+                                .thenApply(Optional::of);
                         }
+                        return rsp;
+                    }
+                );
+        } else {
+            res = this.layout.archives(this.storage)
+                .thenApply(
+                    archs -> archs.getOrDefault(
+                        chart, Collections.<String, Set<String>>emptyMap()
                     )
+                ).thenCompose(
+                    urls -> {
+                        final Map<String, Set<String>> selected;
+                        selected = DeleteChartSlice.selected(vers, urls);
+                        final CompletionStage<Optional<Response>> rsp;
+                        if (selected.isEmpty()) {
+                            rsp = CompletableFuture.completedFuture(Optional.empty());
+                        } else {
+                            rsp = this.existing(selected).thenCompose(
+                                keys -> helm.deleteVersions(
+                                    Collections.singletonMap(chart, selected.keySet()),
+                                    keys,
+                                    Key.ROOT
+                                )
+                            ).thenApply(noth -> Optional.of(StandardRs.OK));
+                        }
+                        return rsp;
+                    }
+                );
+        }
+        return res;
+    }
+
+    /**
+     * Selects versions of chart from the index.
+     * @param vers Version of chart. If it is empty, all versions are selected.
+     * @param urls Urls of archives by versions of chart from the index.
+     * @return Urls of archives by selected versions, empty if the index does not
+     *  contain the chart or the version.
+     */
+    private static Map<String, Set<String>> selected(
+        final Optional<String> vers, final Map<String, Set<String>> urls
+    ) {
+        return urls.entrySet().stream()
+            .filter(entry -> !vers.isPresent() || entry.getKey().equals(vers.get()))
+            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+
+    /**
+     * Locates archives of selected versions by relative urls of their entries.
+     * Absolute urls and urls of absent archives are skipped, so versions whose
+     * archives were already removed are dropped from the index only.
+     * @param selected Urls of archives by versions of chart
+     * @return Keys of existing archives.
+     */
+    private CompletionStage<List<Key>> existing(final Map<String, Set<String>> selected) {
+        final List<Key> keys = selected.values().stream()
+            .flatMap(Set::stream)
+            .filter(url -> !url.contains("://"))
+            .map(url -> new Key.From(url.replaceAll("^/+", "")))
+            .collect(Collectors.toList());
+        final List<CompletableFuture<Boolean>> exists = keys.stream()
+            .map(this.storage::exists)
+            .collect(Collectors.toList());
+        return CompletableFuture.allOf(exists.toArray(new CompletableFuture<?>[0])).thenApply(
+            noth -> IntStream.range(0, keys.size())
+                .filter(idx -> exists.get(idx).join())
+                .mapToObj(keys::get)
+                .collect(Collectors.toList())
+        );
+    }
+
+    /**
+     * Deletes archives by keys.
+     * @param keys Keys of archives
+     * @return OK response.
+     */
+    private CompletionStage<Response> deleteKeys(final List<Key> keys) {
+        return CompletableFuture.allOf(
+            keys.stream()
+                .map(this.storage::delete)
+                .toArray(CompletableFuture[]::new)
+        ).thenApply(noth -> StandardRs.OK);
+    }
+
+    /**
+     * Deletes archives of chart which are not present in the index, e.g. archives
+     * uploaded without update of the index. All archives of the storage except
+     * internal keys are read to find the chart.
+     * @param name Name of chart
+     * @param vers Version of chart. If it is empty, all versions are deleted.
+     * @return OK - archives were removed, NOT_FOUND - in case of absence.
+     */
+    private CompletionStage<Response> scanned(final String name, final Optional<String> vers) {
+        final AtomicBoolean wasdeleted = new AtomicBoolean();
+        return this.storage.list(Key.ROOT)
+            .thenApply(
+                keys -> keys.stream()
+                    .filter(key -> key.string().endsWith(".tgz"))
+                    .filter(key -> !key.string().startsWith("."))
+                    .collect(Collectors.toList())
+            ).thenCompose(
+                keys -> CompletableFuture.allOf(
+                    keys.stream().map(
+                        key -> this.storage.value(key)
+                            .thenCompose(cont -> new ChartInspector(cont).chartYaml())
+                            .thenCompose(
+                                chart -> {
+                                    final CompletionStage<Void> res;
+                                    if (chart.name().equals(name)) {
+                                        res = this.wasChartDeleted(chart, vers, key).thenAccept(
+                                            wasdel -> wasdeleted.compareAndSet(false, wasdel)
+                                        );
+                                    } else {
+                                        res = CompletableFuture.allOf();
+                                    }
+                                    return res;
+                                }
+                            ).toCompletableFuture()
+                    ).toArray(CompletableFuture[]::new)
                 )
+            ).thenApply(
+                noth -> {
+                    final Response resp;
+                    if (wasdeleted.get()) {
+                        resp = StandardRs.OK;
+                    } else {
+                        resp = StandardRs.NOT_FOUND;
+                    }
+                    return resp;
+                }
             );
     }
 
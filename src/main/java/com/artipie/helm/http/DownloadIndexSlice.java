@@ -26,28 +26,47 @@ package com.artipie.helm.http;
 import com.artipie.ArtipieException;
 import com.artipie.asto.Content;
 import com.artipie.asto.Key;
+import com.artipie.asto.Remaining;
 import com.artipie.asto.Storage;
 import com.artipie.asto.ext.PublisherAs;
 import com.artipie.helm.ChartYaml;
+import com.artipie.helm.metadata.IndexJournal;
 import com.artipie.helm.metadata.IndexYamlMapping;
+import com.artipie.helm.metadata.PrefixedUrls;
+import com.artipie.helm.metadata.ShardedIndex;
+import com.artipie.helm.misc.EmptyIndex;
 import com.artipie.http.Headers;
 import com.artipie.http.Response;
 import com.artipie.http.Slice;
 import com.artipie.http.async.AsyncResponse;
+import com.artipie.http.headers.Header;
 import com.artipie.http.rq.RequestLineFrom;
 import com.artipie.http.rs.RsFull;
 import com.artipie.http.rs.RsStatus;
+import com.artipie.http.rs.RsWithHeaders;
 import com.artipie.http.rs.RsWithStatus;
 import com.artipie.http.rs.StandardRs;
 import com.artipie.http.slice.KeyFromPath;
+import hu.akarnokd.rxjava2.interop.SingleInterop;
+import io.reactivex.Flowable;
+import java.io.ByteArrayOutputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
@@ -58,7 +77,12 @@ import org.reactivestreams.Publisher;
 
 /**
  * Download index file endpoint. Return index file with urls that are
- * based on requested URL.
+ * based on requested URL. Rendered index file of single layout is cached, see
+ * {@link IndexCache}. Journal is read only in journal layout, the index file of
+ * this layout with records of journal applied is cached until index file or
+ * the set of records is changed. Index of sharded layout is rendered on the fly. Cached index is
+ * returned gzip-compressed if client sends `Accept-Encoding: gzip`. Conditional
+ * requests with `If-None-Match` or `If-Modified-Since` are answered with `304`.
  * @since 0.3
  * @checkstyle ClassDataAbstractionCouplingCheck (500 lines)
  */
@@ -68,6 +92,16 @@ final class DownloadIndexSlice implements Slice {
      */
     static final Pattern PTRN = Pattern.compile(".*index.yaml$");
 
+    /**
+     * Accept-Encoding header.
+     */
+    private static final String ENCODING = "Accept-Encoding";
+
+    /**
+     * Gzip encoding.
+     */
+    private static final String GZIP = "gzip";
+
     /**
      * Base URL.
      */
@@ -78,6 +112,16 @@ final class DownloadIndexSlice implements Slice {
      */
     private final Storage storage;
 
+    /**
+     * Layout of index.
+     */
+    private final IndexLayout layout;
+
+    /**
+     * Cache of rendered index files.
+     */
+    private final IndexCache cache;
+
     /**
      * Ctor.
      *
@@ -85,8 +129,36 @@ final class DownloadIndexSlice implements Slice {
      * @param storage Abstract storage
      */
     DownloadIndexSlice(final String base, final Storage storage) {
+        this(base, storage, IndexLayout.SINGLE);
+    }
+
+    /**
+     * Ctor.
+     *
+     * @param base Base URL
+     * @param storage Abstract storage
+     * @param layout Layout of index
+     */
+    DownloadIndexSlice(final String base, final Storage storage, final IndexLayout layout) {
+        this(base, storage, layout, new IndexCache(storage));
+    }
+
+    /**
+     * Ctor.
+     *
+     * @param base Base URL
+     * @param storage Abstract storage
+     * @param layout Layout of index
+     * @param cache Cache of rendered index files
+     * @checkstyle ParameterNumberCheck (10 lines)
+     */
+    DownloadIndexSlice(
+        final String base, final Storage storage, final IndexLayout layout, final IndexCache cache
+    ) {
         this.base = DownloadIndexSlice.url(base);
         this.storage = storage;
+        this.layout = layout;
+        this.cache = cache;
     }
 
     @Override
@@ -101,21 +173,34 @@ final class DownloadIndexSlice implements Slice {
         final Response resp;
         if (matcher.matches()) {
             final Key path = new KeyFromPath(uri);
+            final IndexJournal jrnl = new IndexJournal(
+                this.storage, path.parent().orElse(Key.ROOT)
+            );
+            final CompletionStage<List<Key>> records;
+            if (this.layout == IndexLayout.JOURNAL) {
+                records = jrnl.records();
+            } else {
+                records = CompletableFuture.completedFuture(Collections.emptyList());
+            }
             resp = new AsyncResponse(
-                this.storage.exists(path).thenCompose(
-                    exists -> {
-                        final CompletionStage<Response> rsp;
-                        if (exists) {
-                            rsp = this.storage.value(path)
-                                .thenCompose(
-                                    content -> new UpdateIndexUrls(content, this.base).value()
-                                ).thenApply(
-                                    content -> new RsFull(RsStatus.OK, Headers.EMPTY, content)
-                                );
+                records.thenCompose(
+                    recs -> {
+                        final CompletionStage<Optional<Response>> index;
+                        if (!recs.isEmpty()) {
+                            index = this.overlaid(path, jrnl, recs)
+                                .thenApply(bytes -> Optional.of(DownloadIndexSlice.plain(bytes)));
+                        } else if (this.layout != IndexLayout.SHARDED) {
+                            index = this.cached(path, headers);
                         } else {
-                            rsp = CompletableFuture.completedFuture(StandardRs.NOT_FOUND);
+                            index = this.content(path).thenApply(
+                                cont -> cont.map(
+                                    idx -> DownloadIndexSlice.plain(
+                                        new PrefixedUrls(this.base.toString()).apply(idx)
+                                    )
+                                )
+                            );
                         }
-                        return rsp;
+                        return index.thenApply(idx -> idx.orElse(StandardRs.NOT_FOUND));
                     }
                 )
             );
@@ -125,6 +210,235 @@ final class DownloadIndexSlice implements Slice {
         return resp;
     }
 
+    /**
+     * Obtains rendered index file from the cache. If index file was changed since
+     * the last rendering, it is rendered on the fly into the response body and
+     * rendered bytes are copied to the cache, which is filled once the body is
+     * sent completely.
+     * Gzip-compressed rendition is returned from the cache if client accepts it.
+     * Entity tag and time of modification are obtained from the stamp of index file,
+     * so conditional request is answered with `304` without reading of index file.
+     * Validation of a cache hit costs the existence and metadata requests of
+     * index file, index file itself is neither read nor hashed.
+     * @param path Path to index file
+     * @param headers Request headers
+     * @return Response with rendered index file, empty in case of absence.
+     */
+    private CompletionStage<Optional<Response>> cached(
+        final Key path, final Iterable<Map.Entry<String, String>> headers
+    ) {
+        final String url = this.base.toString();
+        return this.storage.exists(path).thenCompose(
+            exists -> {
+                final CompletionStage<Optional<Response>> res;
+                if (exists) {
+                    res = this.cache.stamp(path).thenCompose(
+                        stamp -> {
+                            final Validators valid = new Validators(stamp, url);
+                            final Optional<byte[]> compressed = this.cache.gzip(path, url, stamp)
+                                .filter(bytes -> DownloadIndexSlice.acceptsGzip(headers));
+                            final Optional<byte[]> hit = this.cache.get(path, url, stamp);
+                            final CompletionStage<Response> rsp;
+                            if (valid.notModified(headers)) {
+                                rsp = CompletableFuture.completedFuture(
+                                    new RsWithHeaders(
+                                        new RsWithStatus(RsStatus.NOT_MODIFIED),
+                                        valid.headers(compressed.isPresent())
+                                    )
+                                );
+                            } else if (compressed.isPresent()) {
+                                rsp = CompletableFuture.completedFuture(
+                                    new RsFull(
+                                        RsStatus.OK,
+                                        new Headers.From(
+                                            valid.headers(true),
+                                            "Content-Encoding", DownloadIndexSlice.GZIP
+                                        ),
+                                        new Content.From(compressed.get())
+                                    )
+                                );
+                            } else if (hit.isPresent()) {
+                                rsp = CompletableFuture.completedFuture(
+                                    new RsFull(
+                                        RsStatus.OK,
+                                        valid.headers(false),
+                                        new Content.From(hit.get())
+                                    )
+                                );
+                            } else {
+                                rsp = this.storage.value(path).thenApply(
+                                    cont -> new RsFull(
+                                        RsStatus.OK,
+                                        valid.headers(false),
+                                        new Content.From(this.teed(path, stamp, cont))
+                                    )
+                                );
+                            }
+                            return rsp.thenApply(Optional::of);
+                        }
+                    );
+                } else {
+                    res = CompletableFuture.completedFuture(Optional.empty());
+                }
+                return res;
+            }
+        );
+    }
+
+    /**
+     * Renders index file with changes from journal applied. Rendered index is
+     * cached with the stamp of index file combined with names of records, records
+     * are immutable, so the index is loaded and the records are read only when
+     * index file or the set of records was changed.
+     * @param path Path to index file
+     * @param jrnl Journal of index
+     * @param records Records of journal which were not compacted to index yet
+     * @return Bytes of rendered index file.
+     */
+    private CompletionStage<byte[]> overlaid(
+        final Key path, final IndexJournal jrnl, final List<Key> records
+    ) {
+        final String url = this.base.toString();
+        return this.storage.exists(path).thenCompose(
+            exists -> {
+                final CompletionStage<IndexCache.Stamp> stamp;
+                if (exists) {
+                    stamp = this.cache.stamp(path);
+                } else {
+                    stamp = CompletableFuture.completedFuture(
+                        new IndexCache.Stamp("", Optional.empty())
+                    );
+                }
+                return stamp;
+            }
+        ).thenApply(stamp -> stamp.with(records)).thenCompose(
+            stamp -> this.cache.get(path, url, stamp)
+                .<CompletionStage<byte[]>>map(CompletableFuture::completedFuture)
+                .orElseGet(
+                    () -> jrnl.changes(records).thenCompose(
+                        changes -> this.content(path).thenCompose(
+                            cont -> new UpdateIndexUrls(
+                                cont.orElseGet(() -> new EmptyIndex().asContent()),
+                                this.base,
+                                changes
+                            ).value()
+                        )
+                    ).thenApply(
+                        bytes -> {
+                            this.cache.put(path, url, stamp, bytes);
+                            return bytes;
+                        }
+                    )
+                )
+        );
+    }
+
+    /**
+     * Obtains content of index file. In case of sharded layout the index is assembled
+     * from fragments, if there are no fragments the index file is read.
+     * @param path Path to index file
+     * @return Content of index file, empty in case of absence.
+     */
+    private CompletionStage<Optional<Content>> content(final Key path) {
+        final CompletionStage<Boolean> sharded;
+        final ShardedIndex index = new ShardedIndex(
+            this.storage, path.parent().orElse(Key.ROOT)
+        );
+        if (this.layout == IndexLayout.SHARDED) {
+            sharded = index.exists().to(SingleInterop.get());
+        } else {
+            sharded = CompletableFuture.completedFuture(false);
+        }
+        return sharded.thenCompose(
+            frgmnts -> {
+                final CompletionStage<Optional<Content>> res;
+                if (frgmnts) {
+                    res = index.content().map(Optional::of).to(SingleInterop.get());
+                } else {
+                    res = this.storage.exists(path).thenCompose(
+                        exists -> {
+                            final CompletionStage<Optional<Content>> cont;
+                            if (exists) {
+                                cont = this.storage.value(path).thenApply(Optional::of);
+                            } else {
+                                cont = CompletableFuture.completedFuture(Optional.empty());
+                            }
+                            return cont;
+                        }
+                    );
+                }
+                return res;
+            }
+        );
+    }
+
+    /**
+     * Renders index file with urls prepended with base URL on the fly and copies
+     * rendered chunks aside, the copy is put to the cache when the index is rendered
+     * completely. Invalid url of the index cuts the body of response, nothing is
+     * cached in this case.
+     * @param path Path to index file
+     * @param stamp Stamp of index file
+     * @param index Content of index file
+     * @return Rendered index.
+     */
+    private Publisher<ByteBuffer> teed(
+        final Key path, final IndexCache.Stamp stamp, final Publisher<ByteBuffer> index
+    ) {
+        final String url = this.base.toString();
+        return Flowable.defer(
+            () -> {
+                final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+                return new PrefixedUrls(url).apply(index)
+                    .doOnNext(
+                        buf -> {
+                            final byte[] bytes = new Remaining(buf.duplicate()).bytes();
+                            copy.write(bytes, 0, bytes.length);
+                        }
+                    ).doOnComplete(
+                        () -> this.cache.put(path, url, stamp, copy.toByteArray())
+                    );
+            }
+        );
+    }
+
+    /**
+     * Response with uncompressed index file.
+     * @param index Content of index file
+     * @return Response.
+     */
+    private static Response plain(final Publisher<ByteBuffer> index) {
+        return new RsFull(RsStatus.OK, Headers.EMPTY, new Content.From(index));
+    }
+
+    /**
+     * Response with uncompressed index file.
+     * @param index Bytes of index file
+     * @return Response.
+     */
+    private static Response plain(final byte[] index) {
+        return new RsFull(RsStatus.OK, Headers.EMPTY, new Content.From(index));
+    }
+
+    /**
+     * Checks that client accepts gzip encoding.
+     * @param headers Request headers
+     * @return True if `Accept-Encoding` contains `gzip` which is not disabled by `q=0`.
+     */
+    private static boolean acceptsGzip(final Iterable<Map.Entry<String, String>> headers) {
+        boolean res = false;
+        for (final Map.Entry<String, String> header : headers) {
+            if (DownloadIndexSlice.ENCODING.equalsIgnoreCase(header.getKey())) {
+                for (final String coding : header.getValue().split(",")) {
+                    final String[] parts = coding.trim().split(";");
+                    res = res || parts[0].trim().equalsIgnoreCase(DownloadIndexSlice.GZIP)
+                        && !(parts.length > 1 && parts[1].trim().matches("q=0(\\.0*)?"));
+                }
+            }
+        }
+        return res;
+    }
+
     /**
      * Converts string with url to URL.
      * @param url String with url
@@ -143,9 +457,127 @@ final class DownloadIndexSlice implements Slice {
         }
     }
 
+    /**
+     * Validators of rendered index file: entity tag and time of modification.
+     * Compressed and plain representations have different entity tags.
+     * @since 0.3
+     */
+    private static final class Validators {
+        /**
+         * Stamp of index file.
+         */
+        private final IndexCache.Stamp stamp;
+
+        /**
+         * Base URL.
+         */
+        private final String base;
+
+        /**
+         * Ctor.
+         * @param stamp Stamp of index file
+         * @param base Base URL
+         */
+        Validators(final IndexCache.Stamp stamp, final String base) {
+            this.stamp = stamp;
+            this.base = base;
+        }
+
+        /**
+         * Headers with validators of representation.
+         * @param gzip Is representation compressed?
+         * @return Headers.
+         */
+        Headers headers(final boolean gzip) {
+            final String variant;
+            if (gzip) {
+                variant = DownloadIndexSlice.GZIP;
+            } else {
+                variant = "";
+            }
+            Headers res = new Headers.From(
+                new Header("ETag", this.stamp.etag(this.base, variant)),
+                new Header("Vary", DownloadIndexSlice.ENCODING)
+            );
+            if (this.stamp.modified().isPresent()) {
+                res = new Headers.From(
+                    res, "Last-Modified",
+                    DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                        this.stamp.modified().get().atZone(ZoneOffset.UTC)
+                    )
+                );
+            }
+            return res;
+        }
+
+        /**
+         * Checks conditions of request. `If-Modified-Since` is taken into account
+         * only if `If-None-Match` is absent.
+         * @param headers Request headers
+         * @return True if representation of client is up to date.
+         */
+        boolean notModified(final Iterable<Map.Entry<String, String>> headers) {
+            final Optional<String> match = Validators.header(headers, "If-None-Match");
+            final boolean res;
+            if (match.isPresent()) {
+                final Set<String> tags = Arrays.stream(match.get().split(","))
+                    .map(String::trim)
+                    .map(tag -> tag.replaceFirst("^W/", ""))
+                    .collect(Collectors.toSet());
+                res = tags.contains("*")
+                    || tags.contains(this.stamp.etag(this.base, ""))
+                    || tags.contains(this.stamp.etag(this.base, DownloadIndexSlice.GZIP));
+            } else {
+                final Optional<String> since = Validators.header(headers, "If-Modified-Since");
+                res = since.isPresent() && this.stamp.modified().isPresent()
+                    && Validators.notAfter(this.stamp.modified().get(), since.get());
+            }
+            return res;
+        }
+
+        /**
+         * Checks that time of modification is not after the date from header.
+         * @param modified Time of modification
+         * @param date Date from header
+         * @return False if date is invalid or modification is after the date.
+         */
+        private static boolean notAfter(final Instant modified, final String date) {
+            boolean res;
+            try {
+                res = !modified.truncatedTo(ChronoUnit.SECONDS).isAfter(
+                    ZonedDateTime.parse(date, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant()
+                );
+            } catch (final DateTimeParseException ex) {
+                res = false;
+            }
+            return res;
+        }
+
+        /**
+         * Obtains the first value of request header.
+         * @param headers Request headers
+         * @param name Name of header
+         * @return Value of header if present.
+         */
+        private static Optional<String> header(
+            final Iterable<Map.Entry<String, String>> headers, final String name
+        ) {
+            Optional<String> res = Optional.empty();
+            for (final Map.Entry<String, String> header : headers) {
+                if (!res.isPresent() && name.equalsIgnoreCase(header.getKey())) {
+                    res = Optional.of(header.getValue());
+                }
+            }
+            return res;
+        }
+    }
+
     /**
      * Prepends all urls in the index file with the prefix to build
      * absolute URL: chart-0.4.1.tgz -&gt; http://host:port/path/chart-0.4.1.tgz.
+     * Changes from records of journal which were not compacted yet are applied
+     * to the index before, so the whole index is loaded. Index without changes
+     * is rewritten on the fly by {@link PrefixedUrls}.
      * @since 0.3
      */
     private static final class UpdateIndexUrls {
@@ -159,27 +591,43 @@ final class DownloadIndexSlice implements Slice {
          */
         private final URL base;
 
+        /**
+         * Changes which were not compacted to index yet.
+         */
+        private final IndexJournal.Changes changes;
+
         /**
          * Ctor.
          * @param original Original content
          * @param base Base URL
+         * @param changes Changes which were not compacted to index yet
          */
-        UpdateIndexUrls(final Content original, final URL base) {
+        UpdateIndexUrls(
+            final Content original, final URL base, final IndexJournal.Changes changes
+        ) {
             this.original = original;
             this.base = base;
+            this.changes = changes;
         }
 
         /**
-         * Return modified content with prepended URLs.
-         * @return Modified content with prepended URLs
+         * Return bytes of modified content with prepended URLs.
+         * @return Bytes of modified content with prepended URLs
          */
-        public CompletionStage<Content> value() {
+        public CompletionStage<byte[]> value() {
             return new PublisherAs(this.original)
                 .bytes()
                 .thenApply(bytes -> new String(bytes, StandardCharsets.UTF_8))
                 .thenApply(IndexYamlMapping::new)
+                .thenApply(
+                    idx -> {
+                        this.changes.overlay(idx);
+                        return idx;
+                    }
+                )
                 .thenApply(this::update)
-                .thenApply(idx -> idx.toContent().get());
+                .thenApply(idx -> idx.toContent().orElseGet(() -> new EmptyIndex().asContent()))
+                .thenCompose(cont -> new PublisherAs(cont).bytes());
         }
 
         /**
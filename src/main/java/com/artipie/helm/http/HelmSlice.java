@@ -24,6 +24,7 @@
 package com.artipie.helm.http;
 
 import com.artipie.asto.Storage;
+import com.artipie.helm.metadata.IndexUpdates;
 import com.artipie.http.Slice;
 import com.artipie.http.auth.Action;
 import com.artipie.http.auth.Authentication;
@@ -39,6 +40,8 @@ import com.artipie.http.rt.RtRulePath;
 import com.artipie.http.rt.SliceRoute;
 import com.artipie.http.slice.SliceDownload;
 import com.artipie.http.slice.SliceSimple;
+import java.util.Optional;
+import java.util.regex.Pattern;
 
 /**
  * HelmSlice.
@@ -47,6 +50,13 @@ import com.artipie.http.slice.SliceSimple;
  * @checkstyle ParameterNumberCheck (500 lines)
  */
 public final class HelmSlice extends Slice.Wrap {
+    /**
+     * Pattern of internal keys of repository which are not served: uploads,
+     * journal and fragments of index under `.helm` and sidecar of index file.
+     */
+    private static final Pattern INTERNAL = Pattern.compile(
+        "^/(.*/)?(\\.helm(/.*)?|\\.index\\.bin)$"
+    );
 
     /**
      * Ctor.
@@ -71,30 +81,216 @@ public final class HelmSlice extends Slice.Wrap {
         final String base,
         final Permissions perms,
         final Authentication auth) {
+        this(storage, base, perms, auth, IndexLayout.SINGLE);
+    }
+
+    /**
+     * Ctor.
+     *
+     * @param storage The storage.
+     * @param base The base path the slice is expected to be accessed from. Example: https://central.artipie.com/helm
+     * @param perms Access permissions.
+     * @param auth Authentication.
+     * @param layout Layout of index in the storage.
+     */
+    public HelmSlice(
+        final Storage storage,
+        final String base,
+        final Permissions perms,
+        final Authentication auth,
+        final IndexLayout layout) {
+        this(storage, base, perms, auth, layout, Optional.empty());
+    }
+
+    /**
+     * Ctor with write-behind indexing of uploaded charts, see {@link WriteBehindIndex}.
+     *
+     * @param storage The storage.
+     * @param base The base path the slice is expected to be accessed from. Example: https://central.artipie.com/helm
+     * @param perms Access permissions.
+     * @param auth Authentication.
+     * @param behind Background indexer of uploaded charts.
+     */
+    public HelmSlice(
+        final Storage storage,
+        final String base,
+        final Permissions perms,
+        final Authentication auth,
+        final WriteBehindIndex behind) {
+        this(storage, base, perms, auth, IndexLayout.SINGLE, Optional.of(behind));
+    }
+
+    /**
+     * Ctor.
+     *
+     * @param storage The storage.
+     * @param base The base path the slice is expected to be accessed from. Example: https://central.artipie.com/helm
+     * @param perms Access permissions.
+     * @param auth Authentication.
+     * @param layout Layout of index in the storage.
+     * @param behind Background indexer if write-behind mode is enabled.
+     */
+    private HelmSlice(
+        final Storage storage,
+        final String base,
+        final Permissions perms,
+        final Authentication auth,
+        final IndexLayout layout,
+        final Optional<WriteBehindIndex> behind) {
+        this(storage, base, perms, auth, layout, behind, new IndexCache(storage));
+    }
+
+    /**
+     * Ctor.
+     *
+     * @param storage The storage.
+     * @param base The base path the slice is expected to be accessed from. Example: https://central.artipie.com/helm
+     * @param perms Access permissions.
+     * @param auth Authentication.
+     * @param layout Layout of index in the storage.
+     * @param behind Background indexer if write-behind mode is enabled.
+     * @param cache Cache of rendered index files which is shared by slices.
+     */
+    private HelmSlice(
+        final Storage storage,
+        final String base,
+        final Permissions perms,
+        final Authentication auth,
+        final IndexLayout layout,
+        final Optional<WriteBehindIndex> behind,
+        final IndexCache cache) {
+        this(
+            storage, base, perms, auth, layout, behind, cache,
+            behind.map(WriteBehindIndex::updates).orElseGet(() -> layout.updates(storage))
+        );
+    }
+
+    /**
+     * Ctor.
+     *
+     * @param storage The storage.
+     * @param base The base path the slice is expected to be accessed from. Example: https://central.artipie.com/helm
+     * @param perms Access permissions.
+     * @param auth Authentication.
+     * @param layout Layout of index in the storage.
+     * @param behind Background indexer if write-behind mode is enabled.
+     * @param cache Cache of rendered index files which is shared by slices.
+     * @param updates Coordinator of updates of index file which is shared by slices.
+     */
+    private HelmSlice(
+        final Storage storage,
+        final String base,
+        final Permissions perms,
+        final Authentication auth,
+        final IndexLayout layout,
+        final Optional<WriteBehindIndex> behind,
+        final IndexCache cache,
+        final IndexUpdates updates) {
+        this(
+            storage, base, perms, auth, layout, cache, updates,
+            new UploadsIndex(storage, layout, behind, cache, updates),
+            new ChartCatalog(storage, layout, cache)
+        );
+    }
+
+    /**
+     * Ctor.
+     *
+     * @param storage The storage.
+     * @param base The base path the slice is expected to be accessed from. Example: https://central.artipie.com/helm
+     * @param perms Access permissions.
+     * @param auth Authentication.
+     * @param layout Layout of index in the storage.
+     * @param cache Cache of rendered index files which is shared by slices.
+     * @param updates Coordinator of updates of index file which is shared by slices.
+     * @param index Index of uploaded charts which is shared by upload slices.
+     * @param catalog Catalog of charts which is shared by API slices.
+     */
+    private HelmSlice(
+        final Storage storage,
+        final String base,
+        final Permissions perms,
+        final Authentication auth,
+        final IndexLayout layout,
+        final IndexCache cache,
+        final IndexUpdates updates,
+        final UploadsIndex index,
+        final ChartCatalog catalog) {
         super(
             new SliceRoute(
+                new RtRulePath(
+                    new RtRule.All(
+                        new ByMethodsRule(RqMethod.POST),
+                        new RtRule.ByPath(BulkDeleteSlice.PTRN)
+                    ),
+                    new BasicAuthSlice(
+                        new BulkDeleteSlice(storage, layout, cache, updates),
+                        auth,
+                        new Permission.ByName(perms, Action.Standard.DELETE)
+                    )
+                ),
+                new RtRulePath(
+                    new RtRule.All(
+                        new ByMethodsRule(RqMethod.POST),
+                        new RtRule.ByPath(BulkUploadSlice.PTRN)
+                    ),
+                    new BasicAuthSlice(
+                        new BulkUploadSlice(storage, index),
+                        auth,
+                        new Permission.ByName(perms, Action.Standard.WRITE)
+                    )
+                ),
                 new RtRulePath(
                     new RtRule.Any(
                         new ByMethodsRule(RqMethod.PUT),
                         new ByMethodsRule(RqMethod.POST)
                     ),
                     new BasicAuthSlice(
-                        new PushChartSlice(storage),
+                        new PushChartSlice(storage, index),
                         auth,
                         new Permission.ByName(perms, Action.Standard.WRITE)
                     )
                 ),
+                new RtRulePath(
+                    new RtRule.All(
+                        new ByMethodsRule(RqMethod.GET),
+                        new RtRule.ByPath(ChartsApiSlice.PTRN)
+                    ),
+                    new BasicAuthSlice(
+                        new ChartsApiSlice(catalog),
+                        auth,
+                        new Permission.ByName(perms, Action.Standard.READ)
+                    )
+                ),
+                new RtRulePath(
+                    new RtRule.All(
+                        new ByMethodsRule(RqMethod.GET),
+                        new RtRule.ByPath(SearchSlice.PTRN)
+                    ),
+                    new BasicAuthSlice(
+                        new SearchSlice(new ChartSearch(catalog)),
+                        auth,
+                        new Permission.ByName(perms, Action.Standard.READ)
+                    )
+                ),
                 new RtRulePath(
                     new RtRule.All(
                         new ByMethodsRule(RqMethod.GET),
                         new RtRule.ByPath(DownloadIndexSlice.PTRN)
                     ),
                     new BasicAuthSlice(
-                        new DownloadIndexSlice(base, storage),
+                        new DownloadIndexSlice(base, storage, layout, cache),
                         auth,
                         new Permission.ByName(perms, Action.Standard.READ)
                     )
                 ),
+                new RtRulePath(
+                    new RtRule.All(
+                        new ByMethodsRule(RqMethod.GET),
+                        new RtRule.ByPath(HelmSlice.INTERNAL)
+                    ),
+                    new SliceSimple(new RsWithStatus(RsStatus.NOT_FOUND))
+                ),
                 new RtRulePath(
                     new ByMethodsRule(RqMethod.GET),
                     new BasicAuthSlice(
@@ -109,7 +305,7 @@ public final class HelmSlice extends Slice.Wrap {
                         new ByMethodsRule(RqMethod.DELETE)
                     ),
                     new BasicAuthSlice(
-                        new DeleteChartSlice(storage),
+                        new DeleteChartSlice(storage, layout, cache, updates),
                         auth,
                         new Permission.ByName(perms, Action.Standard.DELETE)
                     )
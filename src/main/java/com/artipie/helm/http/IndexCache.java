@@ -0,0 +1,416 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.http;
+
+import com.artipie.ArtipieException;
+import com.artipie.asto.ArtipieIOException;
+import com.artipie.asto.Key;
+import com.artipie.asto.Meta;
+import com.artipie.asto.Remaining;
+import com.artipie.asto.Storage;
+import com.artipie.asto.ext.ContentDigest;
+import com.artipie.asto.ext.Digests;
+import com.artipie.helm.metadata.BinaryIndex;
+import hu.akarnokd.rxjava2.interop.CompletableInterop;
+import io.reactivex.Flowable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Cache of rendered index files by keys of index files and base URLs. Each
+ * rendered index is stored with the stamp of index file which it was rendered
+ * from. The stamp is SHA-256 of index file. It is kept in memory along with the
+ * size and the time of modification of index file from storage metadata, so
+ * the stamp is validated by one metadata request. Writes of this adapter
+ * invalidate the cache and the stamp explicitly. If metadata of index file was
+ * changed by another process, the digest is taken from the header of
+ * {@link BinaryIndex} sidecar if the sidecar was built for index file of the same
+ * size and it is not older than index file, otherwise index file is hashed once.
+ * A rewrite by another process which keeps the size and the time of modification
+ * of index file (e.g. storage does not provide the time) and does not rebuild
+ * the sidecar is not noticed.
+ * Gzip-compressed rendition is kept along with each rendered index.
+ * @since 0.3
+ */
+final class IndexCache {
+    /**
+     * Storage.
+     */
+    private final Storage storage;
+
+    /**
+     * Rendered indexes by keys of index files and base URLs.
+     */
+    private final Map<Key, Map<String, Rendered>> rendered;
+
+    /**
+     * Stamps of index files with their size and time of modification.
+     */
+    private final Map<Key, Pair<List<Object>, Stamp>> stamps;
+
+    /**
+     * Amount of invalidations, it is used to notice writes of this adapter.
+     */
+    private final AtomicLong invalidations;
+
+    /**
+     * Ctor.
+     * @param storage Storage
+     */
+    IndexCache(final Storage storage) {
+        this.storage = storage;
+        this.rendered = new ConcurrentHashMap<>();
+        this.stamps = new ConcurrentHashMap<>();
+        this.invalidations = new AtomicLong();
+    }
+
+    /**
+     * Obtains stamp of current state of index file by its SHA-256. The stamp kept
+     * in memory is returned while size and time of modification of index file
+     * are not changed.
+     * @param index Key of index file
+     * @return Stamp of index file.
+     */
+    CompletionStage<Stamp> stamp(final Key index) {
+        final long invalidated = this.invalidations.get();
+        return this.storage.metadata(index).thenCompose(
+            meta -> {
+                final Optional<Long> size = meta.read(Meta.OP_SIZE);
+                final Optional<Instant> updated = meta.read(Meta.OP_UPDATED_AT);
+                final List<Object> version = Arrays.asList(size, updated);
+                final Optional<Stamp> known = Optional.ofNullable(this.stamps.get(index))
+                    .filter(pair -> pair.getLeft().equals(version))
+                    .map(Pair::getRight);
+                final CompletionStage<Stamp> res;
+                if (known.isPresent()) {
+                    res = CompletableFuture.completedFuture(known.get());
+                } else {
+                    res = this.digest(index, size, updated).thenApply(
+                        dgst -> {
+                            final Stamp stamp = new Stamp(dgst, updated);
+                            if (this.invalidations.get() == invalidated) {
+                                this.stamps.put(index, new ImmutablePair<>(version, stamp));
+                            }
+                            return stamp;
+                        }
+                    );
+                }
+                return res;
+            }
+        );
+    }
+
+    /**
+     * Obtains rendered index if it was rendered from index file with the same stamp.
+     * @param index Key of index file
+     * @param base Base URL
+     * @param stamp Stamp of index file
+     * @return Bytes of rendered index if cached.
+     */
+    Optional<byte[]> get(final Key index, final String base, final Stamp stamp) {
+        return Optional.ofNullable(this.rendered.get(index))
+            .map(bases -> bases.get(base))
+            .filter(rndr -> rndr.stamp.equals(stamp))
+            .map(rndr -> rndr.bytes);
+    }
+
+    /**
+     * Obtains gzip-compressed rendered index if it was rendered from index file
+     * with the same stamp.
+     * @param index Key of index file
+     * @param base Base URL
+     * @param stamp Stamp of index file
+     * @return Compressed bytes of rendered index if cached.
+     */
+    Optional<byte[]> gzip(final Key index, final String base, final Stamp stamp) {
+        return Optional.ofNullable(this.rendered.get(index))
+            .map(bases -> bases.get(base))
+            .filter(rndr -> rndr.stamp.equals(stamp))
+            .map(rndr -> rndr.gzip);
+    }
+
+    /**
+     * Puts rendered index to the cache. Gzip-compressed rendition is produced
+     * at once, so it is ready for the next request.
+     * @param index Key of index file
+     * @param base Base URL
+     * @param stamp Stamp of index file which index was rendered from
+     * @param bytes Bytes of rendered index
+     */
+    void put(final Key index, final String base, final Stamp stamp, final byte[] bytes) {
+        this.rendered.computeIfAbsent(index, key -> new ConcurrentHashMap<>())
+            .put(base, new Rendered(stamp, bytes, IndexCache.compressed(bytes)));
+    }
+
+    /**
+     * Removes rendered indexes of index file for all base URLs.
+     * @param index Key of index file
+     */
+    void invalidate(final Key index) {
+        this.invalidations.incrementAndGet();
+        this.stamps.remove(index);
+        this.rendered.remove(index);
+    }
+
+    /**
+     * Amount of invalidations of the cache. Other caches of index, e.g.
+     * {@link ChartCatalog}, compare it to notice writes of this adapter.
+     * @return Amount of invalidations.
+     */
+    long invalidations() {
+        return this.invalidations.get();
+    }
+
+    /**
+     * Obtains SHA-256 of index file from the header of sidecar. The sidecar is used
+     * only if it was built for index file of the current size and it was not
+     * modified before index file, otherwise index file is hashed.
+     * @param index Key of index file
+     * @param size Size of index file if storage provides it
+     * @param updated Time of modification of index file if storage provides it
+     * @return Digest of index file in hex.
+     */
+    private CompletionStage<String> digest(
+        final Key index, final Optional<Long> size, final Optional<Instant> updated
+    ) {
+        final Key sidecar = BinaryIndex.key(index.parent().orElse(Key.ROOT));
+        return this.storage.exists(sidecar).thenCompose(
+            exists -> {
+                final CompletionStage<Optional<String>> res;
+                if (exists) {
+                    res = this.storage.metadata(sidecar).thenCompose(
+                        meta -> {
+                            final Optional<Instant> built = meta.read(Meta.OP_UPDATED_AT);
+                            final CompletionStage<Optional<String>> dgst;
+                            if (built.isPresent() && updated.isPresent()
+                                && built.get().isBefore(updated.get())) {
+                                dgst = CompletableFuture.completedFuture(Optional.empty());
+                            } else {
+                                dgst = this.header(sidecar)
+                                    .thenApply(head -> IndexCache.recorded(head, size));
+                            }
+                            return dgst;
+                        }
+                    );
+                } else {
+                    res = CompletableFuture.completedFuture(Optional.empty());
+                }
+                return res;
+            }
+        ).thenCompose(
+            recorded -> recorded.<CompletionStage<String>>map(
+                CompletableFuture::completedFuture
+            ).orElseGet(
+                () -> this.storage.value(index).thenCompose(
+                    cont -> new ContentDigest(cont, Digests.SHA256).hex()
+                )
+            )
+        );
+    }
+
+    /**
+     * Reads first bytes of sidecar which contain its header, the rest of
+     * sidecar is not read.
+     * @param sidecar Key of sidecar
+     * @return First bytes of sidecar.
+     */
+    private CompletionStage<byte[]> header(final Key sidecar) {
+        final ByteArrayOutputStream head = new ByteArrayOutputStream();
+        return this.storage.value(sidecar).thenCompose(
+            cont -> Flowable.fromPublisher(cont)
+                .doOnNext(
+                    buf -> {
+                        final byte[] bytes = new Remaining(buf).bytes();
+                        head.write(bytes, 0, bytes.length);
+                    }
+                )
+                .takeUntil(buf -> head.size() >= BinaryIndex.Header.LENGTH)
+                .ignoreElements()
+                .to(CompletableInterop.await())
+        ).thenApply(noth -> head.toByteArray());
+    }
+
+    /**
+     * Reads digest of index file recorded in the header of sidecar.
+     * @param bytes First bytes of sidecar
+     * @param size Size of index file if storage provides it
+     * @return Digest if sidecar is valid and was built for index file of this size.
+     */
+    private static Optional<String> recorded(final byte[] bytes, final Optional<Long> size) {
+        Optional<String> res;
+        try {
+            res = Optional.of(new BinaryIndex.Header(bytes))
+                .filter(head -> !size.isPresent() || head.size() == size.get())
+                .map(BinaryIndex.Header::digest);
+        } catch (final IllegalStateException | ArtipieException exc) {
+            res = Optional.empty();
+        }
+        return res;
+    }
+
+    /**
+     * Compresses bytes with gzip.
+     * @param bytes Bytes
+     * @return Compressed bytes.
+     */
+    private static byte[] compressed(final byte[] bytes) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 8 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (final IOException exc) {
+            throw new ArtipieIOException(exc);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Rendered index with the stamp of its index file.
+     * @since 0.3
+     */
+    private static final class Rendered {
+        /**
+         * Stamp of index file.
+         */
+        private final Stamp stamp;
+
+        /**
+         * Bytes of rendered index.
+         */
+        private final byte[] bytes;
+
+        /**
+         * Gzip-compressed bytes of rendered index.
+         */
+        private final byte[] gzip;
+
+        /**
+         * Ctor.
+         * @param stamp Stamp of index file
+         * @param bytes Bytes of rendered index
+         * @param gzip Gzip-compressed bytes of rendered index
+         */
+        Rendered(final Stamp stamp, final byte[] bytes, final byte[] gzip) {
+            this.stamp = stamp;
+            this.bytes = bytes;
+            this.gzip = gzip;
+        }
+    }
+
+    /**
+     * Stamp of state of index file built from its digest. It is used to
+     * validate cached renditions and to build validators of HTTP responses.
+     * @since 0.3
+     */
+    static final class Stamp {
+        /**
+         * Text of the stamp.
+         */
+        private final String text;
+
+        /**
+         * Time of last modification of index file if storage provides it.
+         */
+        private final Optional<Instant> updated;
+
+        /**
+         * Ctor.
+         * @param text Text of the stamp
+         * @param updated Time of last modification of index file if known
+         */
+        Stamp(final String text, final Optional<Instant> updated) {
+            this.text = text;
+            this.updated = updated;
+        }
+
+        /**
+         * Entity tag of index file rendered with base URL.
+         * @param base Base URL
+         * @param variant Variant of representation, e.g. encoding, or empty string
+         * @return Quoted entity tag.
+         */
+        String etag(final String base, final String variant) {
+            final MessageDigest sha = Digests.SHA256.get();
+            sha.update(this.text.getBytes(StandardCharsets.UTF_8));
+            sha.update((byte) 0);
+            sha.update(base.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder res = new StringBuilder("\"")
+                .append(Hex.encodeHexString(sha.digest()));
+            if (!variant.isEmpty()) {
+                res.append('-').append(variant);
+            }
+            return res.append('"').toString();
+        }
+
+        /**
+         * Stamp of index file with records of journal applied. Records are
+         * immutable, so their keys identify changes of index.
+         * @param records Keys of records of journal
+         * @return Stamp of index file with records.
+         */
+        Stamp with(final Collection<Key> records) {
+            final MessageDigest sha = Digests.SHA256.get();
+            sha.update(this.text.getBytes(StandardCharsets.UTF_8));
+            for (final Key rec : records) {
+                sha.update((byte) 0);
+                sha.update(rec.string().getBytes(StandardCharsets.UTF_8));
+            }
+            return new Stamp(Hex.encodeHexString(sha.digest()), this.updated);
+        }
+
+        /**
+         * Time of last modification of index file.
+         * @return Time of modification if storage provides it.
+         */
+        Optional<Instant> modified() {
+            return this.updated;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            return this == other || other instanceof Stamp
+                && this.text.equals(((Stamp) other).text);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.text.hashCode();
+        }
+    }
+}
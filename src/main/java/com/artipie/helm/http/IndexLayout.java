@@ -0,0 +1,90 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.http;
+
+import com.artipie.asto.Key;
+import com.artipie.asto.Storage;
+import com.artipie.helm.Helm;
+import com.artipie.helm.metadata.Index;
+import com.artipie.helm.metadata.IndexJournal;
+import com.artipie.helm.metadata.IndexUpdates;
+import com.artipie.helm.metadata.IndexYaml;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Layout of index in the storage.
+ * @since 0.3
+ */
+public enum IndexLayout {
+    /**
+     * Whole index is stored in the single `index.yaml` file.
+     */
+    SINGLE,
+
+    /**
+     * Each chart is stored in its own fragment, see
+     * {@link com.artipie.helm.metadata.ShardedIndex}. Index file is assembled
+     * from fragments on reading.
+     */
+    SHARDED,
+
+    /**
+     * Whole index is stored in the single `index.yaml` file, changes are appended
+     * to {@link com.artipie.helm.metadata.IndexJournal} instead of rewriting
+     * the file. Records of journal are applied on reading until they are compacted
+     * into the file, e.g. by {@link com.artipie.helm.JournalCompaction}.
+     */
+    JOURNAL;
+
+    /**
+     * Creates coordinator of updates of index file for this layout.
+     * @param storage The storage.
+     * @return Coordinator of updates, it appends records to journal in journal layout.
+     */
+    IndexUpdates updates(final Storage storage) {
+        return new IndexUpdates(new Helm.Asto(storage, this == IndexLayout.JOURNAL));
+    }
+
+    /**
+     * Obtains urls of archives by versions by chart names from index file `index.yaml`
+     * of the repository. Records of journal are applied in journal layout.
+     * @param storage The storage.
+     * @return Urls of archives by versions by chart names.
+     */
+    CompletionStage<Map<String, Map<String, Set<String>>>> archives(final Storage storage) {
+        final CompletionStage<Map<String, Map<String, Set<String>>>> index =
+            new Index.WithBreaks(storage).archivesByPackages(IndexYaml.INDEX_YAML);
+        final CompletionStage<Map<String, Map<String, Set<String>>>> res;
+        if (this == IndexLayout.JOURNAL) {
+            final IndexJournal jrnl = new IndexJournal(storage, Key.ROOT);
+            res = jrnl.records().thenCompose(jrnl::changes)
+                .thenCombine(index, IndexJournal.Changes::archives);
+        } else {
+            res = index;
+        }
+        return res;
+    }
+}
@@ -24,10 +24,8 @@
 
 package com.artipie.helm.http;
 
-import com.artipie.asto.Remaining;
 import com.artipie.asto.Storage;
-import com.artipie.helm.TgzArchive;
-import com.artipie.helm.metadata.IndexYaml;
+import com.artipie.helm.ChartInspector;
 import com.artipie.http.Response;
 import com.artipie.http.Slice;
 import com.artipie.http.async.AsyncResponse;
@@ -36,37 +34,90 @@ import com.artipie.http.rq.RqParams;
 import com.artipie.http.rs.RsStatus;
 import com.artipie.http.rs.RsWithStatus;
 import com.artipie.http.rs.StandardRs;
-import io.reactivex.Completable;
-import io.reactivex.Flowable;
-import io.reactivex.Single;
-import java.nio.Buffer;
 import java.nio.ByteBuffer;
-import java.util.List;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
 import org.reactivestreams.Publisher;
 
 /**
  * A Slice which accept archived charts, save them into a storage and trigger index.yml reindexing.
- * By default it updates index file after uploading.
+ * By default it updates index file after uploading. Body is streamed to a temporary key
+ * while chart info and digest are obtained from the same stream, then archive is moved
+ * to `name-version.tgz`. Invalid archive or already existing version of chart is rejected
+ * as soon as `Chart.yaml` was read, the rest of the body is not read.
+ * With {@link WriteBehindIndex} the response is sent as soon as archive was saved,
+ * index file is updated in background.
  * @since 0.2
  * @todo #13:30min Create an integration test
  *  We need an integration test for this class with described logic of upload from client side
  * @checkstyle MethodBodyCommentsCheck (500 lines)
  */
 final class PushChartSlice implements Slice {
-
     /**
      * The Storage.
      */
     private final Storage storage;
 
+    /**
+     * Index of uploaded charts.
+     */
+    private final UploadsIndex index;
+
     /**
      * Ctor.
      * @param storage The storage.
      */
     PushChartSlice(final Storage storage) {
+        this(storage, IndexLayout.SINGLE);
+    }
+
+    /**
+     * Ctor.
+     * @param storage The storage.
+     * @param layout Layout of index.
+     */
+    PushChartSlice(final Storage storage, final IndexLayout layout) {
+        this(storage, layout, Optional.empty(), new IndexCache(storage));
+    }
+
+    /**
+     * Ctor.
+     * @param storage The storage.
+     * @param behind Background indexer of uploaded charts.
+     */
+    PushChartSlice(final Storage storage, final WriteBehindIndex behind) {
+        this(storage, IndexLayout.SINGLE, Optional.of(behind), new IndexCache(storage));
+    }
+
+    /**
+     * Ctor.
+     * @param storage The storage.
+     * @param layout Layout of index.
+     * @param behind Background indexer if write-behind mode is enabled.
+     * @param cache Cache of rendered index files.
+     * @checkstyle ParameterNumberCheck (10 lines)
+     */
+    PushChartSlice(
+        final Storage storage,
+        final IndexLayout layout,
+        final Optional<WriteBehindIndex> behind,
+        final IndexCache cache
+    ) {
+        this(storage, new UploadsIndex(storage, layout, behind, cache));
+    }
+
+    /**
+     * Ctor.
+     * @param storage The storage.
+     * @param index Index of uploaded charts.
+     */
+    PushChartSlice(final Storage storage, final UploadsIndex index) {
         this.storage = storage;
+        this.index = index;
     }
 
     @Override
@@ -79,50 +130,41 @@ final class PushChartSlice implements Slice {
             new RequestLineFrom(line).uri()
         ).value("updateIndex");
         return new AsyncResponse(
-            memory(body).flatMapCompletable(
-                tgz -> tgz.save(this.storage).flatMapCompletable(
-                    key -> {
-                        final Completable res;
-                        if (!upd.isPresent() || upd.get().equals("true")) {
-                            res = new IndexYaml(this.storage).update(tgz);
+            new ChartUpload(this.storage).store(body)
+                .thenCompose(insp -> this.updateIndex(insp, upd))
+                .handle(
+                    (noth, thr) -> {
+                        final CompletableFuture<Response> res = new CompletableFuture<>();
+                        final Optional<RsStatus> rejected = ChartUpload.Rejected.of(thr);
+                        if (thr == null) {
+                            res.complete(new RsWithStatus(StandardRs.EMPTY, RsStatus.OK));
+                        } else if (rejected.isPresent()) {
+                            res.complete(new RsWithStatus(rejected.get()));
                         } else {
-                            res = Completable.complete();
+                            res.completeExceptionally(thr);
                         }
                         return res;
                     }
-                )
-            ).andThen(Single.just(new RsWithStatus(StandardRs.EMPTY, RsStatus.OK)))
+                ).thenCompose(Function.identity())
         );
     }
 
     /**
-     * Convert buffers into a byte array.
-     * @param bufs The list of buffers.
-     * @return The byte array.
+     * Updates index with info about uploaded chart unless `updateIndex`
+     * parameter is other than `true`.
+     * @param insp Inspection of uploaded archive
+     * @param upd Value of `updateIndex` parameter
+     * @return Result of completion.
      */
-    static byte[] bufsToByteArr(final List<ByteBuffer> bufs) {
-        final Integer size = bufs.stream()
-            .map(Buffer::remaining)
-            .reduce(Integer::sum)
-            .orElse(0);
-        final byte[] bytes = new byte[size];
-        int pos = 0;
-        for (final ByteBuffer buf : bufs) {
-            final byte[] tocopy = new Remaining(buf).bytes();
-            System.arraycopy(tocopy, 0, bytes, pos, tocopy.length);
-            pos += tocopy.length;
+    private CompletionStage<Void> updateIndex(
+        final ChartInspector.Inspection insp, final Optional<String> upd
+    ) {
+        final CompletionStage<Void> res;
+        if (upd.isPresent() && !upd.get().equals("true")) {
+            res = CompletableFuture.allOf();
+        } else {
+            res = this.index.add(Collections.singletonList(insp));
         }
-        return bytes;
-    }
-
-    /**
-     * Loads bytes into the memory.
-     * @param body The body.
-     * @return Bytes in a single byte array
-     */
-    private static Single<TgzArchive> memory(final Publisher<ByteBuffer> body) {
-        return Flowable.fromPublisher(body)
-            .toList()
-            .map(bufs -> new TgzArchive(bufsToByteArr(bufs)));
+        return res;
     }
 }
@@ -0,0 +1,107 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.http;
+
+import com.artipie.asto.Storage;
+import com.artipie.http.Response;
+import com.artipie.http.Slice;
+import com.artipie.http.async.AsyncResponse;
+import com.artipie.http.rq.RequestLineFrom;
+import com.artipie.http.rq.RqParams;
+import com.artipie.http.rs.RsStatus;
+import com.artipie.http.rs.RsWithStatus;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import org.reactivestreams.Publisher;
+
+/**
+ * Endpoint for search of charts, e.g. `/api/search?q=web server`. Charts are found
+ * by {@link ChartSearch}, response is JSON array with the first entry of each found
+ * chart in the index, ordered by chart names. Request without `q` parameter is
+ * answered with `400`.
+ * @since 0.3
+ */
+final class SearchSlice implements Slice {
+    /**
+     * Pattern for endpoint.
+     */
+    static final Pattern PTRN = Pattern.compile("^/api/search/?$");
+
+    /**
+     * Search of charts.
+     */
+    private final ChartSearch search;
+
+    /**
+     * Ctor.
+     * @param storage The storage.
+     */
+    SearchSlice(final Storage storage) {
+        this(
+            new ChartSearch(
+                new ChartCatalog(storage, IndexLayout.SINGLE, new IndexCache(storage))
+            )
+        );
+    }
+
+    /**
+     * Ctor.
+     * @param search Search of charts.
+     */
+    SearchSlice(final ChartSearch search) {
+        this.search = search;
+    }
+
+    @Override
+    public Response response(
+        final String line,
+        final Iterable<Map.Entry<String, String>> headers,
+        final Publisher<ByteBuffer> body
+    ) {
+        final Optional<String> query = new RqParams(
+            new RequestLineFrom(line).uri()
+        ).value("q");
+        final Response res;
+        if (query.isPresent()) {
+            res = new AsyncResponse(
+                this.search.search(query.get()).thenApply(
+                    charts -> {
+                        final JsonArrayBuilder arr = Json.createArrayBuilder();
+                        charts.values().stream()
+                            .filter(entries -> !entries.isEmpty())
+                            .forEach(entries -> arr.add(ChartsApiSlice.value(entries.get(0))));
+                        return ChartsApiSlice.json(RsStatus.OK, arr.build());
+                    }
+                )
+            );
+        } else {
+            res = new RsWithStatus(RsStatus.BAD_REQUEST);
+        }
+        return res;
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.http;
+
+import com.artipie.asto.Key;
+import com.artipie.asto.Storage;
+import com.artipie.helm.ChartInspector;
+import com.artipie.helm.metadata.IndexUpdates;
+import com.artipie.helm.metadata.IndexYaml;
+import com.artipie.helm.metadata.ShardedIndex;
+import hu.akarnokd.rxjava2.interop.CompletableInterop;
+import io.reactivex.Flowable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Indexing of uploaded charts which is shared by upload slices. Concurrent updates
+ * of `index.yaml` are grouped into one rewrite by {@link IndexUpdates}, all charts
+ * of one upload are applied in the same rewrite. Updates of fragments of sharded
+ * index are queued by the same coordinator for each fragment. In write-behind mode
+ * charts are only queued for background indexing.
+ * @since 0.3
+ */
+final class UploadsIndex {
+    /**
+     * The Storage.
+     */
+    private final Storage storage;
+
+    /**
+     * Layout of index.
+     */
+    private final IndexLayout layout;
+
+    /**
+     * Background indexer if write-behind mode is enabled.
+     */
+    private final Optional<WriteBehindIndex> behind;
+
+    /**
+     * Coordinator of updates of index file.
+     */
+    private final IndexUpdates updates;
+
+    /**
+     * Cache of rendered index files.
+     */
+    private final IndexCache cache;
+
+    /**
+     * Ctor.
+     * @param storage The storage.
+     * @param layout Layout of index.
+     * @param behind Background indexer if write-behind mode is enabled.
+     * @param cache Cache of rendered index files.
+     * @checkstyle ParameterNumberCheck (10 lines)
+     */
+    UploadsIndex(
+        final Storage storage,
+        final IndexLayout layout,
+        final Optional<WriteBehindIndex> behind,
+        final IndexCache cache
+    ) {
+        this(
+            storage, layout, behind, cache,
+            behind.map(WriteBehindIndex::updates).orElseGet(() -> layout.updates(storage))
+        );
+    }
+
+    /**
+     * Ctor.
+     * @param storage The storage.
+     * @param layout Layout of index.
+     * @param behind Background indexer if write-behind mode is enabled.
+     * @param cache Cache of rendered index files.
+     * @param updates Coordinator of updates of index file shared with other writers.
+     * @checkstyle ParameterNumberCheck (10 lines)
+     */
+    UploadsIndex(
+        final Storage storage,
+        final IndexLayout layout,
+        final Optional<WriteBehindIndex> behind,
+        final IndexCache cache,
+        final IndexUpdates updates
+    ) {
+        this.storage = storage;
+        this.layout = layout;
+        this.behind = behind;
+        this.updates = updates;
+        this.cache = cache;
+    }
+
+    /**
+     * Adds info about uploaded charts to index.
+     * @param insps Inspections of uploaded archives
+     * @return Result of completion.
+     */
+    CompletionStage<Void> add(final Collection<ChartInspector.Inspection> insps) {
+        final CompletionStage<Void> res;
+        if (insps.isEmpty()) {
+            res = CompletableFuture.allOf();
+        } else if (this.behind.isPresent()) {
+            insps.forEach(insp -> this.behind.get().add(new Key.From(insp.name())));
+            res = CompletableFuture.allOf();
+        } else if (this.layout == IndexLayout.SHARDED) {
+            final ShardedIndex sharded = new ShardedIndex(this.storage, Key.ROOT, this.updates);
+            res = sharded.migrate()
+                .andThen(Flowable.fromIterable(insps).concatMapCompletable(sharded::add))
+                .to(CompletableInterop.await())
+                .thenApply(
+                    noth -> {
+                        this.cache.invalidate(IndexYaml.INDEX_YAML);
+                        return null;
+                    }
+                );
+        } else {
+            res = this.updates.add(
+                Key.ROOT,
+                insps.stream()
+                    .<Key>map(insp -> new Key.From(insp.name()))
+                    .collect(Collectors.toList())
+            ).thenApply(
+                noth -> {
+                    this.cache.invalidate(IndexYaml.INDEX_YAML);
+                    return null;
+                }
+            );
+        }
+        return res;
+    }
+
+    /**
+     * Adds info about uploaded charts to index so that charts which can not be added
+     * do not fail the others. Charts are added together, if it fails they are added
+     * one by one. Fragments of sharded index are updated chart by chart anyway, so
+     * charts are added one by one from the start.
+     * @param insps Inspections of uploaded archives
+     * @return Names of archives which failed to be added.
+     */
+    CompletionStage<Set<String>> addEach(final Collection<ChartInspector.Inspection> insps) {
+        final CompletionStage<Set<String>> res;
+        if (this.layout == IndexLayout.SHARDED && !this.behind.isPresent()) {
+            res = this.oneByOne(insps);
+        } else {
+            res = this.add(insps).handle(
+                (noth, thr) -> {
+                    final CompletionStage<Set<String>> each;
+                    if (thr == null) {
+                        each = CompletableFuture.completedFuture(Collections.emptySet());
+                    } else if (insps.size() == 1) {
+                        each = CompletableFuture.completedFuture(
+                            Collections.singleton(insps.iterator().next().name())
+                        );
+                    } else {
+                        each = this.oneByOne(insps);
+                    }
+                    return each;
+                }
+            ).thenCompose(Function.identity());
+        }
+        return res;
+    }
+
+    /**
+     * Adds info about uploaded charts to index one by one.
+     * @param insps Inspections of uploaded archives
+     * @return Names of archives which failed to be added.
+     */
+    private CompletionStage<Set<String>> oneByOne(
+        final Collection<ChartInspector.Inspection> insps
+    ) {
+        final Set<String> failed = Collections.synchronizedSet(new HashSet<>());
+        return Flowable.fromIterable(insps).concatMapCompletable(
+            insp -> CompletableInterop.fromFuture(
+                this.add(Collections.singletonList(insp)).handle(
+                    (noth, thr) -> {
+                        if (thr != null) {
+                            failed.add(insp.name());
+                        }
+                        return noth;
+                    }
+                )
+            )
+        ).to(CompletableInterop.await()).thenApply(noth -> failed);
+    }
+}
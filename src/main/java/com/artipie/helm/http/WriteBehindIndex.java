@@ -0,0 +1,300 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.http;
+
+import com.artipie.asto.Key;
+import com.artipie.asto.Storage;
+import com.artipie.helm.Helm;
+import com.artipie.helm.metadata.IndexUpdates;
+import hu.akarnokd.rxjava2.interop.CompletableInterop;
+import io.reactivex.Flowable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Background indexer of uploaded charts. Keys of saved archives are queued and
+ * added to `index.yaml` with one call of {@link Helm#add(Collection, Key)} after
+ * the delay since the first queued key or as soon as the batch size was reached.
+ * Updates go through {@link IndexUpdates}, so they are ordered with other updates
+ * of the same index file which use the same instance, see {@link #updates()}.
+ * Only one update of index file is in progress at a time. If update of the batch
+ * failed, keys of the batch are added one by one, so the key which can not be added
+ * (e.g. archive was removed before the update or its version is already in index)
+ * does not block other keys. Keys of failed update are returned to the queue and
+ * are added by the next update; after {@link #ATTEMPTS} failed updates the key
+ * is dropped from the queue and is reported by {@link #failed()}.
+ * @since 0.3
+ */
+@SuppressWarnings("PMD.TooManyMethods")
+public final class WriteBehindIndex {
+    /**
+     * Amount of failed updates of single key after which the key is dropped.
+     */
+    static final int ATTEMPTS = 3;
+
+    /**
+     * Coordinator of updates of index file.
+     */
+    private final IndexUpdates updates;
+
+    /**
+     * Scheduler of delayed updates.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Delay of update since the first queued key.
+     */
+    private final Duration delay;
+
+    /**
+     * Amount of queued keys which starts update immediately.
+     */
+    private final int batch;
+
+    /**
+     * Queued keys which are not taken by update yet.
+     */
+    private final List<Key> queued;
+
+    /**
+     * Keys which are not added to index file yet.
+     */
+    private final Set<Key> unindexed;
+
+    /**
+     * Amounts of failed updates by keys.
+     */
+    private final Map<Key, Integer> attempts;
+
+    /**
+     * Keys which were dropped after {@link #ATTEMPTS} failed updates.
+     */
+    private final Set<Key> dropped;
+
+    /**
+     * Last started update.
+     */
+    private CompletableFuture<Void> last;
+
+    /**
+     * Is delayed update scheduled?
+     */
+    private boolean scheduled;
+
+    /**
+     * Ctor.
+     * @param storage Storage
+     * @param delay Delay of update since the first queued key
+     * @param batch Amount of queued keys which starts update immediately
+     */
+    public WriteBehindIndex(final Storage storage, final Duration delay, final int batch) {
+        this(
+            new IndexUpdates(storage),
+            Executors.newSingleThreadScheduledExecutor(
+                runnable -> {
+                    final Thread thread = new Thread(runnable, "helm-write-behind-index");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            ),
+            delay,
+            batch
+        );
+    }
+
+    /**
+     * Ctor.
+     * @param updates Coordinator of updates of index file
+     * @param scheduler Scheduler of delayed updates
+     * @param delay Delay of update since the first queued key
+     * @param batch Amount of queued keys which starts update immediately
+     * @checkstyle ParameterNumberCheck (10 lines)
+     */
+    public WriteBehindIndex(
+        final IndexUpdates updates,
+        final ScheduledExecutorService scheduler,
+        final Duration delay,
+        final int batch
+    ) {
+        this.updates = updates;
+        this.scheduler = scheduler;
+        this.delay = delay;
+        this.batch = batch;
+        this.queued = new ArrayList<>(0);
+        this.unindexed = new HashSet<>();
+        this.attempts = new HashMap<>();
+        this.dropped = new HashSet<>();
+        this.last = CompletableFuture.allOf();
+    }
+
+    /**
+     * Queues key of saved archive for adding to index file.
+     * @param chart Key of archive
+     */
+    public void add(final Key chart) {
+        final boolean full;
+        final boolean schedule;
+        synchronized (this) {
+            this.queued.add(chart);
+            this.unindexed.add(chart);
+            this.dropped.remove(chart);
+            full = this.queued.size() >= this.batch;
+            schedule = !full && !this.scheduled;
+            this.scheduled = this.scheduled || schedule;
+        }
+        if (full) {
+            this.flush();
+        } else if (schedule) {
+            this.scheduler.schedule(
+                this::flush, this.delay.toMillis(), TimeUnit.MILLISECONDS
+            );
+        }
+    }
+
+    /**
+     * Keys of archives which are saved but not added to index file yet.
+     * @return Keys of archives.
+     */
+    public synchronized Collection<Key> pending() {
+        return Collections.unmodifiableSet(new HashSet<>(this.unindexed));
+    }
+
+    /**
+     * Keys of archives which were not added to index file after {@link #ATTEMPTS}
+     * failed updates and were dropped from the queue. Key is removed from this
+     * collection when it is queued again.
+     * @return Keys of archives.
+     */
+    public synchronized Collection<Key> failed() {
+        return Collections.unmodifiableSet(new HashSet<>(this.dropped));
+    }
+
+    /**
+     * Coordinator of updates of index file which is used by this indexer. Other
+     * writers of the same index file should use it to keep updates ordered.
+     * @return Coordinator of updates.
+     */
+    IndexUpdates updates() {
+        return this.updates;
+    }
+
+    /**
+     * Starts update of index file with all queued keys without waiting for the delay.
+     * @return Result of completion which completes when keys queued before the call
+     *  were processed: added to index file, returned to the queue or dropped.
+     */
+    public synchronized CompletionStage<Void> flush() {
+        final List<Key> keys = new ArrayList<>(this.queued);
+        this.queued.clear();
+        this.scheduled = false;
+        this.last = this.last.handle((noth, thr) -> null).thenCompose(
+            nothing -> {
+                final CompletionStage<Void> res;
+                if (keys.isEmpty()) {
+                    res = CompletableFuture.allOf();
+                } else {
+                    res = this.update(keys);
+                }
+                return res;
+            }
+        );
+        return this.last;
+    }
+
+    /**
+     * Adds keys to index file. If update of several keys failed, keys are added
+     * one by one to find keys which can not be added.
+     * @param keys Keys of archives
+     * @return Result of completion.
+     */
+    private CompletionStage<Void> update(final List<Key> keys) {
+        return this.updates.add(Key.ROOT, keys).handle(
+            (noth, thr) -> {
+                final CompletionStage<Void> res;
+                if (thr == null || keys.size() == 1) {
+                    this.complete(keys, thr);
+                    res = CompletableFuture.allOf();
+                } else {
+                    res = Flowable.fromIterable(keys)
+                        .concatMapCompletable(
+                            key -> CompletableInterop.fromFuture(
+                                this.update(Collections.singletonList(key))
+                            )
+                        ).to(CompletableInterop.await())
+                        .thenApply(nothing -> null);
+                }
+                return res;
+            }
+        ).thenCompose(Function.identity());
+    }
+
+    /**
+     * Completes update of index file.
+     * @param keys Keys of archives of update
+     * @param thr Failure of update or null
+     */
+    private void complete(final List<Key> keys, final Throwable thr) {
+        final boolean schedule;
+        synchronized (this) {
+            if (thr == null) {
+                this.unindexed.removeAll(keys);
+                this.attempts.keySet().removeAll(keys);
+                schedule = false;
+            } else {
+                final List<Key> retry = new ArrayList<>(keys.size());
+                for (final Key key : keys) {
+                    if (this.attempts.merge(key, 1, Integer::sum) < WriteBehindIndex.ATTEMPTS) {
+                        retry.add(key);
+                    } else {
+                        this.attempts.remove(key);
+                        this.unindexed.remove(key);
+                        this.dropped.add(key);
+                    }
+                }
+                this.queued.addAll(0, retry);
+                schedule = !retry.isEmpty() && !this.scheduled;
+                this.scheduled = this.scheduled || schedule;
+            }
+        }
+        if (schedule) {
+            this.scheduler.schedule(
+                this::flush, this.delay.toMillis(), TimeUnit.MILLISECONDS
+            );
+        }
+    }
+}
@@ -0,0 +1,662 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.metadata;
+
+import com.artipie.asto.ArtipieIOException;
+import com.artipie.asto.Key;
+import com.artipie.asto.ext.Digests;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * Compact binary sidecar of index file. It is stored next to `index.yaml` and
+ * maps chart name to versions with byte offset and length of each version entry
+ * in the index file and digest of the archive. It also contains the digest and the
+ * size of the index file for which it was built, so the sidecar which does not
+ * correspond to the index (e.g. index was changed by someone else) can be detected
+ * and ignored.
+ * @since 0.3
+ * @checkstyle ClassDataAbstractionCouplingCheck (500 lines)
+ */
+@SuppressWarnings("PMD.TooManyMethods")
+public final class BinaryIndex {
+    /**
+     * Name of sidecar file.
+     */
+    public static final String NAME = ".index.bin";
+
+    /**
+     * Magic number at the beginning of sidecar.
+     */
+    private static final int MAGIC = 0x48494458;
+
+    /**
+     * Version of format of sidecar.
+     */
+    private static final byte FORMAT = 2;
+
+    /**
+     * Digest of index file.
+     */
+    private final String dgst;
+
+    /**
+     * Size of index file.
+     */
+    private final long length;
+
+    /**
+     * Position of the end of `entries:` section in index file.
+     */
+    private final long entrsend;
+
+    /**
+     * Indent of names of charts in `entries:` section.
+     */
+    private final int indnt;
+
+    /**
+     * Block of `generated:` line, offset is -1 in case of absence.
+     */
+    private final Block gnrtd;
+
+    /**
+     * Blocks of charts by chart names.
+     */
+    private final Map<String, Block> charts;
+
+    /**
+     * Blocks of versions by versions and chart names.
+     */
+    private final Map<String, Map<String, Block>> entries;
+
+    /**
+     * Ctor which reads the sidecar.
+     * @param bytes Bytes of sidecar
+     */
+    public BinaryIndex(final byte[] bytes) {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (input.readInt() != BinaryIndex.MAGIC || input.readByte() != BinaryIndex.FORMAT) {
+                throw new IllegalStateException("Unsupported format of binary index");
+            }
+            this.length = input.readLong();
+            this.dgst = input.readUTF();
+            this.entrsend = input.readLong();
+            this.indnt = input.readInt();
+            this.gnrtd = Block.read(input);
+            final int count = input.readInt();
+            this.charts = new LinkedHashMap<>(count);
+            this.entries = new LinkedHashMap<>(count);
+            for (int chrt = 0; chrt < count; chrt += 1) {
+                final String name = input.readUTF();
+                this.charts.put(name, Block.read(input));
+                final int vrsns = input.readInt();
+                final Map<String, Block> blocks = new LinkedHashMap<>(vrsns);
+                for (int vrsn = 0; vrsn < vrsns; vrsn += 1) {
+                    blocks.put(input.readUTF(), Block.read(input));
+                }
+                this.entries.put(name, blocks);
+            }
+        } catch (final IOException exc) {
+            throw new ArtipieIOException(exc);
+        }
+    }
+
+    /**
+     * Ctor which builds the sidecar from index file. Index file is read once
+     * line by line.
+     * @param index Path to index file
+     */
+    public BinaryIndex(final Path index) {
+        this(BinaryIndex.opened(index));
+    }
+
+    /**
+     * Ctor which builds the sidecar from content of index file. Content is read once
+     * line by line, the stream is closed after reading.
+     * @param index Content of index file
+     */
+    public BinaryIndex(final InputStream index) {
+        final MessageDigest sha = Digests.SHA256.get();
+        final Scan scan = new Scan();
+        try (IndexReader reader = new IndexReader(new DigestInputStream(index, sha))) {
+            IndexLine line = reader.next();
+            while (line != null) {
+                scan.accept(line, reader.position());
+                line = reader.next();
+            }
+            scan.finish(reader.position());
+            this.length = reader.position();
+        } catch (final IOException exc) {
+            throw new ArtipieIOException(exc);
+        }
+        this.dgst = Hex.encodeHexString(sha.digest());
+        this.entrsend = scan.entrsend;
+        this.indnt = scan.chartIndent();
+        this.gnrtd = scan.gnrtd;
+        this.charts = scan.charts;
+        this.entries = scan.entries;
+    }
+
+    /**
+     * Opens index file for reading.
+     * @param index Path to index file
+     * @return Input stream.
+     */
+    private static InputStream opened(final Path index) {
+        try {
+            return Files.newInputStream(index);
+        } catch (final IOException exc) {
+            throw new ArtipieIOException(exc);
+        }
+    }
+
+    /**
+     * Obtains key of sidecar for index file which is located by specified prefix.
+     * @param prefix Prefix of index file
+     * @return Key of sidecar.
+     */
+    public static Key key(final Key prefix) {
+        return new Key.From(prefix, BinaryIndex.NAME);
+    }
+
+    /**
+     * Obtains digest (SHA-256) of index file for which this sidecar was built.
+     * @return Digest of index file in hex.
+     */
+    public String digest() {
+        return this.dgst;
+    }
+
+    /**
+     * Obtains size of index file for which this sidecar was built.
+     * @return Size of index file.
+     */
+    public long size() {
+        return this.length;
+    }
+
+    /**
+     * Obtains position of the end of `entries:` section in index file, it is a place
+     * where new charts can be written.
+     * @return Position in bytes, -1 if index does not contain `entries:` section.
+     */
+    public long entriesEnd() {
+        return this.entrsend;
+    }
+
+    /**
+     * Obtains indent of names of charts in `entries:` section.
+     * @return Indent of names of charts, 2 if index does not contain charts.
+     */
+    public int indent() {
+        return this.indnt;
+    }
+
+    /**
+     * Obtains block of top level `generated:` line in index file.
+     * @return Block of the line with break if it exists, empty otherwise.
+     */
+    public Optional<Block> generated() {
+        return Optional.of(this.gnrtd).filter(block -> block.offset() != -1);
+    }
+
+    /**
+     * Obtains versions for packages which exist in the index file.
+     * @return Map where key is a package name, value is represented versions.
+     */
+    public Map<String, Set<String>> versions() {
+        final Map<String, Set<String>> res = new LinkedHashMap<>(this.entries.size());
+        this.entries.forEach((name, vrsns) -> res.put(name, new HashSet<>(vrsns.keySet())));
+        return res;
+    }
+
+    /**
+     * Obtains block of chart with all its versions in index file.
+     * @param name Chart name
+     * @return Block of chart if the chart exists, empty otherwise.
+     */
+    public Optional<Block> chart(final String name) {
+        return Optional.ofNullable(this.charts.get(name));
+    }
+
+    /**
+     * Obtains block of specified version of chart in index file.
+     * @param name Chart name
+     * @param version Version of chart
+     * @return Block of version if it exists, empty otherwise.
+     */
+    public Optional<Block> entry(final String name, final String version) {
+        return Optional.ofNullable(
+            this.entries.getOrDefault(name, Collections.emptyMap()).get(version)
+        );
+    }
+
+    /**
+     * Converts sidecar to bytes.
+     * @return Bytes of sidecar.
+     */
+    public byte[] asBytes() {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(BinaryIndex.MAGIC);
+            out.writeByte(BinaryIndex.FORMAT);
+            out.writeLong(this.length);
+            out.writeUTF(this.dgst);
+            out.writeLong(this.entrsend);
+            out.writeInt(this.indnt);
+            this.gnrtd.write(out);
+            out.writeInt(this.charts.size());
+            for (final Map.Entry<String, Block> chart : this.charts.entrySet()) {
+                out.writeUTF(chart.getKey());
+                chart.getValue().write(out);
+                final Map<String, Block> vrsns = this.entries.getOrDefault(
+                    chart.getKey(), Collections.emptyMap()
+                );
+                out.writeInt(vrsns.size());
+                for (final Map.Entry<String, Block> vrsn : vrsns.entrySet()) {
+                    out.writeUTF(vrsn.getKey());
+                    vrsn.getValue().write(out);
+                }
+            }
+        } catch (final IOException exc) {
+            throw new ArtipieIOException(exc);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Header of sidecar with the size and the digest of index file for which the
+     * sidecar was built. It is read from the first bytes of sidecar, so it can be
+     * checked without reading of blocks of charts.
+     * @since 0.3
+     */
+    public static final class Header {
+        /**
+         * Length of header in bytes: magic number, format, size and digest (SHA-256)
+         * of index file in hex.
+         */
+        public static final int LENGTH = 79;
+
+        /**
+         * Size of index file.
+         */
+        private final long length;
+
+        /**
+         * Digest of index file.
+         */
+        private final String dgst;
+
+        /**
+         * Ctor.
+         * @param bytes First bytes of sidecar, at least {@link #LENGTH}
+         */
+        public Header(final byte[] bytes) {
+            try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes))) {
+                if (input.readInt() != BinaryIndex.MAGIC
+                    || input.readByte() != BinaryIndex.FORMAT) {
+                    throw new IllegalStateException("Unsupported format of binary index");
+                }
+                this.length = input.readLong();
+                this.dgst = input.readUTF();
+            } catch (final IOException exc) {
+                throw new ArtipieIOException(exc);
+            }
+        }
+
+        /**
+         * Obtains size of index file for which the sidecar was built.
+         * @return Size of index file.
+         */
+        public long size() {
+            return this.length;
+        }
+
+        /**
+         * Obtains digest (SHA-256) of index file for which the sidecar was built.
+         * @return Digest of index file in hex.
+         */
+        public String digest() {
+            return this.dgst;
+        }
+    }
+
+    /**
+     * Block of bytes in index file.
+     * @since 0.3
+     */
+    public static final class Block {
+        /**
+         * Position of the beginning of the block.
+         */
+        private final long offset;
+
+        /**
+         * Length of the block.
+         */
+        private final long len;
+
+        /**
+         * Digest of archive, empty for blocks of charts.
+         */
+        private final String dgst;
+
+        /**
+         * Ctor.
+         * @param offset Position of the beginning of the block
+         * @param len Length of the block
+         * @param dgst Digest of archive
+         */
+        Block(final long offset, final long len, final String dgst) {
+            this.offset = offset;
+            this.len = len;
+            this.dgst = dgst;
+        }
+
+        /**
+         * Obtains position of the beginning of the block.
+         * @return Position in bytes.
+         */
+        public long offset() {
+            return this.offset;
+        }
+
+        /**
+         * Obtains length of the block.
+         * @return Length in bytes.
+         */
+        public long length() {
+            return this.len;
+        }
+
+        /**
+         * Obtains position of the end of the block.
+         * @return Position in bytes.
+         */
+        public long end() {
+            return this.offset + this.len;
+        }
+
+        /**
+         * Obtains digest of archive from the entry.
+         * @return Digest of archive, empty string in case of absence.
+         */
+        public String digest() {
+            return this.dgst;
+        }
+
+        /**
+         * Writes block.
+         * @param out Output
+         * @throws IOException In case of exception during writing
+         */
+        private void write(final DataOutputStream out) throws IOException {
+            out.writeLong(this.offset);
+            out.writeLong(this.len);
+            out.writeUTF(this.dgst);
+        }
+
+        /**
+         * Reads block.
+         * @param input Input
+         * @return Read block.
+         * @throws IOException In case of exception during reading
+         */
+        private static Block read(final DataInputStream input) throws IOException {
+            return new Block(input.readLong(), input.readLong(), input.readUTF());
+        }
+    }
+
+    /**
+     * Scan of lines of index file which collects blocks of charts and versions.
+     * Structure of `entries:` section is tracked in the same way as in
+     * {@link Index.WithBreaks}.
+     * @since 0.3
+     */
+    private static final class Scan {
+        /**
+         * Digest key.
+         */
+        private static final String DIGEST = "digest";
+
+        /**
+         * Generated key.
+         */
+        private static final String GENERATED = "generated";
+
+        /**
+         * Blocks of charts.
+         */
+        private final Map<String, Block> charts = new LinkedHashMap<>();
+
+        /**
+         * Blocks of versions.
+         */
+        private final Map<String, Map<String, Block>> entries = new LinkedHashMap<>();
+
+        /**
+         * Position of the end of `entries:` section.
+         */
+        private long entrsend = -1;
+
+        /**
+         * Block of `generated:` line.
+         */
+        private Block gnrtd = new Block(-1, 0, "");
+
+        /**
+         * Beginning of `generated:` line which end is not known yet.
+         */
+        private long gnrtdstart = -1;
+
+        /**
+         * Are we in `entries:` section?
+         */
+        private boolean entrs;
+
+        /**
+         * Name of current chart.
+         */
+        private String name;
+
+        /**
+         * Beginning of current chart.
+         */
+        private long chartstart;
+
+        /**
+         * Beginning of current version.
+         */
+        private long itemstart = -1;
+
+        /**
+         * Version of current entry.
+         */
+        private String vers;
+
+        /**
+         * Digest of current entry.
+         */
+        private String dgst = "";
+
+        /**
+         * Indent of chart names.
+         */
+        private int indent = -1;
+
+        /**
+         * Indent of items of chart.
+         */
+        private int itemindent = -1;
+
+        /**
+         * Indent of fields of current entry.
+         */
+        private int fieldindent = -1;
+
+        /**
+         * Accepts next line.
+         * @param line Line
+         * @param pos Position of the line
+         */
+        @SuppressWarnings("PMD.ConfusingTernary")
+        void accept(final IndexLine line, final long pos) {
+            this.closeGenerated(pos);
+            if (line.indent() == 0 && this.gnrtd.offset() == -1
+                && line.keyIs(Scan.GENERATED)) {
+                this.gnrtdstart = pos;
+            }
+            if (!this.entrs) {
+                this.entrs = this.entrsend == -1 && line.kind() == IndexLine.Kind.ENTRIES;
+            } else if (line.kind() != IndexLine.Kind.EMPTY) {
+                final int ind = line.indent();
+                final boolean chart = line.kind() == IndexLine.Kind.CHART
+                    && (this.indent == -1 || ind == this.indent);
+                final boolean item = line.dash() && this.name != null
+                    && (this.itemindent == -1 || ind == this.itemindent);
+                if (ind == 0 || chart) {
+                    this.closeChart(pos);
+                } else if (item) {
+                    this.closeEntry(pos);
+                }
+                if (ind == 0) {
+                    this.entrs = false;
+                    this.entrsend = pos;
+                } else if (chart) {
+                    this.indent = ind;
+                    this.name = line.key();
+                    this.chartstart = pos;
+                    this.itemindent = -1;
+                } else if (item) {
+                    this.itemindent = ind;
+                    this.itemstart = pos;
+                    if (line.hasKey()) {
+                        this.fieldindent = line.keyPosition();
+                        this.field(line);
+                    } else {
+                        this.fieldindent = -1;
+                    }
+                } else if (this.name != null) {
+                    if (this.fieldindent == -1) {
+                        this.fieldindent = ind;
+                    }
+                    this.field(line);
+                }
+            }
+        }
+
+        /**
+         * Obtains indent of chart names.
+         * @return Indent of chart names, 2 if there are no charts.
+         */
+        int chartIndent() {
+            int res = 2;
+            if (this.indent != -1) {
+                res = this.indent;
+            }
+            return res;
+        }
+
+        /**
+         * Finishes scan at the end of index file.
+         * @param pos Position of the end of index file
+         */
+        void finish(final long pos) {
+            this.closeGenerated(pos);
+            this.closeChart(pos);
+            if (this.entrs) {
+                this.entrsend = pos;
+            }
+        }
+
+        /**
+         * Processes field of the entry.
+         * @param line Line with field
+         */
+        private void field(final IndexLine line) {
+            if (line.keyPosition() == this.fieldindent) {
+                if (line.kind() == IndexLine.Kind.VERSION) {
+                    this.vers = line.value();
+                } else if (line.keyIs(Scan.DIGEST)) {
+                    this.dgst = line.value();
+                }
+            }
+        }
+
+        /**
+         * Closes `generated:` line.
+         * @param pos Position of the next line
+         */
+        private void closeGenerated(final long pos) {
+            if (this.gnrtdstart != -1) {
+                this.gnrtd = new Block(this.gnrtdstart, pos - this.gnrtdstart, "");
+                this.gnrtdstart = -1;
+            }
+        }
+
+        /**
+         * Closes current chart and version.
+         * @param pos Position of the end of chart
+         */
+        private void closeChart(final long pos) {
+            this.closeEntry(pos);
+            if (this.name != null) {
+                this.charts.put(this.name, new Block(this.chartstart, pos - this.chartstart, ""));
+                this.entries.putIfAbsent(this.name, new LinkedHashMap<>());
+                this.name = null;
+            }
+        }
+
+        /**
+         * Closes current version.
+         * @param pos Position of the end of version
+         */
+        private void closeEntry(final long pos) {
+            if (this.itemstart != -1 && this.vers != null) {
+                this.entries.computeIfAbsent(this.name, nothing -> new LinkedHashMap<>()).put(
+                    this.vers, new Block(this.itemstart, pos - this.itemstart, this.dgst)
+                );
+            }
+            this.itemstart = -1;
+            this.vers = null;
+            this.dgst = "";
+        }
+    }
+}
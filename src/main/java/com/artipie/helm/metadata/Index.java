@@ -23,32 +23,25 @@
  */
 package com.artipie.helm.metadata;
 
-import com.artipie.asto.ArtipieIOException;
-import com.artipie.asto.FailedCompletionStage;
+import com.artipie.ArtipieException;
 import com.artipie.asto.Key;
 import com.artipie.asto.Storage;
-import com.artipie.asto.fs.FileStorage;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import com.artipie.asto.ext.PublisherAs;
+import io.reactivex.Flowable;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
-import org.apache.commons.io.FileUtils;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Reader of `index.yaml` file which does not read the entire file into memory.
  * @since 0.3
- * @todo #112:90min Replace parser with reactive version to avoid copying index
- *  file to temp storage. This parser should be replaced with converter from Publisher#ByteBuffer
- *  to another Publisher#ByteBuffer which is splitted by breaks (based on implementation
- *  of org.reactivestreams.Processor)
- *  @checkstyle CyclomaticComplexityCheck (500 lines)
+ * @checkstyle CyclomaticComplexityCheck (500 lines)
  */
 public interface Index {
     /**
@@ -58,6 +51,13 @@ public interface Index {
      */
     CompletionStage<Map<String, Set<String>>> versionsByPackages(Key idxpath);
 
+    /**
+     * Obtains urls of archives for each version of packages which exist in the index file.
+     * @param idxpath Path to index file
+     * @return Map where key is a package name, value is represented urls by versions.
+     */
+    CompletionStage<Map<String, Map<String, Set<String>>>> archivesByPackages(Key idxpath);
+
     /**
      * Reader of `index.yaml` which contains break lines.
      * This file looks like:
@@ -68,19 +68,15 @@ public interface Index {
      *   - apiVersion: v1
      *     version: 0.1.0
      * </pre>
+     * Content of the index is parsed line by line as bytes arrive from the storage.
      * @since 0.3
      */
     @SuppressWarnings("PMD.CyclomaticComplexity")
     final class WithBreaks implements Index {
         /**
-         * Versions.
+         * Urls.
          */
-        static final String VRSNS = "version:";
-
-        /**
-         * Entries.
-         */
-        static final String ENTRS = "entries:";
+        static final String URLS = "urls";
 
         /**
          * Storage with index file.
@@ -97,32 +93,51 @@ public interface Index {
 
         @Override
         public CompletionStage<Map<String, Set<String>>> versionsByPackages(final Key idx) {
+            return this.parsed(idx, Versions::new);
+        }
+
+        @Override
+        public CompletionStage<Map<String, Map<String, Set<String>>>> archivesByPackages(
+            final Key idx
+        ) {
+            return this.parsed(idx, Archives::new);
+        }
+
+        /**
+         * Parses index file from storage with passed parser. Content is passed
+         * to parser line by line as it is read from storage.
+         * @param idx Path to index file
+         * @param parser Parser of the index file
+         * @param <T> Type of parsed result
+         * @return Parsed index file, empty map in case of absence of index file.
+         */
+        private <T extends Map<String, ?>> CompletionStage<T> parsed(
+            final Key idx, final Supplier<Parser<T>> parser
+        ) {
             return this.storage.exists(idx)
                 .thenCompose(
                     exists -> {
-                        CompletionStage<Map<String, Set<String>>> res;
+                        final Parser<T> prs = parser.get();
+                        final CompletionStage<T> res;
                         if (exists) {
-                            try {
-                                final String prefix = "index-";
-                                final Path tmp = Files.createTempDirectory(prefix);
-                                final Path file = Files.createTempFile(tmp, prefix, ".yaml");
-                                res = this.storage.value(idx)
-                                    .thenCompose(
-                                        cont -> new FileStorage(tmp).save(
-                                            new Key.From(file.getFileName().toString()), cont
-                                        )
-                                    ).thenApply(ignore -> WithBreaks.versionsByPckgs(file))
-                                    .thenApply(
-                                        pckgs -> {
-                                            FileUtils.deleteQuietly(tmp.toFile());
-                                            return pckgs;
+                            res = this.storage.value(idx).thenCompose(
+                                cont -> {
+                                    final CompletableFuture<T> result;
+                                    result = new CompletableFuture<>();
+                                    final SplitByBreaks lines = new SplitByBreaks(prs);
+                                    Flowable.fromPublisher(cont).subscribe(
+                                        lines::accept,
+                                        result::completeExceptionally,
+                                        () -> {
+                                            lines.close();
+                                            result.complete(prs.result());
                                         }
                                     );
-                            } catch (final IOException exc) {
-                                res = new FailedCompletionStage<>(exc);
-                            }
+                                    return result;
+                                }
+                            );
                         } else {
-                            res = CompletableFuture.completedFuture(new HashMap<>());
+                            res = CompletableFuture.completedFuture(prs.result());
                         }
                         return res;
                     }
@@ -130,62 +145,301 @@ public interface Index {
         }
 
         /**
-         * Obtains last position of space from beginning before meeting any character.
-         * @param line Text line
-         * @return Last position of space from beginning before meeting any character.
+         * Parser of index file which accepts lines one by one.
+         * @param <T> Type of parsed result
+         * @since 0.3
          */
-        private static int lastPosOfSpaceInBegin(final String line) {
-            return line.length() - line.replaceAll("^\\s*", "").length();
+        private interface Parser<T> extends Consumer<IndexLine> {
+            /**
+             * Obtains result of parsing of accepted lines.
+             * @return Parsed result.
+             */
+            T result();
         }
 
         /**
-         * Parses index file and extracts versions for packages. The general idea of this parser
-         * is next. All info about charts is located in `entries:` section. When we enter
+         * Parser of index file which extracts versions for packages. The general idea of this
+         * parser is next. All info about charts is located in `entries:` section. When we enter
          * in this section (e. g. read a line which is equal to `entries`), we started to
          * search a string which ends with colon and has required indent (usually it is
          * equal to 2). This string represents chart name. We've read such string, we
          * started to read info about saved versions for this chart. When we meet
          * a line which starts with `version:`, the version in map by chart name as key
          * is added.
-         * @param file Path to file
-         * @return Parsed versions of packages from index file.
+         * @since 0.3
+         */
+        private static final class Versions implements Parser<Map<String, Set<String>>> {
+            /**
+             * Parsed versions of packages.
+             */
+            private final Map<String, Set<String>> vrns = new HashMap<>();
+
+            /**
+             * Are we in `entries:` section?
+             */
+            private boolean entrs;
+
+            /**
+             * Name of current chart.
+             */
+            private String name;
+
+            /**
+             * Indent of chart names.
+             */
+            private int indent = 2;
+
+            @Override
+            public void accept(final IndexLine line) {
+                if (!this.entrs) {
+                    this.entrs = line.kind() == IndexLine.Kind.ENTRIES;
+                } else if (line.kind() == IndexLine.Kind.CHART) {
+                    if (this.name == null) {
+                        this.indent = line.indent();
+                    }
+                    if (line.indent() == this.indent) {
+                        this.name = line.key();
+                        this.vrns.put(this.name, new HashSet<>());
+                    }
+                } else if (line.kind() == IndexLine.Kind.VERSION && this.name != null) {
+                    this.vrns.get(this.name).add(line.value());
+                }
+            }
+
+            @Override
+            public Map<String, Set<String>> result() {
+                return this.vrns;
+            }
+        }
+
+        /**
+         * Parser of index file which extracts urls of archives for each version of packages.
+         * It walks through `entries:` section in the same way as {@link Versions}. Every
+         * line which starts with a dash at the indent of the first item of chart begins
+         * a new version entry. Only fields of the entry itself are taken into account,
+         * so nested `version:` fields (e.g. of dependencies) are skipped. Items of the list
+         * under `urls:` key are collected until a line with smaller indent is met.
+         * @since 0.3
+         * @checkstyle ExecutableStatementCountCheck (100 lines)
          */
-        @SuppressWarnings("PMD.AssignmentInOperand")
-        private static Map<String, Set<String>> versionsByPckgs(final Path file) {
-            try (
-                BufferedReader br = new BufferedReader(
-                    new InputStreamReader(Files.newInputStream(file))
-                )
-            ) {
-                String line;
-                boolean entrs = false;
-                String name = null;
-                int indent = 2;
-                final Map<String, Set<String>> vrns = new HashMap<>();
-                while ((line = br.readLine()) != null) {
-                    final String trimmed = line.trim();
-                    if (!entrs) {
-                        entrs = trimmed.equals(WithBreaks.ENTRS);
+        @SuppressWarnings("PMD.NPathComplexity")
+        private static final class Archives
+            implements Parser<Map<String, Map<String, Set<String>>>> {
+            /**
+             * Parsed urls by versions of packages.
+             */
+            private final Map<String, Map<String, Set<String>>> res = new HashMap<>();
+
+            /**
+             * Are we in `entries:` section?
+             */
+            private boolean entrs;
+
+            /**
+             * Name of current chart.
+             */
+            private String name;
+
+            /**
+             * Version of current entry.
+             */
+            private String vers;
+
+            /**
+             * Urls of current entry.
+             */
+            private Set<String> urls = new HashSet<>();
+
+            /**
+             * Indent of chart names.
+             */
+            private int indent = 2;
+
+            /**
+             * Indent of items of chart.
+             */
+            private int itemindent = -1;
+
+            /**
+             * Indent of `urls:` key of current entry.
+             */
+            private int urlsindent = -1;
+
+            /**
+             * Indent of fields of current entry.
+             */
+            private int fieldindent = -1;
+
+            @Override
+            @SuppressWarnings("PMD.ConfusingTernary")
+            public void accept(final IndexLine line) {
+                final int pos = line.indent();
+                if (!this.entrs) {
+                    this.entrs = line.kind() == IndexLine.Kind.ENTRIES;
+                } else if (line.kind() != IndexLine.Kind.EMPTY) {
+                    final boolean chart = line.kind() == IndexLine.Kind.CHART
+                        && (this.name == null || pos == this.indent);
+                    final boolean item = line.dash()
+                        && (this.itemindent == -1 && this.name != null || pos == this.itemindent);
+                    if (pos == 0 || chart || item) {
+                        this.flush();
                     }
-                    if (new ParsedChartName(line).valid()) {
-                        if (name == null) {
-                            indent = WithBreaks.lastPosOfSpaceInBegin(line);
+                    if (pos == 0) {
+                        this.entrs = false;
+                    } else if (chart) {
+                        this.indent = pos;
+                        this.name = line.key();
+                        this.itemindent = -1;
+                        this.res.putIfAbsent(this.name, new HashMap<>());
+                    } else if (item) {
+                        this.itemindent = pos;
+                        if (line.hasKey() || line.hasValue()) {
+                            this.fieldindent = line.keyPosition();
+                            this.field(line);
+                        } else {
+                            this.fieldindent = -1;
                         }
-                        if (WithBreaks.lastPosOfSpaceInBegin(line) == indent) {
-                            name = trimmed.replace(":", "");
-                            vrns.put(name, new HashSet<>());
+                    } else {
+                        if (this.fieldindent == -1) {
+                            this.fieldindent = pos;
                         }
+                        this.field(line);
                     }
-                    if (entrs && trimmed.startsWith(WithBreaks.VRSNS)) {
-                        vrns.get(name).add(
-                            line.replace(WithBreaks.VRSNS, "").trim()
-                        );
+                }
+            }
+
+            @Override
+            public Map<String, Map<String, Set<String>>> result() {
+                this.flush();
+                return this.res;
+            }
+
+            /**
+             * Processes field of the entry.
+             * @param line Line with field of the entry or item of list in the field
+             */
+            private void field(final IndexLine line) {
+                final boolean url = this.urlsindent != -1 && line.dash() && !line.hasKey()
+                    && line.indent() >= this.urlsindent;
+                if (url) {
+                    this.urls.add(line.value());
+                } else {
+                    this.urlsindent = -1;
+                    if (line.keyPosition() == this.fieldindent) {
+                        if (line.kind() == IndexLine.Kind.VERSION) {
+                            this.vers = line.value();
+                        } else if (line.keyIs(WithBreaks.URLS) && !line.hasValue()) {
+                            this.urlsindent = line.keyPosition();
+                        }
                     }
                 }
-                return vrns;
-            } catch (final IOException exc) {
-                throw new ArtipieIOException(exc);
             }
+
+            /**
+             * Puts parsed urls of current entry to result and starts a new entry.
+             */
+            private void flush() {
+                if (this.name != null && this.vers != null) {
+                    this.res.computeIfAbsent(this.name, nothing -> new HashMap<>())
+                        .put(this.vers, this.urls);
+                }
+                this.vers = null;
+                this.urls = new HashSet<>();
+                this.urlsindent = -1;
+            }
+        }
+    }
+
+    /**
+     * Index which obtains versions of packages from binary sidecar {@link BinaryIndex}
+     * without parsing of index file. Sidecar is used only if it was built for the
+     * index file with the same digest, otherwise origin index is used.
+     * @since 0.3
+     */
+    final class WithSidecar implements Index {
+        /**
+         * Storage with sidecar.
+         */
+        private final Storage storage;
+
+        /**
+         * Key to sidecar.
+         */
+        private final Key sidecar;
+
+        /**
+         * Digest of index file.
+         */
+        private final String digest;
+
+        /**
+         * Origin index.
+         */
+        private final Index origin;
+
+        /**
+         * Ctor.
+         * @param storage Storage with sidecar
+         * @param sidecar Key to sidecar
+         * @param digest Digest (SHA-256) of index file
+         * @param origin Origin index
+         * @checkstyle ParameterNumberCheck (5 lines)
+         */
+        public WithSidecar(
+            final Storage storage, final Key sidecar, final String digest, final Index origin
+        ) {
+            this.storage = storage;
+            this.sidecar = sidecar;
+            this.digest = digest;
+            this.origin = origin;
+        }
+
+        @Override
+        public CompletionStage<Map<String, Set<String>>> versionsByPackages(final Key idx) {
+            return this.sidecar().thenCompose(
+                bin -> bin.<CompletionStage<Map<String, Set<String>>>>map(
+                    valid -> CompletableFuture.completedFuture(valid.versions())
+                ).orElseGet(() -> this.origin.versionsByPackages(idx))
+            );
+        }
+
+        @Override
+        public CompletionStage<Map<String, Map<String, Set<String>>>> archivesByPackages(
+            final Key idx
+        ) {
+            return this.origin.archivesByPackages(idx);
+        }
+
+        /**
+         * Reads sidecar and checks that it corresponds to index file.
+         * @return Sidecar if it exists and corresponds to index file, empty otherwise.
+         */
+        public CompletionStage<Optional<BinaryIndex>> sidecar() {
+            return this.storage.exists(this.sidecar).thenCompose(
+                exists -> {
+                    final CompletionStage<Optional<BinaryIndex>> res;
+                    if (exists) {
+                        res = this.storage.value(this.sidecar)
+                            .thenApply(PublisherAs::new)
+                            .thenCompose(PublisherAs::bytes)
+                            .thenApply(
+                                bytes -> {
+                                    Optional<BinaryIndex> bin;
+                                    try {
+                                        bin = Optional.of(new BinaryIndex(bytes))
+                                            .filter(idx -> idx.digest().equals(this.digest));
+                                    } catch (final IllegalStateException | ArtipieException exc) {
+                                        bin = Optional.empty();
+                                    }
+                                    return bin;
+                                }
+                            );
+                    } else {
+                        res = CompletableFuture.completedFuture(Optional.empty());
+                    }
+                    return res;
+                }
+            );
         }
     }
 }
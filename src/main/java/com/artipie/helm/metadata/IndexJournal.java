@@ -0,0 +1,489 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.metadata;
+
+import com.artipie.asto.Content;
+import com.artipie.asto.Key;
+import com.artipie.asto.Storage;
+import com.artipie.asto.ext.PublisherAs;
+import com.artipie.helm.ChartYaml;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+
+/**
+ * Journal of changes of index file. Each change is saved as a separate small record
+ * by key `.helm/journal/sequence-uuid.yaml` relatively to the prefix of index file,
+ * so the change does not require rewriting of the index file. Records are ordered
+ * by their keys. Record contains the operation and entries of charts, e.g.:
+ * <pre>
+ * op: add
+ * entries:
+ *   ark:
+ *   - apiVersion: v1
+ *     version: 0.1.0
+ * </pre>
+ * For deletion entries contain only versions.
+ * @since 0.3
+ * @checkstyle ClassDataAbstractionCouplingCheck (500 lines)
+ */
+@SuppressWarnings("unchecked")
+public final class IndexJournal {
+    /**
+     * Key to directory with records relatively to the prefix of index file.
+     */
+    public static final Key JOURNAL = new Key.From(".helm", "journal");
+
+    /**
+     * Sequence for ordering of records, it is close to the current time
+     * in microseconds and strictly increases within the process.
+     */
+    private static final AtomicLong SEQ = new AtomicLong();
+
+    /**
+     * Operation key.
+     */
+    private static final String OP = "op";
+
+    /**
+     * Entries key.
+     */
+    private static final String ENTRS = "entries";
+
+    /**
+     * Version key.
+     */
+    private static final String VRSN = "version";
+
+    /**
+     * Add operation.
+     */
+    private static final String ADD = "add";
+
+    /**
+     * Delete operation.
+     */
+    private static final String DELETE = "delete";
+
+    /**
+     * Storage.
+     */
+    private final Storage storage;
+
+    /**
+     * Prefix of index file.
+     */
+    private final Key prefix;
+
+    /**
+     * Ctor.
+     * @param storage Storage
+     * @param prefix Prefix of index file
+     */
+    public IndexJournal(final Storage storage, final Key prefix) {
+        this.storage = storage;
+        this.prefix = prefix;
+    }
+
+    /**
+     * Appends record about added charts.
+     * @param pckgs Packages with versions and chart yaml with metadata for each package
+     * @return Result of completion.
+     */
+    public CompletionStage<Void> add(final Map<String, Set<Pair<String, ChartYaml>>> pckgs) {
+        final Map<String, Object> entries = new HashMap<>();
+        pckgs.forEach(
+            (name, pairs) -> entries.put(
+                name,
+                pairs.stream()
+                    .map(pair -> new HashMap<>(pair.getRight().fields()))
+                    .collect(Collectors.toList())
+            )
+        );
+        return this.append(IndexJournal.ADD, entries);
+    }
+
+    /**
+     * Appends record about deleted versions of charts.
+     * @param vrsns Versions of charts
+     * @return Result of completion.
+     */
+    public CompletionStage<Void> delete(final Map<String, Set<String>> vrsns) {
+        final Map<String, Object> entries = new HashMap<>();
+        vrsns.forEach(
+            (name, vers) -> entries.put(
+                name,
+                vers.stream().map(
+                    ver -> {
+                        final Map<String, Object> entry = new HashMap<>();
+                        entry.put(IndexJournal.VRSN, ver);
+                        return entry;
+                    }
+                ).collect(Collectors.toList())
+            )
+        );
+        return this.append(IndexJournal.DELETE, entries);
+    }
+
+    /**
+     * Obtains keys of records in order of their appending.
+     * @return Keys of records.
+     */
+    public CompletionStage<List<Key>> records() {
+        return this.storage.list(new Key.From(this.prefix, IndexJournal.JOURNAL)).thenApply(
+            keys -> keys.stream().sorted(Key.CMP_STRING).collect(Collectors.toList())
+        );
+    }
+
+    /**
+     * Folds records into changes of index. Records are read one by one in passed order.
+     * @param records Keys of records
+     * @return Changes from all records.
+     */
+    public CompletionStage<Changes> changes(final List<Key> records) {
+        final Changes changes = new Changes();
+        CompletableFuture<Void> res = CompletableFuture.allOf();
+        for (final Key key : records) {
+            res = res.thenCompose(
+                noth -> this.storage.value(key)
+                    .thenApply(PublisherAs::new)
+                    .thenCompose(PublisherAs::bytes)
+                    .thenAccept(
+                        bytes -> changes.accept(
+                            new Yaml().load(new String(bytes, StandardCharsets.UTF_8))
+                        )
+                    )
+            );
+        }
+        return res.thenApply(noth -> changes);
+    }
+
+    /**
+     * Removes records.
+     * @param records Keys of records
+     * @return Result of completion.
+     */
+    public CompletionStage<Void> remove(final Collection<Key> records) {
+        return CompletableFuture.allOf(
+            records.stream()
+                .map(this.storage::delete)
+                .toArray(CompletableFuture[]::new)
+        );
+    }
+
+    /**
+     * Saves record.
+     * @param oper Operation
+     * @param entries Entries
+     * @return Result of completion.
+     */
+    private CompletionStage<Void> append(final String oper, final Map<String, Object> entries) {
+        final Map<String, Object> record = new LinkedHashMap<>();
+        record.put(IndexJournal.OP, oper);
+        record.put(IndexJournal.ENTRS, entries);
+        final DumperOptions options = new DumperOptions();
+        options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+        final long seq = IndexJournal.SEQ.updateAndGet(
+            // @checkstyle MagicNumberCheck (1 line)
+            prev -> Math.max(prev + 1, System.currentTimeMillis() * 1000)
+        );
+        return this.storage.save(
+            new Key.From(
+                new Key.From(this.prefix, IndexJournal.JOURNAL),
+                String.format("%019d-%s.yaml", seq, UUID.randomUUID().toString())
+            ),
+            new Content.From(new Yaml(options).dump(record).getBytes(StandardCharsets.UTF_8))
+        );
+    }
+
+    /**
+     * Net changes of index from the sequence of records. The last operation
+     * for each version of chart wins.
+     * @since 0.3
+     */
+    public static final class Changes {
+        /**
+         * Added entries by versions and chart names.
+         */
+        private final Map<String, Map<String, Map<String, Object>>> added;
+
+        /**
+         * Deleted versions by chart names.
+         */
+        private final Map<String, Set<String>> deleted;
+
+        /**
+         * Ctor.
+         */
+        Changes() {
+            this.added = new LinkedHashMap<>();
+            this.deleted = new LinkedHashMap<>();
+        }
+
+        /**
+         * Are there no changes?
+         * @return True if there are no changes.
+         */
+        public boolean isEmpty() {
+            return this.added.isEmpty() && this.deleted.isEmpty();
+        }
+
+        /**
+         * Obtains added packages.
+         * @return Packages with versions and chart yaml for each package.
+         */
+        public Map<String, Set<Pair<String, ChartYaml>>> added() {
+            final Map<String, Set<Pair<String, ChartYaml>>> res = new HashMap<>();
+            this.added.forEach(
+                (name, vrsns) -> res.put(
+                    name,
+                    vrsns.entrySet().stream()
+                        .map(
+                            entry -> new ImmutablePair<>(
+                                entry.getKey(), new ChartYaml(new HashMap<>(entry.getValue()))
+                            )
+                        ).collect(Collectors.toSet())
+                )
+            );
+            return res;
+        }
+
+        /**
+         * Obtains versions which should be removed from the index. These are deleted
+         * versions and versions which were added again if they exist in the index.
+         * @param existed Versions of charts in the index
+         * @return Versions which should be removed from the index.
+         */
+        public Map<String, Set<String>> removed(final Map<String, Set<String>> existed) {
+            final Map<String, Set<String>> res = new HashMap<>();
+            final Map<String, Set<String>> touched = new HashMap<>();
+            this.deleted.forEach(
+                (name, vrsns) -> touched.computeIfAbsent(name, nothing -> new HashSet<>())
+                    .addAll(vrsns)
+            );
+            this.added.forEach(
+                (name, vrsns) -> touched.computeIfAbsent(name, nothing -> new HashSet<>())
+                    .addAll(vrsns.keySet())
+            );
+            touched.forEach(
+                (name, vrsns) -> {
+                    final Set<String> present = new HashSet<>(vrsns);
+                    present.retainAll(existed.getOrDefault(name, new HashSet<>(0)));
+                    if (!present.isEmpty()) {
+                        res.put(name, present);
+                    }
+                }
+            );
+            return res;
+        }
+
+        /**
+         * Applies changes to versions of charts from the index.
+         * @param existed Versions of charts in the index
+         * @return Versions of charts with changes applied.
+         */
+        public Map<String, Set<String>> versions(final Map<String, Set<String>> existed) {
+            final Map<String, Set<String>> res = new HashMap<>();
+            existed.forEach((name, vrsns) -> res.put(name, new HashSet<>(vrsns)));
+            this.deleted.forEach(
+                (name, vrsns) -> res.computeIfPresent(
+                    name, (chart, present) -> Changes.without(present, vrsns)
+                )
+            );
+            this.added.forEach(
+                (name, vrsns) -> res.computeIfAbsent(name, nothing -> new HashSet<>())
+                    .addAll(vrsns.keySet())
+            );
+            return res;
+        }
+
+        /**
+         * Applies changes to urls of archives from the index.
+         * @param existed Urls of archives by versions by chart names in the index
+         * @return Urls of archives by versions by chart names with changes applied.
+         */
+        public Map<String, Map<String, Set<String>>> archives(
+            final Map<String, Map<String, Set<String>>> existed
+        ) {
+            final Map<String, Map<String, Set<String>>> res = new HashMap<>();
+            existed.forEach((name, vrsns) -> res.put(name, new HashMap<>(vrsns)));
+            this.deleted.forEach(
+                (name, vrsns) -> res.computeIfPresent(
+                    name,
+                    (chart, present) -> Changes.without(present.keySet(), vrsns, present)
+                )
+            );
+            this.added.forEach(
+                (name, vrsns) -> vrsns.forEach(
+                    (vers, entry) -> res.computeIfAbsent(name, nothing -> new HashMap<>())
+                        .put(vers, Changes.urls(entry))
+                )
+            );
+            return res;
+        }
+
+        /**
+         * Applies changes to the parsed index.
+         * @param index Index mapping
+         */
+        public void overlay(final IndexYamlMapping index) {
+            this.deleted.forEach(
+                (name, vrsns) -> {
+                    if (index.entries().containsKey(name)) {
+                        final List<Map<String, Object>> entries = index.byChart(name);
+                        entries.removeIf(entry -> vrsns.contains(entry.get(IndexJournal.VRSN)));
+                        if (entries.isEmpty()) {
+                            index.entries().remove(name);
+                        }
+                    }
+                }
+            );
+            this.added.forEach(
+                (name, vrsns) -> index.addChartVersions(
+                    name,
+                    vrsns.values().stream()
+                        .map(HashMap::new)
+                        .collect(Collectors.toCollection(ArrayList::new))
+                )
+            );
+        }
+
+        /**
+         * Accepts next record.
+         * @param record Parsed record
+         */
+        private void accept(final Map<String, Object> record) {
+            final boolean add = IndexJournal.ADD.equals(record.get(IndexJournal.OP));
+            final Map<String, List<Map<String, Object>>> entries;
+            entries = (Map<String, List<Map<String, Object>>>) record.get(IndexJournal.ENTRS);
+            entries.forEach(
+                (name, vrsns) -> vrsns.forEach(
+                    entry -> {
+                        final String vers = String.valueOf(entry.get(IndexJournal.VRSN));
+                        if (add) {
+                            this.added.computeIfAbsent(name, nothing -> new LinkedHashMap<>())
+                                .put(vers, entry);
+                            this.deleted.computeIfPresent(
+                                name, (chart, dltd) -> Changes.without(dltd, vers)
+                            );
+                        } else {
+                            this.deleted.computeIfAbsent(name, nothing -> new HashSet<>())
+                                .add(vers);
+                            this.added.computeIfPresent(
+                                name, (chart, addd) -> Changes.without(addd.keySet(), vers, addd)
+                            );
+                        }
+                    }
+                )
+            );
+        }
+
+        /**
+         * Obtains urls of archive from the entry of version.
+         * @param entry Entry of version
+         * @return Urls of archive.
+         */
+        private static Set<String> urls(final Map<String, Object> entry) {
+            final Object urls = entry.get("urls");
+            final Set<String> res = new HashSet<>();
+            if (urls instanceof Collection) {
+                ((Collection<Object>) urls).forEach(url -> res.add(String.valueOf(url)));
+            }
+            return res;
+        }
+
+        /**
+         * Removes versions from collection.
+         * @param vrsns Versions
+         * @param removed Versions which should be removed
+         * @return Versions or null if there are no versions anymore.
+         */
+        private static Set<String> without(final Set<String> vrsns, final Set<String> removed) {
+            return Changes.without(vrsns, removed, vrsns);
+        }
+
+        /**
+         * Removes versions from collection which is backed by some value.
+         * @param vrsns Versions
+         * @param removed Versions which should be removed
+         * @param value Value which is returned if there are remained versions
+         * @param <T> Type of value
+         * @return Value or null if there are no versions anymore.
+         */
+        @SuppressWarnings("PMD.ReturnEmptyCollectionRatherThanNull")
+        private static <T> T without(
+            final Set<String> vrsns, final Set<String> removed, final T value
+        ) {
+            vrsns.removeAll(removed);
+            T res = value;
+            if (vrsns.isEmpty()) {
+                res = null;
+            }
+            return res;
+        }
+
+        /**
+         * Removes version from collection.
+         * @param vrsns Versions
+         * @param vers Version which should be removed
+         * @return Versions or null if there are no versions anymore.
+         */
+        private static Set<String> without(final Set<String> vrsns, final String vers) {
+            return Changes.without(vrsns, vers, vrsns);
+        }
+
+        /**
+         * Removes version from collection which is backed by some value.
+         * @param vrsns Versions
+         * @param vers Version which should be removed
+         * @param value Value which is returned if there are remained versions
+         * @param <T> Type of value
+         * @return Value or null if there are no versions anymore.
+         */
+        @SuppressWarnings("PMD.ReturnEmptyCollectionRatherThanNull")
+        private static <T> T without(final Set<String> vrsns, final String vers, final T value) {
+            vrsns.remove(vers);
+            T res = value;
+            if (vrsns.isEmpty()) {
+                res = null;
+            }
+            return res;
+        }
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.metadata;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tokenizer of a line of index file. It works on UTF-8 bytes of the line and
+ * creates no objects while tokenizing, so the same instance is reused for all lines
+ * of the index. The line is split into indent, optional leading dash of list item,
+ * key and value. Strings are created only on demand by {@link #key()},
+ * {@link #value()} and {@link #text()}.
+ * @since 0.3
+ */
+public final class IndexLine {
+    /**
+     * Entries.
+     */
+    private static final String ENTRS = "entries";
+
+    /**
+     * Version.
+     */
+    private static final String VRSN = "version";
+
+    /**
+     * Bytes of the line.
+     */
+    private byte[] bytes;
+
+    /**
+     * Length of the line without trailing carriage return.
+     */
+    private int raw;
+
+    /**
+     * Length of the line without trailing spaces and carriage return.
+     */
+    private int len;
+
+    /**
+     * Amount of spaces at the beginning of the line.
+     */
+    private int indnt;
+
+    /**
+     * Does the line start with dash of list item?
+     */
+    private boolean dsh;
+
+    /**
+     * Position of the beginning of the key.
+     */
+    private int keystart;
+
+    /**
+     * Position of the end of the key, it is equal to the beginning in case of absence.
+     */
+    private int keyend;
+
+    /**
+     * Position of the beginning of the value.
+     */
+    private int valstart;
+
+    /**
+     * Kind of the line.
+     */
+    private Kind knd;
+
+    /**
+     * Ctor.
+     */
+    public IndexLine() {
+        this.bytes = new byte[0];
+        this.knd = Kind.EMPTY;
+    }
+
+    /**
+     * Tokenizes the line. Passed array is not copied and should not be changed
+     * while this line is used.
+     * @param line Bytes of the line without line break
+     * @param length Length of the line
+     * @return Itself.
+     * @checkstyle CyclomaticComplexityCheck (50 lines)
+     */
+    @SuppressWarnings("PMD.CyclomaticComplexity")
+    public IndexLine parse(final byte[] line, final int length) {
+        this.bytes = line;
+        int end = length;
+        if (end > 0 && line[end - 1] == '\r') {
+            end -= 1;
+        }
+        this.raw = end;
+        while (end > 0 && IndexLine.blank(line[end - 1])) {
+            end -= 1;
+        }
+        this.len = end;
+        int pos = 0;
+        while (pos < end && IndexLine.blank(line[pos])) {
+            pos += 1;
+        }
+        this.indnt = pos;
+        this.dsh = pos < end && line[pos] == '-' && (pos + 1 == end || line[pos + 1] == ' ');
+        if (this.dsh) {
+            pos += 1;
+            while (pos < end && line[pos] == ' ') {
+                pos += 1;
+            }
+        }
+        this.keystart = pos;
+        this.keyend = pos;
+        this.valstart = pos;
+        for (int idx = pos; idx < end; idx += 1) {
+            if (line[idx] == ':' && (idx + 1 == end || line[idx + 1] == ' ')) {
+                this.keyend = idx;
+                this.valstart = idx + 1;
+                while (this.valstart < end && line[this.valstart] == ' ') {
+                    this.valstart += 1;
+                }
+                break;
+            }
+        }
+        this.knd = this.kindOf();
+        return this;
+    }
+
+    /**
+     * Obtains kind of the line.
+     * @return Kind of the line.
+     */
+    public Kind kind() {
+        return this.knd;
+    }
+
+    /**
+     * Obtains indent of the line.
+     * @return Amount of spaces at the beginning of the line.
+     */
+    public int indent() {
+        return this.indnt;
+    }
+
+    /**
+     * Does the line start with dash of list item?
+     * @return True if the line is an item of list.
+     */
+    public boolean dash() {
+        return this.dsh;
+    }
+
+    /**
+     * Obtains position of the key in the line. For list items it is the position
+     * after the dash.
+     * @return Position of the key.
+     */
+    public int keyPosition() {
+        return this.keystart;
+    }
+
+    /**
+     * Does the line contain a key?
+     * @return True if the line contains a key.
+     */
+    public boolean hasKey() {
+        return this.keyend > this.keystart;
+    }
+
+    /**
+     * Does the line contain a value? For list items without key the value is
+     * the item itself.
+     * @return True if the line contains a value.
+     */
+    public boolean hasValue() {
+        return this.valstart < this.len;
+    }
+
+    /**
+     * Checks that the key of the line is equal to passed one without creating a string.
+     * @param key Expected key, it should contain ASCII symbols only
+     * @return True if the key of the line is equal to passed one.
+     */
+    public boolean keyIs(final String key) {
+        boolean res = this.keyend - this.keystart == key.length();
+        for (int idx = 0; res && idx < key.length(); idx += 1) {
+            res = this.bytes[this.keystart + idx] == key.charAt(idx);
+        }
+        return res;
+    }
+
+    /**
+     * Obtains key of the line.
+     * @return Key of the line, empty string in case of absence.
+     */
+    public String key() {
+        return new String(
+            this.bytes, this.keystart, this.keyend - this.keystart, StandardCharsets.UTF_8
+        );
+    }
+
+    /**
+     * Obtains value of the line.
+     * @return Value of the line, empty string in case of absence.
+     */
+    public String value() {
+        return new String(
+            this.bytes, this.valstart, this.len - this.valstart, StandardCharsets.UTF_8
+        );
+    }
+
+    /**
+     * Obtains the whole line without trailing spaces.
+     * @return Text of the line.
+     */
+    public String text() {
+        return new String(this.bytes, 0, this.len, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Obtains bytes of the line. Only the first {@link #length()} bytes belong to the line.
+     * @return Bytes of the line.
+     */
+    byte[] bytes() {
+        return this.bytes;
+    }
+
+    /**
+     * Obtains length of the line without trailing carriage return.
+     * @return Length of the line.
+     */
+    int length() {
+        return this.raw;
+    }
+
+    /**
+     * Determines kind of the tokenized line.
+     * @return Kind of the line.
+     */
+    private Kind kindOf() {
+        final Kind res;
+        if (this.len == this.indnt) {
+            res = Kind.EMPTY;
+        } else if (
+            this.indnt == 0 && !this.dsh && !this.hasValue() && this.keyIs(IndexLine.ENTRS)
+        ) {
+            res = Kind.ENTRIES;
+        } else if (this.keyIs(IndexLine.VRSN)) {
+            res = Kind.VERSION;
+        } else if (this.dsh) {
+            res = Kind.ITEM;
+        } else if (this.hasKey() && !this.hasValue()) {
+            res = Kind.CHART;
+        } else {
+            res = Kind.OTHER;
+        }
+        return res;
+    }
+
+    /**
+     * Is the byte a space or a control symbol?
+     * @param sym Byte
+     * @return True if the byte is blank.
+     */
+    private static boolean blank(final byte sym) {
+        return sym == ' ' || sym == '\t' || sym == '\r';
+    }
+
+    /**
+     * Kind of the line of index file.
+     * @since 0.3
+     */
+    public enum Kind {
+        /**
+         * Line which contains spaces only.
+         */
+        EMPTY,
+
+        /**
+         * Marker of `entries:` section.
+         */
+        ENTRIES,
+
+        /**
+         * Line with `version:` key, it can be an item of list.
+         */
+        VERSION,
+
+        /**
+         * Item of list which starts with dash.
+         */
+        ITEM,
+
+        /**
+         * Key without value, e.g. chart name. It is a chart name if it is located
+         * in `entries:` section and has indent of chart names.
+         */
+        CHART,
+
+        /**
+         * Any other line.
+         */
+        OTHER
+    }
+}
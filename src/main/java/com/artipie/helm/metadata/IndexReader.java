@@ -0,0 +1,147 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.metadata;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reader of index file line by line. Bytes of lines are read into reusable buffer
+ * and tokenized by {@link IndexLine}, so no objects are created for read lines.
+ * @since 0.3
+ */
+public final class IndexReader implements Closeable {
+    /**
+     * Size of read chunk.
+     */
+    private static final int CHUNK = 8 * 1024;
+
+    /**
+     * Input stream.
+     */
+    private final InputStream input;
+
+    /**
+     * Tokenizer of the current line.
+     */
+    private final IndexLine current;
+
+    /**
+     * Read chunk.
+     */
+    private final byte[] chunk;
+
+    /**
+     * Position in read chunk.
+     */
+    private int pos;
+
+    /**
+     * Amount of read bytes in chunk.
+     */
+    private int limit;
+
+    /**
+     * Bytes of the current line.
+     */
+    private byte[] line;
+
+    /**
+     * Amount of bytes consumed from stream.
+     */
+    private long consumed;
+
+    /**
+     * Position of the beginning of the current line in stream.
+     */
+    private long start;
+
+    /**
+     * Ctor.
+     * @param input Input stream with index file
+     */
+    public IndexReader(final InputStream input) {
+        this.input = input;
+        this.current = new IndexLine();
+        this.chunk = new byte[IndexReader.CHUNK];
+        this.line = new byte[256];
+    }
+
+    /**
+     * Reads next line. Returned instance is the same for all lines and is valid
+     * until the next call of this method.
+     * @return Next line or null if the end of stream is reached.
+     * @throws IOException In case of error during reading
+     */
+    public IndexLine next() throws IOException {
+        this.start = this.consumed;
+        int len = 0;
+        boolean found = false;
+        while (!found) {
+            if (this.pos == this.limit) {
+                this.limit = this.input.read(this.chunk);
+                this.pos = 0;
+                if (this.limit <= 0) {
+                    this.limit = 0;
+                    break;
+                }
+            }
+            final byte next = this.chunk[this.pos];
+            this.pos += 1;
+            this.consumed += 1;
+            if (next == '\n') {
+                found = true;
+            } else {
+                if (len == this.line.length) {
+                    this.line = Arrays.copyOf(this.line, len * 2);
+                }
+                this.line[len] = next;
+                len += 1;
+            }
+        }
+        final IndexLine res;
+        if (found || len > 0) {
+            res = this.current.parse(this.line, len);
+        } else {
+            res = null;
+        }
+        return res;
+    }
+
+    /**
+     * Obtains position of the beginning of the line which was read last.
+     * After the end of stream it is equal to the amount of read bytes.
+     * @return Position in bytes from the beginning of stream.
+     */
+    public long position() {
+        return this.start;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.input.close();
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.metadata;
+
+import com.artipie.asto.Key;
+import com.artipie.asto.Storage;
+import com.artipie.helm.Helm;
+import hu.akarnokd.rxjava2.interop.CompletableInterop;
+import io.reactivex.Flowable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Coordinator of updates of index files which groups concurrent additions
+ * of charts. Additions and deletions for the same index file are queued in the order
+ * of arrival. Additions queued so far are applied in one rewrite of the index file by
+ * {@link Helm#add(Collection, Key)}, deletion is applied by its own rewrite.
+ * If the grouped rewrite failed, additions are applied one by one, so only
+ * additions which can not be applied fail. Only one rewrite of each index file is
+ * in progress at a time, so concurrent updates do not lose entries. Updates of
+ * fragments of {@link ShardedIndex} are queued by keys of fragments in the same way,
+ * each of them is applied by its own rewrite of the fragment.
+ * @since 0.3
+ */
+public final class IndexUpdates {
+    /**
+     * Helm repository.
+     */
+    private final Helm.Asto helm;
+
+    /**
+     * Queues of pending updates by prefixes of index files.
+     */
+    private final Map<Key, Queue> queues;
+
+    /**
+     * Queues of pending updates by keys of fragments of sharded index.
+     */
+    private final Map<Key, Queue> fragments;
+
+    /**
+     * Ctor.
+     * @param storage Storage
+     */
+    public IndexUpdates(final Storage storage) {
+        this(new Helm.Asto(storage));
+    }
+
+    /**
+     * Ctor.
+     * @param helm Helm repository
+     */
+    public IndexUpdates(final Helm.Asto helm) {
+        this.helm = helm;
+        this.queues = new ConcurrentHashMap<>();
+        this.fragments = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Adds info about chart to index file.
+     * @param prefix Prefix of index file, i.e. key of repository
+     * @param chart Key of saved archive with chart
+     * @return Result of completion which completes after rewrite of index file
+     *  containing the chart.
+     */
+    public CompletionStage<Void> add(final Key prefix, final Key chart) {
+        return this.add(prefix, Collections.singletonList(chart));
+    }
+
+    /**
+     * Adds info about several charts to index file. All charts are applied
+     * in the same rewrite of index file.
+     * @param prefix Prefix of index file, i.e. key of repository
+     * @param charts Keys of saved archives with charts
+     * @return Result of completion which completes after rewrite of index file
+     *  containing the charts.
+     */
+    public CompletionStage<Void> add(final Key prefix, final Collection<Key> charts) {
+        final CompletionStage<Void> res;
+        if (charts.isEmpty()) {
+            res = CompletableFuture.allOf();
+        } else {
+            res = this.queue(prefix).add(new Update(charts, Optional.empty()));
+        }
+        return res;
+    }
+
+    /**
+     * Removes versions of charts from index file and their archives from storage
+     * by {@link Helm.Asto#deleteVersions(Map, Collection, Key)}.
+     * @param prefix Prefix of index file, i.e. key of repository
+     * @param versions Versions by names of charts which should be removed from index
+     * @param archives Keys of archives which should be removed from storage
+     * @return Result of completion which completes after rewrite of index file.
+     */
+    public CompletionStage<Void> delete(
+        final Key prefix, final Map<String, Set<String>> versions, final Collection<Key> archives
+    ) {
+        return this.queue(prefix).add(
+            new Update(
+                Collections.emptyList(),
+                Optional.of(() -> this.helm.deleteVersions(versions, archives, prefix))
+            )
+        );
+    }
+
+    /**
+     * Applies update which reads and rewrites index file by itself, e.g. deletion
+     * which selects versions and archives from the current index. The update is
+     * queued as deletion, so the index is not changed by other updates while
+     * the update is in progress.
+     * @param prefix Prefix of index file, i.e. key of repository
+     * @param update Update of index file with Helm repository
+     * @param <T> Type of result of update
+     * @return Result of update.
+     */
+    public <T> CompletionStage<T> exclusively(
+        final Key prefix, final Function<Helm.Asto, CompletionStage<T>> update
+    ) {
+        final AtomicReference<T> res = new AtomicReference<>();
+        return this.queue(prefix).add(
+            new Update(
+                Collections.emptyList(),
+                Optional.of(() -> update.apply(this.helm).thenAccept(res::set))
+            )
+        ).thenApply(noth -> res.get());
+    }
+
+    /**
+     * Applies update of fragment of sharded index after updates of the same fragment
+     * which were queued before, so read-modify-write of the fragment by concurrent
+     * updates does not lose versions.
+     * @param fragment Key of fragment
+     * @param update Update of fragment
+     * @return Result of completion which completes after the update was applied.
+     */
+    public CompletionStage<Void> fragment(
+        final Key fragment, final Supplier<CompletionStage<Void>> update
+    ) {
+        return this.fragments.computeIfAbsent(fragment, key -> new Queue(this.helm, key))
+            .add(new Update(Collections.emptyList(), Optional.of(update)));
+    }
+
+    /**
+     * Queue of index file.
+     * @param prefix Prefix of index file
+     * @return Queue of updates.
+     */
+    private Queue queue(final Key prefix) {
+        return this.queues.computeIfAbsent(prefix, key -> new Queue(this.helm, key));
+    }
+
+    /**
+     * Pending update of index file: addition of charts or deletion. Update of
+     * fragment of sharded index is queued as deletion, it is applied alone.
+     * @since 0.3
+     */
+    private static final class Update {
+        /**
+         * Keys of archives with added charts, empty for deletion.
+         */
+        private final Collection<Key> charts;
+
+        /**
+         * Deletion, empty for addition.
+         */
+        private final Optional<Supplier<CompletionStage<Void>>> deletion;
+
+        /**
+         * Result of update.
+         */
+        private final CompletableFuture<Void> result;
+
+        /**
+         * Ctor.
+         * @param charts Keys of archives with added charts, empty for deletion
+         * @param deletion Deletion, empty for addition
+         */
+        Update(
+            final Collection<Key> charts,
+            final Optional<Supplier<CompletionStage<Void>>> deletion
+        ) {
+            this.charts = charts;
+            this.deletion = deletion;
+            this.result = new CompletableFuture<>();
+        }
+
+        /**
+         * Completes update.
+         * @param thr Failure or null
+         */
+        void complete(final Throwable thr) {
+            if (thr == null) {
+                this.result.complete(null);
+            } else {
+                this.result.completeExceptionally(thr);
+            }
+        }
+    }
+
+    /**
+     * Queue of pending updates of one index file.
+     * @since 0.3
+     */
+    private static final class Queue {
+        /**
+         * Helm repository.
+         */
+        private final Helm helm;
+
+        /**
+         * Prefix of index file.
+         */
+        private final Key prefix;
+
+        /**
+         * Pending updates.
+         */
+        private final List<Update> pending;
+
+        /**
+         * Is rewrite of index file in progress?
+         */
+        private boolean running;
+
+        /**
+         * Ctor.
+         * @param helm Helm repository
+         * @param prefix Prefix of index file
+         */
+        Queue(final Helm helm, final Key prefix) {
+            this.helm = helm;
+            this.prefix = prefix;
+            this.pending = new ArrayList<>(0);
+        }
+
+        /**
+         * Adds update to the queue and starts rewrite if it is not in progress.
+         * @param update Update of index file
+         * @return Result of completion.
+         */
+        CompletionStage<Void> add(final Update update) {
+            final boolean start;
+            synchronized (this) {
+                this.pending.add(update);
+                start = !this.running;
+                this.running = true;
+            }
+            if (start) {
+                this.drain();
+            }
+            return update.result;
+        }
+
+        /**
+         * Applies the deletion at the head of the queue or all additions up to
+         * the next deletion in one rewrite, then repeats while there are updates
+         * which were queued during the rewrite.
+         */
+        private void drain() {
+            final List<Update> batch = new ArrayList<>(0);
+            synchronized (this) {
+                if (!this.pending.isEmpty() && this.pending.get(0).deletion.isPresent()) {
+                    batch.add(this.pending.remove(0));
+                } else {
+                    while (!this.pending.isEmpty() && !this.pending.get(0).deletion.isPresent()) {
+                        batch.add(this.pending.remove(0));
+                    }
+                }
+                if (batch.isEmpty()) {
+                    this.running = false;
+                }
+            }
+            if (!batch.isEmpty()) {
+                this.apply(batch).whenComplete((noth, thr) -> this.drain());
+            }
+        }
+
+        /**
+         * Applies updates and completes their results. If the grouped addition
+         * failed, additions are applied one by one.
+         * @param batch Deletion or additions
+         * @return Result of completion which completes normally when results
+         *  of updates were completed.
+         */
+        private CompletionStage<Void> apply(final List<Update> batch) {
+            return CompletableFuture.allOf().thenCompose(
+                nothing -> {
+                    final CompletionStage<Void> rewrite;
+                    if (batch.get(0).deletion.isPresent()) {
+                        rewrite = batch.get(0).deletion.get().get();
+                    } else {
+                        final List<Key> charts = new ArrayList<>(batch.size());
+                        batch.forEach(update -> charts.addAll(update.charts));
+                        rewrite = this.helm.add(charts, this.prefix);
+                    }
+                    return rewrite;
+                }
+            ).handle(
+                (noth, thr) -> {
+                    final CompletionStage<Void> res;
+                    if (thr == null || batch.size() == 1) {
+                        batch.forEach(update -> update.complete(thr));
+                        res = CompletableFuture.allOf();
+                    } else {
+                        res = Flowable.fromIterable(batch)
+                            .concatMapCompletable(
+                                update -> CompletableInterop.fromFuture(
+                                    this.apply(Collections.singletonList(update))
+                                )
+                            ).to(CompletableInterop.await())
+                            .thenApply(nothing -> null);
+                    }
+                    return res;
+                }
+            ).thenCompose(Function.identity());
+        }
+    }
+}
@@ -30,6 +30,7 @@ import com.artipie.asto.Remaining;
 import com.artipie.asto.Storage;
 import com.artipie.asto.rx.RxStorage;
 import com.artipie.asto.rx.RxStorageWrapper;
+import com.artipie.helm.ChartInspector;
 import com.artipie.helm.ChartYaml;
 import com.artipie.helm.TgzArchive;
 import com.artipie.helm.misc.DateTimeNow;
@@ -37,6 +38,7 @@ import io.reactivex.Completable;
 import io.reactivex.Single;
 import java.io.FileNotFoundException;
 import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -64,12 +66,27 @@ public final class IndexYaml {
      */
     private final RxStorage storage;
 
+    /**
+     * Key of index file.
+     */
+    private final Key key;
+
     /**
      * Ctor.
      * @param storage The storage.
      */
     public IndexYaml(final Storage storage) {
+        this(storage, IndexYaml.INDEX_YAML);
+    }
+
+    /**
+     * Ctor.
+     * @param storage The storage.
+     * @param key Key of index file.
+     */
+    public IndexYaml(final Storage storage, final Key key) {
         this.storage = new RxStorageWrapper(storage);
+        this.key = key;
     }
 
     /**
@@ -78,10 +95,35 @@ public final class IndexYaml {
      * @return The operation result
      */
     public Completable update(final TgzArchive arch) {
+        return this.update(arch.inspection());
+    }
+
+    /**
+     * Update the index file.
+     * @param arch Inspection of new archive in a repo for which metadata is missing.
+     * @return The operation result
+     */
+    public Completable update(final ChartInspector.Inspection arch) {
+        return this.update(Collections.singletonList(arch));
+    }
+
+    /**
+     * Update the index file with several archives at once. Index file is read
+     * and written only once.
+     * @param archs Inspections of new archives in a repo for which metadata is missing.
+     * @return The operation result
+     */
+    public Completable update(final Collection<ChartInspector.Inspection> archs) {
         return this.indexFromStrg(
             Single.just(IndexYaml.empty())
         ).map(
-            idx -> IndexYaml.update(idx, arch)
+            idx -> {
+                Map<String, Object> res = idx;
+                for (final ChartInspector.Inspection arch : archs) {
+                    res = IndexYaml.update(res, arch);
+                }
+                return res;
+            }
         ).flatMapCompletable(this::indexToStorage);
     }
 
@@ -154,16 +196,16 @@ public final class IndexYaml {
     /**
      * Perform an update.
      * @param index The index yaml mappings.
-     * @param tgz The archive.
+     * @param insp Inspection of the archive.
      * @return Updated map.
      */
     private static Map<String, Object> update(
         final Map<String, Object> index,
-        final TgzArchive tgz
+        final ChartInspector.Inspection insp
     ) {
         final Map<String, Object> copy = new HashMap<>(index);
         final IndexYamlMapping yaml = new IndexYamlMapping(copy);
-        final ChartYaml chart = tgz.chartYaml();
+        final ChartYaml chart = insp.chartYaml();
         if (
             !yaml
                 .byChartAndVersion(
@@ -174,7 +216,7 @@ public final class IndexYaml {
         ) {
             yaml.addChartVersions(
                 chart.name(),
-                Collections.singletonList(tgz.metadata(Optional.empty()))
+                Collections.singletonList(insp.metadata(Optional.empty()))
             );
         }
         return copy;
@@ -186,13 +228,13 @@ public final class IndexYaml {
      * @return Mapping for index.yaml if exists, otherwise value specified in the parameter.
      */
     private Single<Map<String, Object>> indexFromStrg(final Single<Map<String, Object>> notexist) {
-        return this.storage.exists(IndexYaml.INDEX_YAML)
+        return this.storage.exists(this.key)
             .flatMap(
                 exist -> {
                     final Single<Map<String, Object>>  result;
                     if (exist) {
                         result =
-                            this.storage.value(IndexYaml.INDEX_YAML)
+                            this.storage.value(this.key)
                                 .flatMap(content -> new Concatenation(content).single())
                                 .map(buf -> new String(new Remaining(buf).bytes()))
                                 .map(content -> new Yaml().load(content));
@@ -211,7 +253,7 @@ public final class IndexYaml {
      */
     private Completable indexToStorage(final Map<String, Object> index) {
         return this.storage.save(
-            IndexYaml.INDEX_YAML,
+            this.key,
             new Content.From(
                 new IndexYamlMapping(index).toString().getBytes(StandardCharsets.UTF_8)
             )
@@ -0,0 +1,231 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.metadata;
+
+import io.reactivex.Flowable;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import org.reactivestreams.Publisher;
+
+/**
+ * Index file with relative urls of archives prepended with base URL:
+ * chart-0.4.1.tgz -&gt; http://host:port/path/chart-0.4.1.tgz. Index is passed
+ * through line by line as chunks arrive from storage, only items of `urls:`
+ * lists are rewritten, all other lines are copied as is. Chunk of rewritten
+ * index is emitted for every chunk of origin, the rewriter keeps only the
+ * current chunk and the incomplete line. Consumers which collect the output,
+ * e.g. cache of rendered index, hold the whole rendered index themselves.
+ * @since 0.3
+ */
+public final class PrefixedUrls {
+    /**
+     * Base URL without trailing slash.
+     */
+    private final String base;
+
+    /**
+     * Ctor.
+     * @param base Base URL
+     */
+    public PrefixedUrls(final String base) {
+        this.base = base.replaceAll("/$", "");
+    }
+
+    /**
+     * Rewrites urls of index file.
+     * @param index Content of index file
+     * @return Content of index file with prepended urls.
+     */
+    public Flowable<ByteBuffer> apply(final Publisher<ByteBuffer> index) {
+        return Flowable.defer(
+            () -> {
+                final Rewriter rewriter = new Rewriter(this.base);
+                final SplitByBreaks lines = new SplitByBreaks(rewriter);
+                return Flowable.fromPublisher(index)
+                    .map(
+                        chunk -> {
+                            lines.accept(chunk);
+                            return rewriter.take();
+                        }
+                    ).concatWith(
+                        Flowable.fromCallable(
+                            () -> {
+                                lines.close();
+                                return rewriter.take();
+                            }
+                        )
+                    ).filter(ByteBuffer::hasRemaining);
+            }
+        );
+    }
+
+    /**
+     * Rewriter of lines of index file. Items of the list under `urls:` key are
+     * collected until a line with smaller indent or a line with key is met.
+     * Inline lists like `urls: [a.tgz, b.tgz]` are rewritten as well.
+     * @since 0.3
+     */
+    private static final class Rewriter implements Consumer<IndexLine> {
+        /**
+         * Urls.
+         */
+        private static final String URLS = "urls";
+
+        /**
+         * Base URL without trailing slash.
+         */
+        private final String base;
+
+        /**
+         * Rewritten lines which were not taken yet.
+         */
+        private final ByteArrayOutputStream out;
+
+        /**
+         * Indent of current `urls:` key, -1 outside of urls list.
+         */
+        private int urlsindent;
+
+        /**
+         * Ctor.
+         * @param base Base URL without trailing slash
+         */
+        Rewriter(final String base) {
+            this.base = base;
+            this.out = new ByteArrayOutputStream();
+            this.urlsindent = -1;
+        }
+
+        @Override
+        public void accept(final IndexLine line) {
+            final boolean url = this.urlsindent != -1 && line.dash() && !line.hasKey()
+                && line.hasValue() && line.indent() >= this.urlsindent;
+            if (url) {
+                this.out.write(line.bytes(), 0, line.keyPosition());
+                this.write(this.url(line.value()));
+            } else {
+                if (line.kind() != IndexLine.Kind.EMPTY) {
+                    this.urlsindent = -1;
+                }
+                final String value;
+                if (line.keyIs(Rewriter.URLS)) {
+                    value = line.value();
+                } else {
+                    value = "";
+                }
+                if (line.keyIs(Rewriter.URLS) && value.isEmpty()) {
+                    this.urlsindent = line.keyPosition();
+                }
+                if (value.startsWith("[") && value.endsWith("]")) {
+                    this.out.write(line.bytes(), 0, line.keyPosition());
+                    this.write(String.format("%s: [%s]", Rewriter.URLS, this.inline(value)));
+                } else {
+                    this.out.write(line.bytes(), 0, line.length());
+                }
+            }
+            this.out.write('\n');
+        }
+
+        /**
+         * Takes rewritten lines which were accepted since the previous call.
+         * @return Bytes of rewritten lines.
+         */
+        ByteBuffer take() {
+            final ByteBuffer res = ByteBuffer.wrap(this.out.toByteArray());
+            this.out.reset();
+            return res;
+        }
+
+        /**
+         * Rewrites items of inline list.
+         * @param list Inline list with brackets
+         * @return Items of list with prepended urls separated by comma.
+         */
+        private String inline(final String list) {
+            final String[] items = list.substring(1, list.length() - 1).split(",");
+            final StringBuilder res = new StringBuilder(list.length());
+            for (final String item : items) {
+                if (!item.trim().isEmpty()) {
+                    if (res.length() > 0) {
+                        res.append(", ");
+                    }
+                    res.append(this.url(item.trim()));
+                }
+            }
+            return res.toString();
+        }
+
+        /**
+         * Prepends relative url with base URL, absolute url is kept as is.
+         * Quotes of url are preserved.
+         * @param value Url, probably quoted
+         * @return Url with prepended base URL.
+         */
+        private String url(final String value) {
+            final String res;
+            final boolean quoted = value.length() > 1
+                && (value.charAt(0) == '"' || value.charAt(0) == '\'')
+                && value.charAt(value.length() - 1) == value.charAt(0);
+            final String raw;
+            if (quoted) {
+                raw = value.substring(1, value.length() - 1);
+            } else {
+                raw = value;
+            }
+            if (raw.contains("://")) {
+                res = value;
+            } else {
+                final String unsafe = String.format("%s/%s", this.base, raw);
+                final String abs;
+                try {
+                    abs = new URI(unsafe).toString();
+                } catch (final URISyntaxException exc) {
+                    throw new IllegalStateException(
+                        String.format("Failed to create URI from `%s`", unsafe),
+                        exc
+                    );
+                }
+                if (quoted) {
+                    res = String.format("%c%s%c", value.charAt(0), abs, value.charAt(0));
+                } else {
+                    res = abs;
+                }
+            }
+            return res;
+        }
+
+        /**
+         * Writes string to output.
+         * @param text Text
+         */
+        private void write(final String text) {
+            final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            this.out.write(bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,484 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.metadata;
+
+import com.artipie.asto.Concatenation;
+import com.artipie.asto.Content;
+import com.artipie.asto.Key;
+import com.artipie.asto.Remaining;
+import com.artipie.asto.Storage;
+import com.artipie.asto.rx.RxStorage;
+import com.artipie.asto.rx.RxStorageWrapper;
+import com.artipie.helm.ChartInspector;
+import com.artipie.helm.ChartYaml;
+import com.artipie.helm.TgzArchive;
+import com.artipie.helm.misc.DateTimeNow;
+import hu.akarnokd.rxjava2.interop.CompletableInterop;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Index which is stored as fragments, one fragment for each chart. Fragment of chart
+ * is located by key `.helm/entries/chart_name.yaml` relatively to the repository prefix
+ * and contains the block of chart from `entries:` section of index file, e.g.:
+ * <pre>
+ *   ark:
+ *   - apiVersion: v1
+ *     version: 0.1.0
+ * </pre>
+ * Update of chart touches only its own fragment, the whole index file is
+ * assembled on reading by concatenation of fragments. Charts of index file which
+ * was written before switching to fragments are moved to fragments by
+ * {@link #migrate()}. Updates of fragments are read-modify-write of the fragment,
+ * if {@link IndexUpdates} is provided, updates of each fragment are queued by it, so
+ * concurrent updates of the same chart do not lose versions.
+ * @since 0.3
+ * @checkstyle ClassDataAbstractionCouplingCheck (500 lines)
+ */
+public final class ShardedIndex {
+    /**
+     * Key to directory with fragments relatively to the repository prefix.
+     */
+    public static final Key ENTRIES = new Key.From(".helm", "entries");
+
+    /**
+     * Entries.
+     */
+    private static final String ENTRS = "entries:";
+
+    /**
+     * Extension of fragment.
+     */
+    private static final String EXT = ".yaml";
+
+    /**
+     * The RxStorage.
+     */
+    private final RxStorage storage;
+
+    /**
+     * Prefix of repository.
+     */
+    private final Key prefix;
+
+    /**
+     * Coordinator of updates of fragments, empty if updates are not queued.
+     */
+    private final Optional<IndexUpdates> updates;
+
+    /**
+     * Ctor.
+     * @param storage Storage
+     */
+    public ShardedIndex(final Storage storage) {
+        this(storage, Key.ROOT);
+    }
+
+    /**
+     * Ctor.
+     * @param storage Storage
+     * @param prefix Prefix of repository
+     */
+    public ShardedIndex(final Storage storage, final Key prefix) {
+        this(storage, prefix, Optional.empty());
+    }
+
+    /**
+     * Ctor.
+     * @param storage Storage
+     * @param prefix Prefix of repository
+     * @param updates Coordinator of updates which queues updates of fragments
+     */
+    public ShardedIndex(final Storage storage, final Key prefix, final IndexUpdates updates) {
+        this(storage, prefix, Optional.of(updates));
+    }
+
+    /**
+     * Ctor.
+     * @param storage Storage
+     * @param prefix Prefix of repository
+     * @param updates Coordinator of updates of fragments, empty if updates are not queued
+     */
+    private ShardedIndex(
+        final Storage storage, final Key prefix, final Optional<IndexUpdates> updates
+    ) {
+        this.storage = new RxStorageWrapper(storage);
+        this.prefix = prefix;
+        this.updates = updates;
+    }
+
+    /**
+     * Checks whether the repository contains at least one fragment.
+     * @return True if fragments exist, false otherwise.
+     */
+    public Single<Boolean> exists() {
+        return this.fragments().map(keys -> !keys.isEmpty());
+    }
+
+    /**
+     * Adds info about chart from archive to the fragment of the chart. If the version
+     * already exists in the fragment, the operation fails as addition to index file.
+     * @param arch Archive with chart
+     * @return The operation result.
+     */
+    public Completable add(final TgzArchive arch) {
+        return this.add(arch.inspection());
+    }
+
+    /**
+     * Adds info about chart from archive to the fragment of the chart. If the version
+     * already exists in the fragment, the operation fails as addition to index file.
+     * @param insp Inspection of archive with chart
+     * @return The operation result.
+     */
+    public Completable add(final ChartInspector.Inspection insp) {
+        final ChartYaml chart = insp.chartYaml();
+        return this.queued(chart.name(), this.fragment(chart.name()).flatMapCompletable(
+            mapping -> {
+                final Completable res;
+                if (mapping.byChartAndVersion(chart.name(), chart.version()).isPresent()) {
+                    res = Completable.error(
+                        new IllegalStateException(
+                            String.format(
+                                "Failed to write to index `%s` with version `%s`",
+                                chart.name(), chart.version()
+                            )
+                        )
+                    );
+                } else {
+                    mapping.addChartVersions(
+                        chart.name(),
+                        Collections.singletonList(insp.metadata(Optional.empty()))
+                    );
+                    res = this.save(chart.name(), mapping);
+                }
+                return res;
+            }
+        ));
+    }
+
+    /**
+     * Moves charts of index file `index.yaml` of the repository to fragments, so charts
+     * which were added before switching to fragments are not hidden by fragments.
+     * Versions which already exist in fragments are kept as is. Index file is removed
+     * after all fragments were saved. Nothing is done if there is no index file.
+     * @return The operation result.
+     */
+    public Completable migrate() {
+        final Key idx = new Key.From(this.prefix, IndexYaml.INDEX_YAML);
+        return this.storage.exists(idx).flatMapCompletable(
+            exists -> {
+                final Completable res;
+                if (exists) {
+                    res = this.storage.value(idx)
+                        .flatMap(content -> new Concatenation(content).single())
+                        .map(
+                            buf -> new IndexYamlMapping(
+                                new String(new Remaining(buf).bytes(), StandardCharsets.UTF_8)
+                            )
+                        ).flatMapCompletable(
+                            index -> Flowable.fromIterable(
+                                new ArrayList<>(index.entries().keySet())
+                            ).concatMapCompletable(
+                                name -> this.merge(name, index.byChart(name))
+                            )
+                        ).andThen(this.storage.delete(idx));
+                } else {
+                    res = Completable.complete();
+                }
+                return res;
+            }
+        );
+    }
+
+    /**
+     * Deletes fragment of chart with all its versions.
+     * @param name Chart name
+     * @return The operation result.
+     */
+    public Completable deleteByName(final String name) {
+        final Key key = this.key(name);
+        return this.queued(
+            name,
+            this.storage.exists(key).flatMapCompletable(
+                exists -> {
+                    final Completable res;
+                    if (exists) {
+                        res = this.storage.delete(key);
+                    } else {
+                        res = Completable.complete();
+                    }
+                    return res;
+                }
+            )
+        );
+    }
+
+    /**
+     * Deletes specified version of chart from the fragment of the chart. The fragment
+     * is removed when the last version is deleted.
+     * @param name Chart name
+     * @param version Version of the chart which should be deleted
+     * @return The operation result.
+     */
+    public Completable deleteByNameAndVersion(final String name, final String version) {
+        return this.queued(name, this.fragment(name).flatMapCompletable(
+            mapping -> {
+                final List<Map<String, Object>> vrsns = mapping.byChart(name);
+                final List<Map<String, Object>> remained = vrsns.stream()
+                    .filter(entry -> !version.equals(entry.get("version")))
+                    .collect(Collectors.toList());
+                final Completable res;
+                if (remained.size() == vrsns.size()) {
+                    res = Completable.complete();
+                } else if (remained.isEmpty()) {
+                    res = this.storage.delete(this.key(name));
+                } else {
+                    vrsns.retainAll(remained);
+                    res = this.save(name, mapping);
+                }
+                return res;
+            }
+        ));
+    }
+
+    /**
+     * Obtains names of charts which have fragments.
+     * @return Chart names sorted alphabetically.
+     */
+    public Single<List<String>> charts() {
+        return this.fragments().map(
+            keys -> keys.stream()
+                .map(
+                    key -> {
+                        final String name = key.string();
+                        return name.substring(
+                            name.lastIndexOf('/') + 1,
+                            name.length() - ShardedIndex.EXT.length()
+                        );
+                    }
+                ).collect(Collectors.toList())
+        );
+    }
+
+    /**
+     * Obtains urls of archives for each version of chart from the fragment of chart.
+     * @param name Chart name
+     * @return Urls by versions, empty map in case of absence of the chart.
+     */
+    public Single<Map<String, Set<String>>> archives(final String name) {
+        return this.fragment(name).map(
+            mapping -> mapping.byChart(name).stream()
+                .filter(entry -> entry.get("version") != null)
+                .collect(
+                    Collectors.toMap(
+                        entry -> String.valueOf(entry.get("version")),
+                        entry -> new HashSet<String>(
+                            Optional.ofNullable(new ChartYaml(entry).urls())
+                                .orElse(Collections.emptyList())
+                        ),
+                        (first, second) -> {
+                            first.addAll(second);
+                            return first;
+                        }
+                    )
+                )
+        );
+    }
+
+    /**
+     * Assembles index file from fragments. Fragments are not read into memory,
+     * they are streamed one by one in order of chart names.
+     * @return Content of index file.
+     */
+    public Single<Content> content() {
+        return this.fragments().map(
+            keys -> {
+                final Flowable<ByteBuffer> entries;
+                if (keys.isEmpty()) {
+                    entries = ShardedIndex.bytes(String.format("%s {}\n", ShardedIndex.ENTRS));
+                } else {
+                    entries = ShardedIndex.bytes(String.format("%s\n", ShardedIndex.ENTRS))
+                        .concatWith(
+                            Flowable.fromIterable(keys).concatMap(
+                                key -> this.storage.value(key).flatMapPublisher(cont -> cont)
+                            )
+                        );
+                }
+                return new Content.From(
+                    ShardedIndex.bytes("apiVersion: v1\n")
+                        .concatWith(entries)
+                        .concatWith(
+                            ShardedIndex.bytes(
+                                String.format("generated: %s\n", new DateTimeNow().asString())
+                            )
+                        )
+                );
+            }
+        );
+    }
+
+    /**
+     * Obtains keys of fragments sorted by chart names.
+     * @return Keys of fragments.
+     */
+    private Single<List<Key>> fragments() {
+        return this.storage.list(new Key.From(this.prefix, ShardedIndex.ENTRIES)).map(
+            keys -> keys.stream()
+                .filter(key -> key.string().endsWith(ShardedIndex.EXT))
+                .sorted(Key.CMP_STRING)
+                .collect(Collectors.toList())
+        );
+    }
+
+    /**
+     * Adds entries of versions of chart to its fragment as is, versions which exist
+     * in the fragment are skipped.
+     * @param name Chart name
+     * @param vrsns Entries of versions
+     * @return The operation result.
+     */
+    private Completable merge(final String name, final List<Map<String, Object>> vrsns) {
+        return this.queued(name, this.fragment(name).flatMapCompletable(
+            mapping -> {
+                final List<Map<String, Object>> absent = vrsns.stream()
+                    .filter(
+                        entry -> !mapping.byChartAndVersion(
+                            name, String.valueOf(entry.get("version"))
+                        ).isPresent()
+                    ).collect(Collectors.toList());
+                final Completable res;
+                if (absent.isEmpty()) {
+                    res = Completable.complete();
+                } else {
+                    mapping.byChart(name).addAll(absent);
+                    res = this.save(name, mapping);
+                }
+                return res;
+            }
+        ));
+    }
+
+    /**
+     * Queues update of fragment of chart after other updates of the fragment if
+     * coordinator of updates is provided. Update is queued on subscription.
+     * @param name Chart name
+     * @param update Update of fragment
+     * @return The operation result.
+     */
+    private Completable queued(final String name, final Completable update) {
+        final Completable res;
+        if (this.updates.isPresent()) {
+            res = Completable.defer(
+                () -> CompletableInterop.fromFuture(
+                    this.updates.get().fragment(
+                        this.key(name), () -> update.to(CompletableInterop.await())
+                    )
+                )
+            );
+        } else {
+            res = update;
+        }
+        return res;
+    }
+
+    /**
+     * Reads fragment of chart.
+     * @param name Chart name
+     * @return Mapping with the only chart in entries, it is empty in case of absence.
+     */
+    private Single<IndexYamlMapping> fragment(final String name) {
+        final Key key = this.key(name);
+        return this.storage.exists(key).flatMap(
+            exists -> {
+                final Single<IndexYamlMapping> res;
+                if (exists) {
+                    res = this.storage.value(key)
+                        .flatMap(content -> new Concatenation(content).single())
+                        .map(buf -> new String(new Remaining(buf).bytes(), StandardCharsets.UTF_8))
+                        .map(
+                            frgmnt -> new IndexYamlMapping(
+                                String.join("\n", ShardedIndex.ENTRS, frgmnt)
+                            )
+                        );
+                } else {
+                    res = Single.fromCallable(() -> new IndexYamlMapping(new HashMap<>()));
+                }
+                return res;
+            }
+        );
+    }
+
+    /**
+     * Saves fragment of chart. Mapping is dumped with `entries:` and the first line
+     * is skipped, so the fragment has the same indents as in index file.
+     * @param name Chart name
+     * @param mapping Mapping with the only chart in entries
+     * @return The operation result.
+     */
+    private Completable save(final String name, final IndexYamlMapping mapping) {
+        final Map<String, Object> entries = new HashMap<>();
+        entries.put("entries", mapping.entries());
+        final String dump = new IndexYamlMapping(entries).toString();
+        return this.storage.save(
+            this.key(name),
+            new Content.From(
+                dump.substring(dump.indexOf('\n') + 1).getBytes(StandardCharsets.UTF_8)
+            )
+        );
+    }
+
+    /**
+     * Key to fragment of chart.
+     * @param name Chart name
+     * @return Key to fragment.
+     */
+    private Key key(final String name) {
+        return new Key.From(
+            new Key.From(this.prefix, ShardedIndex.ENTRIES),
+            String.format("%s%s", name, ShardedIndex.EXT)
+        );
+    }
+
+    /**
+     * Flowable with bytes of string.
+     * @param str String
+     * @return Flowable with bytes.
+     */
+    private static Flowable<ByteBuffer> bytes(final String str) {
+        return Flowable.just(ByteBuffer.wrap(str.getBytes(StandardCharsets.UTF_8)));
+    }
+}
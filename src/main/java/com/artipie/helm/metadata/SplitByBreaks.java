@@ -0,0 +1,109 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.metadata;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Splitter of bytes into lines by breaks. Bytes are passed by chunks as they
+ * arrive from storage, every line is tokenized and passed to consumer as soon
+ * as the break is met, so the entire content is never kept in memory. The same
+ * instance of {@link IndexLine} is passed for all lines.
+ * @since 0.3
+ */
+final class SplitByBreaks {
+    /**
+     * Line feed.
+     */
+    private static final byte LF = '\n';
+
+    /**
+     * Consumer of lines.
+     */
+    private final Consumer<IndexLine> consumer;
+
+    /**
+     * Tokenizer of lines.
+     */
+    private final IndexLine current;
+
+    /**
+     * Bytes of the line which is not finished yet.
+     */
+    private byte[] line;
+
+    /**
+     * Length of the line which is not finished yet.
+     */
+    private int len;
+
+    /**
+     * Ctor.
+     * @param consumer Consumer of lines
+     */
+    SplitByBreaks(final Consumer<IndexLine> consumer) {
+        this.consumer = consumer;
+        this.current = new IndexLine();
+        this.line = new byte[256];
+    }
+
+    /**
+     * Accepts next chunk of bytes.
+     * @param chunk Chunk of bytes
+     */
+    void accept(final ByteBuffer chunk) {
+        final ByteBuffer buf = chunk.duplicate();
+        while (buf.hasRemaining()) {
+            final byte next = buf.get();
+            if (next == SplitByBreaks.LF) {
+                this.emit();
+            } else {
+                if (this.len == this.line.length) {
+                    this.line = Arrays.copyOf(this.line, this.len * 2);
+                }
+                this.line[this.len] = next;
+                this.len += 1;
+            }
+        }
+    }
+
+    /**
+     * Passes the last line to consumer if it is not ended with break.
+     */
+    void close() {
+        if (this.len > 0) {
+            this.emit();
+        }
+    }
+
+    /**
+     * Passes collected line to consumer.
+     */
+    private void emit() {
+        this.consumer.accept(this.current.parse(this.line, this.len));
+        this.len = 0;
+    }
+}
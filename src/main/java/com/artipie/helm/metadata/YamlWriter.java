@@ -25,30 +25,54 @@ package com.artipie.helm.metadata;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
-import org.apache.commons.lang3.StringUtils;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import org.apache.commons.io.output.WriterOutputStream;
 
 /**
  * Yaml writer with specified indent.
  * @since 0.3
  */
 public final class YamlWriter {
+    /**
+     * Line break.
+     */
+    private static final int BREAK = '\n';
+
+    /**
+     * Space.
+     */
+    private static final int SPACE = ' ';
+
     /**
      * Required indent.
      */
     private final int indnt;
 
     /**
-     * Buffered writer.
+     * Output stream.
      */
-    private final BufferedWriter writer;
+    private final OutputStream out;
 
     /**
      * Ctor.
      * @param writer Writer
      * @param indent Required indent in index file
+     * @deprecated Use {@link #YamlWriter(OutputStream, int)}, bytes written by this
+     *  writer are encoded and decoded once more on the way to the writer
      */
+    @Deprecated
     public YamlWriter(final BufferedWriter writer, final int indent) {
-        this.writer = writer;
+        this(new WriterOutputStream(writer, StandardCharsets.UTF_8, 1024, true), indent);
+    }
+
+    /**
+     * Ctor.
+     * @param out Output stream, it is expected to be buffered
+     * @param indent Required indent in index file
+     */
+    public YamlWriter(final OutputStream out, final int indent) {
+        this.out = out;
         this.indnt = indent;
     }
 
@@ -67,13 +91,29 @@ public final class YamlWriter {
      * @throws IOException In case of error during writing.
      */
     public void writeLine(final String data, final int xindendt) throws IOException {
-        this.writer.write(
-            String.format(
-                "%s%s",
-                StringUtils.repeat(' ', xindendt * this.indnt),
-                data
-            )
-        );
-        this.writer.newLine();
+        for (int idx = 0; idx < xindendt * this.indnt; idx += 1) {
+            this.out.write(YamlWriter.SPACE);
+        }
+        this.out.write(data.getBytes(StandardCharsets.UTF_8));
+        this.out.write(YamlWriter.BREAK);
+    }
+
+    /**
+     * Write bytes of the line as is and a new line.
+     * @param line Line which should be written
+     * @throws IOException In case of error during writing.
+     */
+    public void writeLine(final IndexLine line) throws IOException {
+        this.out.write(line.bytes(), 0, line.length());
+        this.out.write(YamlWriter.BREAK);
+    }
+
+    /**
+     * Write bytes as is. Bytes are expected to contain whole lines with breaks.
+     * @param lines Bytes which should be written
+     * @throws IOException In case of error during writing.
+     */
+    public void writeRaw(final byte[] lines) throws IOException {
+        this.out.write(lines);
     }
 }
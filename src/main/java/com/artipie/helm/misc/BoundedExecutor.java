@@ -0,0 +1,95 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.misc;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor with bounded number of daemon threads for blocking work, such as reading
+ * archives with charts from streams of content. Tasks which do not fit into the pool
+ * wait in the queue, so blocked readers never occupy threads of the common pool.
+ * Idle threads are released after a minute. Tasks of this executor should not wait
+ * for other tasks of the same executor, otherwise the pool could be exhausted.
+ * @since 0.3
+ */
+public final class BoundedExecutor implements Executor {
+    /**
+     * Default number of archives which are read at once.
+     */
+    public static final int PARALLELISM = Math.max(
+        2, Math.min(8, Runtime.getRuntime().availableProcessors())
+    );
+
+    /**
+     * Shared executor for reading archives with charts.
+     */
+    public static final BoundedExecutor ARCHIVES = new BoundedExecutor(
+        "helm-archives", BoundedExecutor.PARALLELISM * 2
+    );
+
+    /**
+     * Shared executor for parsing of archives which are uploaded by clients. Parser
+     * waits for buffers of client, so it is paced by the client and it is kept apart
+     * from {@link #ARCHIVES}: slow uploads never occupy threads which read archives
+     * from storage. Threads of this executor are mostly waiting, so there are more
+     * of them.
+     */
+    public static final BoundedExecutor UPLOADS = new BoundedExecutor(
+        "helm-uploads", BoundedExecutor.PARALLELISM * 8
+    );
+
+    /**
+     * Pool of threads.
+     */
+    private final ThreadPoolExecutor pool;
+
+    /**
+     * Ctor.
+     * @param name Prefix of names of threads
+     * @param threads Max number of threads
+     */
+    public BoundedExecutor(final String name, final int threads) {
+        final AtomicInteger count = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(
+            threads, threads, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(),
+            task -> {
+                final Thread thread = new Thread(
+                    task, String.format("%s-%d", name, count.incrementAndGet())
+                );
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void execute(final Runnable task) {
+        this.pool.execute(task);
+    }
+}
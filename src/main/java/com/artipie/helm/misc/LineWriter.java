@@ -23,6 +23,7 @@
  */
 package com.artipie.helm.misc;
 
+import com.artipie.helm.metadata.IndexLine;
 import com.artipie.helm.metadata.YamlWriter;
 import java.io.IOException;
 
@@ -36,6 +37,11 @@ public final class LineWriter {
      */
     static final String TAG_GENERATED = "generated:";
 
+    /**
+     * Generated key.
+     */
+    private static final String GENERATED = "generated";
+
     /**
      * Yaml writer.
      */
@@ -67,4 +73,24 @@ public final class LineWriter {
             this.writer.writeLine(line, 0);
         }
     }
+
+    /**
+     * Write line if it is not tag generated. Otherwise replaces the value
+     * of tag `generated` to update time when this index was generated. The line
+     * is written as is without decoding.
+     * @param line Tokenized line
+     * @throws IOException In case of exception during writing
+     */
+    public void writeAndReplaceTagGenerated(final IndexLine line) throws IOException {
+        if (line.indent() == 0 && line.keyIs(LineWriter.GENERATED)) {
+            this.writer.writeLine(
+                String.format(
+                    "%s %s", LineWriter.TAG_GENERATED, new DateTimeNow().asString()
+                ),
+                0
+            );
+        } else {
+            this.writer.writeLine(line);
+        }
+    }
 }
@@ -28,22 +28,29 @@ import com.artipie.asto.Storage;
 import com.artipie.asto.ValueNotFoundException;
 import com.artipie.asto.fs.FileStorage;
 import com.artipie.asto.test.TestResource;
+import com.artipie.helm.metadata.BinaryIndex;
 import com.artipie.helm.metadata.IndexYaml;
 import com.artipie.helm.metadata.IndexYamlMapping;
 import com.artipie.helm.test.ContentOfIndex;
 import com.jcabi.log.Logger;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
@@ -152,6 +159,72 @@ final class AddWriterAstoTest {
         );
     }
 
+    @Test
+    void splicesNewVersionsUsingSidecar() throws IOException {
+        new TestResource("index/index-one-ark.yaml")
+            .saveTo(this.storage, IndexYaml.INDEX_YAML);
+        final Map<String, Set<Pair<String, ChartYaml>>> pckgs = packagesWithTomcat(
+            "tomcat-0.4.1.tgz"
+        );
+        pckgs.put(
+            "ark",
+            new HashSet<>(
+                Collections.singleton(
+                    new ImmutablePair<>(
+                        "1.2.0",
+                        new TgzArchive(new TestResource("ark-1.2.0.tgz").asBytes()).chartYaml()
+                    )
+                )
+            )
+        );
+        new AddWriter.Asto(this.storage, Optional.of(new BinaryIndex(this.source)))
+            .add(this.source, this.out, pckgs)
+            .toCompletableFuture().join();
+        final IndexYamlMapping index = new ContentOfIndex(this.storage).index(this.pathToIndex());
+        MatcherAssert.assertThat(
+            "Written charts are wrong",
+            index.entries().keySet(),
+            Matchers.containsInAnyOrder("tomcat", "ark")
+        );
+        MatcherAssert.assertThat(
+            "Versions of ark are wrong",
+            index.byChart("ark").stream()
+                .map(entry -> entry.get("version"))
+                .collect(Collectors.toList()),
+            Matchers.contains("1.0.1", "1.2.0")
+        );
+        MatcherAssert.assertThat(
+            "Generated tag was not updated",
+            new String(Files.readAllBytes(this.out), StandardCharsets.UTF_8),
+            Matchers.not(Matchers.containsString("2021-01-11T16:21:01.285921500+03:00"))
+        );
+        MatcherAssert.assertThat(
+            "Index does not end with the same top level tag",
+            new String(Files.readAllBytes(this.out), StandardCharsets.UTF_8),
+            Matchers.endsWith("apiVersion: v1\n")
+        );
+    }
+
+    @Test
+    void failsToSpliceExistedVersion() {
+        new TestResource("index.yaml")
+            .saveTo(this.storage, IndexYaml.INDEX_YAML);
+        final Map<String, Set<Pair<String, ChartYaml>>> pckgs = packagesWithTomcat(
+            "tomcat-0.4.1.tgz"
+        );
+        final CompletionException exc = Assertions.assertThrows(
+            CompletionException.class,
+            () -> new AddWriter.Asto(this.storage, Optional.of(new BinaryIndex(this.source)))
+                .add(this.source, this.out, pckgs)
+                .toCompletableFuture().join()
+        );
+        MatcherAssert.assertThat(
+            "Wrong message of handmade exception",
+            exc.getMessage(),
+            new StringContains("Failed to write to index `tomcat` with version `0.4.1`")
+        );
+    }
+
     @Test
     void addChartsTrustfully() {
         final SortedSet<Key> charts = new TreeSet<>(Key.CMP_STRING);
@@ -186,6 +259,37 @@ final class AddWriterAstoTest {
         );
     }
 
+    @Test
+    void addsChartsTrustfullyInOrderOfKeysInParallel() throws IOException {
+        final SortedSet<Key> charts = new TreeSet<>(Key.CMP_STRING);
+        Stream.of(
+            "tomcat-0.4.1.tgz", "ark-1.0.1.tgz", "ark-1.2.0.tgz"
+        ).map(Key.From::new)
+        .forEach(charts::add);
+        charts.forEach(chart -> new TestResource(chart.string()).saveTo(this.storage));
+        final ExecutorService exec = Executors.newFixedThreadPool(3);
+        try {
+            new AddWriter.Asto(this.storage, exec, 3)
+                .addTrustfully(this.out, charts)
+                .toCompletableFuture().join();
+        } finally {
+            exec.shutdown();
+        }
+        final String index = new String(Files.readAllBytes(this.out), StandardCharsets.UTF_8);
+        MatcherAssert.assertThat(
+            "Entries are not written in order of keys",
+            index,
+            Matchers.stringContainsInOrder(
+                "ark:", "version: 1.0.1", "version: 1.2.0", "tomcat:", "version: 0.4.1"
+            )
+        );
+        MatcherAssert.assertThat(
+            "Chart name is written several times",
+            index.split("\n  ark:", -1).length,
+            new IsEqual<>(2)
+        );
+    }
+
     @Test
     void failsToAddTrustfullyWhenPackageIsAbsent() {
         final SortedSet<Key> charts = new TreeSet<>(Key.CMP_STRING);
@@ -0,0 +1,166 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm;
+
+import com.artipie.asto.Content;
+import com.artipie.asto.ext.PublisherAs;
+import com.artipie.asto.test.TestResource;
+import io.reactivex.Flowable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.hamcrest.core.IsEqual;
+import org.hamcrest.core.IsInstanceOf;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link ChartInspector}.
+ * @since 0.3
+ */
+final class ChartInspectorTest {
+    @Test
+    void readsChartYamlWithoutReadingWholeArchive() {
+        final byte[] bytes = new TestResource("ark-1.0.1.tgz").asBytes();
+        final AtomicInteger emitted = new AtomicInteger();
+        final ChartYaml chart = new ChartInspector(
+            ChartInspectorTest.chunks(bytes).doOnNext(buf -> emitted.incrementAndGet())
+        ).chartYaml().toCompletableFuture().join();
+        MatcherAssert.assertThat(
+            "Chart yaml was read incorrectly",
+            chart.fields(),
+            new IsEqual<>(new TgzArchive(bytes).chartYaml().fields())
+        );
+        MatcherAssert.assertThat(
+            "Whole archive was read",
+            emitted.get(),
+            Matchers.lessThan(ChartInspectorTest.chunks(bytes).count().blockingGet().intValue())
+        );
+    }
+
+    @Test
+    void inspectsChartYamlDigestAndSizeInOnePass() {
+        final byte[] bytes = new TestResource("tomcat-0.4.1.tgz").asBytes();
+        final ChartInspector.Inspection insp = new ChartInspector(
+            new Content.From(ChartInspectorTest.chunks(bytes))
+        ).inspect().toCompletableFuture().join();
+        MatcherAssert.assertThat(
+            "Name of archive is wrong",
+            insp.name(),
+            new IsEqual<>("tomcat-0.4.1.tgz")
+        );
+        MatcherAssert.assertThat(
+            "Digest is wrong",
+            insp.digest(),
+            new IsEqual<>(DigestUtils.sha256Hex(bytes))
+        );
+        MatcherAssert.assertThat(
+            "Size is wrong",
+            insp.size(),
+            new IsEqual<>((long) bytes.length)
+        );
+    }
+
+    @Test
+    void inspectsContentWhichIsPassedThrough() {
+        final byte[] bytes = new TestResource("ark-1.2.0.tgz").asBytes();
+        final ChartInspector.Tap tap = new ChartInspector.Tap(ChartInspectorTest.chunks(bytes));
+        final byte[] passed = new PublisherAs(new Content.From(tap.content()))
+            .bytes().toCompletableFuture().join();
+        final ChartInspector.Inspection insp = tap.inspection().toCompletableFuture().join();
+        MatcherAssert.assertThat(
+            "Content was changed",
+            passed,
+            new IsEqual<>(bytes)
+        );
+        MatcherAssert.assertThat(
+            "Chart yaml was read incorrectly",
+            insp.name(),
+            new IsEqual<>("ark-1.2.0.tgz")
+        );
+        MatcherAssert.assertThat(
+            "Digest is wrong",
+            insp.digest(),
+            new IsEqual<>(DigestUtils.sha256Hex(bytes))
+        );
+    }
+
+    @Test
+    void stopsPassingContentOfRejectedChart() {
+        final byte[] bytes = new TestResource("ark-1.0.1.tgz").asBytes();
+        final AtomicInteger emitted = new AtomicInteger();
+        final CompletableFuture<Void> rejection = new CompletableFuture<>();
+        rejection.completeExceptionally(new IllegalStateException("Rejected"));
+        final ChartInspector.Tap tap = new ChartInspector.Tap(
+            ChartInspectorTest.chunks(bytes).doOnNext(buf -> emitted.incrementAndGet()),
+            chart -> rejection
+        );
+        MatcherAssert.assertThat(
+            "Rejected content was passed",
+            tap.content().ignoreElements().blockingGet().getCause(),
+            new IsInstanceOf(IllegalStateException.class)
+        );
+        MatcherAssert.assertThat(
+            "Whole content was read",
+            emitted.get(),
+            Matchers.lessThan(ChartInspectorTest.chunks(bytes).count().blockingGet().intValue())
+        );
+    }
+
+    @Test
+    void parsesPassedContentApartFromArchivesExecutor() {
+        final byte[] bytes = new TestResource("ark-1.2.0.tgz").asBytes();
+        final AtomicReference<String> thread = new AtomicReference<>();
+        final ChartInspector.Tap tap = new ChartInspector.Tap(
+            ChartInspectorTest.chunks(bytes),
+            chart -> {
+                thread.set(Thread.currentThread().getName());
+                return CompletableFuture.allOf();
+            }
+        );
+        tap.content().ignoreElements().blockingAwait();
+        MatcherAssert.assertThat(
+            thread.get(),
+            Matchers.startsWith("helm-uploads")
+        );
+    }
+
+    /**
+     * Splits bytes to small buffers.
+     * @param bytes Bytes
+     * @return Flowable with buffers.
+     */
+    private static Flowable<ByteBuffer> chunks(final byte[] bytes) {
+        final int size = 256;
+        return Flowable.range(0, (bytes.length + size - 1) / size).map(
+            idx -> ByteBuffer.wrap(
+                Arrays.copyOfRange(bytes, idx * size, Math.min(bytes.length, (idx + 1) * size))
+            )
+        );
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm;
+
+import com.artipie.asto.Key;
+import com.artipie.asto.Storage;
+import com.artipie.asto.blocking.BlockingStorage;
+import com.artipie.asto.memory.InMemoryStorage;
+import com.artipie.asto.test.TestResource;
+import com.artipie.helm.metadata.BinaryIndex;
+import com.artipie.helm.metadata.IndexYaml;
+import com.artipie.helm.metadata.IndexYamlMapping;
+import com.artipie.helm.test.ContentOfIndex;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.cactoos.list.ListOf;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.hamcrest.core.IsEqual;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link Helm.Asto#batchUpdate(Key)}.
+ * @since 0.3
+ * @checkstyle ClassDataAbstractionCouplingCheck (500 lines)
+ */
+@SuppressWarnings("PMD.AvoidDuplicateLiterals")
+final class HelmAstoBatchUpdateTest {
+    /**
+     * Storage.
+     */
+    private Storage storage;
+
+    @BeforeEach
+    void setUp() {
+        this.storage = new InMemoryStorage();
+    }
+
+    @Test
+    void addsNewAndRemovesAbsentCharts() throws IOException {
+        Stream.of("tomcat-0.4.1.tgz", "ark-1.2.0.tgz")
+            .forEach(tgz -> new TestResource(tgz).saveTo(this.storage));
+        new TestResource("index/index-one-ark.yaml").saveTo(this.storage, IndexYaml.INDEX_YAML);
+        new Helm.Asto(this.storage).batchUpdate(Key.ROOT).toCompletableFuture().join();
+        final IndexYamlMapping index = new ContentOfIndex(this.storage).index();
+        MatcherAssert.assertThat(
+            "Written charts are wrong",
+            index.entries().keySet(),
+            Matchers.containsInAnyOrder("tomcat", "ark")
+        );
+        MatcherAssert.assertThat(
+            "Versions of chart `ark` are incorrect",
+            index.byChart("ark").stream()
+                .map(entry -> entry.get("version"))
+                .collect(Collectors.toList()),
+            new IsEqual<>(new ListOf<>("1.2.0"))
+        );
+        HelmAstoBatchUpdateTest.assertTmpDirWasRemoved();
+    }
+
+    @Test
+    void createsIndexWhenItIsAbsent() throws IOException {
+        final Key prfx = new Key.From("prefix");
+        Stream.of("ark-1.0.1.tgz", "ark-1.2.0.tgz").forEach(
+            tgz -> new TestResource(tgz).saveTo(this.storage, new Key.From(prfx, tgz))
+        );
+        new Helm.Asto(this.storage).batchUpdate(prfx).toCompletableFuture().join();
+        MatcherAssert.assertThat(
+            new ContentOfIndex(this.storage).index(new Key.From(prfx, IndexYaml.INDEX_YAML))
+                .byChart("ark").stream()
+                .map(entry -> entry.get("version"))
+                .collect(Collectors.toList()),
+            Matchers.containsInAnyOrder("1.0.1", "1.2.0")
+        );
+        HelmAstoBatchUpdateTest.assertTmpDirWasRemoved();
+    }
+
+    @Test
+    void doesNotRewriteIndexWhenNothingChanged() throws IOException {
+        new TestResource("ark-1.0.1.tgz").saveTo(this.storage);
+        new TestResource("index/index-one-ark.yaml").saveTo(this.storage, IndexYaml.INDEX_YAML);
+        new Helm.Asto(this.storage).batchUpdate(Key.ROOT).toCompletableFuture().join();
+        MatcherAssert.assertThat(
+            new BlockingStorage(this.storage).value(IndexYaml.INDEX_YAML),
+            new IsEqual<>(new TestResource("index/index-one-ark.yaml").asBytes())
+        );
+        HelmAstoBatchUpdateTest.assertTmpDirWasRemoved();
+    }
+
+    @Test
+    void writesSidecarForIndex() {
+        final Key prfx = new Key.From("prefix");
+        new TestResource("ark-1.2.0.tgz").saveTo(this.storage, new Key.From(prfx, "ark-1.2.0.tgz"));
+        new Helm.Asto(this.storage).batchUpdate(prfx).toCompletableFuture().join();
+        final BlockingStorage blsto = new BlockingStorage(this.storage);
+        final BinaryIndex bin = new BinaryIndex(blsto.value(BinaryIndex.key(prfx)));
+        MatcherAssert.assertThat(
+            "Sidecar does not correspond to index",
+            bin.digest(),
+            new IsEqual<>(
+                DigestUtils.sha256Hex(blsto.value(new Key.From(prfx, IndexYaml.INDEX_YAML)))
+            )
+        );
+        MatcherAssert.assertThat(
+            "Sidecar does not contain versions",
+            bin.versions().get("ark"),
+            Matchers.contains("1.2.0")
+        );
+    }
+
+    @Test
+    void replacesSidecarWithoutLeavingStagedFiles() {
+        final Key prfx = new Key.From("prefix");
+        new TestResource("ark-1.2.0.tgz").saveTo(this.storage, new Key.From(prfx, "ark-1.2.0.tgz"));
+        final Helm.Asto helm = new Helm.Asto(this.storage);
+        helm.batchUpdate(prfx).toCompletableFuture().join();
+        new TestResource("ark-1.0.1.tgz").saveTo(this.storage, new Key.From(prfx, "ark-1.0.1.tgz"));
+        helm.batchUpdate(prfx).toCompletableFuture().join();
+        MatcherAssert.assertThat(
+            "Staged files remain in storage",
+            this.storage.list(Key.ROOT).join().stream()
+                .map(Key::string)
+                .collect(Collectors.toList()),
+            Matchers.containsInAnyOrder(
+                "prefix/ark-1.2.0.tgz", "prefix/ark-1.0.1.tgz",
+                "prefix/index.yaml", "prefix/.index.bin"
+            )
+        );
+        final BlockingStorage blsto = new BlockingStorage(this.storage);
+        MatcherAssert.assertThat(
+            "Sidecar was not replaced",
+            new BinaryIndex(blsto.value(BinaryIndex.key(prfx))).versions().get("ark"),
+            Matchers.containsInAnyOrder("1.0.1", "1.2.0")
+        );
+    }
+
+    private static void assertTmpDirWasRemoved() throws IOException {
+        final Path systemtemp = Paths.get(System.getProperty("java.io.tmpdir"));
+        MatcherAssert.assertThat(
+            "Temp dir for indexes was not removed",
+            Files.list(systemtemp)
+                .noneMatch(path -> path.getFileName().toString().startsWith("index-")),
+            new IsEqual<>(true)
+        );
+    }
+}
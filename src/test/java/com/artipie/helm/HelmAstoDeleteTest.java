@@ -37,9 +37,13 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
 import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import org.cactoos.list.ListOf;
+import org.cactoos.set.SetOf;
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.core.IsEqual;
 import org.hamcrest.core.IsInstanceOf;
@@ -199,6 +203,31 @@ final class HelmAstoDeleteTest {
         HelmAstoDeleteTest.assertTmpDirWasRemoved();
     }
 
+    @Test
+    void deletesVersionsWithAbsentArchivesInSinglePass() throws IOException {
+        final String arkone = "ark-1.0.1.tgz";
+        new TestResource(arkone).saveTo(this.storage);
+        this.saveSourceIndex("index.yaml");
+        new Helm.Asto(this.storage).deleteVersions(
+            Collections.<String, Set<String>>singletonMap(
+                "ark", new SetOf<>("1.0.1", "1.2.0")
+            ),
+            new ListOf<Key>(new Key.From(arkone)),
+            Key.ROOT
+        ).toCompletableFuture().join();
+        MatcherAssert.assertThat(
+            "Versions were not removed from index",
+            new ContentOfIndex(this.storage).index().byChart("ark").isEmpty(),
+            new IsEqual<>(true)
+        );
+        MatcherAssert.assertThat(
+            "Archive of removed version remained",
+            this.storage.exists(new Key.From(arkone)).join(),
+            new IsEqual<>(false)
+        );
+        HelmAstoDeleteTest.assertTmpDirWasRemoved();
+    }
+
     private void delete(final Key prefix, final String... charts) {
         final Collection<Key> keys = Arrays.stream(charts)
             .map(Key.From::new)
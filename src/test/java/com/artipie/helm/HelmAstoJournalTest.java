@@ -0,0 +1,160 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm;
+
+import com.artipie.asto.Content;
+import com.artipie.asto.Key;
+import com.artipie.asto.Storage;
+import com.artipie.asto.memory.InMemoryStorage;
+import com.artipie.asto.test.TestResource;
+import com.artipie.helm.metadata.IndexJournal;
+import com.artipie.helm.metadata.IndexYaml;
+import com.artipie.helm.metadata.IndexYamlMapping;
+import com.artipie.helm.test.ContentOfIndex;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.cactoos.list.ListOf;
+import org.cactoos.set.SetOf;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.hamcrest.core.IsEqual;
+import org.hamcrest.core.IsInstanceOf;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link Helm.Asto} in journal mode.
+ * @since 0.3
+ */
+final class HelmAstoJournalTest {
+    /**
+     * Storage.
+     */
+    private Storage storage;
+
+    @BeforeEach
+    void setUp() {
+        this.storage = new InMemoryStorage();
+    }
+
+    @Test
+    void appendsRecordsAndCompactsThem() {
+        Stream.of("tomcat-0.4.1.tgz", "ark-1.0.1.tgz", "ark-1.2.0.tgz")
+            .forEach(tgz -> new TestResource(tgz).saveTo(this.storage));
+        new TestResource("index/index-one-ark.yaml").saveTo(this.storage, IndexYaml.INDEX_YAML);
+        final Helm.Asto helm = new Helm.Asto(this.storage, true);
+        helm.add(
+            new ListOf<Key>(new Key.From("tomcat-0.4.1.tgz"), new Key.From("ark-1.2.0.tgz")),
+            Key.ROOT
+        ).toCompletableFuture().join();
+        helm.delete(new ListOf<Key>(new Key.From("ark-1.0.1.tgz")), Key.ROOT)
+            .toCompletableFuture().join();
+        MatcherAssert.assertThat(
+            "Index was changed",
+            new ContentOfIndex(this.storage).index().entries().keySet(),
+            new IsEqual<>(new SetOf<>("ark"))
+        );
+        MatcherAssert.assertThat(
+            "Records were not appended",
+            this.storage.list(IndexJournal.JOURNAL).join().size(),
+            new IsEqual<>(2)
+        );
+        helm.compact(Key.ROOT).toCompletableFuture().join();
+        final IndexYamlMapping index = new ContentOfIndex(this.storage).index();
+        MatcherAssert.assertThat(
+            "Charts were not added",
+            index.entries().keySet(),
+            Matchers.containsInAnyOrder("ark", "tomcat")
+        );
+        MatcherAssert.assertThat(
+            "Version of ark was not replaced",
+            index.byChart("ark").stream()
+                .map(entry -> entry.get("version"))
+                .collect(Collectors.toList()),
+            new IsEqual<>(new ListOf<>("1.2.0"))
+        );
+        MatcherAssert.assertThat(
+            "Records were not removed",
+            this.storage.list(IndexJournal.JOURNAL).join().isEmpty(),
+            new IsEqual<>(true)
+        );
+    }
+
+    @Test
+    void compactsRecordsWhenIndexIsAbsent() {
+        new TestResource("ark-1.0.1.tgz").saveTo(this.storage);
+        final Helm.Asto helm = new Helm.Asto(this.storage, true);
+        helm.add(new ListOf<Key>(new Key.From("ark-1.0.1.tgz")), Key.ROOT)
+            .toCompletableFuture().join();
+        new JournalCompaction(this.storage, Key.ROOT).run();
+        MatcherAssert.assertThat(
+            new ContentOfIndex(this.storage).index()
+                .byChartAndVersion("ark", "1.0.1").isPresent(),
+            new IsEqual<>(true)
+        );
+    }
+
+    @Test
+    void throwsFailureOfCompaction() {
+        this.storage.save(
+            new Key.From(IndexJournal.JOURNAL, "0000000000000000001-broken.yaml"),
+            new Content.From("not: [yaml".getBytes(StandardCharsets.UTF_8))
+        ).join();
+        Assertions.assertThrows(
+            CompletionException.class,
+            () -> new JournalCompaction(this.storage, Key.ROOT).run()
+        );
+        MatcherAssert.assertThat(
+            "Record was removed",
+            this.storage.list(IndexJournal.JOURNAL).join().size(),
+            new IsEqual<>(1)
+        );
+    }
+
+    @Test
+    void failsToAddVersionWhichExistsInJournal() {
+        new TestResource("ark-1.0.1.tgz").saveTo(this.storage);
+        final Helm.Asto helm = new Helm.Asto(this.storage, true);
+        helm.add(new ListOf<Key>(new Key.From("ark-1.0.1.tgz")), Key.ROOT)
+            .toCompletableFuture().join();
+        final CompletionException exc = Assertions.assertThrows(
+            CompletionException.class,
+            () -> helm.add(new ListOf<Key>(new Key.From("ark-1.0.1.tgz")), Key.ROOT)
+                .toCompletableFuture().join()
+        );
+        MatcherAssert.assertThat(
+            "Existing version was added",
+            exc.getCause(),
+            new IsInstanceOf(IllegalStateException.class)
+        );
+        MatcherAssert.assertThat(
+            "Record was appended",
+            this.storage.list(IndexJournal.JOURNAL).join().size(),
+            new IsEqual<>(1)
+        );
+    }
+}
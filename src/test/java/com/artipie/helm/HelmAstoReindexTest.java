@@ -23,6 +23,7 @@
  */
 package com.artipie.helm;
 
+import com.artipie.asto.Content;
 import com.artipie.asto.Key;
 import com.artipie.asto.Storage;
 import com.artipie.asto.memory.InMemoryStorage;
@@ -31,6 +32,7 @@ import com.artipie.helm.metadata.IndexYaml;
 import com.artipie.helm.metadata.IndexYamlMapping;
 import com.artipie.helm.test.ContentOfIndex;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -39,13 +41,14 @@ import org.cactoos.set.SetOf;
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
 import org.hamcrest.core.IsEqual;
+import org.hamcrest.core.IsNot;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
 /**
- * Test for {@link Helm.Asto#reindex(Key)}.
+ * Test for {@link Helm.Asto#reindex(Key)} and {@link Helm.Asto#reindexIncrementally(Key)}.
  * @since 0.3
  * @checkstyle ClassDataAbstractionCouplingCheck (500 lines)
  */
@@ -106,6 +109,62 @@ final class HelmAstoReindexTest {
         HelmAstoReindexTest.assertTmpDirWasRemoved();
     }
 
+    @ParameterizedTest
+    @ValueSource(strings = {"index/index-one-ark.yaml", "index/index-one-ark-four-spaces.yaml"})
+    void reindexIncrementallyReusingUnchangedEntries(final String source) throws IOException {
+        Stream.of("ark-1.0.1.tgz", "ark-1.2.0.tgz", "tomcat-0.4.1.tgz")
+            .forEach(tgz -> new TestResource(tgz).saveTo(this.storage));
+        new TestResource(source).saveTo(this.storage, IndexYaml.INDEX_YAML);
+        new Helm.Asto(this.storage).reindexIncrementally(Key.ROOT).toCompletableFuture().join();
+        final IndexYamlMapping index = new ContentOfIndex(this.storage).index();
+        MatcherAssert.assertThat(
+            "Entry of unchanged archive was not reused",
+            index.byChartAndVersion("ark", "1.0.1").get().get("created"),
+            new IsEqual<>("2021-01-11T16:21:01.461400100+03:00")
+        );
+        MatcherAssert.assertThat(
+            "Versions of new archives were not added",
+            index.byChart("ark").size() + index.byChart("tomcat").size(),
+            new IsEqual<>(3)
+        );
+        HelmAstoReindexTest.assertTmpDirWasRemoved();
+    }
+
+    @Test
+    void reindexIncrementallyDoesNotReuseEntryOfArchiveFromOtherDirectory() throws IOException {
+        new TestResource("ark-1.0.1.tgz").saveTo(
+            this.storage, new Key.From("sub", "ark-1.0.1.tgz")
+        );
+        new TestResource("index/index-one-ark.yaml").saveTo(this.storage, IndexYaml.INDEX_YAML);
+        new Helm.Asto(this.storage).reindexIncrementally(Key.ROOT).toCompletableFuture().join();
+        MatcherAssert.assertThat(
+            new ContentOfIndex(this.storage).index()
+                .byChartAndVersion("ark", "1.0.1").get().get("created"),
+            new IsNot<>(new IsEqual<>("2021-01-11T16:21:01.461400100+03:00"))
+        );
+        HelmAstoReindexTest.assertTmpDirWasRemoved();
+    }
+
+    @Test
+    void reindexIncrementallyRendersChangedArchives() throws IOException {
+        new TestResource("ark-1.0.1.tgz").saveTo(this.storage);
+        this.storage.save(
+            IndexYaml.INDEX_YAML,
+            new Content.From(
+                new String(
+                    new TestResource("index/index-one-ark.yaml").asBytes(), StandardCharsets.UTF_8
+                ).replace("digest: b2f6", "digest: 0000").getBytes(StandardCharsets.UTF_8)
+            )
+        ).join();
+        new Helm.Asto(this.storage).reindexIncrementally(Key.ROOT).toCompletableFuture().join();
+        MatcherAssert.assertThat(
+            new ContentOfIndex(this.storage).index()
+                .byChartAndVersion("ark", "1.0.1").get().get("digest"),
+            new IsEqual<>("b2f648cc0e2caad299ad008ecbb1d7330f61cc44cef5020b9de265cdd457a0dd")
+        );
+        HelmAstoReindexTest.assertTmpDirWasRemoved();
+    }
+
     private static void assertTmpDirWasRemoved() throws IOException {
         final Path systemtemp = Paths.get(System.getProperty("java.io.tmpdir"));
         MatcherAssert.assertThat(
@@ -33,12 +33,14 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.Optional;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.cactoos.list.ListOf;
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.collection.IsMapContaining;
 import org.hamcrest.core.AllOf;
 import org.hamcrest.core.IsEqual;
 import org.hamcrest.core.IsInstanceOf;
+import org.hamcrest.core.IsSame;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
@@ -118,4 +120,26 @@ public final class TgzArchiveTest {
             )
         );
     }
+
+    @Test
+    void inspectsArchiveOnce() throws IOException {
+        final TestResource file = new TestResource("ark-1.0.1.tgz");
+        final TgzArchive tgz = new TgzArchive(file.asBytes());
+        final ChartInspector.Inspection insp = tgz.inspection();
+        MatcherAssert.assertThat(
+            "Inspection was not memoized",
+            tgz.inspection(),
+            new IsSame<>(insp)
+        );
+        MatcherAssert.assertThat(
+            "Digest is wrong",
+            tgz.metadata(Optional.empty()).get("digest"),
+            new IsEqual<>(DigestUtils.sha256Hex(file.asBytes()))
+        );
+        MatcherAssert.assertThat(
+            "Size is wrong",
+            insp.size(),
+            new IsEqual<>(Files.size(file.asPath()))
+        );
+    }
 }
@@ -0,0 +1,140 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.http;
+
+import com.artipie.asto.Content;
+import com.artipie.asto.Key;
+import com.artipie.asto.Storage;
+import com.artipie.asto.memory.InMemoryStorage;
+import com.artipie.asto.test.TestResource;
+import com.artipie.helm.test.ContentOfIndex;
+import com.artipie.http.Headers;
+import com.artipie.http.Response;
+import com.artipie.http.hm.RsHasStatus;
+import com.artipie.http.rq.RequestLine;
+import com.artipie.http.rq.RqMethod;
+import com.artipie.http.rs.RsStatus;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+import org.cactoos.set.SetOf;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.IsEqual;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Test for {@link BulkDeleteSlice}.
+ * @since 0.3
+ */
+@SuppressWarnings("PMD.AvoidDuplicateLiterals")
+final class BulkDeleteSliceTest {
+    /**
+     * Storage.
+     */
+    private Storage storage;
+
+    @BeforeEach
+    void setUp() {
+        this.storage = new InMemoryStorage();
+        Stream.of("index.yaml", "ark-1.0.1.tgz", "ark-1.2.0.tgz", "tomcat-0.4.1.tgz")
+            .forEach(source -> new TestResource(source).saveTo(this.storage));
+    }
+
+    @Test
+    void deletesSelectedVersionsInOneRequest() {
+        MatcherAssert.assertThat(
+            "Response status is not 200",
+            this.delete("ark/1.0.*\ntomcat\n"),
+            new RsHasStatus(RsStatus.OK)
+        );
+        MatcherAssert.assertThat(
+            "Deleted charts are present in index",
+            new ContentOfIndex(this.storage).index().entries().keySet(),
+            new IsEqual<>(new SetOf<>("ark"))
+        );
+        MatcherAssert.assertThat(
+            "Remained version is absent in index",
+            new ContentOfIndex(this.storage).index().byChartAndVersion("ark", "1.2.0")
+                .isPresent(),
+            new IsEqual<>(true)
+        );
+        MatcherAssert.assertThat(
+            "Archives of deleted charts remain",
+            Stream.of("ark-1.0.1.tgz", "tomcat-0.4.1.tgz")
+                .anyMatch(key -> this.storage.exists(new Key.From(key)).join()),
+            new IsEqual<>(false)
+        );
+        MatcherAssert.assertThat(
+            "Archive of remained version was deleted",
+            this.storage.exists(new Key.From("ark-1.2.0.tgz")).join(),
+            new IsEqual<>(true)
+        );
+    }
+
+    @Test
+    void removesVersionWithoutArchiveFromIndex() {
+        this.storage.delete(new Key.From("tomcat-0.4.1.tgz")).join();
+        MatcherAssert.assertThat(
+            "Response status is not 200",
+            this.delete("tomcat/0.4.1"),
+            new RsHasStatus(RsStatus.OK)
+        );
+        MatcherAssert.assertThat(
+            new ContentOfIndex(this.storage).index().entries().keySet(),
+            new IsEqual<>(new SetOf<>("ark"))
+        );
+    }
+
+    @Test
+    void returnsNotFoundIfNothingSelected() {
+        MatcherAssert.assertThat(
+            this.delete("absent\nark/2.*"),
+            new RsHasStatus(RsStatus.NOT_FOUND)
+        );
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "ark/1.0.1/extra", "ark 1.0.1"})
+    void returnsBadRequestForInvalidBody(final String body) {
+        MatcherAssert.assertThat(
+            this.delete(body),
+            new RsHasStatus(RsStatus.BAD_REQUEST)
+        );
+    }
+
+    /**
+     * Sends request for bulk deletion.
+     * @param body Body of request
+     * @return Response.
+     */
+    private Response delete(final String body) {
+        return new BulkDeleteSlice(this.storage).response(
+            new RequestLine(RqMethod.POST, "/bulk/delete").toString(),
+            Headers.EMPTY,
+            new Content.From(body.getBytes(StandardCharsets.UTF_8))
+        );
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.http;
+
+import com.artipie.asto.Content;
+import com.artipie.asto.Key;
+import com.artipie.asto.Storage;
+import com.artipie.asto.memory.InMemoryStorage;
+import com.artipie.asto.test.TestResource;
+import com.artipie.helm.TgzArchive;
+import com.artipie.helm.metadata.ShardedIndex;
+import com.artipie.helm.test.ContentOfIndex;
+import com.artipie.http.Headers;
+import com.artipie.http.hm.RsHasBody;
+import com.artipie.http.hm.RsHasStatus;
+import com.artipie.http.hm.SliceHasResponse;
+import com.artipie.http.rq.RequestLine;
+import com.artipie.http.rq.RqMethod;
+import com.artipie.http.rs.RsStatus;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.cactoos.set.SetOf;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.hamcrest.core.IsEqual;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link BulkUploadSlice}.
+ * @since 0.3
+ * @checkstyle ClassDataAbstractionCouplingCheck (500 lines)
+ */
+@SuppressWarnings("PMD.AvoidDuplicateLiterals")
+final class BulkUploadSliceTest {
+    /**
+     * Storage for tests.
+     */
+    private Storage storage;
+
+    @BeforeEach
+    void setUp() {
+        this.storage = new InMemoryStorage();
+    }
+
+    @Test
+    void storesAllChartsAndUpdatesIndex() throws IOException {
+        MatcherAssert.assertThat(
+            "Wrong status, expected OK",
+            new BulkUploadSlice(this.storage),
+            new SliceHasResponse(
+                new RsHasStatus(RsStatus.OK),
+                new RequestLine(RqMethod.POST, "/bulk"),
+                Headers.EMPTY,
+                new Content.From(
+                    BulkUploadSliceTest.tar("ark-1.0.1.tgz", "ark-1.2.0.tgz", "tomcat-0.4.1.tgz")
+                )
+            )
+        );
+        MatcherAssert.assertThat(
+            "Archives were not saved",
+            this.storage.list(Key.ROOT).join(),
+            Matchers.hasItems(
+                new Key.From("ark-1.0.1.tgz"),
+                new Key.From("ark-1.2.0.tgz"),
+                new Key.From("tomcat-0.4.1.tgz")
+            )
+        );
+        MatcherAssert.assertThat(
+            "Index was not updated",
+            new ContentOfIndex(this.storage).index().entries().keySet(),
+            new IsEqual<>(new SetOf<>("ark", "tomcat"))
+        );
+        MatcherAssert.assertThat(
+            "Versions of chart were not added to index",
+            new ContentOfIndex(this.storage).index().byChart("ark"),
+            Matchers.hasSize(2)
+        );
+    }
+
+    @Test
+    void reportsRejectedChartsAndIndexesOthers() throws IOException {
+        new TestResource("ark-1.0.1.tgz").saveTo(this.storage);
+        MatcherAssert.assertThat(
+            new BulkUploadSlice(this.storage),
+            new SliceHasResponse(
+                Matchers.allOf(
+                    new RsHasStatus(RsStatus.CONFLICT),
+                    new RsHasBody("ark-1.0.1.tgz: 409\n", StandardCharsets.UTF_8)
+                ),
+                new RequestLine(RqMethod.POST, "/bulk"),
+                Headers.EMPTY,
+                new Content.From(BulkUploadSliceTest.tar("ark-1.0.1.tgz", "tomcat-0.4.1.tgz"))
+            )
+        );
+        MatcherAssert.assertThat(
+            new ContentOfIndex(this.storage).index().entries().keySet(),
+            new IsEqual<>(new SetOf<>("tomcat"))
+        );
+    }
+
+    @Test
+    void reportsChartsWhichFailedToBeIndexed() throws IOException {
+        final ShardedIndex sharded = new ShardedIndex(this.storage);
+        sharded.add(new TgzArchive(new TestResource("tomcat-0.4.1.tgz").asBytes()))
+            .blockingAwait();
+        MatcherAssert.assertThat(
+            "Failure of indexing was not reported for chart",
+            new BulkUploadSlice(
+                this.storage,
+                new UploadsIndex(
+                    this.storage, IndexLayout.SHARDED, Optional.empty(),
+                    new IndexCache(this.storage)
+                )
+            ),
+            new SliceHasResponse(
+                Matchers.allOf(
+                    new RsHasStatus(RsStatus.INTERNAL_ERROR),
+                    new RsHasBody("tomcat-0.4.1.tgz: 500\n", StandardCharsets.UTF_8)
+                ),
+                new RequestLine(RqMethod.POST, "/bulk"),
+                Headers.EMPTY,
+                new Content.From(BulkUploadSliceTest.tar("ark-1.0.1.tgz", "tomcat-0.4.1.tgz"))
+            )
+        );
+        MatcherAssert.assertThat(
+            "Other chart was not indexed",
+            sharded.charts().blockingGet().keySet(),
+            Matchers.hasItem("ark")
+        );
+    }
+
+    /**
+     * Builds tar stream of test resources.
+     * @param names Names of resources
+     * @return Bytes of tar stream.
+     * @throws IOException In case of exception during writing
+     */
+    private static byte[] tar(final String... names) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(out)) {
+            for (final String name : names) {
+                final byte[] bytes = new TestResource(name).asBytes();
+                final TarArchiveEntry entry = new TarArchiveEntry(name);
+                entry.setSize(bytes.length);
+                tar.putArchiveEntry(entry);
+                tar.write(bytes);
+                tar.closeArchiveEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.http;
+
+import com.artipie.asto.Content;
+import com.artipie.asto.Storage;
+import com.artipie.asto.ext.PublisherAs;
+import com.artipie.asto.memory.InMemoryStorage;
+import com.artipie.asto.test.TestResource;
+import com.artipie.helm.TgzArchive;
+import com.artipie.helm.metadata.IndexYaml;
+import com.artipie.helm.metadata.ShardedIndex;
+import com.artipie.http.Headers;
+import com.artipie.http.hm.RsHasStatus;
+import com.artipie.http.hm.SliceHasResponse;
+import com.artipie.http.rq.RequestLine;
+import com.artipie.http.rq.RqMethod;
+import com.artipie.http.rs.RsStatus;
+import java.io.StringReader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.json.Json;
+import javax.json.JsonStructure;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.hamcrest.core.IsEqual;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Test for {@link ChartsApiSlice}.
+ * @since 0.3
+ */
+@SuppressWarnings("PMD.AvoidDuplicateLiterals")
+final class ChartsApiSliceTest {
+    /**
+     * Storage.
+     */
+    private Storage storage;
+
+    /**
+     * Slice.
+     */
+    private ChartsApiSlice slice;
+
+    @BeforeEach
+    void setUp() {
+        this.storage = new InMemoryStorage();
+        new TestResource("index.yaml").saveTo(this.storage);
+        this.slice = new ChartsApiSlice(this.storage);
+    }
+
+    @Test
+    void returnsAllCharts() {
+        MatcherAssert.assertThat(
+            this.json("/api/charts").asJsonObject().keySet(),
+            Matchers.containsInAnyOrder("ark", "tomcat")
+        );
+    }
+
+    @Test
+    void returnsVersionsOfChart() {
+        MatcherAssert.assertThat(
+            this.json("/api/charts/ark").asJsonArray(),
+            Matchers.hasSize(2)
+        );
+    }
+
+    @Test
+    void returnsVersionOfChart() {
+        MatcherAssert.assertThat(
+            this.json("/api/charts/ark/1.0.1").asJsonObject().getJsonArray("urls")
+                .getString(0),
+            new IsEqual<>("ark-1.0.1.tgz")
+        );
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"/api/charts/absent", "/api/charts/ark/0.0.1"})
+    void returnsNotFoundForAbsentChart(final String path) {
+        MatcherAssert.assertThat(
+            this.slice,
+            new SliceHasResponse(
+                new RsHasStatus(RsStatus.NOT_FOUND),
+                new RequestLine(RqMethod.GET, path)
+            )
+        );
+    }
+
+    @Test
+    void noticesChangesOfIndex() {
+        MatcherAssert.assertThat(
+            "Chart is absent in catalog",
+            this.json("/api/charts").asJsonObject().containsKey("ark"),
+            new IsEqual<>(true)
+        );
+        new IndexYaml(this.storage).deleteByName("ark").blockingAwait();
+        MatcherAssert.assertThat(
+            "Deleted chart remains in catalog",
+            this.slice,
+            new SliceHasResponse(
+                new RsHasStatus(RsStatus.NOT_FOUND),
+                new RequestLine(RqMethod.GET, "/api/charts/ark")
+            )
+        );
+    }
+
+    @Test
+    void noticesChangesOfFragmentsOfShardedIndex() {
+        final Storage strg = new InMemoryStorage();
+        new ShardedIndex(strg)
+            .add(new TgzArchive(new TestResource("ark-1.0.1.tgz").asBytes()))
+            .blockingAwait();
+        this.slice = new ChartsApiSlice(
+            new ChartCatalog(strg, IndexLayout.SHARDED, new IndexCache(strg))
+        );
+        MatcherAssert.assertThat(
+            "Chart is absent in catalog",
+            this.json("/api/charts").asJsonObject().keySet(),
+            Matchers.contains("ark")
+        );
+        new ShardedIndex(strg)
+            .add(new TgzArchive(new TestResource("tomcat-0.4.1.tgz").asBytes()))
+            .blockingAwait();
+        MatcherAssert.assertThat(
+            "Added chart is absent in catalog",
+            this.json("/api/charts").asJsonObject().keySet(),
+            Matchers.containsInAnyOrder("ark", "tomcat")
+        );
+    }
+
+    /**
+     * Obtains JSON from response of the slice.
+     * @param path Path of request
+     * @return JSON from body of response.
+     */
+    private JsonStructure json(final String path) {
+        final AtomicReference<String> cbody = new AtomicReference<>();
+        this.slice.response(
+            new RequestLine(RqMethod.GET, path).toString(),
+            Headers.EMPTY,
+            Content.EMPTY
+        ).send(
+            (status, headers, body) -> {
+                cbody.set(new PublisherAs(body).asciiString().toCompletableFuture().join());
+                return CompletableFuture.allOf();
+            }
+        ).toCompletableFuture().join();
+        return Json.createReader(new StringReader(cbody.get())).read();
+    }
+}
@@ -28,13 +28,16 @@ import com.artipie.asto.Key;
 import com.artipie.asto.Storage;
 import com.artipie.asto.memory.InMemoryStorage;
 import com.artipie.asto.test.TestResource;
+import com.artipie.helm.metadata.IndexYaml;
 import com.artipie.helm.metadata.IndexYamlMapping;
 import com.artipie.helm.test.ContentOfIndex;
 import com.artipie.http.Headers;
+import com.artipie.http.Response;
 import com.artipie.http.hm.RsHasStatus;
 import com.artipie.http.rq.RequestLine;
 import com.artipie.http.rq.RqMethod;
 import com.artipie.http.rs.RsStatus;
+import java.nio.charset.StandardCharsets;
 import java.util.stream.Stream;
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.core.IsEqual;
@@ -139,6 +142,75 @@ final class DeleteChartSliceTest {
         );
     }
 
+    @Test
+    void deletesArchivesLocatedByIndexWithoutReadingOthers() {
+        Stream.of("index.yaml", "ark-1.0.1.tgz", "ark-1.2.0.tgz", "tomcat-0.4.1.tgz")
+            .forEach(source -> new TestResource(source).saveTo(this.storage));
+        final Key broken = new Key.From("broken-0.0.1.tgz");
+        this.storage.save(
+            broken, new Content.From("not an archive".getBytes(StandardCharsets.UTF_8))
+        ).join();
+        MatcherAssert.assertThat(
+            "Response status is not 200",
+            new DeleteChartSlice(this.storage).response(
+                new RequestLine(RqMethod.DELETE, "/charts/ark/1.2.0").toString(),
+                Headers.EMPTY,
+                Content.EMPTY
+            ),
+            new RsHasStatus(RsStatus.OK)
+        );
+        MatcherAssert.assertThat(
+            "Archive of deleted chart remains",
+            this.storage.exists(new Key.From("ark-1.2.0.tgz")).join(),
+            new IsEqual<>(false)
+        );
+        MatcherAssert.assertThat(
+            "Archive of other version was deleted",
+            this.storage.exists(new Key.From("ark-1.0.1.tgz")).join(),
+            new IsEqual<>(true)
+        );
+    }
+
+    @Test
+    void deletesArchiveOfChartAbsentInIndex() {
+        new TestResource("index/index-one-ark.yaml").saveTo(this.storage, IndexYaml.INDEX_YAML);
+        new TestResource("tomcat-0.4.1.tgz").saveTo(this.storage);
+        MatcherAssert.assertThat(
+            "Response status is not 200",
+            new DeleteChartSlice(this.storage).response(
+                new RequestLine(RqMethod.DELETE, "/charts/tomcat").toString(),
+                Headers.EMPTY,
+                Content.EMPTY
+            ),
+            new RsHasStatus(RsStatus.OK)
+        );
+        MatcherAssert.assertThat(
+            "Archive of chart absent in index remains",
+            this.storage.exists(new Key.From("tomcat-0.4.1.tgz")).join(),
+            new IsEqual<>(false)
+        );
+    }
+
+    @Test
+    void answersNotFoundToSecondOfConcurrentDeletions() {
+        Stream.of("index.yaml", "ark-1.0.1.tgz", "ark-1.2.0.tgz", "tomcat-0.4.1.tgz")
+            .forEach(source -> new TestResource(source).saveTo(this.storage));
+        final DeleteChartSlice slice = new DeleteChartSlice(this.storage);
+        final String line = new RequestLine(RqMethod.DELETE, "/charts/ark/1.2.0").toString();
+        final Response first = slice.response(line, Headers.EMPTY, Content.EMPTY);
+        final Response second = slice.response(line, Headers.EMPTY, Content.EMPTY);
+        MatcherAssert.assertThat(
+            "First deletion is not successful",
+            first,
+            new RsHasStatus(RsStatus.OK)
+        );
+        MatcherAssert.assertThat(
+            "Second deletion did not answer not found",
+            second,
+            new RsHasStatus(RsStatus.NOT_FOUND)
+        );
+    }
+
     @ParameterizedTest
     @ValueSource(strings = {"/charts/not-exist", "/charts/ark/0.0.0"})
     void failsToDeleteByNotExisted(final String rqline) {
@@ -31,7 +31,11 @@ import com.artipie.asto.ext.PublisherAs;
 import com.artipie.asto.memory.InMemoryStorage;
 import com.artipie.asto.test.TestResource;
 import com.artipie.helm.ChartYaml;
+import com.artipie.helm.TgzArchive;
+import com.artipie.helm.metadata.IndexJournal;
+import com.artipie.helm.metadata.IndexYaml;
 import com.artipie.helm.metadata.IndexYamlMapping;
+import com.artipie.helm.metadata.ShardedIndex;
 import com.artipie.http.Headers;
 import com.artipie.http.hm.RsHasStatus;
 import com.artipie.http.hm.SliceHasResponse;
@@ -39,13 +43,29 @@ import com.artipie.http.rq.RequestLine;
 import com.artipie.http.rq.RqMethod;
 import com.artipie.http.rs.RsStatus;
 import com.google.common.base.Throwables;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPInputStream;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.cactoos.set.SetOf;
 import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
 import org.hamcrest.core.IsEqual;
 import org.hamcrest.core.IsInstanceOf;
+import org.hamcrest.core.StringContains;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -102,6 +122,63 @@ final class DownloadIndexSliceTest {
         );
     }
 
+    @Test
+    void assemblesIndexFromFragments() {
+        final AtomicReference<String> cbody = new AtomicReference<>();
+        new ShardedIndex(this.storage)
+            .add(new TgzArchive(new TestResource("tomcat-0.4.1.tgz").asBytes()))
+            .blockingAwait();
+        new DownloadIndexSlice("http://central.artipie.com", this.storage, IndexLayout.SHARDED)
+            .response(
+                new RequestLine(RqMethod.GET, "/index.yaml").toString(),
+                Headers.EMPTY,
+                Content.EMPTY
+            ).send(
+                (status, headers, body) -> {
+                    cbody.set(new PublisherAs(body).asciiString().toCompletableFuture().join());
+                    return CompletableFuture.allOf();
+                }
+            ).toCompletableFuture().join();
+        MatcherAssert.assertThat(
+            new ChartYaml(
+                new IndexYamlMapping(cbody.get())
+                    .byChart("tomcat").get(0)
+            ).urls().get(0),
+            new IsEqual<>("http://central.artipie.com/tomcat-0.4.1.tgz")
+        );
+    }
+
+    @Test
+    void overlaysRecordsOfJournal() {
+        final AtomicReference<String> cbody = new AtomicReference<>();
+        new TestResource("index/index-one-ark.yaml").saveTo(this.storage, IndexYaml.INDEX_YAML);
+        final Map<String, Set<String>> deleted = new HashMap<>();
+        deleted.put("ark", new SetOf<>("1.0.1"));
+        new IndexJournal(this.storage, Key.ROOT).delete(deleted).toCompletableFuture().join();
+        final Map<String, Set<Pair<String, ChartYaml>>> added = new HashMap<>();
+        final ChartYaml tomcat = new ChartYaml(
+            new TgzArchive(new TestResource("tomcat-0.4.1.tgz").asBytes())
+                .metadata(Optional.empty())
+        );
+        added.put("tomcat", new SetOf<>(new ImmutablePair<>("0.4.1", tomcat)));
+        new IndexJournal(this.storage, Key.ROOT).add(added).toCompletableFuture().join();
+        new DownloadIndexSlice("http://central.artipie.com", this.storage, IndexLayout.JOURNAL)
+            .response(
+                new RequestLine(RqMethod.GET, "/index.yaml").toString(),
+                Headers.EMPTY,
+                Content.EMPTY
+            ).send(
+                (status, headers, body) -> {
+                    cbody.set(new PublisherAs(body).asciiString().toCompletableFuture().join());
+                    return CompletableFuture.allOf();
+                }
+            ).toCompletableFuture().join();
+        MatcherAssert.assertThat(
+            new IndexYamlMapping(cbody.get()).entries().keySet(),
+            new IsEqual<>(new SetOf<>("tomcat"))
+        );
+    }
+
     @Test
     void returnsBadRequest() {
         MatcherAssert.assertThat(
@@ -148,8 +225,9 @@ final class DownloadIndexSliceTest {
                 new RequestLine(RqMethod.GET, "/index.yaml").toString(),
                 Headers.EMPTY,
                 Content.EMPTY
-            ).send((status, headers, body) -> CompletableFuture.completedFuture(null))
-            .handle(
+            ).send(
+                (status, headers, body) -> new PublisherAs(body).bytes().thenAccept(bytes -> { })
+            ).handle(
                 (res, thr) -> {
                     exc.set(thr);
                     return CompletableFuture.allOf();
@@ -160,4 +238,148 @@ final class DownloadIndexSliceTest {
             new IsInstanceOf(URISyntaxException.class)
         );
     }
+
+    @Test
+    void servesCachedIndexUntilIndexFileIsChanged() {
+        final String base = "http://central.artipie.com";
+        final IndexCache cache = new IndexCache(this.storage);
+        final DownloadIndexSlice slice = new DownloadIndexSlice(
+            base, this.storage, IndexLayout.SINGLE, cache
+        );
+        new TestResource("index.yaml").saveTo(this.storage);
+        final String first = DownloadIndexSliceTest.body(slice);
+        MatcherAssert.assertThat(
+            "Cached index was not served",
+            DownloadIndexSliceTest.body(slice),
+            new IsEqual<>(first)
+        );
+        new IndexYaml(this.storage).deleteByName("tomcat").blockingAwait();
+        MatcherAssert.assertThat(
+            "Changed index file was not rendered",
+            new IndexYamlMapping(DownloadIndexSliceTest.body(slice)).entries().keySet(),
+            new IsEqual<>(new SetOf<>("ark"))
+        );
+    }
+
+    @Test
+    void returnsGzipCompressedIndexIfAccepted() throws IOException {
+        final DownloadIndexSlice slice = new DownloadIndexSlice(
+            "http://central.artipie.com", this.storage
+        );
+        new TestResource("index.yaml").saveTo(this.storage);
+        final String plain = DownloadIndexSliceTest.body(slice);
+        final AtomicReference<byte[]> cbody = new AtomicReference<>();
+        final AtomicReference<Iterable<Map.Entry<String, String>>> cheaders;
+        cheaders = new AtomicReference<>();
+        slice.response(
+            new RequestLine(RqMethod.GET, "/index.yaml").toString(),
+            new Headers.From("Accept-Encoding", "deflate, gzip;q=1.0"),
+            Content.EMPTY
+        ).send(
+            (status, headers, body) -> {
+                cheaders.set(headers);
+                cbody.set(new PublisherAs(body).bytes().toCompletableFuture().join());
+                return CompletableFuture.allOf();
+            }
+        ).toCompletableFuture().join();
+        MatcherAssert.assertThat(
+            "Content-Encoding header is absent",
+            StreamSupport.stream(cheaders.get().spliterator(), false)
+                .map(hdr -> String.format("%s: %s", hdr.getKey(), hdr.getValue()))
+                .collect(Collectors.toList()),
+            Matchers.hasItem("Content-Encoding: gzip")
+        );
+        MatcherAssert.assertThat(
+            "Compressed index differs from plain one",
+            new String(
+                IOUtils.toByteArray(
+                    new GZIPInputStream(new ByteArrayInputStream(cbody.get()))
+                ),
+                StandardCharsets.UTF_8
+            ),
+            new IsEqual<>(plain)
+        );
+    }
+
+    @Test
+    void returnsNotModifiedForMatchingEtag() {
+        final DownloadIndexSlice slice = new DownloadIndexSlice(
+            "http://central.artipie.com", this.storage
+        );
+        new TestResource("index.yaml").saveTo(this.storage);
+        final AtomicReference<String> etag = new AtomicReference<>();
+        slice.response(
+            new RequestLine(RqMethod.GET, "/index.yaml").toString(),
+            Headers.EMPTY,
+            Content.EMPTY
+        ).send(
+            (status, headers, body) -> {
+                headers.forEach(
+                    hdr -> {
+                        if ("ETag".equalsIgnoreCase(hdr.getKey())) {
+                            etag.set(hdr.getValue());
+                        }
+                    }
+                );
+                return new PublisherAs(body).bytes().thenApply(arr -> null);
+            }
+        ).toCompletableFuture().join();
+        MatcherAssert.assertThat(
+            "Index with the same ETag was returned",
+            slice,
+            new SliceHasResponse(
+                new RsHasStatus(RsStatus.NOT_MODIFIED),
+                new RequestLine(RqMethod.GET, "/index.yaml"),
+                new Headers.From("If-None-Match", etag.get()),
+                Content.EMPTY
+            )
+        );
+        new IndexYaml(this.storage).deleteByName("tomcat").blockingAwait();
+        MatcherAssert.assertThat(
+            "Changed index was not returned",
+            slice,
+            new SliceHasResponse(
+                new RsHasStatus(RsStatus.OK),
+                new RequestLine(RqMethod.GET, "/index.yaml"),
+                new Headers.From("If-None-Match", etag.get()),
+                Content.EMPTY
+            )
+        );
+    }
+
+    @Test
+    void noticesRewriteOfIndexByOtherProcess() {
+        final DownloadIndexSlice slice = new DownloadIndexSlice(
+            "http://central.artipie.com", this.storage
+        );
+        new TestResource("index.yaml").saveTo(this.storage);
+        DownloadIndexSliceTest.body(slice);
+        this.storage.save(
+            new Key.From("index.yaml"),
+            new Content.From(
+                new String(new TestResource("index.yaml").asBytes(), StandardCharsets.UTF_8)
+                    .replace("digest: b2f6", "digest: 00000")
+                    .getBytes(StandardCharsets.UTF_8)
+            )
+        ).join();
+        MatcherAssert.assertThat(
+            DownloadIndexSliceTest.body(slice),
+            new StringContains("digest: 00000")
+        );
+    }
+
+    private static String body(final DownloadIndexSlice slice) {
+        final AtomicReference<String> cbody = new AtomicReference<>();
+        slice.response(
+            new RequestLine(RqMethod.GET, "/index.yaml").toString(),
+            Headers.EMPTY,
+            Content.EMPTY
+        ).send(
+            (status, headers, body) -> {
+                cbody.set(new PublisherAs(body).asciiString().toCompletableFuture().join());
+                return CompletableFuture.allOf();
+            }
+        ).toCompletableFuture().join();
+        return cbody.get();
+    }
 }
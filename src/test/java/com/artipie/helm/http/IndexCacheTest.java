@@ -0,0 +1,144 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.http;
+
+import com.artipie.asto.Content;
+import com.artipie.asto.Key;
+import com.artipie.asto.Storage;
+import com.artipie.asto.memory.InMemoryStorage;
+import com.artipie.helm.metadata.BinaryIndex;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.IsEqual;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link IndexCache}.
+ * @since 0.3
+ */
+final class IndexCacheTest {
+    /**
+     * Key of index file.
+     */
+    private static final Key INDEX = new Key.From("index.yaml");
+
+    /**
+     * Content of index file.
+     */
+    private static final byte[] YAML = "apiVersion: v1\nentries: {}\n"
+        .getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Storage.
+     */
+    private Storage storage;
+
+    @BeforeEach
+    void setUp() {
+        this.storage = new InMemoryStorage();
+        this.storage.save(IndexCacheTest.INDEX, new Content.From(IndexCacheTest.YAML)).join();
+    }
+
+    @Test
+    void takesDigestFromHeaderOfSidecar() throws IOException {
+        final String dgst = StringUtils.repeat('a', 64);
+        this.storage.save(
+            BinaryIndex.key(Key.ROOT),
+            new Content.From(IndexCacheTest.sidecar(IndexCacheTest.YAML.length, dgst))
+        ).join();
+        MatcherAssert.assertThat(
+            new IndexCache(this.storage).stamp(IndexCacheTest.INDEX)
+                .toCompletableFuture().join(),
+            new IsEqual<>(new IndexCache.Stamp(dgst, Optional.empty()))
+        );
+    }
+
+    @Test
+    void hashesIndexIfSidecarWasBuiltForOtherSize() throws IOException {
+        this.storage.save(
+            BinaryIndex.key(Key.ROOT),
+            new Content.From(
+                IndexCacheTest.sidecar(
+                    IndexCacheTest.YAML.length + 1L, StringUtils.repeat('a', 64)
+                )
+            )
+        ).join();
+        MatcherAssert.assertThat(
+            new IndexCache(this.storage).stamp(IndexCacheTest.INDEX)
+                .toCompletableFuture().join(),
+            new IsEqual<>(
+                new IndexCache.Stamp(DigestUtils.sha256Hex(IndexCacheTest.YAML), Optional.empty())
+            )
+        );
+    }
+
+    @Test
+    void keepsStampWhileIndexIsNotChanged() throws IOException {
+        final IndexCache cache = new IndexCache(this.storage);
+        final IndexCache.Stamp first = cache.stamp(IndexCacheTest.INDEX)
+            .toCompletableFuture().join();
+        final String dgst = StringUtils.repeat('b', 64);
+        this.storage.save(
+            BinaryIndex.key(Key.ROOT),
+            new Content.From(IndexCacheTest.sidecar(IndexCacheTest.YAML.length, dgst))
+        ).join();
+        MatcherAssert.assertThat(
+            "Stamp is not reused while metadata of index is the same",
+            cache.stamp(IndexCacheTest.INDEX).toCompletableFuture().join(),
+            new IsEqual<>(first)
+        );
+        cache.invalidate(IndexCacheTest.INDEX);
+        MatcherAssert.assertThat(
+            "Stamp is not refreshed after invalidation",
+            cache.stamp(IndexCacheTest.INDEX).toCompletableFuture().join(),
+            new IsEqual<>(new IndexCache.Stamp(dgst, Optional.empty()))
+        );
+    }
+
+    /**
+     * Header of sidecar without the rest of binary index, the cache must
+     * not need more than the header.
+     * @param size Size of index file
+     * @param dgst Digest of index file
+     * @return Bytes of header.
+     * @throws IOException In case of exception during writing
+     */
+    private static byte[] sidecar(final long size, final String dgst) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0x48494458);
+            out.writeByte(2);
+            out.writeLong(size);
+            out.writeUTF(dgst);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -35,9 +35,12 @@ import com.artipie.http.hm.SliceHasResponse;
 import com.artipie.http.rq.RequestLine;
 import com.artipie.http.rq.RqMethod;
 import com.artipie.http.rs.RsStatus;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import org.cactoos.list.ListOf;
 import org.cactoos.set.SetOf;
 import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
 import org.hamcrest.core.IsEqual;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -102,4 +105,84 @@ final class PushChartSliceTest {
             new IsEqual<>(new SetOf<>("ark"))
         );
     }
+
+    @Test
+    void rejectsExistingVersionOfChart() {
+        final String tgz = "ark-1.0.1.tgz";
+        new TestResource(tgz).saveTo(this.storage);
+        MatcherAssert.assertThat(
+            "Wrong status, expected CONFLICT",
+            new PushChartSlice(this.storage),
+            new SliceHasResponse(
+                new RsHasStatus(RsStatus.CONFLICT),
+                new RequestLine(RqMethod.POST, "/"),
+                Headers.EMPTY,
+                new Content.From(new TestResource(tgz).asBytes())
+            )
+        );
+        MatcherAssert.assertThat(
+            "Temporary upload was not removed",
+            this.storage.list(Key.ROOT).join(),
+            new IsEqual<>(new ListOf<Key>(new Key.From(tgz)))
+        );
+    }
+
+    @Test
+    void rejectsInvalidArchive() {
+        MatcherAssert.assertThat(
+            "Wrong status, expected BAD_REQUEST",
+            new PushChartSlice(this.storage),
+            new SliceHasResponse(
+                new RsHasStatus(RsStatus.BAD_REQUEST),
+                new RequestLine(RqMethod.POST, "/"),
+                Headers.EMPTY,
+                new Content.From("not an archive".getBytes(StandardCharsets.UTF_8))
+            )
+        );
+        MatcherAssert.assertThat(
+            "Temporary upload was not removed",
+            this.storage.list(Key.ROOT).join(),
+            new IsEqual<>(new ListOf<Key>())
+        );
+    }
+
+    @Test
+    void indexesUploadedChartsInBackground() {
+        final WriteBehindIndex behind = new WriteBehindIndex(
+            this.storage, Duration.ofHours(1), 2
+        );
+        final String tgz = "ark-1.0.1.tgz";
+        MatcherAssert.assertThat(
+            "Wrong status, expected OK",
+            new PushChartSlice(this.storage, behind),
+            new SliceHasResponse(
+                new RsHasStatus(RsStatus.OK),
+                new RequestLine(RqMethod.POST, "/"),
+                Headers.EMPTY,
+                new Content.From(new TestResource(tgz).asBytes())
+            )
+        );
+        MatcherAssert.assertThat(
+            "Chart is not pending",
+            behind.pending(),
+            Matchers.contains(new Key.From(tgz))
+        );
+        MatcherAssert.assertThat(
+            "Index was generated before flush",
+            this.storage.exists(new Key.From("index.yaml")).join(),
+            new IsEqual<>(false)
+        );
+        behind.flush().toCompletableFuture().join();
+        MatcherAssert.assertThat(
+            "Index was not updated",
+            new ContentOfIndex(this.storage).index()
+                .entries().keySet(),
+            new IsEqual<>(new SetOf<>("ark"))
+        );
+        MatcherAssert.assertThat(
+            "Chart is still pending",
+            behind.pending(),
+            Matchers.empty()
+        );
+    }
 }
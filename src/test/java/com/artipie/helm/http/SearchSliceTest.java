@@ -0,0 +1,179 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.http;
+
+import com.artipie.asto.Content;
+import com.artipie.asto.Storage;
+import com.artipie.asto.ext.PublisherAs;
+import com.artipie.asto.memory.InMemoryStorage;
+import com.artipie.asto.test.TestResource;
+import com.artipie.helm.TgzArchive;
+import com.artipie.helm.metadata.IndexYaml;
+import com.artipie.helm.metadata.ShardedIndex;
+import com.artipie.http.Headers;
+import com.artipie.http.hm.RsHasStatus;
+import com.artipie.http.hm.SliceHasResponse;
+import com.artipie.http.rq.RequestLine;
+import com.artipie.http.rq.RqMethod;
+import com.artipie.http.rs.RsStatus;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import javax.json.Json;
+import javax.json.JsonObject;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+/**
+ * Test for {@link SearchSlice}.
+ * @since 0.3
+ */
+@SuppressWarnings("PMD.AvoidDuplicateLiterals")
+final class SearchSliceTest {
+    /**
+     * Storage.
+     */
+    private Storage storage;
+
+    /**
+     * Slice.
+     */
+    private SearchSlice slice;
+
+    @BeforeEach
+    void setUp() {
+        this.storage = new InMemoryStorage();
+        new TestResource("index.yaml").saveTo(this.storage);
+        this.slice = new SearchSlice(this.storage);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "ark,ark",
+        "web,tomcat",
+        "Server,tomcat",
+        "unguic,ark",
+        "hotmail,ark",
+        "yahavb,tomcat"
+    })
+    void findsChartByTerm(final String query, final String chart) {
+        MatcherAssert.assertThat(
+            this.found(query),
+            Matchers.contains(chart)
+        );
+    }
+
+    @Test
+    void findsChartsMatchingAllWords() {
+        MatcherAssert.assertThat(
+            "Charts matching one of words are not found",
+            this.found("helm"),
+            Matchers.contains("ark")
+        );
+        MatcherAssert.assertThat(
+            "Charts matching not all words are found",
+            this.found("helm%20tomcat"),
+            Matchers.empty()
+        );
+    }
+
+    @Test
+    void updatesIndexWhenChartIsDeleted() {
+        MatcherAssert.assertThat(
+            "Chart is not found",
+            this.found("ark"),
+            Matchers.contains("ark")
+        );
+        new IndexYaml(this.storage).deleteByName("ark").blockingAwait();
+        MatcherAssert.assertThat(
+            "Deleted chart is found",
+            this.found("ark"),
+            Matchers.empty()
+        );
+    }
+
+    @Test
+    void findsChartsAddedToShardedIndex() {
+        final Storage strg = new InMemoryStorage();
+        new ShardedIndex(strg)
+            .add(new TgzArchive(new TestResource("ark-1.0.1.tgz").asBytes()))
+            .blockingAwait();
+        this.slice = new SearchSlice(
+            new ChartSearch(new ChartCatalog(strg, IndexLayout.SHARDED, new IndexCache(strg)))
+        );
+        MatcherAssert.assertThat(
+            "Chart of fragment is not found",
+            this.found("ark"),
+            Matchers.contains("ark")
+        );
+        new ShardedIndex(strg)
+            .add(new TgzArchive(new TestResource("tomcat-0.4.1.tgz").asBytes()))
+            .blockingAwait();
+        MatcherAssert.assertThat(
+            "Chart of added fragment is not found",
+            this.found("tomcat"),
+            Matchers.contains("tomcat")
+        );
+    }
+
+    @Test
+    void returnsBadRequestWithoutQuery() {
+        MatcherAssert.assertThat(
+            this.slice,
+            new SliceHasResponse(
+                new RsHasStatus(RsStatus.BAD_REQUEST),
+                new RequestLine(RqMethod.GET, "/api/search")
+            )
+        );
+    }
+
+    /**
+     * Searches charts.
+     * @param query Query
+     * @return Names of found charts.
+     */
+    private List<String> found(final String query) {
+        final AtomicReference<String> cbody = new AtomicReference<>();
+        this.slice.response(
+            new RequestLine(RqMethod.GET, String.format("/api/search?q=%s", query)).toString(),
+            Headers.EMPTY,
+            Content.EMPTY
+        ).send(
+            (status, headers, body) -> {
+                cbody.set(new PublisherAs(body).asciiString().toCompletableFuture().join());
+                return CompletableFuture.allOf();
+            }
+        ).toCompletableFuture().join();
+        return Json.createReader(new StringReader(cbody.get())).readArray()
+            .getValuesAs(JsonObject.class).stream()
+            .map(obj -> obj.getString("name"))
+            .collect(Collectors.toList());
+    }
+}
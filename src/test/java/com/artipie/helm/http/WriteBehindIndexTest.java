@@ -0,0 +1,98 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.http;
+
+import com.artipie.asto.Key;
+import com.artipie.asto.Storage;
+import com.artipie.asto.memory.InMemoryStorage;
+import com.artipie.asto.test.TestResource;
+import com.artipie.helm.test.ContentOfIndex;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.awaitility.Awaitility;
+import org.cactoos.set.SetOf;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.hamcrest.core.IsEqual;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link WriteBehindIndex}.
+ * @since 0.3
+ */
+final class WriteBehindIndexTest {
+    @Test
+    void updatesIndexWhenBatchIsFull() {
+        final Storage storage = new InMemoryStorage();
+        final WriteBehindIndex behind = new WriteBehindIndex(storage, Duration.ofHours(1), 2);
+        new TestResource("ark-1.0.1.tgz").saveTo(storage);
+        new TestResource("tomcat-0.4.1.tgz").saveTo(storage);
+        behind.add(new Key.From("ark-1.0.1.tgz"));
+        behind.add(new Key.From("tomcat-0.4.1.tgz"));
+        Awaitility.await().atMost(10, TimeUnit.SECONDS)
+            .until(() -> behind.pending().isEmpty());
+        MatcherAssert.assertThat(
+            new ContentOfIndex(storage).index().entries().keySet(),
+            new IsEqual<>(new SetOf<>("ark", "tomcat"))
+        );
+    }
+
+    @Test
+    void dropsKeyWhichCanNotBeAddedWithoutBlockingOthers() {
+        final Storage storage = new InMemoryStorage();
+        final WriteBehindIndex behind = new WriteBehindIndex(storage, Duration.ofMillis(50), 2);
+        new TestResource("ark-1.0.1.tgz").saveTo(storage);
+        final Key absent = new Key.From("absent-0.0.1.tgz");
+        behind.add(absent);
+        behind.add(new Key.From("ark-1.0.1.tgz"));
+        Awaitility.await().atMost(10, TimeUnit.SECONDS)
+            .until(() -> behind.pending().isEmpty());
+        MatcherAssert.assertThat(
+            "Archive which can not be added is not reported",
+            behind.failed(),
+            Matchers.contains(absent)
+        );
+        MatcherAssert.assertThat(
+            "Other archive of the batch was not added",
+            new ContentOfIndex(storage).index().entries().keySet(),
+            new IsEqual<>(new SetOf<>("ark"))
+        );
+    }
+
+    @Test
+    void updatesIndexAfterDelay() {
+        final Storage storage = new InMemoryStorage();
+        final WriteBehindIndex behind = new WriteBehindIndex(
+            storage, Duration.ofMillis(100), Integer.MAX_VALUE
+        );
+        new TestResource("ark-1.0.1.tgz").saveTo(storage);
+        behind.add(new Key.From("ark-1.0.1.tgz"));
+        Awaitility.await().atMost(10, TimeUnit.SECONDS)
+            .until(() -> behind.pending().isEmpty());
+        MatcherAssert.assertThat(
+            new ContentOfIndex(storage).index().entries().keySet(),
+            new IsEqual<>(new SetOf<>("ark"))
+        );
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.metadata;
+
+import com.artipie.asto.test.TestResource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.hamcrest.core.IsEqual;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Test for {@link BinaryIndex}.
+ * @since 0.3
+ */
+final class BinaryIndexTest {
+    /**
+     * Temporary directory for all tests.
+     * @checkstyle VisibilityModifierCheck (3 lines)
+     */
+    @TempDir
+    Path dir;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"index.yaml", "index/index-four-spaces.yaml"})
+    void pointsToEntriesOfVersions(final String index) throws IOException {
+        final Path path = this.dir.resolve("index.yaml");
+        Files.write(path, new TestResource(index).asBytes());
+        final String source = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        final BinaryIndex bin = new BinaryIndex(path);
+        MatcherAssert.assertThat(
+            "Versions are incorrect",
+            bin.versions().get("ark"),
+            Matchers.containsInAnyOrder("1.0.1", "1.2.0")
+        );
+        final BinaryIndex.Block block = bin.entry("tomcat", "0.4.1").get();
+        final String entry = source.substring((int) block.offset(), (int) block.end());
+        MatcherAssert.assertThat(
+            "Entry does not contain version",
+            entry,
+            Matchers.allOf(
+                Matchers.containsString("version: 0.4.1"),
+                Matchers.containsString("tomcat-0.4.1.tgz"),
+                Matchers.not(Matchers.containsString("ark"))
+            )
+        );
+        MatcherAssert.assertThat(
+            "Digest of archive is incorrect",
+            entry,
+            Matchers.containsString(block.digest())
+        );
+        MatcherAssert.assertThat(
+            "Chart block does not start with name",
+            source.substring((int) bin.chart("ark").get().offset()),
+            Matchers.matchesPattern("(?s)\\s*ark:\\s*\\n.*")
+        );
+        MatcherAssert.assertThat(
+            "End of entries is incorrect",
+            source.substring((int) bin.entriesEnd()),
+            Matchers.startsWith("apiVersion:")
+        );
+    }
+
+    @Test
+    void containsDigestAndSizeOfIndex() throws IOException {
+        final Path path = this.dir.resolve("index.yaml");
+        Files.write(path, new TestResource("index.yaml").asBytes());
+        final byte[] bytes = Files.readAllBytes(path);
+        final BinaryIndex bin = new BinaryIndex(path);
+        MatcherAssert.assertThat(
+            "Digest of index is incorrect",
+            bin.digest(),
+            new IsEqual<>(DigestUtils.sha256Hex(bytes))
+        );
+        MatcherAssert.assertThat(
+            "Size of index is incorrect",
+            bin.size(),
+            new IsEqual<>((long) bytes.length)
+        );
+    }
+
+    @Test
+    void readsWrittenSidecar() throws IOException {
+        final Path path = this.dir.resolve("index.yaml");
+        Files.write(path, new TestResource("index.yaml").asBytes());
+        final BinaryIndex origin = new BinaryIndex(path);
+        final BinaryIndex read = new BinaryIndex(origin.asBytes());
+        MatcherAssert.assertThat(
+            "Versions were not read",
+            read.versions(),
+            new IsEqual<>(origin.versions())
+        );
+        MatcherAssert.assertThat(
+            "Blocks were not read",
+            read.entry("ark", "1.2.0").get().offset(),
+            new IsEqual<>(origin.entry("ark", "1.2.0").get().offset())
+        );
+        MatcherAssert.assertThat(
+            "Sidecar was not read",
+            Arrays.equals(read.asBytes(), origin.asBytes()),
+            new IsEqual<>(true)
+        );
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.metadata;
+
+import java.nio.charset.StandardCharsets;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.IsEqual;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+/**
+ * Test for {@link IndexLine}.
+ * @since 0.3
+ */
+final class IndexLineTest {
+    @ParameterizedTest
+    @CsvSource(
+        delimiter = '|',
+        value = {
+            "entries:|ENTRIES",
+            "'  ark:'|CHART",
+            "'  ark:  '|CHART",
+            "'    - maintainers:'|ITEM",
+            "'    -'|ITEM",
+            "'      version: 1.0.1'|VERSION",
+            "'  - version: 1.0.1'|VERSION",
+            "apiVersion: v1|OTHER",
+            "'    - http://host:8080/ark.tgz'|ITEM",
+            "'   '|EMPTY",
+            "'  entries:'|CHART"
+        }
+    )
+    void determinesKind(final String line, final IndexLine.Kind kind) {
+        MatcherAssert.assertThat(
+            IndexLineTest.parsed(line).kind(),
+            new IsEqual<>(kind)
+        );
+    }
+
+    @Test
+    void tokenizesItemWithKeyAndValue() {
+        final IndexLine line = IndexLineTest.parsed("    - version: 0.4.1 \r");
+        MatcherAssert.assertThat(
+            "Indent is wrong",
+            line.indent(),
+            new IsEqual<>(4)
+        );
+        MatcherAssert.assertThat(
+            "Dash is not found",
+            line.dash(),
+            new IsEqual<>(true)
+        );
+        MatcherAssert.assertThat(
+            "Position of key is wrong",
+            line.keyPosition(),
+            new IsEqual<>(6)
+        );
+        MatcherAssert.assertThat(
+            "Key is wrong",
+            line.key(),
+            new IsEqual<>("version")
+        );
+        MatcherAssert.assertThat(
+            "Value is wrong",
+            line.value(),
+            new IsEqual<>("0.4.1")
+        );
+    }
+
+    @Test
+    void tokenizesItemWithoutKey() {
+        final IndexLine line = IndexLineTest.parsed("  - https://host:8080/ark-1.0.1.tgz");
+        MatcherAssert.assertThat(
+            "Key is found",
+            line.hasKey(),
+            new IsEqual<>(false)
+        );
+        MatcherAssert.assertThat(
+            "Value is wrong",
+            line.value(),
+            new IsEqual<>("https://host:8080/ark-1.0.1.tgz")
+        );
+    }
+
+    private static IndexLine parsed(final String line) {
+        final byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        return new IndexLine().parse(bytes, bytes.length);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.metadata;
+
+import com.artipie.asto.Key;
+import com.artipie.asto.Storage;
+import com.artipie.asto.ext.PublisherAs;
+import com.artipie.asto.memory.InMemoryStorage;
+import com.artipie.asto.test.TestResource;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.hamcrest.core.IsEqual;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link IndexUpdates}.
+ * @since 0.3
+ */
+final class IndexUpdatesTest {
+    @Test
+    void appliesConcurrentAdditionsWithoutLosingEntries() {
+        final Storage storage = new InMemoryStorage();
+        final IndexUpdates updates = new IndexUpdates(storage);
+        final String[] names = {"ark-1.0.1.tgz", "ark-1.2.0.tgz", "tomcat-0.4.1.tgz"};
+        Stream.of(names).forEach(name -> new TestResource(name).saveTo(storage));
+        CompletableFuture.allOf(
+            Stream.of(names)
+                .map(name -> updates.add(Key.ROOT, new Key.From(name)).toCompletableFuture())
+                .toArray(CompletableFuture[]::new)
+        ).join();
+        final IndexYamlMapping mapping = new IndexYamlMapping(
+            new PublisherAs(storage.value(IndexYaml.INDEX_YAML).join())
+                .asciiString().toCompletableFuture().join()
+        );
+        MatcherAssert.assertThat(
+            "Index does not contain all charts",
+            mapping.entries().keySet(),
+            Matchers.containsInAnyOrder("ark", "tomcat")
+        );
+        MatcherAssert.assertThat(
+            "Index does not contain all versions of ark",
+            mapping.byChart("ark").stream()
+                .map(entry -> entry.get("version"))
+                .collect(Collectors.toList()),
+            Matchers.containsInAnyOrder("1.0.1", "1.2.0")
+        );
+    }
+
+    @Test
+    void failsOnlyAdditionWhichCanNotBeApplied() {
+        final Storage storage = new InMemoryStorage();
+        final IndexUpdates updates = new IndexUpdates(storage);
+        Stream.of("ark-1.0.1.tgz", "tomcat-0.4.1.tgz")
+            .forEach(name -> new TestResource(name).saveTo(storage));
+        final CompletableFuture<Void> first = updates.add(
+            Key.ROOT, new Key.From("tomcat-0.4.1.tgz")
+        ).toCompletableFuture();
+        final CompletableFuture<Void> absent = updates.add(
+            Key.ROOT, new Key.From("absent-0.0.1.tgz")
+        ).toCompletableFuture();
+        final CompletableFuture<Void> ark = updates.add(
+            Key.ROOT, new Key.From("ark-1.0.1.tgz")
+        ).toCompletableFuture();
+        CompletableFuture.allOf(first, absent, ark).handle((noth, thr) -> null).join();
+        MatcherAssert.assertThat(
+            "Addition of absent archive did not fail",
+            absent.isCompletedExceptionally(),
+            new IsEqual<>(true)
+        );
+        MatcherAssert.assertThat(
+            "Other additions failed",
+            first.isCompletedExceptionally() || ark.isCompletedExceptionally(),
+            new IsEqual<>(false)
+        );
+        MatcherAssert.assertThat(
+            "Index does not contain charts of other additions",
+            new IndexYamlMapping(
+                new PublisherAs(storage.value(IndexYaml.INDEX_YAML).join())
+                    .asciiString().toCompletableFuture().join()
+            ).entries().keySet(),
+            Matchers.containsInAnyOrder("ark", "tomcat")
+        );
+    }
+
+    @Test
+    void updatesIndexUnderSpecifiedPrefix() {
+        final Storage storage = new InMemoryStorage();
+        final Key prefix = new Key.From("nested");
+        final Key tgz = new Key.From(prefix, "tomcat-0.4.1.tgz");
+        new TestResource("tomcat-0.4.1.tgz").saveTo(storage, tgz);
+        new IndexUpdates(storage).add(prefix, tgz).toCompletableFuture().join();
+        final Key key = new Key.From(prefix, IndexYaml.INDEX_YAML);
+        MatcherAssert.assertThat(
+            new IndexYamlMapping(
+                new PublisherAs(storage.value(key).join())
+                    .asciiString().toCompletableFuture().join()
+            ).entries().keySet(),
+            Matchers.contains("tomcat")
+        );
+    }
+}
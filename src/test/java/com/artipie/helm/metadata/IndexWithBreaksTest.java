@@ -32,6 +32,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 import org.cactoos.set.SetOf;
@@ -84,4 +85,29 @@ final class IndexWithBreaksTest {
             new IsEqual<>(true)
         );
     }
+
+    @ParameterizedTest
+    @CsvSource({
+        "index.yaml,''",
+        "index/index-four-spaces.yaml,''",
+        "index.yaml,prefix"
+    })
+    void returnsArchivesForPackages(final String index, final String prefix) {
+        final Key keyidx = new Key.From(new Key.From(prefix), IndexYaml.INDEX_YAML);
+        final Storage storage = new InMemoryStorage();
+        new BlockingStorage(storage).save(keyidx, new TestResource(index).asBytes());
+        final Map<String, Map<String, Set<String>>> archives = new Index.WithBreaks(storage)
+            .archivesByPackages(keyidx)
+            .toCompletableFuture().join();
+        MatcherAssert.assertThat(
+            "Parsed archives for `tomcat` are incorrect",
+            archives.get("tomcat"),
+            new IsEqual<>(Collections.singletonMap("0.4.1", new SetOf<>("tomcat-0.4.1.tgz")))
+        );
+        MatcherAssert.assertThat(
+            "Parsed archives for `ark` are incorrect",
+            archives.get("ark").get("1.2.0"),
+            new IsEqual<>(new SetOf<>("ark-1.2.0.tgz"))
+        );
+    }
 }
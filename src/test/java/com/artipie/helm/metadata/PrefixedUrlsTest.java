@@ -0,0 +1,121 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.metadata;
+
+import com.artipie.asto.Content;
+import com.artipie.asto.ext.PublisherAs;
+import io.reactivex.Flowable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.IsEqual;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link PrefixedUrls}.
+ * @since 0.3
+ */
+final class PrefixedUrlsTest {
+    @Test
+    void prependsRelativeUrlsOnly() {
+        MatcherAssert.assertThat(
+            PrefixedUrlsTest.rewritten(
+                String.join(
+                    "\n",
+                    "apiVersion: v1",
+                    "entries:",
+                    "  ark:",
+                    "  - name: ark",
+                    "    urls:",
+                    "    - ark-1.0.1.tgz",
+                    "    - http://other.com/ark-1.0.1.tgz",
+                    "    version: 1.0.1",
+                    "  tomcat:",
+                    "  - urls: ['tomcat-0.4.1.tgz', https://other.com/tomcat-0.4.1.tgz]",
+                    "    version: 0.4.1",
+                    ""
+                ),
+                "http://central.artipie.com/"
+            ),
+            new IsEqual<>(
+                String.join(
+                    "\n",
+                    "apiVersion: v1",
+                    "entries:",
+                    "  ark:",
+                    "  - name: ark",
+                    "    urls:",
+                    "    - http://central.artipie.com/ark-1.0.1.tgz",
+                    "    - http://other.com/ark-1.0.1.tgz",
+                    "    version: 1.0.1",
+                    "  tomcat:",
+                    // @checkstyle LineLengthCheck (1 line)
+                    "  - urls: ['http://central.artipie.com/tomcat-0.4.1.tgz', https://other.com/tomcat-0.4.1.tgz]",
+                    "    version: 0.4.1",
+                    ""
+                )
+            )
+        );
+    }
+
+    @Test
+    void rewritesLinesSplitBetweenChunks() {
+        final byte[] bytes = String.join(
+            "\n",
+            "entries:",
+            "  ark:",
+            "  - urls:",
+            "    - ark-1.0.1.tgz",
+            "    version: 1.0.1"
+        ).getBytes(StandardCharsets.UTF_8);
+        final Flowable<ByteBuffer> chunks = Flowable.range(0, bytes.length)
+            .map(idx -> ByteBuffer.wrap(bytes, idx, 1));
+        MatcherAssert.assertThat(
+            new PublisherAs(
+                new Content.From(new PrefixedUrls("http://host").apply(chunks))
+            ).asciiString().toCompletableFuture().join(),
+            new IsEqual<>(
+                String.join(
+                    "\n",
+                    "entries:",
+                    "  ark:",
+                    "  - urls:",
+                    "    - http://host/ark-1.0.1.tgz",
+                    "    version: 1.0.1",
+                    ""
+                )
+            )
+        );
+    }
+
+    private static String rewritten(final String index, final String base) {
+        return new PublisherAs(
+            new Content.From(
+                new PrefixedUrls(base).apply(
+                    new Content.From(index.getBytes(StandardCharsets.UTF_8))
+                )
+            )
+        ).asciiString().toCompletableFuture().join();
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 artipie.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.artipie.helm.metadata;
+
+import com.artipie.asto.Key;
+import com.artipie.asto.Storage;
+import com.artipie.asto.ext.PublisherAs;
+import com.artipie.asto.memory.InMemoryStorage;
+import com.artipie.asto.test.TestResource;
+import com.artipie.helm.TgzArchive;
+import io.reactivex.Completable;
+import io.reactivex.schedulers.Schedulers;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Collectors;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.hamcrest.core.IsEqual;
+import org.hamcrest.core.IsInstanceOf;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link ShardedIndex}.
+ * @since 0.3
+ */
+final class ShardedIndexTest {
+    /**
+     * Storage.
+     */
+    private Storage storage;
+
+    @BeforeEach
+    void setUp() {
+        this.storage = new InMemoryStorage();
+    }
+
+    @Test
+    void addsChartsToTheirFragments() {
+        final ShardedIndex index = new ShardedIndex(this.storage);
+        index.add(ShardedIndexTest.tgz("ark-1.0.1.tgz")).blockingAwait();
+        index.add(ShardedIndexTest.tgz("ark-1.2.0.tgz")).blockingAwait();
+        index.add(ShardedIndexTest.tgz("tomcat-0.4.1.tgz")).blockingAwait();
+        MatcherAssert.assertThat(
+            "Fragments were not written",
+            this.storage.list(ShardedIndex.ENTRIES).join().stream()
+                .map(Key::string)
+                .collect(Collectors.toList()),
+            Matchers.containsInAnyOrder(".helm/entries/ark.yaml", ".helm/entries/tomcat.yaml")
+        );
+        final IndexYamlMapping mapping = this.assembled();
+        MatcherAssert.assertThat(
+            "Assembled index does not contain charts",
+            mapping.entries().keySet(),
+            Matchers.containsInAnyOrder("ark", "tomcat")
+        );
+        MatcherAssert.assertThat(
+            "Assembled index does not contain versions of ark",
+            mapping.byChart("ark").stream()
+                .map(entry -> entry.get("version"))
+                .collect(Collectors.toList()),
+            Matchers.containsInAnyOrder("1.0.1", "1.2.0")
+        );
+    }
+
+    @Test
+    void deletesVersionsFromFragment() {
+        final ShardedIndex index = new ShardedIndex(this.storage);
+        index.add(ShardedIndexTest.tgz("ark-1.0.1.tgz")).blockingAwait();
+        index.add(ShardedIndexTest.tgz("ark-1.2.0.tgz")).blockingAwait();
+        index.add(ShardedIndexTest.tgz("tomcat-0.4.1.tgz")).blockingAwait();
+        index.deleteByNameAndVersion("ark", "1.0.1").blockingAwait();
+        index.deleteByNameAndVersion("tomcat", "0.4.1").blockingAwait();
+        final IndexYamlMapping mapping = this.assembled();
+        MatcherAssert.assertThat(
+            "Fragment of tomcat was not removed",
+            mapping.entries().keySet(),
+            new IsEqual<>(Collections.singleton("ark"))
+        );
+        MatcherAssert.assertThat(
+            "Version of ark was not removed",
+            mapping.byChart("ark").get(0).get("version"),
+            new IsEqual<>("1.2.0")
+        );
+        index.deleteByName("ark").blockingAwait();
+        MatcherAssert.assertThat(
+            "Fragments exist",
+            index.exists().blockingGet(),
+            new IsEqual<>(false)
+        );
+    }
+
+    @Test
+    void keepsVersionsAddedConcurrently() {
+        final ShardedIndex index = new ShardedIndex(
+            this.storage, Key.ROOT, new IndexUpdates(this.storage)
+        );
+        for (int attempt = 0; attempt < 10; attempt += 1) {
+            Completable.merge(
+                Arrays.asList(
+                    index.add(ShardedIndexTest.tgz("ark-1.0.1.tgz")).subscribeOn(Schedulers.io()),
+                    index.add(ShardedIndexTest.tgz("ark-1.2.0.tgz")).subscribeOn(Schedulers.io())
+                )
+            ).blockingAwait();
+            MatcherAssert.assertThat(
+                this.assembled().byChart("ark").stream()
+                    .map(entry -> entry.get("version"))
+                    .collect(Collectors.toList()),
+                Matchers.containsInAnyOrder("1.0.1", "1.2.0")
+            );
+            index.deleteByName("ark").blockingAwait();
+        }
+    }
+
+    @Test
+    void failsToAddExistingVersion() {
+        final ShardedIndex index = new ShardedIndex(this.storage);
+        index.add(ShardedIndexTest.tgz("ark-1.0.1.tgz")).blockingAwait();
+        MatcherAssert.assertThat(
+            index.add(ShardedIndexTest.tgz("ark-1.0.1.tgz")).blockingGet(),
+            new IsInstanceOf(IllegalStateException.class)
+        );
+    }
+
+    @Test
+    void migratesChartsOfIndexFile() {
+        new TestResource("index.yaml").saveTo(this.storage);
+        final ShardedIndex index = new ShardedIndex(this.storage);
+        index.add(ShardedIndexTest.tgz("ark-1.2.0.tgz")).blockingAwait();
+        index.migrate().blockingAwait();
+        MatcherAssert.assertThat(
+            "Index file was not removed",
+            this.storage.exists(IndexYaml.INDEX_YAML).join(),
+            new IsEqual<>(false)
+        );
+        final IndexYamlMapping mapping = this.assembled();
+        MatcherAssert.assertThat(
+            "Charts of index file were not migrated",
+            mapping.entries().keySet(),
+            Matchers.containsInAnyOrder("ark", "tomcat")
+        );
+        MatcherAssert.assertThat(
+            "Versions of ark were not merged",
+            mapping.byChart("ark").stream()
+                .map(entry -> entry.get("version"))
+                .collect(Collectors.toList()),
+            Matchers.containsInAnyOrder("1.0.1", "1.2.0")
+        );
+    }
+
+    @Test
+    void assemblesEmptyIndex() {
+        MatcherAssert.assertThat(
+            this.assembled().entries().isEmpty(),
+            new IsEqual<>(true)
+        );
+    }
+
+    private IndexYamlMapping assembled() {
+        return new IndexYamlMapping(
+            new PublisherAs(new ShardedIndex(this.storage).content().blockingGet())
+                .asciiString().toCompletableFuture().join()
+        );
+    }
+
+    private static TgzArchive tgz(final String name) {
+        return new TgzArchive(new TestResource(name).asBytes());
+    }
+}
@@ -23,31 +23,35 @@
  */
 package com.artipie.helm.metadata;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.cactoos.list.ListOf;
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.core.IsEqual;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
 /**
- * Tests for {@link ParsedChartName}.
+ * Test for {@link SplitByBreaks}.
  * @since 0.3
  */
-final class ParsedChartNameTest {
+final class SplitByBreaksTest {
     @ParameterizedTest
-    @ValueSource(strings = {"name:", " name_with_space_before:", " space_both: "})
-    void returnsValidForCorrectName(final String name) {
+    @ValueSource(ints = {1, 3, 7, 1024})
+    void splitsLinesWhichArriveInChunks(final int size) {
+        final byte[] bytes = "entries:\r\n  ark:\n  - version: 1.0.1\n\nlast"
+            .getBytes(StandardCharsets.UTF_8);
+        final List<String> lines = new ArrayList<>(5);
+        final SplitByBreaks split = new SplitByBreaks(line -> lines.add(line.text()));
+        for (int pos = 0; pos < bytes.length; pos += size) {
+            split.accept(ByteBuffer.wrap(bytes, pos, Math.min(size, bytes.length - pos)));
+        }
+        split.close();
         MatcherAssert.assertThat(
-            new ParsedChartName(name).valid(),
-            new IsEqual<>(true)
-        );
-    }
-
-    @ParameterizedTest
-    @ValueSource(strings = {"without_colon", " - starts_with_dash:", "entries:"})
-    void returnsNotValidForMalformedName(final String name) {
-        MatcherAssert.assertThat(
-            new ParsedChartName(name).valid(),
-            new IsEqual<>(false)
+            lines,
+            new IsEqual<>(new ListOf<>("entries:", "  ark:", "  - version: 1.0.1", "", "last"))
         );
     }
 }
@@ -21,37 +21,46 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
  * SOFTWARE.
  */
+package com.artipie.helm.misc;
 
-package com.artipie.helm.http;
-
-import java.nio.ByteBuffer;
-import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
 import org.hamcrest.core.IsEqual;
 import org.junit.jupiter.api.Test;
 
 /**
- * Test for {@link PushChartSlice#bufsToByteArr(List)}.
- *
- * @since 0.1
+ * Test for {@link BoundedExecutor}.
+ * @since 0.3
  */
-public class BufsToByteArrTest {
-
+final class BoundedExecutorTest {
     @Test
-    public void copyIsCorrect() {
-        final String actual = new String(
-            PushChartSlice.bufsToByteArr(
-                Arrays.asList(
-                    ByteBuffer.wrap("123".getBytes()),
-                    ByteBuffer.wrap("456".getBytes()),
-                    ByteBuffer.wrap("789".getBytes())
-                )
-            )
+    void runsQueuedTasksOnBoundedDaemonThreads() {
+        final BoundedExecutor executor = new BoundedExecutor("test-pool", 2);
+        final List<Thread> threads = IntStream.range(0, 10)
+            .mapToObj(
+                idx -> CompletableFuture.supplyAsync(Thread::currentThread, executor)
+            ).collect(Collectors.toList())
+            .stream()
+            .map(CompletableFuture::join)
+            .collect(Collectors.toList());
+        MatcherAssert.assertThat(
+            "Threads are not daemons",
+            threads.stream().allMatch(Thread::isDaemon),
+            new IsEqual<>(true)
+        );
+        MatcherAssert.assertThat(
+            "Threads are not named by prefix",
+            threads.stream().map(Thread::getName).collect(Collectors.toSet()),
+            Matchers.everyItem(Matchers.startsWith("test-pool-"))
         );
         MatcherAssert.assertThat(
-            actual,
-            new IsEqual<>("123456789")
+            "Number of threads is not bounded",
+            threads.stream().distinct().count(),
+            Matchers.lessThanOrEqualTo(2L)
         );
     }
 }